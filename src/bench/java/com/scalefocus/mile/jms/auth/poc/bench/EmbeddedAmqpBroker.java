@@ -0,0 +1,188 @@
+package com.scalefocus.mile.jms.auth.poc.bench;
+
+import org.apache.activemq.artemis.core.config.Configuration;
+import org.apache.activemq.artemis.core.config.impl.ConfigurationImpl;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.apache.qpid.jms.JmsConnectionFactory;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+
+/**
+ * An in-process Artemis broker with an AMQP acceptor, used as a local stand-in for Solace
+ * by the benchmarks. Persistence and security are disabled so that measurements reflect
+ * the client rather than the broker's journal.
+ */
+public final class EmbeddedAmqpBroker implements AutoCloseable {
+
+    public static final String BROKER_URL_PROPERTY = "bench.broker.url";
+
+    private static final String SELF_SIGNED_PASSWORD = "benchmark";
+
+    private final EmbeddedActiveMQ server;
+    private final String url;
+    private final SSLContext clientSslContext;
+    private final Path keyStorePath;
+    private final String keyStorePassword;
+
+    private EmbeddedAmqpBroker(EmbeddedActiveMQ server, String url, SSLContext clientSslContext,
+                               Path keyStorePath, String keyStorePassword) {
+        this.server = server;
+        this.url = url;
+        this.clientSslContext = clientSslContext;
+        this.keyStorePath = keyStorePath;
+        this.keyStorePassword = keyStorePassword;
+    }
+
+    /**
+     * Starts a plain AMQP broker on the given port.
+     *
+     * @param port the port the AMQP acceptor listens on
+     * @return the running broker
+     * @throws Exception if the broker cannot be started
+     */
+    public static EmbeddedAmqpBroker start(int port) throws Exception {
+        Configuration config = baseConfiguration()
+                .addAcceptorConfiguration("amqp", "tcp://127.0.0.1:" + port + "?protocols=AMQP");
+        return start(config, "amqp://127.0.0.1:" + port, null, null, null);
+    }
+
+    /**
+     * Starts an AMQP broker that only accepts TLS connections on the given port, using a
+     * freshly generated self-signed certificate that the broker's connection factories trust.
+     *
+     * @param port the port the AMQPS acceptor listens on
+     * @return the running broker
+     * @throws Exception if the certificate cannot be generated or the broker cannot be started
+     */
+    public static EmbeddedAmqpBroker startTls(int port) throws Exception {
+        Path keyStore = generateSelfSignedKeyStore();
+        Configuration config = tlsConfiguration(port, keyStore.toString(), SELF_SIGNED_PASSWORD);
+        return start(config, "amqps://127.0.0.1:" + port, trustingSslContext(keyStore), keyStore,
+                SELF_SIGNED_PASSWORD);
+    }
+
+    /**
+     * Starts an AMQP broker that only accepts TLS connections on the given port.
+     *
+     * @param port             the port the AMQPS acceptor listens on
+     * @param keyStorePath     the server key store
+     * @param keyStorePassword the server key store password
+     * @return the running broker
+     * @throws Exception if the broker cannot be started
+     */
+    public static EmbeddedAmqpBroker startTls(int port, String keyStorePath, String keyStorePassword) throws Exception {
+        return start(tlsConfiguration(port, keyStorePath, keyStorePassword), "amqps://127.0.0.1:" + port, null,
+                Path.of(keyStorePath), keyStorePassword);
+    }
+
+    private static Configuration tlsConfiguration(int port, String keyStorePath, String keyStorePassword)
+            throws Exception {
+        return baseConfiguration()
+                .addAcceptorConfiguration("amqps", "tcp://127.0.0.1:" + port + "?protocols=AMQP"
+                        + ";sslEnabled=true;keyStorePath=" + keyStorePath + ";keyStorePassword=" + keyStorePassword);
+    }
+
+    /**
+     * Generates a PKCS12 key store holding a self-signed certificate for 127.0.0.1 with the JDK's
+     * {@code keytool}.
+     */
+    private static Path generateSelfSignedKeyStore() throws IOException, InterruptedException {
+        Path directory = Files.createTempDirectory("bench-tls");
+        Path keyStore = directory.resolve("broker.p12");
+        Path keytool = Path.of(System.getProperty("java.home"), "bin", "keytool");
+        Process process = new ProcessBuilder(keytool.toString(), "-genkeypair", "-alias", "broker",
+                "-keyalg", "RSA", "-keysize", "2048", "-validity", "1", "-dname", "CN=localhost",
+                "-ext", "SAN=ip:127.0.0.1,dns:localhost", "-storetype", "PKCS12",
+                "-keystore", keyStore.toString(), "-storepass", SELF_SIGNED_PASSWORD)
+                .redirectErrorStream(true)
+                .start();
+        byte[] output = process.getInputStream().readAllBytes();
+        if (process.waitFor() != 0) {
+            throw new IOException("keytool failed: " + new String(output));
+        }
+        keyStore.toFile().deleteOnExit();
+        directory.toFile().deleteOnExit();
+        return keyStore;
+    }
+
+    private static SSLContext trustingSslContext(Path keyStorePath) throws IOException, GeneralSecurityException {
+        KeyStore trustStore = KeyStore.getInstance("PKCS12");
+        try (InputStream in = Files.newInputStream(keyStorePath)) {
+            trustStore.load(in, SELF_SIGNED_PASSWORD.toCharArray());
+        }
+        TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        tmf.init(trustStore);
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(null, tmf.getTrustManagers(), null);
+        return sslContext;
+    }
+
+    private static Configuration baseConfiguration() {
+        return new ConfigurationImpl()
+                .setPersistenceEnabled(false)
+                .setSecurityEnabled(false)
+                .setJMXManagementEnabled(false);
+    }
+
+    private static EmbeddedAmqpBroker start(Configuration config, String url, SSLContext clientSslContext,
+                                            Path keyStorePath, String keyStorePassword) throws Exception {
+        EmbeddedActiveMQ server = new EmbeddedActiveMQ();
+        server.setConfiguration(config);
+        server.start();
+        return new EmbeddedAmqpBroker(server, url, clientSslContext, keyStorePath, keyStorePassword);
+    }
+
+    /**
+     * Returns the URL clients use to connect to this broker.
+     *
+     * @return the broker URL
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Returns the key store holding the broker's certificate, which clients can also use as their
+     * trust store, or {@code null} for a plain AMQP broker.
+     *
+     * @return the key store path
+     */
+    public Path getKeyStorePath() {
+        return keyStorePath;
+    }
+
+    /**
+     * Returns the password of the broker's key store, or {@code null} for a plain AMQP broker.
+     *
+     * @return the key store password
+     */
+    public String getKeyStorePassword() {
+        return keyStorePassword;
+    }
+
+    /**
+     * Creates a qpid-jms connection factory pointing at this broker. For a broker started with a
+     * generated certificate, the factory trusts that certificate.
+     *
+     * @return a new connection factory
+     */
+    public JmsConnectionFactory createConnectionFactory() {
+        JmsConnectionFactory factory = new JmsConnectionFactory("admin", "admin", url);
+        if (clientSslContext != null) {
+            factory.setSslContext(clientSslContext);
+        }
+        return factory;
+    }
+
+    @Override
+    public void close() throws Exception {
+        server.stop();
+    }
+}
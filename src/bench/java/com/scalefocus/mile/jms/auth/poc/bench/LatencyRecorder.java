@@ -0,0 +1,77 @@
+package com.scalefocus.mile.jms.auth.poc.bench;
+
+import java.util.Arrays;
+
+/**
+ * Collects latency samples in nanoseconds and reports throughput and percentiles.
+ * Each worker thread records into its own recorder; recorders are merged before reporting.
+ */
+public final class LatencyRecorder {
+
+    private long[] samples;
+    private int size;
+
+    public LatencyRecorder(int expectedSamples) {
+        this.samples = new long[Math.max(16, expectedSamples)];
+    }
+
+    /**
+     * Records one latency sample.
+     *
+     * @param nanos the latency in nanoseconds
+     */
+    public void record(long nanos) {
+        if (size == samples.length) {
+            samples = Arrays.copyOf(samples, size * 2);
+        }
+        samples[size++] = nanos;
+    }
+
+    /**
+     * Merges the samples of several recorders into a new one.
+     *
+     * @param recorders the recorders to merge
+     * @return a recorder holding every sample
+     */
+    public static LatencyRecorder merge(LatencyRecorder... recorders) {
+        int total = 0;
+        for (LatencyRecorder recorder : recorders) {
+            total += recorder.size;
+        }
+        LatencyRecorder merged = new LatencyRecorder(total);
+        for (LatencyRecorder recorder : recorders) {
+            System.arraycopy(recorder.samples, 0, merged.samples, merged.size, recorder.size);
+            merged.size += recorder.size;
+        }
+        return merged;
+    }
+
+    /**
+     * Returns the latency at the given percentile.
+     *
+     * @param percentile a value between 0 and 100
+     * @return the latency in nanoseconds, or 0 if nothing was recorded
+     */
+    public long percentile(double percentile) {
+        if (size == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * size) - 1;
+        return sorted[Math.max(0, Math.min(size - 1, index))];
+    }
+
+    /**
+     * Prints throughput and latency percentiles for one benchmark scenario.
+     *
+     * @param scenario      the scenario name
+     * @param elapsedNanos  the wall-clock duration of the measured run
+     */
+    public void report(String scenario, long elapsedNanos) {
+        double seconds = elapsedNanos / 1_000_000_000.0;
+        System.out.printf("%-28s %10d msgs %12.1f msg/s   p50 %8.3f ms   p99 %8.3f ms   p999 %8.3f ms%n",
+                scenario, size, size / seconds,
+                percentile(50) / 1_000_000.0, percentile(99) / 1_000_000.0, percentile(99.9) / 1_000_000.0);
+    }
+}
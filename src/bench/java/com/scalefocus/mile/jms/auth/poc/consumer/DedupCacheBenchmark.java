@@ -0,0 +1,50 @@
+package com.scalefocus.mile.jms.auth.poc.consumer;
+
+import com.scalefocus.mile.jms.auth.poc.core.ClientMetrics;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of {@link DedupCache#firstSeen(String)} with message IDs shaped like the
+ * broker's, half of them repeated. Run with {@code -t} to see the effect of striping under
+ * parallel consumers and with {@code -prof gc} to see the allocation per lookup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class DedupCacheBenchmark {
+
+    private static final int KEYS = 1 << 18;
+
+    @Param({"1", "16"})
+    public int stripes;
+
+    private DedupCache cache;
+    private String[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        cache = new DedupCache(true, KEYS / 2, 600_000, stripes, Optional.empty(), ClientMetrics.disabled(),
+                System::nanoTime);
+        keys = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            // every odd position repeats the key of the even position 33 before it
+            keys[i] = "ID:bench-" + ((i & 1) == 0 ? i : i - 33) + ":1:1:1-1";
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    public boolean firstSeen(Cursor cursor) {
+        return cache.firstSeen(keys[cursor.next++ & (KEYS - 1)]);
+    }
+}
@@ -0,0 +1,48 @@
+package com.scalefocus.mile.jms.auth.poc.consumer;
+
+import com.scalefocus.mile.jms.auth.poc.bench.EmbeddedAmqpBroker;
+import jakarta.jms.ConnectionFactory;
+import org.apache.qpid.jms.JmsConnectionFactory;
+
+import java.util.Properties;
+
+/**
+ * Runs the {@link LoadGenerator} against an embedded AMQP broker, or against the broker at
+ * {@code bench.broker.url} without TLS, so that a load profile can be tried out without a Solace
+ * broker.
+ *
+ * <p>Every system property starting with {@code loadgen.} or {@code solace.} configures the run,
+ * e.g. {@code ./mvnw -Pbenchmark test-compile exec:java
+ * -Dexec.mainClass=com.scalefocus.mile.jms.auth.poc.consumer.EmbeddedLoadGenerator
+ * -Dloadgen.rate=2000 -Dloadgen.duration-s=30 -Dsolace.consumer.ack.mode=client-window}.</p>
+ */
+public final class EmbeddedLoadGenerator {
+
+    private static final int PORT = 5681;
+
+    public static void main(String[] args) throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("loadgen.queue", "bench-loadgen");
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith("loadgen.") || name.startsWith("solace.")) {
+                properties.setProperty(name, System.getProperty(name));
+            }
+        }
+        String externalUrl = System.getProperty(EmbeddedAmqpBroker.BROKER_URL_PROPERTY);
+
+        EmbeddedAmqpBroker broker = externalUrl == null ? EmbeddedAmqpBroker.start(PORT) : null;
+        try {
+            ConnectionFactory factory = broker != null
+                    ? broker.createConnectionFactory()
+                    : new JmsConnectionFactory("admin", "admin", externalUrl);
+            LoadGenerator.Result result = new LoadGenerator(factory, properties).run();
+            if (result.getErrors() > 0) {
+                System.exit(1);
+            }
+        } finally {
+            if (broker != null) {
+                broker.close();
+            }
+        }
+    }
+}
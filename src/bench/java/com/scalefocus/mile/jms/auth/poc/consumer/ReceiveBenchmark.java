@@ -0,0 +1,94 @@
+package com.scalefocus.mile.jms.auth.poc.consumer;
+
+import com.scalefocus.mile.jms.auth.poc.bench.EmbeddedAmqpBroker;
+import com.scalefocus.mile.jms.auth.poc.core.ClientMetrics;
+import jakarta.jms.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Properties;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of receiving and acknowledging one message under each acknowledgement mode.
+ * A feeder thread keeps up to 1000 messages waiting on the queue, so the measured time is the
+ * consumer's receive and acknowledgement cost rather than the producer's.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+@Threads(1)
+public class ReceiveBenchmark {
+
+    private static final String QUEUE = "bench-receive";
+    private static final int BACKLOG = 1000;
+
+    @Param({"auto", "dups-ok", "client-window"})
+    public String ackMode;
+
+    private EmbeddedAmqpBroker broker;
+    private Connection connection;
+    private Connection feederConnection;
+    private MessageConsumer consumer;
+    private AckWindow ackWindow;
+    private Thread feeder;
+    private volatile boolean feeding = true;
+    private final Semaphore credits = new Semaphore(BACKLOG);
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        broker = EmbeddedAmqpBroker.start(5672);
+        connection = broker.createConnectionFactory().createConnection();
+        connection.start();
+
+        Properties properties = new Properties();
+        properties.setProperty("solace.consumer.ack.mode", ackMode);
+        ConsumerSettings settings = new ConsumerSettings(properties);
+        Session session = connection.createSession(false, settings.getAcknowledgementMode().sessionMode());
+        consumer = session.createConsumer(session.createQueue(QUEUE));
+        ackWindow = new AckWindow(settings, session, ClientMetrics.disabled().ackTimer(QUEUE, 0));
+
+        feederConnection = broker.createConnectionFactory().createConnection();
+        Session feederSession = feederConnection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        MessageProducer producer = feederSession.createProducer(feederSession.createQueue(QUEUE));
+        feeder = new Thread(() -> {
+            try {
+                while (feeding) {
+                    credits.acquire();
+                    producer.send(feederSession.createTextMessage("benchmark"));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (JMSException e) {
+                if (feeding) {
+                    System.out.printf("[feeder]: Error: %1$s%n", e);
+                }
+            }
+        }, "bench-feeder");
+        feeder.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        feeding = false;
+        feeder.interrupt();
+        feeder.join();
+        ackWindow.flush();
+        feederConnection.close();
+        connection.close();
+        broker.close();
+    }
+
+    @Benchmark
+    public Message receiveAndAcknowledge() throws JMSException {
+        Message message = consumer.receive(5000);
+        if (message != null) {
+            credits.release();
+            ackWindow.processed(message);
+        }
+        return message;
+    }
+}
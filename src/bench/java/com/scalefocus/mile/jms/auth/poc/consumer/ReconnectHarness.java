@@ -0,0 +1,144 @@
+package com.scalefocus.mile.jms.auth.poc.consumer;
+
+import com.scalefocus.mile.jms.auth.poc.bench.EmbeddedAmqpBroker;
+import com.scalefocus.mile.jms.auth.poc.core.BacklogEstimator;
+import com.scalefocus.mile.jms.auth.poc.core.ClientMetrics;
+import com.scalefocus.mile.jms.auth.poc.core.DestinationRegistry;
+import com.scalefocus.mile.jms.auth.poc.core.ReconnectSettings;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.jms.*;
+import org.apache.qpid.jms.JmsConnectionFactory;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Restarts a local AMQP broker under a running {@link MessageConsumerProvider} and measures how
+ * long consumption takes to resume.
+ *
+ * <p>A feeder sends a message every few milliseconds, reconnecting on its own whenever the
+ * broker is down. For every restart the harness prints the time from stopping the broker to the
+ * first message handled afterwards, and the time from the broker accepting connections again to
+ * that message, which is the part the client's reconnection adds. The provider's own
+ * {@code solace.connection.recovery} timer is printed at the end.</p>
+ *
+ * <p>Run with {@code ./mvnw -Pbenchmark test-compile exec:java
+ * -Dexec.mainClass=com.scalefocus.mile.jms.auth.poc.consumer.ReconnectHarness}.
+ * {@code bench.restarts} (default 5) and {@code bench.downtime-ms} (default 500) control the
+ * restarts; {@code solace.reconnect.*} system properties override the reconnection settings.</p>
+ */
+public final class ReconnectHarness {
+
+    private static final String QUEUE = "bench-reconnect";
+    private static final int PORT = 5679;
+
+    private static volatile long lastHandledNanos;
+    private static volatile boolean feeding = true;
+
+    public static void main(String[] args) throws Exception {
+        int restarts = Integer.getInteger("bench.restarts", 5);
+        long downtimeMillis = Long.getLong("bench.downtime-ms", 500);
+
+        Properties properties = new Properties();
+        System.getProperties().stringPropertyNames().stream()
+                .filter(name -> name.startsWith("solace."))
+                .forEach(name -> properties.setProperty(name, System.getProperty(name)));
+        ReconnectSettings reconnectSettings = new ReconnectSettings(properties);
+
+        EmbeddedAmqpBroker broker = EmbeddedAmqpBroker.start(PORT);
+        JmsConnectionFactory factory = broker.createConnectionFactory();
+        reconnectSettings.applyTo(factory);
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        MessageConsumerProvider provider = new MessageConsumerProvider(factory, DestinationRegistry.of(QUEUE),
+                new ConsumerSettings(properties), BacklogEstimator.local(),
+                new MessageHandlerPipeline(List.of(countingHandler()), 0, 0, false),
+                reconnectSettings, new ClientMetrics(registry));
+        Thread feeder = new Thread(() -> feed(factory), "reconnect-feeder");
+        try {
+            provider.initialize();
+            provider.getConsumerPool().start();
+            feeder.start();
+            awaitHandledAfter(System.nanoTime());
+
+            System.out.printf("Reconnect harness: %d restarts, %d ms downtime%n", restarts, downtimeMillis);
+            for (int i = 0; i < restarts; i++) {
+                long stopped = System.nanoTime();
+                broker.close();
+                Thread.sleep(downtimeMillis);
+                broker = EmbeddedAmqpBroker.start(PORT);
+                long restarted = System.nanoTime();
+                long handled = awaitHandledAfter(restarted);
+                System.out.printf("restart %d: consuming %6.1f ms after broker stop, %6.1f ms after broker start%n",
+                        i + 1, (handled - stopped) / 1e6, (handled - restarted) / 1e6);
+                Thread.sleep(500);
+            }
+
+            Timer recovery = registry.find("solace.connection.recovery").timer();
+            if (recovery != null) {
+                System.out.printf("solace.connection.recovery: count %d, mean %.1f ms, max %.1f ms%n",
+                        recovery.count(), recovery.mean(TimeUnit.MILLISECONDS), recovery.max(TimeUnit.MILLISECONDS));
+            }
+        } finally {
+            feeding = false;
+            feeder.join(5000);
+            provider.cleanup();
+            broker.close();
+        }
+    }
+
+    private static MessageHandler<String> countingHandler() {
+        return new MessageHandler<>() {
+            @Override
+            public MessageType<String> type() {
+                return MessageType.TEXT;
+            }
+
+            @Override
+            public void handle(String payload, Message message) {
+                lastHandledNanos = System.nanoTime();
+            }
+        };
+    }
+
+    private static long awaitHandledAfter(long since) throws InterruptedException {
+        long deadline = since + TimeUnit.SECONDS.toNanos(30);
+        while (lastHandledNanos - since <= 0) {
+            if (System.nanoTime() - deadline > 0) {
+                throw new AssertionError("No message consumed within 30 s");
+            }
+            Thread.sleep(1);
+        }
+        return lastHandledNanos;
+    }
+
+    private static void feed(ConnectionFactory factory) {
+        int sent = 0;
+        while (feeding) {
+            try (Connection connection = factory.createConnection();
+                 Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+                 MessageProducer producer = session.createProducer(session.createQueue(QUEUE))) {
+                while (feeding) {
+                    producer.send(session.createTextMessage("reconnect-" + sent++));
+                    Thread.sleep(2);
+                }
+            } catch (JMSException e) {
+                pauseFeeding();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static void pauseFeeding() {
+        try {
+            Thread.sleep(5);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            feeding = false;
+        }
+    }
+}
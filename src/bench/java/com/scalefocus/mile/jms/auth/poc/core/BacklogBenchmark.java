@@ -0,0 +1,75 @@
+package com.scalefocus.mile.jms.auth.poc.core;
+
+import com.scalefocus.mile.jms.auth.poc.bench.EmbeddedAmqpBroker;
+import jakarta.jms.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Enumeration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of finding out how many messages wait on a queue at different depths: the
+ * {@link BacklogEstimator} used today against browsing the whole queue, which is how the
+ * removed {@code getQueueSize} counted messages.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class BacklogBenchmark {
+
+    private static final String QUEUE = "bench-backlog";
+
+    @Param({"0", "1000", "10000"})
+    public int depth;
+
+    private EmbeddedAmqpBroker broker;
+    private Connection connection;
+    private Session session;
+    private Queue queue;
+    private BacklogEstimator estimator;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        broker = EmbeddedAmqpBroker.start(5672);
+        connection = broker.createConnectionFactory().createConnection();
+        connection.start();
+        try (Session fillSession = connection.createSession(true, Session.SESSION_TRANSACTED);
+             MessageProducer producer = fillSession.createProducer(fillSession.createQueue(QUEUE))) {
+            for (int i = 0; i < depth; i++) {
+                producer.send(fillSession.createTextMessage("backlog-" + i));
+            }
+            fillSession.commit();
+        }
+        session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        queue = session.createQueue(QUEUE);
+        estimator = BacklogEstimator.local();
+        estimator.recordEnqueued(QUEUE, depth);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        connection.close();
+        broker.close();
+    }
+
+    @Benchmark
+    public long estimate() {
+        return estimator.estimate(QUEUE);
+    }
+
+    @Benchmark
+    public long browse() throws JMSException {
+        long count = 0;
+        try (QueueBrowser browser = session.createBrowser(queue)) {
+            Enumeration<?> messages = browser.getEnumeration();
+            while (messages.hasMoreElements()) {
+                messages.nextElement();
+                count++;
+            }
+        }
+        return count;
+    }
+}
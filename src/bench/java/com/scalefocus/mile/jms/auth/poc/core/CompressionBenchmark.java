@@ -0,0 +1,75 @@
+package com.scalefocus.mile.jms.auth.poc.core;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of the CPU cost of each {@link PayloadCodec} on a JSON body of the given size.
+ * The compression ratio of the body is printed once per trial, since JMH has no place for it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class CompressionBenchmark {
+
+    @Param({"lz4", "zstd", "deflate"})
+    public String codec;
+
+    @Param({"4096", "65536"})
+    public int size;
+
+    private PayloadCodec payloadCodec;
+    private byte[] body;
+    private byte[] compressed;
+    private int compressedLength;
+    private byte[] restored;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        payloadCodec = PayloadCodec.forId(codec);
+        body = jsonBody(size);
+        compressed = new byte[payloadCodec.maxCompressedLength(size)];
+        compressedLength = payloadCodec.compress(body, size, compressed);
+        restored = new byte[size];
+        System.out.printf("%n%s: %d bytes compressed to %d, ratio %.2f%n",
+                codec, size, compressedLength, (double) size / compressedLength);
+    }
+
+    @Benchmark
+    public int compress() {
+        return payloadCodec.compress(body, size, compressed);
+    }
+
+    @Benchmark
+    public byte[] decompress() {
+        payloadCodec.decompress(compressed, compressedLength, restored, size);
+        return restored;
+    }
+
+    /**
+     * Builds a body of records with repeating keys and random values, to resemble the event
+     * payloads this client publishes rather than a trivially repeated string.
+     */
+    private static byte[] jsonBody(int size) {
+        Random random = new Random(42);
+        StringBuilder json = new StringBuilder("[");
+        while (json.length() < size) {
+            json.append("{\"id\":").append(random.nextInt(1_000_000))
+                    .append(",\"sensor\":\"sensor-").append(random.nextInt(64))
+                    .append("\",\"timestamp\":").append(1_700_000_000_000L + random.nextInt(1_000_000))
+                    .append(",\"value\":").append(random.nextDouble())
+                    .append(",\"status\":\"").append(random.nextBoolean() ? "OK" : "DEGRADED")
+                    .append("\"},");
+        }
+        byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] body = new byte[size];
+        System.arraycopy(bytes, 0, body, 0, size);
+        return body;
+    }
+}
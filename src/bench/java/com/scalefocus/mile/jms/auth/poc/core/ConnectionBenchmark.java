@@ -0,0 +1,72 @@
+package com.scalefocus.mile.jms.auth.poc.core;
+
+import com.scalefocus.mile.jms.auth.poc.bench.EmbeddedAmqpBroker;
+import jakarta.jms.Connection;
+import jakarta.jms.JMSException;
+import org.apache.qpid.jms.JmsConnectionFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of opening and closing a broker connection, over plain AMQP and over TLS with a
+ * generated self-signed certificate.
+ *
+ * <p>{@code amqps-fresh} loads the stores into a new {@code SSLContext} for every connection, so
+ * each one pays for reading the stores and a full handshake. {@code amqps-cached} opens every
+ * connection with the shared context of one {@link SslContextCache}, as the application does,
+ * so connections after the first resume the cached TLS session.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class ConnectionBenchmark {
+
+    private static final int SESSION_CACHE_SIZE = 1000;
+    private static final int SESSION_TIMEOUT_SECONDS = 86400;
+
+    @Param({"amqp", "amqps-fresh", "amqps-cached"})
+    public String transport;
+
+    private EmbeddedAmqpBroker broker;
+    private JmsConnectionFactory factory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        if ("amqp".equals(transport)) {
+            broker = EmbeddedAmqpBroker.start(5672);
+        } else {
+            broker = EmbeddedAmqpBroker.startTls(5671);
+        }
+        factory = broker.createConnectionFactory();
+        if ("amqps-cached".equals(transport)) {
+            factory.setSslContext(newSslContextCache().get());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        broker.close();
+    }
+
+    @Benchmark
+    public void createConnection() throws JMSException, GeneralSecurityException, IOException {
+        if ("amqps-fresh".equals(transport)) {
+            factory.setSslContext(newSslContextCache().get());
+        }
+        try (Connection connection = factory.createConnection()) {
+            connection.start();
+        }
+    }
+
+    private SslContextCache newSslContextCache() throws GeneralSecurityException, IOException {
+        String keyStore = broker.getKeyStorePath().toString();
+        String password = broker.getKeyStorePassword();
+        return new SslContextCache(keyStore, password, keyStore, password, SESSION_CACHE_SIZE, SESSION_TIMEOUT_SECONDS);
+    }
+}
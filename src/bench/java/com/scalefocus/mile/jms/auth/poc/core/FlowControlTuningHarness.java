@@ -0,0 +1,101 @@
+package com.scalefocus.mile.jms.auth.poc.core;
+
+import com.scalefocus.mile.jms.auth.poc.bench.EmbeddedAmqpBroker;
+import com.scalefocus.mile.jms.auth.poc.bench.LatencyRecorder;
+import jakarta.jms.*;
+import org.apache.qpid.jms.JmsConnectionFactory;
+
+import java.util.Properties;
+
+/**
+ * Sweeps prefetch, local buffer size and presettle settings against a local AMQP broker and
+ * prints end-to-end throughput and latency for each combination.
+ *
+ * <p>Each run streams messages from one producer to one consumer on a fresh queue. Latency is
+ * measured from the moment a message is sent to the moment the consumer receives it.</p>
+ *
+ * <p>Run with {@code ./mvnw -Pbenchmark test-compile exec:java
+ * -Dexec.mainClass=com.scalefocus.mile.jms.auth.poc.core.FlowControlTuningHarness}.
+ * {@code bench.messages} controls the run length, {@code bench.prefetch} and
+ * {@code bench.buffer} the comma separated values to sweep, and {@code bench.broker.url}
+ * targets an external broker.</p>
+ */
+public final class FlowControlTuningHarness {
+
+    private static final String SENT_AT = "benchSentAt";
+
+    public static void main(String[] args) throws Exception {
+        int messages = Integer.getInteger("bench.messages", 20000);
+        String[] prefetches = System.getProperty("bench.prefetch", "1,10,100,1000").split(",");
+        String[] buffers = System.getProperty("bench.buffer", "1000").split(",");
+        String externalUrl = System.getProperty(EmbeddedAmqpBroker.BROKER_URL_PROPERTY);
+
+        EmbeddedAmqpBroker broker = externalUrl == null ? EmbeddedAmqpBroker.start(5672) : null;
+        try {
+            String url = broker != null ? broker.getUrl() : externalUrl;
+            System.out.printf("Flow-control sweep: %d messages per run%n", messages);
+
+            int run = 0;
+            for (String buffer : buffers) {
+                for (String prefetch : prefetches) {
+                    for (boolean presettle : new boolean[]{false, true}) {
+                        Properties properties = new Properties();
+                        properties.setProperty("solace.consumer.prefetch", prefetch.trim());
+                        properties.setProperty("solace.flow.local-buffer-size", buffer.trim());
+                        properties.setProperty("solace.flow.presettle-producers", Boolean.toString(presettle));
+                        properties.setProperty("solace.flow.presettle-consumers", Boolean.toString(presettle));
+                        FlowControlSettings settings = new FlowControlSettings(properties);
+
+                        JmsConnectionFactory factory = new JmsConnectionFactory("admin", "admin", url);
+                        settings.applyTo(factory);
+                        String scenario = String.format("prefetch=%s buf=%s%s",
+                                prefetch.trim(), buffer.trim(), presettle ? " presettled" : "");
+                        run(factory, "bench-flow-" + run++, messages, scenario);
+                    }
+                }
+            }
+        } finally {
+            if (broker != null) {
+                broker.close();
+            }
+        }
+    }
+
+    private static void run(ConnectionFactory factory, String queueName, int messages, String scenario)
+            throws Exception {
+        LatencyRecorder recorder = new LatencyRecorder(messages);
+        try (Connection connection = factory.createConnection()) {
+            connection.start();
+            Session consumerSession = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            MessageConsumer consumer = consumerSession.createConsumer(consumerSession.createQueue(queueName));
+
+            Thread producerThread = new Thread(() -> {
+                try (Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+                     MessageProducer producer = session.createProducer(session.createQueue(queueName))) {
+                    for (int i = 0; i < messages; i++) {
+                        TextMessage message = session.createTextMessage(scenario + "-" + i);
+                        message.setLongProperty(SENT_AT, System.nanoTime());
+                        producer.send(message);
+                    }
+                } catch (JMSException e) {
+                    System.out.printf("[%1$s]: Error: %2$s%n", scenario, e);
+                }
+            }, "bench-flow-producer");
+
+            long begin = System.nanoTime();
+            producerThread.start();
+            for (int received = 0; received < messages; received++) {
+                Message message = consumer.receive(10_000);
+                if (message == null) {
+                    System.out.printf("[%1$s]: Timed out after %2$d messages%n", scenario, received);
+                    break;
+                }
+                recorder.record(System.nanoTime() - message.getLongProperty(SENT_AT));
+            }
+            long elapsed = System.nanoTime() - begin;
+            producerThread.join();
+            consumerSession.close();
+            recorder.report(scenario, elapsed);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.scalefocus.mile.jms.auth.poc.core;
+
+import com.scalefocus.mile.jms.auth.poc.bench.EmbeddedAmqpBroker;
+import jakarta.jms.Connection;
+import jakarta.jms.JMSException;
+import jakarta.jms.MessageProducer;
+import jakarta.jms.Session;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Starts the packaged application repeatedly against an embedded TLS broker and prints how long
+ * each cold start took until the application reported itself started and until it consumed a
+ * message waiting on its queue, and the resident memory of the process at that point.
+ *
+ * <p>The application is launched as a separate process with {@code bench.command}, so the same
+ * harness measures the JVM build ({@code java -jar target/quarkus-app/quarkus-run.jar}, the
+ * default) and the native executable ({@code target/jms-auth-poc-1.1.1-SNAPSHOT-runner}). It is
+ * configured through environment variables pointing at the embedded broker and its generated
+ * store. Resident memory is read from {@code /proc}, so it is only reported on Linux.</p>
+ *
+ * <p>Package the application first, then run with {@code ./mvnw -Pbenchmark test-compile exec:java
+ * -Dexec.mainClass=com.scalefocus.mile.jms.auth.poc.core.StartupHarness}. {@code bench.runs}
+ * (default 5), {@code bench.profile} (e.g. {@code fast-startup}), {@code bench.http-port}
+ * (default 8095) and {@code bench.timeout-ms} (default 60000) control the run.</p>
+ */
+public final class StartupHarness {
+
+    private static final String QUEUE = "bench-startup";
+    private static final int PORT = 5680;
+    private static final String STARTED_MARKER = " started in ";
+    private static final String RECEIVED_MARKER = "Received message: ";
+
+    public static void main(String[] args) throws Exception {
+        List<String> command = Arrays.asList(
+                System.getProperty("bench.command", "java -jar target/quarkus-app/quarkus-run.jar").split("\\s+"));
+        int runs = Integer.getInteger("bench.runs", 5);
+        String profile = System.getProperty("bench.profile");
+        String httpPort = System.getProperty("bench.http-port", "8095");
+        long timeoutMillis = Long.getLong("bench.timeout-ms", 60000);
+
+        List<Double> startedMillis = new ArrayList<>();
+        List<Double> firstMessageMillis = new ArrayList<>();
+        List<Long> rssKilobytes = new ArrayList<>();
+        try (EmbeddedAmqpBroker broker = EmbeddedAmqpBroker.startTls(PORT)) {
+            System.out.printf("Startup harness: %s, profile %s, %d runs%n",
+                    String.join(" ", command), profile == null ? "prod" : profile, runs);
+            for (int run = 1; run <= runs; run++) {
+                String payload = "startup-" + run;
+                send(broker, payload);
+
+                ProcessBuilder builder = new ProcessBuilder(command).redirectErrorStream(true);
+                Map<String, String> environment = builder.environment();
+                environment.put("SOLACE_HOST", broker.getUrl());
+                environment.put("SOLACE_USERNAME", "admin");
+                environment.put("SOLACE_PASSWORD", "admin");
+                environment.put("SOLACE_QUEUE_DATA", QUEUE);
+                environment.put("SOLACE_SSL_KEY_STORE", broker.getKeyStorePath().toString());
+                environment.put("SOLACE_SSL_KEY_STORE_PASSWORD", broker.getKeyStorePassword());
+                environment.put("SOLACE_SSL_TRUST_STORE", broker.getKeyStorePath().toString());
+                environment.put("SOLACE_SSL_TRUST_STORE_PASSWORD", broker.getKeyStorePassword());
+                environment.put("QUARKUS_HTTP_PORT", httpPort);
+                if (profile != null) {
+                    environment.put("QUARKUS_PROFILE", profile);
+                }
+
+                long launched = System.nanoTime();
+                Process process = builder.start();
+                CompletableFuture<Long> started = new CompletableFuture<>();
+                CompletableFuture<Long> consumed = new CompletableFuture<>();
+                Thread reader = new Thread(() -> watch(process, payload, started, consumed), "startup-output");
+                reader.setDaemon(true);
+                reader.start();
+                try {
+                    long consumedAt = consumed.get(timeoutMillis, TimeUnit.MILLISECONDS);
+                    long rss = residentKilobytes(process.pid());
+                    // messages may be consumed before the startup line is printed
+                    double startedAfter = (started.get(timeoutMillis, TimeUnit.MILLISECONDS) - launched) / 1e6;
+                    double consumedAfter = (consumedAt - launched) / 1e6;
+                    startedMillis.add(startedAfter);
+                    firstMessageMillis.add(consumedAfter);
+                    rssKilobytes.add(rss);
+                    System.out.printf("run %d: started %7.1f ms, first message %7.1f ms, RSS %s%n",
+                            run, startedAfter, consumedAfter, rss < 0 ? "n/a" : rss / 1024 + " MiB");
+                } catch (TimeoutException e) {
+                    System.out.printf("run %d: not started or no message consumed within %d ms%n", run, timeoutMillis);
+                } finally {
+                    process.destroy();
+                    if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                        process.destroyForcibly().waitFor();
+                    }
+                }
+            }
+        }
+        if (!firstMessageMillis.isEmpty()) {
+            System.out.printf("median: started %7.1f ms, first message %7.1f ms, RSS %d MiB%n",
+                    median(startedMillis), median(firstMessageMillis), Math.round(median(rssKilobytes) / 1024));
+        }
+    }
+
+    private static void send(EmbeddedAmqpBroker broker, String payload) throws JMSException {
+        try (Connection connection = broker.createConnectionFactory().createConnection()) {
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            MessageProducer producer = session.createProducer(session.createQueue(QUEUE));
+            producer.send(session.createTextMessage(payload));
+        }
+    }
+
+    /**
+     * Echoes the application's output and completes the futures with the time the startup line
+     * and the line logging the waiting message were printed.
+     */
+    private static void watch(Process process, String payload, CompletableFuture<Long> started,
+                              CompletableFuture<Long> consumed) {
+        try (BufferedReader output = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = output.readLine()) != null) {
+                long now = System.nanoTime();
+                if (!started.isDone() && line.contains(STARTED_MARKER)) {
+                    started.complete(now);
+                }
+                if (line.contains(RECEIVED_MARKER + payload)) {
+                    consumed.complete(now);
+                }
+                System.out.println("  | " + line);
+            }
+        } catch (IOException e) {
+            consumed.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Reads the resident set size of a process from {@code /proc}.
+     *
+     * @return the resident memory in KiB, or -1 where {@code /proc} is not available
+     */
+    private static long residentKilobytes(long pid) {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc", Long.toString(pid), "status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", ""));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // not Linux, or the process is gone
+        }
+        return -1;
+    }
+
+    private static <T extends Number & Comparable<T>> double median(List<T> values) {
+        List<T> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        return sorted.get(sorted.size() / 2).doubleValue();
+    }
+}
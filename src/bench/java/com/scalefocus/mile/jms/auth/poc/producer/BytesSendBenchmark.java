@@ -0,0 +1,77 @@
+package com.scalefocus.mile.jms.auth.poc.producer;
+
+import com.scalefocus.mile.jms.auth.poc.bench.EmbeddedAmqpBroker;
+import com.scalefocus.mile.jms.auth.poc.core.BacklogEstimator;
+import com.scalefocus.mile.jms.auth.poc.core.ClientMetrics;
+import com.scalefocus.mile.jms.auth.poc.core.DestinationRegistry;
+import com.scalefocus.mile.jms.auth.poc.core.PayloadCompression;
+import com.scalefocus.mile.jms.auth.poc.core.ReconnectSettings;
+import jakarta.jms.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of sending a large payload as a {@code TextMessage}, decoded into a
+ * {@code String} first as a text endpoint has to, against streaming it into a
+ * {@code BytesMessage} with {@link MessageProducerService#sendBytesToBroker}. Run with
+ * {@code -prof gc} to compare the bytes allocated per send.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class BytesSendBenchmark {
+
+    private static final String QUEUE = "bench-bytes";
+
+    @Param({"65536", "4194304"})
+    public int payloadSize;
+
+    private EmbeddedAmqpBroker broker;
+    private ProducerPool pool;
+    private MessageProducerService service;
+    private Connection drainConnection;
+    private byte[] payload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        broker = EmbeddedAmqpBroker.start(5672);
+        ConnectionFactory factory = broker.createConnectionFactory();
+        drainConnection = factory.createConnection();
+        Session drainSession = drainConnection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        drainSession.createConsumer(drainSession.createQueue(QUEUE)).setMessageListener(message -> { });
+        drainConnection.start();
+
+        pool = new ProducerPool(factory, 1, 8, 5000, 60000, new ReconnectSettings(new Properties()),
+                ClientMetrics.disabled());
+        service = new MessageProducerService(pool, DestinationRegistry.of(QUEUE), 500, 50, 1000,
+                16 * 1024 * 1024, new ByteChunkPool(65536, 16), PayloadCompression.disabled(),
+                Outbox.disabled(), BacklogEstimator.local(), ClientMetrics.disabled());
+        payload = new byte[payloadSize];
+        Arrays.fill(payload, (byte) 'x');
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        pool.close();
+        drainConnection.close();
+        broker.close();
+    }
+
+    @Benchmark
+    public int sendAsText() {
+        return service.sendMessageToBroker(new String(payload, StandardCharsets.UTF_8)).getStatus();
+    }
+
+    @Benchmark
+    public int sendAsBytes() {
+        return service.sendBytesToBroker(new ByteArrayInputStream(payload), payload.length).getStatus();
+    }
+}
@@ -0,0 +1,114 @@
+package com.scalefocus.mile.jms.auth.poc.producer;
+
+import com.scalefocus.mile.jms.auth.poc.bench.EmbeddedAmqpBroker;
+import com.scalefocus.mile.jms.auth.poc.core.BacklogEstimator;
+import com.scalefocus.mile.jms.auth.poc.core.BrokerClientConfig;
+import com.scalefocus.mile.jms.auth.poc.core.ClientMetrics;
+import com.scalefocus.mile.jms.auth.poc.core.DestinationRegistry;
+import com.scalefocus.mile.jms.auth.poc.core.PayloadCompression;
+import com.scalefocus.mile.jms.auth.poc.core.ReconnectSettings;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.jms.ConnectionFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rewrites the key store under a producer pool sending over TLS and prints the throughput in
+ * every interval, to show that rolling the pooled connections onto the reloaded material does
+ * not interrupt sending.
+ *
+ * <p>The client is configured through {@link BrokerClientConfig}, with the embedded broker's
+ * generated PKCS12 store as key store and trust store. The harness sends from several threads
+ * through {@link MessageProducerService}, warms up for five seconds, rewrites the store after a
+ * few intervals and counts failed sends. The number of producer connections established at the
+ * end includes the replacements.</p>
+ *
+ * <p>Run with {@code ./mvnw -Pbenchmark test-compile exec:java
+ * -Dexec.mainClass=com.scalefocus.mile.jms.auth.poc.producer.CertificateRotationHarness}.
+ * {@code bench.threads} (default 4), {@code bench.connections} (default 4),
+ * {@code bench.intervals} (default 30) and {@code bench.interval-ms} (default 200) control the
+ * run.</p>
+ */
+public final class CertificateRotationHarness {
+
+    private static final String QUEUE = "bench-rotation";
+    private static final int PORT = 5673;
+    private static final long WARMUP_MILLIS = 5000;
+
+    private static volatile boolean sending = true;
+
+    public static void main(String[] args) throws Exception {
+        int threads = Integer.getInteger("bench.threads", 4);
+        int connections = Integer.getInteger("bench.connections", 4);
+        int intervals = Integer.getInteger("bench.intervals", 30);
+        long intervalMillis = Long.getLong("bench.interval-ms", 200);
+
+        EmbeddedAmqpBroker broker = EmbeddedAmqpBroker.startTls(PORT);
+        Path keyStore = broker.getKeyStorePath();
+        Properties properties = new Properties();
+        properties.setProperty("solace.host", broker.getUrl());
+        properties.setProperty("solace.username", "admin");
+        properties.setProperty("solace.password", "admin");
+        properties.setProperty("solace.ssl.key-store", keyStore.toString());
+        properties.setProperty("solace.ssl.key-store-password", broker.getKeyStorePassword());
+        properties.setProperty("solace.ssl.trust-store", keyStore.toString());
+        properties.setProperty("solace.ssl.trust-store-password", broker.getKeyStorePassword());
+        properties.setProperty("solace.ssl.reload.debounce-ms", "100");
+        BrokerClientConfig config = new BrokerClientConfig(properties);
+        ConnectionFactory factory = config.createConnectionFactory();
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ProducerPool pool = new ProducerPool(factory, connections, threads, 5000, 60000,
+                new ReconnectSettings(properties), new ClientMetrics(registry));
+        config.getConnectionRoller().register(pool);
+        MessageProducerService service = new MessageProducerService(pool, DestinationRegistry.of(QUEUE),
+                500, 50, 1000, 16 * 1024 * 1024, new ByteChunkPool(65536, 16), PayloadCompression.disabled(),
+                Outbox.disabled(), BacklogEstimator.local(), ClientMetrics.disabled());
+
+        AtomicLong sent = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        Thread[] senders = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            senders[i] = new Thread(() -> {
+                while (sending) {
+                    if (service.sendMessageToBroker("rotation").getStatus() == 200) {
+                        sent.incrementAndGet();
+                    } else {
+                        failed.incrementAndGet();
+                    }
+                }
+            }, "rotation-sender-" + i);
+            senders[i].start();
+        }
+        try {
+            System.out.printf("Certificate rotation harness: %d threads, %d connections%n", threads, connections);
+            Thread.sleep(WARMUP_MILLIS);
+            long previous = sent.get();
+            for (int i = 0; i < intervals; i++) {
+                if (i == intervals / 3) {
+                    Files.write(keyStore, Files.readAllBytes(keyStore));
+                    System.out.println("-- key store rewritten");
+                }
+                Thread.sleep(intervalMillis);
+                long total = sent.get();
+                System.out.printf("interval %2d: %8.0f msg/s, %d failed%n", i + 1,
+                        (total - previous) * 1000.0 / intervalMillis, failed.get());
+                previous = total;
+            }
+            Timer established = registry.find("solace.connection.establish").timer();
+            System.out.printf("producer connections established: %d%n", established == null ? 0 : established.count());
+        } finally {
+            sending = false;
+            for (Thread sender : senders) {
+                sender.join(TimeUnit.SECONDS.toMillis(5));
+            }
+            pool.close();
+            broker.close();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.scalefocus.mile.jms.auth.poc.producer;
+
+import com.scalefocus.mile.jms.auth.poc.bench.EmbeddedAmqpBroker;
+import com.scalefocus.mile.jms.auth.poc.core.BacklogEstimator;
+import com.scalefocus.mile.jms.auth.poc.core.ClientMetrics;
+import com.scalefocus.mile.jms.auth.poc.core.DestinationRegistry;
+import com.scalefocus.mile.jms.auth.poc.core.PayloadCompression;
+import com.scalefocus.mile.jms.auth.poc.core.ReconnectSettings;
+import jakarta.jms.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * JMH benchmark of {@link MessageProducerService#sendMessageToBroker(String)} sending directly
+ * against appending to a write-through {@link Outbox}, with and without forcing every append to
+ * disk. The outbox's drainer delivers to the embedded broker in the background meanwhile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class OutboxBenchmark {
+
+    private static final String QUEUE = "bench-outbox";
+
+    @Param({"direct", "outbox", "outbox-fsync"})
+    public String mode;
+
+    private EmbeddedAmqpBroker broker;
+    private ProducerPool pool;
+    private Outbox outbox;
+    private MessageProducerService service;
+    private Connection drainConnection;
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        broker = EmbeddedAmqpBroker.start(5672);
+        ConnectionFactory factory = broker.createConnectionFactory();
+        drainConnection = factory.createConnection();
+        Session drainSession = drainConnection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        drainSession.createConsumer(drainSession.createQueue(QUEUE)).setMessageListener(message -> { });
+        drainConnection.start();
+
+        pool = new ProducerPool(factory, 1, 8, 5000, 60000, new ReconnectSettings(new Properties()),
+                ClientMetrics.disabled());
+        directory = Files.createTempDirectory("bench-outbox");
+        boolean enabled = !mode.equals("direct");
+        outbox = new Outbox(enabled, directory.toString(), 64 * 1024 * 1024, Long.MAX_VALUE,
+                mode.equals("outbox-fsync"), true, 500, pool, DestinationRegistry.of(QUEUE),
+                PayloadCompression.disabled(), BacklogEstimator.local(), new ReconnectSettings(new Properties()),
+                ClientMetrics.disabled());
+        outbox.open();
+        service = new MessageProducerService(pool, DestinationRegistry.of(QUEUE), 500, 50, 1000,
+                16 * 1024 * 1024, new ByteChunkPool(65536, 16), PayloadCompression.disabled(),
+                outbox, BacklogEstimator.local(), ClientMetrics.disabled());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        System.out.printf("%n%s: %d messages left in the outbox%n", mode, outbox.size());
+        outbox.close();
+        pool.close();
+        drainConnection.close();
+        broker.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(OutboxBenchmark::deleteQuietly);
+        }
+    }
+
+    @Benchmark
+    public int sendMessageToBroker() {
+        return service.sendMessageToBroker("benchmark").getStatus();
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.delete(path);
+        } catch (IOException ignored) {
+            // left to the temporary directory's cleanup
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.scalefocus.mile.jms.auth.poc.producer;
+
+import com.scalefocus.mile.jms.auth.poc.bench.EmbeddedAmqpBroker;
+import com.scalefocus.mile.jms.auth.poc.bench.LatencyRecorder;
+import com.scalefocus.mile.jms.auth.poc.core.BacklogEstimator;
+import com.scalefocus.mile.jms.auth.poc.core.ClientMetrics;
+import com.scalefocus.mile.jms.auth.poc.core.DestinationRegistry;
+import com.scalefocus.mile.jms.auth.poc.core.PayloadCompression;
+import com.scalefocus.mile.jms.auth.poc.core.ReconnectSettings;
+import jakarta.jms.*;
+import org.apache.qpid.jms.JmsConnectionFactory;
+
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Compares the original connection-per-message send path with the pooled
+ * {@code MessageProducerService} against a local AMQP broker, reporting messages per
+ * second and latency percentiles for each.
+ *
+ * <p>Run with {@code ./mvnw -Pbenchmark test-compile exec:java
+ * -Dexec.mainClass=com.scalefocus.mile.jms.auth.poc.producer.ProducerPoolBenchmark}.
+ * Set {@code -Dbench.broker.url=amqp://host:port} to target an external broker instead of
+ * the embedded one; {@code bench.threads}, {@code bench.messages} and {@code bench.warmup}
+ * control the load.</p>
+ */
+public final class ProducerPoolBenchmark {
+
+    private static final String QUEUE = "bench-producer-pool";
+
+    private interface Sender {
+        void send(String message) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = Integer.getInteger("bench.threads", 8);
+        int messages = Integer.getInteger("bench.messages", 2000);
+        int warmup = Integer.getInteger("bench.warmup", 200);
+        String externalUrl = System.getProperty(EmbeddedAmqpBroker.BROKER_URL_PROPERTY);
+
+        EmbeddedAmqpBroker broker = externalUrl == null ? EmbeddedAmqpBroker.start(5672) : null;
+        try {
+            ConnectionFactory factory = broker != null
+                    ? broker.createConnectionFactory()
+                    : new JmsConnectionFactory("admin", "admin", externalUrl);
+
+            System.out.printf("Producer benchmark: %d threads x %d messages%n", threads, messages);
+
+            run("connection-per-message", threads, warmup, messages,
+                    message -> sendWithNewConnection(factory, message));
+
+            ProducerPool pool = new ProducerPool(factory, 1, threads, 5000, 60000,
+                    new ReconnectSettings(new Properties()), ClientMetrics.disabled());
+            try {
+                MessageProducerService service = new MessageProducerService(pool, DestinationRegistry.of(QUEUE),
+                        500, 50, 1000, 16 * 1024 * 1024, new ByteChunkPool(65536, 16), PayloadCompression.disabled(),
+                        Outbox.disabled(), BacklogEstimator.local(), ClientMetrics.disabled());
+                run("pooled", threads, warmup, messages, message -> {
+                    if (service.sendMessageToBroker(message).getStatus() != 200) {
+                        throw new JMSException("Send failed");
+                    }
+                });
+            } finally {
+                pool.close();
+            }
+        } finally {
+            if (broker != null) {
+                broker.close();
+            }
+        }
+    }
+
+    /**
+     * The send path as it was before pooling: one connection, session and producer per message.
+     */
+    private static void sendWithNewConnection(ConnectionFactory factory, String content) throws JMSException {
+        try (Connection connection = factory.createConnection();
+             Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+             MessageProducer producer = session.createProducer(session.createQueue(QUEUE))) {
+            producer.send(session.createTextMessage(content));
+        }
+    }
+
+    private static void run(String scenario, int threads, int warmup, int messages, Sender sender)
+            throws InterruptedException {
+        LatencyRecorder[] recorders = new LatencyRecorder[threads];
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+
+        for (int t = 0; t < threads; t++) {
+            LatencyRecorder recorder = new LatencyRecorder(messages);
+            recorders[t] = recorder;
+            String prefix = scenario + "-" + t + "-";
+            Thread worker = new Thread(() -> {
+                try {
+                    try {
+                        for (int i = 0; i < warmup; i++) {
+                            sender.send(prefix + "warmup-" + i);
+                        }
+                    } finally {
+                        ready.countDown();
+                    }
+                    start.await();
+                    for (int i = 0; i < messages; i++) {
+                        long begin = System.nanoTime();
+                        sender.send(prefix + i);
+                        recorder.record(System.nanoTime() - begin);
+                    }
+                } catch (Exception e) {
+                    System.out.printf("[%1$s]: Error: %2$s%n", scenario, e);
+                } finally {
+                    done.countDown();
+                }
+            }, "bench-" + scenario + "-" + t);
+            worker.start();
+        }
+
+        ready.await();
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        LatencyRecorder.merge(recorders).report(scenario, System.nanoTime() - begin);
+    }
+}
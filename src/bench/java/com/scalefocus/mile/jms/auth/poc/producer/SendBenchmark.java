@@ -0,0 +1,62 @@
+package com.scalefocus.mile.jms.auth.poc.producer;
+
+import com.scalefocus.mile.jms.auth.poc.bench.EmbeddedAmqpBroker;
+import com.scalefocus.mile.jms.auth.poc.core.BacklogEstimator;
+import com.scalefocus.mile.jms.auth.poc.core.ClientMetrics;
+import com.scalefocus.mile.jms.auth.poc.core.DestinationRegistry;
+import com.scalefocus.mile.jms.auth.poc.core.PayloadCompression;
+import com.scalefocus.mile.jms.auth.poc.core.ReconnectSettings;
+import jakarta.jms.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of {@link MessageProducerService#sendMessageToBroker(String)} on a pooled
+ * session against an embedded AMQP broker. A listener on a separate connection drains the queue
+ * so that the broker's memory use stays flat. Use {@code -t} to run with several sending threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class SendBenchmark {
+
+    private static final String QUEUE = "bench-send";
+
+    private EmbeddedAmqpBroker broker;
+    private ProducerPool pool;
+    private MessageProducerService service;
+    private Connection drainConnection;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        broker = EmbeddedAmqpBroker.start(5672);
+        ConnectionFactory factory = broker.createConnectionFactory();
+        drainConnection = factory.createConnection();
+        Session drainSession = drainConnection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        drainSession.createConsumer(drainSession.createQueue(QUEUE)).setMessageListener(message -> { });
+        drainConnection.start();
+
+        pool = new ProducerPool(factory, 1, 8, 5000, 60000, new ReconnectSettings(new Properties()),
+                ClientMetrics.disabled());
+        service = new MessageProducerService(pool, DestinationRegistry.of(QUEUE), 500, 50, 1000,
+                16 * 1024 * 1024, new ByteChunkPool(65536, 16), PayloadCompression.disabled(),
+                Outbox.disabled(), BacklogEstimator.local(), ClientMetrics.disabled());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        pool.close();
+        drainConnection.close();
+        broker.close();
+    }
+
+    @Benchmark
+    public int sendMessageToBroker() {
+        return service.sendMessageToBroker("benchmark").getStatus();
+    }
+}
@@ -0,0 +1,176 @@
+package com.scalefocus.mile.jms.auth.poc.producer;
+
+import com.scalefocus.mile.jms.auth.poc.bench.EmbeddedAmqpBroker;
+import com.scalefocus.mile.jms.auth.poc.bench.LatencyRecorder;
+import com.scalefocus.mile.jms.auth.poc.core.BacklogEstimator;
+import com.scalefocus.mile.jms.auth.poc.core.ClientMetrics;
+import com.scalefocus.mile.jms.auth.poc.core.DestinationRegistry;
+import com.scalefocus.mile.jms.auth.poc.core.PayloadCompression;
+import com.scalefocus.mile.jms.auth.poc.core.ReconnectSettings;
+import com.scalefocus.mile.jms.auth.poc.core.Threads;
+import jakarta.jms.*;
+import org.apache.qpid.jms.JmsConnectionFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares platform and virtual threads for blocking sends and receives at 10, 100 and 1000
+ * concurrent workers against a local AMQP broker.
+ *
+ * <p>In the send scenario every worker sends through the pooled {@code MessageProducerService};
+ * in the receive scenario every worker owns a session and blocks in {@code receive} until the
+ * pre-filled queue is drained. Each run reports throughput, latency percentiles and the peak
+ * number of platform threads of the JVM. Virtual-thread runs are skipped on JVMs older than
+ * Java 21.</p>
+ *
+ * <p>Run with {@code ./mvnw -Pbenchmark test-compile exec:java
+ * -Dexec.mainClass=com.scalefocus.mile.jms.auth.poc.producer.VirtualThreadBenchmark}.
+ * {@code bench.workers} (default {@code 10,100,1000}) and {@code bench.messages} (per worker,
+ * default 50) control the load; {@code bench.broker.url} targets an external broker.</p>
+ */
+public final class VirtualThreadBenchmark {
+
+    private static final String QUEUE = "bench-virtual-threads";
+
+    private interface Task {
+        void run(int worker, LatencyRecorder recorder) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String[] workerCounts = System.getProperty("bench.workers", "10,100,1000").split(",");
+        int messages = Integer.getInteger("bench.messages", 50);
+        String externalUrl = System.getProperty(EmbeddedAmqpBroker.BROKER_URL_PROPERTY);
+
+        if (!Threads.virtualThreadsSupported()) {
+            System.out.printf("Java %d has no virtual threads, only platform threads are measured%n",
+                    Runtime.version().feature());
+        }
+
+        EmbeddedAmqpBroker broker = externalUrl == null ? EmbeddedAmqpBroker.start(5672) : null;
+        try {
+            JmsConnectionFactory factory = broker != null
+                    ? broker.createConnectionFactory()
+                    : new JmsConnectionFactory("admin", "admin", externalUrl);
+
+            for (String count : workerCounts) {
+                int workers = Integer.parseInt(count.trim());
+                for (boolean virtual : new boolean[]{false, true}) {
+                    if (virtual && !Threads.virtualThreadsSupported()) {
+                        continue;
+                    }
+                    String kind = virtual ? "virtual" : "platform";
+                    send(factory, workers, messages, virtual, "send " + kind + " x" + workers);
+                    receive(factory, workers, messages, virtual, "receive " + kind + " x" + workers);
+                }
+            }
+        } finally {
+            if (broker != null) {
+                broker.close();
+            }
+        }
+    }
+
+    private static void send(ConnectionFactory factory, int workers, int messages, boolean virtual, String scenario)
+            throws Exception {
+        ProducerPool pool = new ProducerPool(factory, Math.max(1, workers / 100), workers, 30000, 60000,
+                new ReconnectSettings(new Properties()), ClientMetrics.disabled());
+        try {
+            MessageProducerService service = new MessageProducerService(pool, DestinationRegistry.of(QUEUE),
+                    500, 50, 1000, 16 * 1024 * 1024, new ByteChunkPool(65536, 16), PayloadCompression.disabled(),
+                    Outbox.disabled(), BacklogEstimator.local(), ClientMetrics.disabled());
+            run(scenario, workers, virtual, (worker, recorder) -> {
+                for (int i = 0; i < messages; i++) {
+                    long begin = System.nanoTime();
+                    if (service.sendMessageToBroker(scenario + "-" + worker + "-" + i).getStatus() != 200) {
+                        throw new JMSException("Send failed");
+                    }
+                    recorder.record(System.nanoTime() - begin);
+                }
+            });
+        } finally {
+            pool.close();
+        }
+        drain(factory);
+    }
+
+    private static void receive(ConnectionFactory factory, int workers, int messages, boolean virtual, String scenario)
+            throws Exception {
+        int total = workers * messages;
+        fill(factory, total);
+        AtomicInteger remaining = new AtomicInteger(total);
+        try (Connection connection = factory.createConnection()) {
+            connection.start();
+            run(scenario, workers, virtual, (worker, recorder) -> {
+                try (Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+                     MessageConsumer consumer = session.createConsumer(session.createQueue(QUEUE))) {
+                    while (remaining.get() > 0) {
+                        long begin = System.nanoTime();
+                        Message message = consumer.receive(100);
+                        if (message != null) {
+                            recorder.record(System.nanoTime() - begin);
+                            remaining.decrementAndGet();
+                        }
+                    }
+                }
+            });
+        }
+        drain(factory);
+    }
+
+    private static void fill(ConnectionFactory factory, int count) throws JMSException {
+        try (Connection connection = factory.createConnection();
+             Session session = connection.createSession(true, Session.SESSION_TRANSACTED);
+             MessageProducer producer = session.createProducer(session.createQueue(QUEUE))) {
+            for (int i = 0; i < count; i++) {
+                producer.send(session.createTextMessage("fill-" + i));
+                if (i % 500 == 499) {
+                    session.commit();
+                }
+            }
+            session.commit();
+        }
+    }
+
+    private static void drain(ConnectionFactory factory) throws JMSException {
+        try (Connection connection = factory.createConnection();
+             Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+             MessageConsumer consumer = session.createConsumer(session.createQueue(QUEUE))) {
+            connection.start();
+            while (consumer.receive(200) != null) {
+                // discard leftovers so that runs do not influence each other
+            }
+        }
+    }
+
+    private static void run(String scenario, int workers, boolean virtual, Task task) throws InterruptedException {
+        ManagementFactory.getThreadMXBean().resetPeakThreadCount();
+        LatencyRecorder[] recorders = new LatencyRecorder[workers];
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(workers);
+        for (int w = 0; w < workers; w++) {
+            int worker = w;
+            LatencyRecorder recorder = new LatencyRecorder(64);
+            recorders[w] = recorder;
+            Threads.newThread("bench-" + worker, virtual, () -> {
+                try {
+                    start.await();
+                    task.run(worker, recorder);
+                } catch (Exception e) {
+                    System.out.printf("[%1$s]: Error: %2$s%n", scenario, e);
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+        LatencyRecorder.merge(recorders).report(scenario, elapsed);
+        System.out.printf("%-28s peak platform threads %d%n", "", ManagementFactory.getThreadMXBean().getPeakThreadCount());
+    }
+}
@@ -0,0 +1,175 @@
+package com.scalefocus.mile.jms.auth.poc.consumer;
+
+import io.micrometer.core.instrument.Timer;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.Session;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Acknowledges the messages of one session individually, in the order they were received, once
+ * each of them and every message received before it has been processed.
+ *
+ * <p>Handler lanes finish messages out of order: a message of a quiet group may be done long
+ * before one received earlier on a busy lane. Acknowledging it at once would lose the earlier
+ * message if the client failed in between, and a {@code CLIENT_ACKNOWLEDGE} acknowledgement
+ * would cover the earlier message too. The coordinator therefore keeps the dispatched messages
+ * in a ring in receive order, together with their completions. Lane threads only complete
+ * them; the receiving thread acknowledges the completed prefix of the ring whenever it returns
+ * from a receive, so neither side takes a lock. A failed message blocks the prefix: once the
+ * messages in flight are done, the session is recovered and every unacknowledged message is
+ * redelivered, as with an {@link AckWindow}.</p>
+ *
+ * <p>At most {@code solace.consumer.ack.window-size} messages are tracked; receiving a message
+ * into a full ring waits for the oldest one. The session has to use the client library's
+ * individual acknowledge mode, see {@link #INDIVIDUAL_ACKNOWLEDGE}.</p>
+ */
+final class AckCoordinator implements Acknowledger {
+
+    /**
+     * The session acknowledge mode of qpid-jms in which {@link Message#acknowledge()} acknowledges
+     * only the message it is called on.
+     */
+    static final int INDIVIDUAL_ACKNOWLEDGE = 101;
+
+    private final Session session;
+    private final Timer ackTimer;
+    private final long pollNanos;
+    private final Message[] messages;
+    private final CompletableFuture<?>[] completions;
+
+    private long head;
+    private long tail;
+
+    /**
+     * Constructs a new {@code AckCoordinator}.
+     *
+     * @param settings the consumer configuration
+     * @param session  the individually acknowledged session the messages are received on
+     * @param ackTimer the timer acknowledgements are recorded in
+     */
+    AckCoordinator(ConsumerSettings settings, Session session, Timer ackTimer) {
+        int capacity = Math.max(1, settings.getAckWindowSize());
+        this.session = session;
+        this.ackTimer = ackTimer;
+        this.pollNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, settings.getAckWindowMillis()));
+        this.messages = new Message[capacity];
+        this.completions = new CompletableFuture<?>[capacity];
+    }
+
+    /**
+     * Tracks a dispatched message and acknowledges the completed prefix. If the ring is full, the
+     * oldest message is waited for first.
+     *
+     * @param message    the dispatched message
+     * @param completion completes once the message has been processed
+     * @throws JMSException if an acknowledgement or recovery fails
+     */
+    @Override
+    public void processed(Message message, CompletionStage<?> completion) throws JMSException {
+        if (tail - head == messages.length) {
+            drain();
+            if (tail - head == messages.length) {
+                await(completions[slot(head)]);
+                drain();
+            }
+        }
+        int slot = slot(tail);
+        messages[slot] = message;
+        completions[slot] = completion.toCompletableFuture();
+        tail++;
+        drain();
+    }
+
+    @Override
+    public void idle() throws JMSException {
+        drain();
+    }
+
+    /**
+     * Waits for every tracked message to be processed, then acknowledges them, or recovers the
+     * session if any of them failed.
+     *
+     * @throws JMSException if an acknowledgement or recovery fails
+     */
+    @Override
+    public void flush() throws JMSException {
+        for (long position = head; position < tail; position++) {
+            await(completions[slot(position)]);
+        }
+        drain();
+    }
+
+    /**
+     * Returns how long the next receive may block. While messages are pending it is at most
+     * {@code solace.consumer.ack.window-ms}, so that completed messages are acknowledged even
+     * when no further message arrives.
+     */
+    @Override
+    public long receiveTimeout(long timeoutMillis) {
+        if (tail == head) {
+            return timeoutMillis;
+        }
+        return Math.max(1, Math.min(timeoutMillis, TimeUnit.NANOSECONDS.toMillis(pollNanos)));
+    }
+
+    @Override
+    public int pending() {
+        return (int) (tail - head);
+    }
+
+    private void drain() throws JMSException {
+        while (head < tail) {
+            int slot = slot(head);
+            CompletableFuture<?> completion = completions[slot];
+            if (!completion.isDone()) {
+                return;
+            }
+            if (completion.isCompletedExceptionally()) {
+                recover();
+                return;
+            }
+            long started = System.nanoTime();
+            messages[slot].acknowledge();
+            ackTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            clear(slot);
+            head++;
+        }
+    }
+
+    /**
+     * Waits for the messages still in flight, so that no handler works on a message while it is
+     * redelivered, then recovers the session.
+     */
+    private void recover() throws JMSException {
+        for (long position = head; position < tail; position++) {
+            int slot = slot(position);
+            await(completions[slot]);
+            clear(slot);
+        }
+        head = tail;
+        session.recover();
+    }
+
+    private void clear(int slot) {
+        messages[slot] = null;
+        completions[slot] = null;
+    }
+
+    private int slot(long position) {
+        return (int) (position % messages.length);
+    }
+
+    private static void await(CompletableFuture<?> future) {
+        try {
+            future.join();
+        } catch (CompletionException | CancellationException e) {
+            // the failure is seen by drain()
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.scalefocus.mile.jms.auth.poc.consumer;
+
+import io.micrometer.core.instrument.Timer;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.Session;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks processed but unacknowledged messages on one client-acknowledged session and
+ * acknowledges them together once the window is full or old enough.
+ *
+ * <p>In JMS, acknowledging a message of a {@code CLIENT_ACKNOWLEDGE} session acknowledges every
+ * message consumed on that session, so a window only ever acknowledges messages that have
+ * already been processed. Messages handed to asynchronous handlers are tracked by their
+ * completion, and the window waits for all of them before acknowledging. For the other
+ * acknowledgement modes every method is a no-op. A window belongs to the single thread that
+ * receives from its session and is not thread-safe.</p>
+ */
+final class AckWindow implements Acknowledger {
+
+    private final Session session;
+    private final Timer ackTimer;
+    private final boolean enabled;
+    private final int size;
+    private final long maxAgeNanos;
+    private final List<CompletableFuture<?>> inFlight = new ArrayList<>();
+
+    private Message last;
+    private int pending;
+    private long openedAt;
+
+    /**
+     * Constructs a new {@code AckWindow} for the configured acknowledgement strategy.
+     *
+     * @param settings the consumer configuration
+     * @param session  the session the window's messages are received on
+     * @param ackTimer the timer acknowledgements are recorded in
+     */
+    AckWindow(ConsumerSettings settings, Session session, Timer ackTimer) {
+        this.session = session;
+        this.ackTimer = ackTimer;
+        this.enabled = settings.getAcknowledgementMode() == ConsumerSettings.AckMode.CLIENT_WINDOW;
+        this.size = Math.max(1, settings.getAckWindowSize());
+        this.maxAgeNanos = TimeUnit.MILLISECONDS.toNanos(settings.getAckWindowMillis());
+    }
+
+    /**
+     * Adds a dispatched message to the window and acknowledges the window if it is full or its
+     * oldest message has waited long enough. If the message has already failed, the window is
+     * discarded as by {@link #failed()}.
+     *
+     * @param message    the dispatched message
+     * @param completion completes once the message has been processed
+     * @throws JMSException if the acknowledgement or recovery fails
+     */
+    @Override
+    public void processed(Message message, CompletionStage<?> completion) throws JMSException {
+        if (!enabled) {
+            return;
+        }
+        CompletableFuture<?> future = completion.toCompletableFuture();
+        if (future.isCompletedExceptionally()) {
+            failed();
+            return;
+        }
+        if (pending == 0) {
+            openedAt = System.nanoTime();
+        }
+        if (!future.isDone()) {
+            inFlight.add(future);
+        }
+        last = message;
+        pending++;
+        if (pending >= size || System.nanoTime() - openedAt >= maxAgeNanos) {
+            flush();
+        }
+    }
+
+    /**
+     * Acknowledges the window if its oldest message has waited long enough. Called when a
+     * receive returns without a message.
+     *
+     * @throws JMSException if the acknowledgement fails
+     */
+    @Override
+    public void idle() throws JMSException {
+        if (pending > 0 && System.nanoTime() - openedAt >= maxAgeNanos) {
+            flush();
+        }
+    }
+
+    /**
+     * Waits for every message of the window to be processed, then acknowledges them. If any of
+     * them failed, the window is discarded as by {@link #failed()} instead.
+     *
+     * @throws JMSException if the acknowledgement or recovery fails
+     */
+    @Override
+    public void flush() throws JMSException {
+        if (pending == 0) {
+            return;
+        }
+        if (!awaitInFlight()) {
+            failed();
+            return;
+        }
+        Message message = last;
+        last = null;
+        pending = 0;
+        long started = System.nanoTime();
+        message.acknowledge();
+        ackTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Discards the window after a message failed, asking the session to redeliver every
+     * unacknowledged message, including the processed ones of this window. Messages still being
+     * processed are waited for first, so that no handler works on a message while it is
+     * redelivered.
+     *
+     * @throws JMSException if the session cannot be recovered
+     */
+    void failed() throws JMSException {
+        if (!enabled) {
+            return;
+        }
+        awaitInFlight();
+        last = null;
+        pending = 0;
+        session.recover();
+    }
+
+    private boolean awaitInFlight() {
+        boolean succeeded = true;
+        for (CompletableFuture<?> future : inFlight) {
+            try {
+                future.join();
+            } catch (CompletionException | CancellationException e) {
+                succeeded = false;
+            }
+        }
+        inFlight.clear();
+        return succeeded;
+    }
+
+    /**
+     * Returns how long the next receive may block without delaying the acknowledgement of the
+     * open window past its maximum age.
+     *
+     * @param timeoutMillis the receive timeout to use when nothing is pending
+     * @return the receive timeout in milliseconds, at least 1
+     */
+    @Override
+    public long receiveTimeout(long timeoutMillis) {
+        if (pending == 0) {
+            return timeoutMillis;
+        }
+        long remaining = TimeUnit.NANOSECONDS.toMillis(maxAgeNanos - (System.nanoTime() - openedAt));
+        return Math.max(1, Math.min(timeoutMillis, remaining));
+    }
+
+    /**
+     * Returns the number of processed messages waiting to be acknowledged.
+     *
+     * @return the number of pending messages
+     */
+    @Override
+    public int pending() {
+        return pending;
+    }
+}
@@ -0,0 +1,82 @@
+package com.scalefocus.mile.jms.auth.poc.consumer;
+
+import io.micrometer.core.instrument.Timer;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.Session;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Acknowledges the messages received on one session once they have been processed, as the
+ * configured {@link ConsumerSettings.AckMode} requires.
+ *
+ * <p>An acknowledger belongs to the single thread that receives from its session and is not
+ * thread-safe; the completions it is given may complete on any thread.</p>
+ */
+interface Acknowledger {
+
+    /**
+     * Creates the acknowledger for the configured acknowledgement mode.
+     *
+     * @param settings the consumer configuration
+     * @param session  the session the messages are received on
+     * @param ackTimer the timer acknowledgements are recorded in
+     * @return an {@link AckCoordinator} for the {@code ordered} mode, an {@link AckWindow} otherwise
+     */
+    static Acknowledger create(ConsumerSettings settings, Session session, Timer ackTimer) {
+        if (settings.getAcknowledgementMode() == ConsumerSettings.AckMode.ORDERED) {
+            return new AckCoordinator(settings, session, ackTimer);
+        }
+        return new AckWindow(settings, session, ackTimer);
+    }
+
+    /**
+     * Tracks a message that was processed on the receiving thread.
+     *
+     * @param message the processed message
+     * @throws JMSException if an acknowledgement fails
+     */
+    default void processed(Message message) throws JMSException {
+        processed(message, CompletableFuture.completedFuture(null));
+    }
+
+    /**
+     * Tracks a dispatched message until it has been processed.
+     *
+     * @param message    the dispatched message
+     * @param completion completes once the message has been processed
+     * @throws JMSException if an acknowledgement or recovery fails
+     */
+    void processed(Message message, CompletionStage<?> completion) throws JMSException;
+
+    /**
+     * Acknowledges what is due. Called when a receive returns without a message.
+     *
+     * @throws JMSException if an acknowledgement fails
+     */
+    void idle() throws JMSException;
+
+    /**
+     * Waits for every tracked message to be processed, then acknowledges them.
+     *
+     * @throws JMSException if an acknowledgement or recovery fails
+     */
+    void flush() throws JMSException;
+
+    /**
+     * Returns how long the next receive may block without delaying a due acknowledgement.
+     *
+     * @param timeoutMillis the receive timeout to use when nothing is pending
+     * @return the receive timeout in milliseconds, at least 1
+     */
+    long receiveTimeout(long timeoutMillis);
+
+    /**
+     * Returns the number of messages waiting to be acknowledged.
+     *
+     * @return the number of pending messages
+     */
+    int pending();
+}
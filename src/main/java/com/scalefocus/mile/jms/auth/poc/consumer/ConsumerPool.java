@@ -0,0 +1,418 @@
+package com.scalefocus.mile.jms.auth.poc.consumer;
+
+import com.scalefocus.mile.jms.auth.poc.core.ClientMetrics;
+import com.scalefocus.mile.jms.auth.poc.core.ThreadSafe;
+import com.scalefocus.mile.jms.auth.poc.core.Threads;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import jakarta.jms.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * A pool of parallel consumers on one queue or topic. Each worker owns its own {@code Session},
+ * {@code MessageConsumer} and dispatch thread, so messages are processed concurrently instead
+ * of being serialized on a single session.
+ *
+ * <p>The number of workers starts at the concurrency configured for the pool's destination and
+ * can be changed at runtime through {@link #resize(int)}, always within its minimum and maximum. When
+ * autoscaling is enabled, {@link #autoscale()} grows the pool while workers spend most of their
+ * time processing or the estimated backlog exceeds {@code autoscale.backlog-per-consumer} per
+ * worker, and shrinks it while they mostly wait for messages and no backlog is estimated.</p>
+ *
+ * <p>With the {@code client-window} acknowledgement mode each worker acknowledges its messages
+ * through an {@link AckWindow} once they have been processed, and with the {@code ordered} mode
+ * one by one through an {@link AckCoordinator}. A message whose processing throws recovers the
+ * worker's session, so every unacknowledged message is redelivered. Messages may be processed
+ * asynchronously by the {@link Dispatcher}; acknowledgements then wait for their completion.</p>
+ *
+ * <p>When the shared connection is lost, {@link #suspend()} stops the workers while the pool
+ * stays started, and {@link #resume()} starts them again on sessions of the new connection.
+ * When the connection is replaced while still working, {@link #roll()} moves the workers over
+ * one at a time instead.</p>
+ */
+@ThreadSafe
+final class ConsumerPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConsumerPool.class);
+
+    private static final double SCALE_UP_UTILIZATION = 0.75;
+    private static final double SCALE_DOWN_UTILIZATION = 0.25;
+
+    private static final long PAUSE_STEP_MILLIS = 50;
+
+    /**
+     * Opens a new session on the shared connection for one worker.
+     */
+    interface SessionSupplier {
+        Session get() throws JMSException;
+    }
+
+    /**
+     * Creates a worker's consumer on its session.
+     */
+    interface ConsumerFactory {
+        MessageConsumer create(Session session) throws JMSException;
+    }
+
+    /**
+     * Hands a received message over for processing.
+     */
+    interface Dispatcher {
+        CompletionStage<Void> dispatch(Message message);
+    }
+
+    private final String queueName;
+    private final SessionSupplier sessionSupplier;
+    private final ConsumerFactory consumerFactory;
+    private final Dispatcher dispatcher;
+    private final ConsumerSettings settings;
+    private final ConsumerSettings.Concurrency concurrency;
+    private final LongSupplier backlog;
+    private final ClientMetrics metrics;
+
+    private final List<Worker> workers = new ArrayList<>();
+    private int nextWorkerIndex;
+    private int targetConcurrency;
+    private boolean running;
+    private long lastScaleCheck;
+
+    /**
+     * Constructs a new {@code ConsumerPool} on a queue. No worker is started until {@link #start()}.
+     *
+     * @param queueName       the name of the queue to consume from
+     * @param sessionSupplier opens a session for each new worker
+     * @param dispatcher      processes every message the workers receive
+     * @param settings        the consumer configuration
+     * @param backlog         supplies the estimated number of messages waiting on the queue
+     * @param metrics         the metrics each worker records its messages, handling and acks in
+     */
+    ConsumerPool(String queueName, SessionSupplier sessionSupplier, Dispatcher dispatcher,
+                 ConsumerSettings settings, LongSupplier backlog, ClientMetrics metrics) {
+        this(queueName, sessionSupplier, session -> session.createConsumer(session.createQueue(queueName)),
+                dispatcher, settings, backlog, metrics);
+    }
+
+    /**
+     * Constructs a new {@code ConsumerPool}. No worker is started until {@link #start()}.
+     *
+     * @param destination     the key of the destination consumed, which names the pool in logs,
+     *                        metrics and the consumer settings
+     * @param sessionSupplier opens a session for each new worker
+     * @param consumerFactory creates each worker's consumer on its session
+     * @param dispatcher      processes every message the workers receive
+     * @param settings        the consumer configuration
+     * @param backlog         supplies the estimated number of messages waiting on the destination
+     * @param metrics         the metrics each worker records its messages, handling and acks in
+     */
+    ConsumerPool(String destination, SessionSupplier sessionSupplier, ConsumerFactory consumerFactory,
+                 Dispatcher dispatcher, ConsumerSettings settings, LongSupplier backlog, ClientMetrics metrics) {
+        this.queueName = destination;
+        this.sessionSupplier = sessionSupplier;
+        this.consumerFactory = consumerFactory;
+        this.dispatcher = dispatcher;
+        this.settings = settings;
+        this.concurrency = settings.concurrencyFor(destination);
+        this.backlog = backlog;
+        this.metrics = metrics;
+        this.targetConcurrency = clamp(concurrency.getInitial());
+    }
+
+    /**
+     * Returns the key of the destination this pool consumes.
+     *
+     * @return the destination key
+     */
+    String getDestination() {
+        return queueName;
+    }
+
+    /**
+     * Starts the target number of workers, which is the configured concurrency unless it was
+     * changed at runtime.
+     *
+     * @throws JMSException if a worker session or consumer cannot be created
+     */
+    synchronized void start() throws JMSException {
+        if (running) {
+            return;
+        }
+        running = true;
+        lastScaleCheck = System.nanoTime();
+        try {
+            resizeTo(targetConcurrency);
+        } catch (JMSException e) {
+            stop();
+            throw e;
+        }
+    }
+
+    /**
+     * Stops every worker and closes its consumer and session.
+     */
+    synchronized void stop() {
+        running = false;
+        resizeQuietly(0);
+    }
+
+    /**
+     * Stops every worker without stopping the pool, because the connection their sessions were
+     * created on was lost.
+     */
+    synchronized void suspend() {
+        resizeQuietly(0);
+    }
+
+    /**
+     * Starts the target number of workers again after {@link #suspend()}, on sessions of the
+     * replacement connection. A pool that was stopped in the meantime stays stopped.
+     *
+     * @throws JMSException if a worker session or consumer cannot be created
+     */
+    synchronized void resume() throws JMSException {
+        if (running) {
+            resizeTo(targetConcurrency);
+        }
+    }
+
+    /**
+     * Replaces the workers one at a time with workers on sessions of the current connection,
+     * after the shared connection was replaced while the old one still works. Each replacement is
+     * started before the worker it replaces is stopped, so the pool never runs with fewer
+     * consumers than before.
+     *
+     * @throws JMSException if a replacement session or consumer cannot be created; the workers
+     *                      not yet replaced keep running
+     */
+    synchronized void roll() throws JMSException {
+        if (!running) {
+            return;
+        }
+        for (int i = 0; i < workers.size(); i++) {
+            Worker replaced = workers.get(i);
+            Worker replacement = new Worker(replaced.index);
+            replacement.start();
+            workers.set(i, replacement);
+            replaced.stop();
+        }
+    }
+
+    /**
+     * Returns whether the pool has been started and not stopped since.
+     *
+     * @return {@code true} if the pool is started
+     */
+    synchronized boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Changes the number of workers, clamped to the configured minimum and maximum. If the pool
+     * is stopped, the new size applies the next time it is started.
+     *
+     * @param concurrency the requested number of workers
+     * @return the target number of workers after clamping
+     * @throws JMSException if a new worker session or consumer cannot be created
+     */
+    synchronized int resize(int concurrency) throws JMSException {
+        targetConcurrency = clamp(concurrency);
+        if (running) {
+            resizeTo(targetConcurrency);
+        }
+        return targetConcurrency;
+    }
+
+    /**
+     * Returns the current number of workers.
+     *
+     * @return the number of running workers
+     */
+    synchronized int size() {
+        return workers.size();
+    }
+
+    /**
+     * Adjusts the pool size by one worker based on how busy the workers were since the last
+     * check and on the estimated backlog. Utilization is the share of time workers spent outside
+     * {@code receive}.
+     */
+    synchronized void autoscale() {
+        if (!running || workers.isEmpty()) {
+            return;
+        }
+        long now = System.nanoTime();
+        long elapsed = now - lastScaleCheck;
+        lastScaleCheck = now;
+        if (elapsed <= 0) {
+            return;
+        }
+
+        long waiting = 0;
+        for (Worker worker : workers) {
+            waiting += Math.min(elapsed, worker.waitingNanos.getAndSet(0));
+        }
+        double utilization = 1.0 - (double) waiting / ((double) elapsed * workers.size());
+
+        long pending = backlog.getAsLong();
+        long backlogThreshold = settings.getBacklogPerConsumer() * workers.size();
+
+        int target = workers.size();
+        if (utilization >= SCALE_UP_UTILIZATION || pending > backlogThreshold) {
+            target++;
+        } else if (utilization <= SCALE_DOWN_UTILIZATION && pending == 0) {
+            target--;
+        }
+        target = clamp(target);
+        if (target != workers.size()) {
+            logger.info("Scaling consumers on {} from {} to {} (utilization {}, backlog {})",
+                    queueName, workers.size(), target, String.format("%.2f", utilization), pending);
+            targetConcurrency = target;
+            resizeQuietly(target);
+        }
+    }
+
+    private int clamp(int target) {
+        return Math.max(concurrency.getMin(), Math.min(concurrency.getMax(), target));
+    }
+
+    private void resizeQuietly(int target) {
+        try {
+            resizeTo(target);
+        } catch (JMSException e) {
+            logger.error("Error resizing consumer pool on {}", queueName, e);
+        }
+    }
+
+    private void resizeTo(int target) throws JMSException {
+        while (workers.size() < target) {
+            Worker worker = new Worker(nextWorkerIndex++);
+            worker.start();
+            workers.add(worker);
+        }
+        List<Worker> removed = new ArrayList<>();
+        while (workers.size() > target) {
+            Worker worker = workers.remove(workers.size() - 1);
+            worker.active = false;
+            removed.add(worker);
+        }
+        // signal every worker before waiting for any, so that they wind down in parallel
+        for (Worker worker : removed) {
+            worker.stop();
+        }
+    }
+
+    /**
+     * One consumer with its own session and dispatch thread.
+     */
+    private final class Worker implements Runnable {
+
+        private final int index;
+        private final AtomicLong waitingNanos = new AtomicLong();
+        private final Counter consumed;
+        private final Timer handlerTimer;
+        private final Timer ackTimer;
+
+        private Session session;
+        private MessageConsumer consumer;
+        private Thread thread;
+        private volatile boolean active = true;
+
+        Worker(int index) {
+            this.index = index;
+            this.consumed = metrics.consumedCounter(queueName, index);
+            this.handlerTimer = metrics.handlerTimer(queueName, index);
+            this.ackTimer = metrics.ackTimer(queueName, index);
+        }
+
+        void start() throws JMSException {
+            session = sessionSupplier.get();
+            try {
+                consumer = consumerFactory.create(session);
+            } catch (JMSException e) {
+                session.close();
+                throw e;
+            }
+            thread = Threads.newThread("consumer-" + queueName + "-" + index, settings.isVirtualThreads(), this);
+            thread.start();
+        }
+
+        @Override
+        public void run() {
+            logger.debug("Consumer {} on {} started", index, queueName);
+            Acknowledger acknowledger = Acknowledger.create(settings, session, ackTimer);
+            while (active) {
+                try {
+                    long begin = System.nanoTime();
+                    Message message = consumer.receive(acknowledger.receiveTimeout(settings.getReceiveTimeoutMillis()));
+                    waitingNanos.addAndGet(System.nanoTime() - begin);
+                    if (message == null) {
+                        acknowledger.idle();
+                        continue;
+                    }
+                    consumed.increment();
+                    long dispatched = System.nanoTime();
+                    CompletionStage<Void> completion;
+                    try {
+                        completion = dispatcher.dispatch(message).whenComplete((ignored, error) ->
+                                handlerTimer.record(System.nanoTime() - dispatched, TimeUnit.NANOSECONDS));
+                    } catch (RuntimeException e) {
+                        logger.error("Consumer {} on {} failed to process a message", index, queueName, e);
+                        completion = CompletableFuture.failedFuture(e);
+                    }
+                    acknowledger.processed(message, completion);
+                } catch (JMSException e) {
+                    if (active) {
+                        logger.error("Consumer {} on {} failed to receive", index, queueName, e);
+                        pause();
+                    }
+                }
+            }
+            try {
+                acknowledger.flush();
+            } catch (JMSException e) {
+                logger.warn("Consumer {} on {} could not acknowledge {} processed messages",
+                        index, queueName, acknowledger.pending(), e);
+            }
+            logger.debug("Consumer {} on {} stopped", index, queueName);
+        }
+
+        private void pause() {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(settings.getReceiveTimeoutMillis());
+            try {
+                while (active && deadline - System.nanoTime() > 0) {
+                    Thread.sleep(Math.min(PAUSE_STEP_MILLIS, settings.getReceiveTimeoutMillis()));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                active = false;
+            }
+        }
+
+        /**
+         * Stops the dispatch thread, letting it acknowledge its last processed messages, then
+         * closes the consumer and session.
+         */
+        void stop() {
+            active = false;
+            try {
+                thread.join(settings.getReceiveTimeoutMillis() * 2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            try {
+                consumer.close();
+                session.close();
+            } catch (JMSException e) {
+                logger.debug("Error closing consumer {} on {}", index, queueName, e);
+            }
+        }
+    }
+}
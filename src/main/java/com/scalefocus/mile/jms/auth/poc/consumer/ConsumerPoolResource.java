@@ -0,0 +1,62 @@
+package com.scalefocus.mile.jms.auth.poc.consumer;
+
+import jakarta.jms.JMSException;
+
+import javax.ws.rs.*;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Path("/consumers")
+@Produces(MediaType.APPLICATION_JSON)
+public class ConsumerPoolResource {
+
+    private final MessageConsumerProvider messageConsumerProvider;
+
+    ConsumerPoolResource(MessageConsumerProvider messageConsumerProvider) {
+        this.messageConsumerProvider = messageConsumerProvider;
+    }
+
+    @GET
+    public Map<String, Object> getConcurrency() {
+        Map<String, Integer> groups = new LinkedHashMap<>();
+        for (ConsumerPool pool : messageConsumerProvider.getConsumerPools()) {
+            groups.put(pool.getDestination(), pool.size());
+        }
+        return Map.of("concurrency", messageConsumerProvider.getConsumerPool().size(), "groups", groups);
+    }
+
+    @PUT
+    @Path("concurrency/{concurrency}")
+    public Response setConcurrency(@PathParam("concurrency") int concurrency) {
+        return resize(messageConsumerProvider.getConsumerPool(), concurrency);
+    }
+
+    @PUT
+    @Path("{destination}/concurrency/{concurrency}")
+    public Response setConcurrency(@PathParam("destination") String destination,
+                                   @PathParam("concurrency") int concurrency) {
+        ConsumerPool pool;
+        try {
+            pool = messageConsumerProvider.getConsumerPool(destination);
+        } catch (IllegalArgumentException e) {
+            pool = null;
+        }
+        if (pool == null) {
+            return Response.status(Response.Status.NOT_FOUND)
+                    .entity(Map.of("error", "No consumer group for " + destination)).build();
+        }
+        return resize(pool, concurrency);
+    }
+
+    private static Response resize(ConsumerPool pool, int concurrency) {
+        try {
+            int target = pool.resize(concurrency);
+            return Response.ok(Map.of("concurrency", target)).build();
+        } catch (JMSException e) {
+            return Response.serverError().entity(Map.of("error", e.getMessage())).build();
+        }
+    }
+
+}
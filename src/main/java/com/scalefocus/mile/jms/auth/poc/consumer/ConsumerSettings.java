@@ -0,0 +1,279 @@
+package com.scalefocus.mile.jms.auth.poc.consumer;
+
+import jakarta.jms.Session;
+import javax.enterprise.context.ApplicationScoped;
+import com.scalefocus.mile.jms.auth.poc.core.DestinationRegistry;
+import com.scalefocus.mile.jms.auth.poc.core.Threads;
+import lombok.Getter;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Configuration of the consumer side of the broker client.
+ *
+ * <p>Like {@code BrokerClientConfig}, the settings are injected from
+ * {@code application.properties} when running inside Quarkus, and can be built from a plain
+ * {@code Properties} object for standalone use.</p>
+ *
+ * <p>Every destination in {@code solace.consumer.destinations} is consumed by a group of its own.
+ * {@code solace.consumer.group-concurrency} gives a group a fixed number of consumers
+ * ({@code orders:4}) or its own autoscaling range ({@code orders:2-8}); other groups use the
+ * global concurrency settings.</p>
+ */
+@ApplicationScoped
+@Getter
+class ConsumerSettings {
+
+    /**
+     * How messages are consumed from the queue.
+     */
+    enum Mode {
+        /** Consumers stay attached and receive messages as soon as they arrive. */
+        STREAMING,
+        /** Consumers are attached periodically, drain the queue and detach again. */
+        SCHEDULED_DRAIN;
+
+        static Mode parse(String value) {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        }
+    }
+
+    /**
+     * How received messages are acknowledged.
+     */
+    enum AckMode {
+        /** Every message is acknowledged on its own as it is received. */
+        AUTO(Session.AUTO_ACKNOWLEDGE),
+        /** Messages are acknowledged lazily by the client library, which may redeliver duplicates. */
+        DUPS_OK(Session.DUPS_OK_ACKNOWLEDGE),
+        /** Messages are acknowledged in windows, once every message of the window has been processed. */
+        CLIENT_WINDOW(Session.CLIENT_ACKNOWLEDGE),
+        /** Messages are acknowledged one by one, once they and every message received before them are processed. */
+        ORDERED(AckCoordinator.INDIVIDUAL_ACKNOWLEDGE);
+
+        private final int sessionMode;
+
+        AckMode(int sessionMode) {
+            this.sessionMode = sessionMode;
+        }
+
+        /**
+         * Returns the JMS session acknowledge mode implementing this strategy.
+         *
+         * @return one of the {@code Session} acknowledge mode constants
+         */
+        int sessionMode() {
+            return sessionMode;
+        }
+
+        static AckMode parse(String value) {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        }
+    }
+
+    private static final String MODE = "solace.consumer.mode";
+    private static final String CONCURRENCY = "solace.consumer.concurrency";
+    private static final String MIN_CONCURRENCY = "solace.consumer.min-concurrency";
+    private static final String MAX_CONCURRENCY = "solace.consumer.max-concurrency";
+    private static final String AUTOSCALE_ENABLED = "solace.consumer.autoscale.enabled";
+    private static final String AUTOSCALE_INTERVAL_MS = "solace.consumer.autoscale.interval-ms";
+    private static final String AUTOSCALE_BACKLOG_PER_CONSUMER = "solace.consumer.autoscale.backlog-per-consumer";
+    private static final String RECEIVE_TIMEOUT_MS = "solace.consumer.receive-timeout-ms";
+    private static final String DRAIN_IDLE_TIMEOUT_MS = "solace.consumer.drain.idle-timeout-ms";
+    private static final String DRAIN_INTERVAL_MS = "solace.consumer.drain.interval-ms";
+    private static final String ACK_MODE = "solace.consumer.ack.mode";
+    private static final String ACK_WINDOW_SIZE = "solace.consumer.ack.window-size";
+    private static final String ACK_WINDOW_MS = "solace.consumer.ack.window-ms";
+    private static final String DESTINATIONS = "solace.consumer.destinations";
+    private static final String GROUP_CONCURRENCY = "solace.consumer.group-concurrency";
+
+    private static final String DEFAULT_MODE = "streaming";
+    private static final String DEFAULT_CONCURRENCY = "1";
+    private static final String DEFAULT_MIN_CONCURRENCY = "1";
+    private static final String DEFAULT_MAX_CONCURRENCY = "4";
+    private static final String DEFAULT_AUTOSCALE_ENABLED = "true";
+    private static final String DEFAULT_AUTOSCALE_INTERVAL_MS = "10000";
+    private static final String DEFAULT_AUTOSCALE_BACKLOG_PER_CONSUMER = "1000";
+    private static final String DEFAULT_RECEIVE_TIMEOUT_MS = "1000";
+    private static final String DEFAULT_DRAIN_IDLE_TIMEOUT_MS = "5000";
+    private static final String DEFAULT_DRAIN_INTERVAL_MS = "300000";
+    private static final String DEFAULT_ACK_MODE = "auto";
+    private static final String DEFAULT_ACK_WINDOW_SIZE = "100";
+    private static final String DEFAULT_ACK_WINDOW_MS = "1000";
+    private static final String DEFAULT_VIRTUAL_THREADS = "false";
+
+    @ConfigProperty(name = MODE, defaultValue = DEFAULT_MODE)
+    String mode;
+
+    @ConfigProperty(name = CONCURRENCY, defaultValue = DEFAULT_CONCURRENCY)
+    int concurrency;
+
+    @ConfigProperty(name = MIN_CONCURRENCY, defaultValue = DEFAULT_MIN_CONCURRENCY)
+    int minConcurrency;
+
+    @ConfigProperty(name = MAX_CONCURRENCY, defaultValue = DEFAULT_MAX_CONCURRENCY)
+    int maxConcurrency;
+
+    @ConfigProperty(name = AUTOSCALE_ENABLED, defaultValue = DEFAULT_AUTOSCALE_ENABLED)
+    boolean autoscaleEnabled;
+
+    @ConfigProperty(name = AUTOSCALE_INTERVAL_MS, defaultValue = DEFAULT_AUTOSCALE_INTERVAL_MS)
+    long autoscaleIntervalMillis;
+
+    @ConfigProperty(name = AUTOSCALE_BACKLOG_PER_CONSUMER, defaultValue = DEFAULT_AUTOSCALE_BACKLOG_PER_CONSUMER)
+    long backlogPerConsumer;
+
+    @ConfigProperty(name = RECEIVE_TIMEOUT_MS, defaultValue = DEFAULT_RECEIVE_TIMEOUT_MS)
+    long receiveTimeoutMillis;
+
+    @ConfigProperty(name = DRAIN_IDLE_TIMEOUT_MS, defaultValue = DEFAULT_DRAIN_IDLE_TIMEOUT_MS)
+    long drainIdleTimeoutMillis;
+
+    @ConfigProperty(name = DRAIN_INTERVAL_MS, defaultValue = DEFAULT_DRAIN_INTERVAL_MS)
+    long drainIntervalMillis;
+
+    @ConfigProperty(name = ACK_MODE, defaultValue = DEFAULT_ACK_MODE)
+    String ackMode;
+
+    @ConfigProperty(name = ACK_WINDOW_SIZE, defaultValue = DEFAULT_ACK_WINDOW_SIZE)
+    int ackWindowSize;
+
+    @ConfigProperty(name = ACK_WINDOW_MS, defaultValue = DEFAULT_ACK_WINDOW_MS)
+    long ackWindowMillis;
+
+    @ConfigProperty(name = Threads.VIRTUAL_THREADS, defaultValue = DEFAULT_VIRTUAL_THREADS)
+    boolean virtualThreads;
+
+    @ConfigProperty(name = DESTINATIONS)
+    Optional<String> destinations;
+
+    @ConfigProperty(name = GROUP_CONCURRENCY)
+    Optional<String> groupConcurrency;
+
+    ConsumerSettings() {}
+
+    ConsumerSettings(Properties properties) {
+        mode = properties.getProperty(MODE, DEFAULT_MODE);
+        concurrency = Integer.parseInt(properties.getProperty(CONCURRENCY, DEFAULT_CONCURRENCY));
+        minConcurrency = Integer.parseInt(properties.getProperty(MIN_CONCURRENCY, DEFAULT_MIN_CONCURRENCY));
+        maxConcurrency = Integer.parseInt(properties.getProperty(MAX_CONCURRENCY, DEFAULT_MAX_CONCURRENCY));
+        autoscaleEnabled = Boolean.parseBoolean(properties.getProperty(AUTOSCALE_ENABLED, DEFAULT_AUTOSCALE_ENABLED));
+        autoscaleIntervalMillis = Long.parseLong(properties.getProperty(AUTOSCALE_INTERVAL_MS, DEFAULT_AUTOSCALE_INTERVAL_MS));
+        backlogPerConsumer = Long.parseLong(properties.getProperty(AUTOSCALE_BACKLOG_PER_CONSUMER, DEFAULT_AUTOSCALE_BACKLOG_PER_CONSUMER));
+        receiveTimeoutMillis = Long.parseLong(properties.getProperty(RECEIVE_TIMEOUT_MS, DEFAULT_RECEIVE_TIMEOUT_MS));
+        drainIdleTimeoutMillis = Long.parseLong(properties.getProperty(DRAIN_IDLE_TIMEOUT_MS, DEFAULT_DRAIN_IDLE_TIMEOUT_MS));
+        drainIntervalMillis = Long.parseLong(properties.getProperty(DRAIN_INTERVAL_MS, DEFAULT_DRAIN_INTERVAL_MS));
+        ackMode = properties.getProperty(ACK_MODE, DEFAULT_ACK_MODE);
+        ackWindowSize = Integer.parseInt(properties.getProperty(ACK_WINDOW_SIZE, DEFAULT_ACK_WINDOW_SIZE));
+        ackWindowMillis = Long.parseLong(properties.getProperty(ACK_WINDOW_MS, DEFAULT_ACK_WINDOW_MS));
+        virtualThreads = Boolean.parseBoolean(properties.getProperty(Threads.VIRTUAL_THREADS, DEFAULT_VIRTUAL_THREADS));
+        destinations = Optional.ofNullable(properties.getProperty(DESTINATIONS));
+        groupConcurrency = Optional.ofNullable(properties.getProperty(GROUP_CONCURRENCY));
+    }
+
+    /**
+     * Returns the configured consumption mode.
+     *
+     * @return the consumption mode
+     */
+    Mode getConsumptionMode() {
+        return Mode.parse(mode);
+    }
+
+    /**
+     * Returns the configured acknowledgement strategy.
+     *
+     * @return the acknowledgement mode
+     */
+    AckMode getAcknowledgementMode() {
+        return AckMode.parse(ackMode);
+    }
+
+    /**
+     * Returns the keys of the destinations consumed, each by a group of its own.
+     *
+     * @return the configured destination keys, or an empty list to consume the default queue only
+     */
+    List<String> getConsumedDestinations() {
+        if (destinations.isEmpty() || destinations.get().isBlank()) {
+            return Collections.emptyList();
+        }
+        List<String> keys = new ArrayList<>();
+        for (String key : destinations.get().split(",")) {
+            if (!key.isBlank()) {
+                keys.add(key.trim());
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Returns the number of consumers of a group.
+     *
+     * @param destination the key of the group's destination
+     * @return the group's override if one is configured, otherwise the global concurrency settings
+     */
+    Concurrency concurrencyFor(String destination) {
+        Concurrency override = parseGroupConcurrency().get(DestinationRegistry.keyOf(destination));
+        return override != null ? override : new Concurrency(concurrency, minConcurrency, maxConcurrency);
+    }
+
+    /**
+     * Returns the destinations {@code solace.consumer.group-concurrency} configures a group for.
+     *
+     * @return the normalized keys of the overridden groups
+     */
+    Set<String> getGroupConcurrencyKeys() {
+        return parseGroupConcurrency().keySet();
+    }
+
+    /**
+     * Parses {@code solace.consumer.group-concurrency}, a comma separated list of
+     * {@code destination:consumers} or {@code destination:min-max} pairs. Destinations are keyed
+     * like {@link DestinationRegistry} keys them, so {@code queue:orders:4} overrides {@code orders}.
+     */
+    private Map<String, Concurrency> parseGroupConcurrency() {
+        if (groupConcurrency.isEmpty() || groupConcurrency.get().isBlank()) {
+            return Collections.emptyMap();
+        }
+        Map<String, Concurrency> overrides = new HashMap<>();
+        for (String entry : groupConcurrency.get().split(",")) {
+            int separator = entry.lastIndexOf(':');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Invalid " + GROUP_CONCURRENCY + " entry: " + entry);
+            }
+            String range = entry.substring(separator + 1).trim();
+            int dash = range.indexOf('-');
+            int min = Integer.parseInt(dash < 0 ? range : range.substring(0, dash).trim());
+            int max = dash < 0 ? min : Integer.parseInt(range.substring(dash + 1).trim());
+            overrides.put(DestinationRegistry.keyOf(entry.substring(0, separator)), new Concurrency(min, min, max));
+        }
+        return overrides;
+    }
+
+    /**
+     * The number of consumers a group starts with and the range it is scaled within.
+     */
+    @Getter
+    static final class Concurrency {
+
+        private final int initial;
+        private final int min;
+        private final int max;
+
+        Concurrency(int initial, int min, int max) {
+            this.min = Math.max(1, min);
+            this.max = Math.max(this.min, max);
+            this.initial = Math.max(this.min, Math.min(this.max, initial));
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package com.scalefocus.mile.jms.auth.poc.consumer;
+
+import com.scalefocus.mile.jms.auth.poc.core.ClientMetrics;
+import com.scalefocus.mile.jms.auth.poc.core.ThreadSafe;
+import io.micrometer.core.instrument.Counter;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Remembers the keys of recently handled messages, so that a message redelivered after a
+ * reconnection or a consumer re-creation is not handled twice.
+ *
+ * <p>A message is keyed by its {@code JMSMessageID}, or by the string property named by
+ * {@code solace.consumer.dedup.key-property} if it has one. Keys are reduced to 64-bit
+ * fingerprints and kept in a fixed number of independently locked stripes, so that parallel
+ * consumers rarely wait for each other. Each stripe is a ring of fingerprints in insertion order
+ * with an open-addressing index over it, all in primitive arrays allocated up front: remembering a
+ * key allocates nothing. Once a stripe is full its oldest key is forgotten, and keys older than
+ * {@code solace.consumer.dedup.ttl-ms} are forgotten as well. Two different keys share a
+ * fingerprint with a probability of about one in 2<sup>64</sup> per pair.</p>
+ *
+ * <p>One cache serves every consumer group. Its hits and misses, the number of remembered keys
+ * and the memory it holds are recorded in {@link ClientMetrics} over all consumed
+ * destinations.</p>
+ */
+@ApplicationScoped
+@ThreadSafe
+class DedupCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(DedupCache.class);
+
+    private final boolean enabled;
+    private final Optional<String> keyProperty;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+    private final Stripe[] stripes;
+    private final int stripeMask;
+    private final Counter hits;
+    private final Counter misses;
+
+    /**
+     * Constructs a new {@code DedupCache}.
+     *
+     * @param enabled     whether messages are checked for duplicates
+     * @param maxEntries  the maximum number of keys remembered
+     * @param ttlMillis   how long a key is remembered
+     * @param stripes     the number of independently locked parts, rounded up to a power of two
+     * @param keyProperty the message property holding the key, instead of the message ID
+     * @param metrics     the metrics hits, misses and the cache size are recorded in
+     */
+    @Inject
+    DedupCache(
+            @ConfigProperty(name = "solace.consumer.dedup.enabled", defaultValue = "true") boolean enabled,
+            @ConfigProperty(name = "solace.consumer.dedup.max-entries", defaultValue = "100000") int maxEntries,
+            @ConfigProperty(name = "solace.consumer.dedup.ttl-ms", defaultValue = "600000") long ttlMillis,
+            @ConfigProperty(name = "solace.consumer.dedup.stripes", defaultValue = "16") int stripes,
+            @ConfigProperty(name = "solace.consumer.dedup.key-property") Optional<String> keyProperty,
+            ClientMetrics metrics) {
+        this(enabled, maxEntries, ttlMillis, stripes, keyProperty, metrics, System::nanoTime);
+    }
+
+    DedupCache(boolean enabled, int maxEntries, long ttlMillis, int stripes, Optional<String> keyProperty,
+               ClientMetrics metrics, LongSupplier clock) {
+        this.enabled = enabled;
+        this.keyProperty = keyProperty.filter(name -> !name.isBlank());
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, ttlMillis));
+        this.clock = clock;
+        int stripeCount = !enabled ? 0 : stripes <= 1 ? 1 : Integer.highestOneBit((stripes - 1) << 1);
+        this.stripes = new Stripe[stripeCount];
+        this.stripeMask = stripeCount - 1;
+        int perStripe = enabled ? Math.max(1, (Math.max(1, maxEntries) + stripeCount - 1) / stripeCount) : 0;
+        for (int i = 0; i < stripeCount; i++) {
+            this.stripes[i] = new Stripe(perStripe);
+        }
+        this.hits = metrics.dedupCounter("hit");
+        this.misses = metrics.dedupCounter("miss");
+        if (enabled) {
+            metrics.registerDedupCache(this::size, this::memoryBytes);
+        }
+    }
+
+    /**
+     * Creates a cache that treats every message as new, for use outside of Quarkus.
+     *
+     * @return a disabled cache
+     */
+    static DedupCache disabled() {
+        return new DedupCache(false, 0, 1, 1, Optional.empty(), ClientMetrics.disabled(), System::nanoTime);
+    }
+
+    /**
+     * Returns the key a message is deduplicated by.
+     *
+     * @param message the received message
+     * @return the key property or the message ID, or {@code null} if the message has neither or
+     *         the cache is disabled
+     */
+    String keyOf(Message message) {
+        if (!enabled) {
+            return null;
+        }
+        try {
+            if (keyProperty.isPresent()) {
+                String key = message.getStringProperty(keyProperty.get());
+                if (key != null) {
+                    return key;
+                }
+            }
+            return message.getJMSMessageID();
+        } catch (JMSException e) {
+            logger.debug("Could not read the deduplication key of a message", e);
+            return null;
+        }
+    }
+
+    /**
+     * Remembers a key and tells whether it was new.
+     *
+     * @param key the key of a message about to be handled
+     * @return {@code true} if the key was not remembered yet, {@code false} for a duplicate
+     */
+    boolean firstSeen(String key) {
+        long fingerprint = fingerprint(key);
+        boolean first = stripeFor(fingerprint).add(fingerprint, clock.getAsLong());
+        (first ? misses : hits).increment();
+        return first;
+    }
+
+    /**
+     * Forgets a key, so that a message whose handling failed is handled again when redelivered.
+     *
+     * @param key the key passed to {@link #firstSeen(String)}
+     */
+    void forget(String key) {
+        long fingerprint = fingerprint(key);
+        stripeFor(fingerprint).remove(fingerprint);
+    }
+
+    /**
+     * Returns the number of keys remembered.
+     *
+     * @return the number of remembered keys
+     */
+    long size() {
+        long size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    /**
+     * Returns the memory held by the cache's arrays.
+     *
+     * @return the size of the cache in bytes
+     */
+    long memoryBytes() {
+        long bytes = 0;
+        for (Stripe stripe : stripes) {
+            bytes += stripe.memoryBytes();
+        }
+        return bytes;
+    }
+
+    private Stripe stripeFor(long fingerprint) {
+        return stripes[(int) (fingerprint >>> 40) & stripeMask];
+    }
+
+    /**
+     * Hashes a key to 64 bits with FNV-1a over its characters, followed by a MurmurHash3
+     * finalizer to spread the bits.
+     */
+    static long fingerprint(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * One lock's share of the keys. {@code fingerprints} and {@code addedAt} form a ring whose
+     * {@code count} entries before {@code head} were added in that order; {@code index} is a
+     * linear-probing table of ring positions plus one, with 0 marking a free slot. A forgotten key
+     * only leaves the index; its ring entry stays until it is the oldest and is dropped.
+     */
+    private final class Stripe {
+
+        private final long[] fingerprints;
+        private final long[] addedAt;
+        private final int[] index;
+        private final int indexMask;
+        private int head;
+        private int count;
+
+        Stripe(int capacity) {
+            fingerprints = new long[capacity];
+            addedAt = new long[capacity];
+            index = new int[Integer.highestOneBit(capacity) << 2];
+            indexMask = index.length - 1;
+        }
+
+        synchronized boolean add(long fingerprint, long now) {
+            while (count > 0 && now - addedAt[tail()] > ttlNanos) {
+                dropOldest();
+            }
+            if (find(fingerprint) >= 0) {
+                return false;
+            }
+            if (count == fingerprints.length) {
+                dropOldest();
+            }
+            int position = head;
+            fingerprints[position] = fingerprint;
+            addedAt[position] = now;
+            head = (head + 1) % fingerprints.length;
+            count++;
+            int slot = home(fingerprint);
+            while (index[slot] != 0) {
+                slot = (slot + 1) & indexMask;
+            }
+            index[slot] = position + 1;
+            return true;
+        }
+
+        synchronized void remove(long fingerprint) {
+            int slot = find(fingerprint);
+            if (slot >= 0) {
+                removeSlot(slot);
+            }
+        }
+
+        synchronized int size() {
+            return count;
+        }
+
+        long memoryBytes() {
+            return 16L * fingerprints.length + 4L * index.length;
+        }
+
+        private void dropOldest() {
+            int tail = tail();
+            int slot = find(fingerprints[tail]);
+            // the key may have been forgotten, and added again at a newer position since
+            if (slot >= 0 && index[slot] - 1 == tail) {
+                removeSlot(slot);
+            }
+            count--;
+        }
+
+        private int tail() {
+            return Math.floorMod(head - count, fingerprints.length);
+        }
+
+        private int home(long fingerprint) {
+            return (int) fingerprint & indexMask;
+        }
+
+        private int find(long fingerprint) {
+            int slot = home(fingerprint);
+            while (index[slot] != 0) {
+                if (fingerprints[index[slot] - 1] == fingerprint) {
+                    return slot;
+                }
+                slot = (slot + 1) & indexMask;
+            }
+            return -1;
+        }
+
+        /**
+         * Frees an index slot with backward-shift deletion, moving later entries of the same
+         * probe sequence up so that lookups need no tombstones.
+         */
+        private void removeSlot(int slot) {
+            int free = slot;
+            int next = slot;
+            while (true) {
+                next = (next + 1) & indexMask;
+                if (index[next] == 0) {
+                    break;
+                }
+                int wanted = home(fingerprints[index[next] - 1]);
+                boolean stays = free <= next ? free < wanted && wanted <= next : free < wanted || wanted <= next;
+                if (!stays) {
+                    index[free] = index[next];
+                    free = next;
+                }
+            }
+            index[free] = 0;
+        }
+    }
+}
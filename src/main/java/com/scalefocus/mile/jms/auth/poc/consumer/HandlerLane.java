@@ -0,0 +1,142 @@
+package com.scalefocus.mile.jms.auth.poc.consumer;
+
+import com.scalefocus.mile.jms.auth.poc.core.ThreadSafe;
+import com.scalefocus.mile.jms.auth.poc.core.Threads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A single thread running tasks in the order they were submitted, queued on an {@link MpscRing}.
+ *
+ * <p>Submitting never takes a lock. The lane thread spins briefly when it runs out of tasks and
+ * then parks until a submitter wakes it up, so a busy lane hands tasks over without system calls
+ * and an idle one costs no CPU. A submitter finding the ring full waits for room, first spinning
+ * and then parking for increasing periods, which slows consumers down to the speed of the
+ * handlers.</p>
+ */
+@ThreadSafe
+final class HandlerLane {
+
+    private static final Logger logger = LoggerFactory.getLogger(HandlerLane.class);
+
+    private static final int SPINS = 100;
+    private static final long MAX_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final String name;
+    private final MpscRing<Runnable> tasks;
+    private final Thread thread;
+    private volatile boolean parked;
+    private volatile boolean shutdown;
+
+    /**
+     * Constructs and starts a new {@code HandlerLane}.
+     *
+     * @param name           the name of the lane's thread
+     * @param capacity       the maximum number of queued tasks
+     * @param virtualThreads whether the lane runs on a virtual thread
+     */
+    HandlerLane(String name, int capacity, boolean virtualThreads) {
+        this.name = name;
+        this.tasks = new MpscRing<>(Math.max(1, capacity));
+        this.thread = Threads.newThread(name, virtualThreads, this::run);
+        this.thread.start();
+    }
+
+    /**
+     * Queues a task, waiting for room if the lane is full.
+     *
+     * @param task the task to run on the lane
+     * @throws RejectedExecutionException if the lane is shut down or the caller is interrupted
+     */
+    void execute(Runnable task) {
+        long backoffNanos = 1000;
+        int spins = 0;
+        while (!tasks.offer(task)) {
+            if (shutdown) {
+                throw new RejectedExecutionException("Handler lane " + name + " is shut down");
+            }
+            if (spins++ < SPINS) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(this, backoffNanos);
+                backoffNanos = Math.min(MAX_BACKOFF_NANOS, backoffNanos * 2);
+                if (Thread.interrupted()) {
+                    Thread.currentThread().interrupt();
+                    throw new RejectedExecutionException("Interrupted while waiting for handler lane " + name);
+                }
+            }
+        }
+        if (parked || shutdown) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Returns the number of tasks waiting on the lane.
+     *
+     * @return the approximate number of queued tasks
+     */
+    int backlog() {
+        return tasks.size();
+    }
+
+    private void run() {
+        int idleSpins = 0;
+        while (true) {
+            Runnable task = tasks.poll();
+            if (task != null) {
+                idleSpins = 0;
+                runSafely(task);
+                continue;
+            }
+            if (shutdown) {
+                // a last poll, for tasks queued just before the shutdown was noticed
+                while ((task = tasks.poll()) != null) {
+                    runSafely(task);
+                }
+                return;
+            }
+            if (idleSpins++ < SPINS) {
+                Thread.onSpinWait();
+                continue;
+            }
+            parked = true;
+            if (tasks.size() == 0 && !shutdown) {
+                LockSupport.park(this);
+            }
+            parked = false;
+            if (Thread.interrupted()) {
+                return;
+            }
+        }
+    }
+
+    private void runSafely(Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            logger.error("Handler lane {} task failed", name, e);
+        }
+    }
+
+    /**
+     * Stops the lane once the tasks already queued have run, waiting at most the given time
+     * before interrupting it.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit    the unit of the timeout
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    void shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        shutdown = true;
+        LockSupport.unpark(thread);
+        thread.join(Math.max(1, unit.toMillis(timeout)));
+        if (thread.isAlive()) {
+            thread.interrupt();
+        }
+    }
+}
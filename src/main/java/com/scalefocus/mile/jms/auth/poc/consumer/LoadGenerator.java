@@ -0,0 +1,579 @@
+package com.scalefocus.mile.jms.auth.poc.consumer;
+
+import com.scalefocus.mile.jms.auth.poc.core.BrokerClientConfig;
+import com.scalefocus.mile.jms.auth.poc.core.ClientMetrics;
+import com.scalefocus.mile.jms.auth.poc.core.Threads;
+import jakarta.jms.BytesMessage;
+import jakarta.jms.Connection;
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.DeliveryMode;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.MessageConsumer;
+import jakarta.jms.MessageProducer;
+import jakarta.jms.Queue;
+import jakarta.jms.Session;
+import lombok.Getter;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static java.lang.System.out;
+
+/**
+ * Drives a queue with a configurable load and records end-to-end latency, for soak tests and for
+ * sizing the consumer fleet.
+ *
+ * <p>Producers send at a fixed total rate of {@code loadgen.rate} messages per second, spread
+ * evenly over {@code loadgen.producers} threads. The load is open-loop: each message has an
+ * intended send time on a fixed schedule, and a producer that falls behind sends immediately
+ * rather than pushing the schedule back. The intended time is placed in the message, so a stall
+ * anywhere delays the measured latency of every message scheduled during it, instead of being
+ * hidden as it would with a closed loop (coordinated omission). With a rate of 0 producers send
+ * as fast as they can. Payloads are random bytes of sizes drawn from {@code loadgen.message-size}:
+ * a fixed size such as {@code 1024}, a uniform range such as {@code 256-4096}, or a log-normal
+ * distribution such as {@code lognormal:1024:0.5} (median and sigma).</p>
+ *
+ * <p>{@code loadgen.consumers} threads receive on sessions of their own, acknowledging as
+ * {@code solace.consumer.ack.mode} says, and record the time from the intended send time to the
+ * receipt of every message in an HdrHistogram. Timestamps are wall-clock based, so producers and
+ * consumers may run in different processes, with either count set to 0, as long as the clocks of
+ * their hosts are synchronized. Every {@code loadgen.report-interval-ms} the rates and latencies of
+ * the last interval are printed; after {@code loadgen.duration-s} the producers stop, the
+ * consumers drain what is left for at most {@code loadgen.drain-timeout-ms}, and the latency
+ * distribution after the first {@code loadgen.warmup-s} is printed. With
+ * {@code loadgen.histogram-log} the interval histograms are also written to an HdrHistogram log
+ * file for plotting.</p>
+ *
+ * <p>Run it against the broker configured in {@code application.properties}, such as the Solace
+ * broker of {@code src/main/docker/docker-compose.yml}, with
+ * {@code java -cp "target/quarkus-app/app/*:target/quarkus-app/lib/main/*"
+ * com.scalefocus.mile.jms.auth.poc.consumer.LoadGenerator loadgen.rate=5000 ...}; every argument
+ * of the form {@code name=value} overrides a property.</p>
+ */
+public final class LoadGenerator {
+
+    static final String SENT_AT = "LoadGenSentAt";
+
+    private static final String PROPERTIES_FILE_NAME = "src/main/resources/application.properties";
+
+    private static final String QUEUE = "loadgen.queue";
+    private static final String PRODUCERS = "loadgen.producers";
+    private static final String CONSUMERS = "loadgen.consumers";
+    private static final String RATE = "loadgen.rate";
+    private static final String DURATION_S = "loadgen.duration-s";
+    private static final String WARMUP_S = "loadgen.warmup-s";
+    private static final String MESSAGE_SIZE = "loadgen.message-size";
+    private static final String PERSISTENT = "loadgen.persistent";
+    private static final String REPORT_INTERVAL_MS = "loadgen.report-interval-ms";
+    private static final String DRAIN_TIMEOUT_MS = "loadgen.drain-timeout-ms";
+    private static final String HISTOGRAM_LOG = "loadgen.histogram-log";
+
+    private static final long EPOCH_NANOS_AT_START = System.currentTimeMillis() * 1_000_000L;
+    private static final long NANO_TIME_AT_START = System.nanoTime();
+
+    private final ConnectionFactory connectionFactory;
+    private final String queueName;
+    private final int producers;
+    private final int consumers;
+    private final double rate;
+    private final long durationNanos;
+    private final long warmupNanos;
+    private final SizeDistribution sizes;
+    private final boolean persistent;
+    private final long reportIntervalMillis;
+    private final long drainTimeoutNanos;
+    private final String histogramLog;
+    private final ConsumerSettings consumerSettings;
+
+    private final Recorder endToEnd = new Recorder(3);
+    private final Recorder sendLatency = new Recorder(3);
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private volatile long lastReceivedNanos = System.nanoTime();
+    private volatile boolean consuming = true;
+
+    /**
+     * Constructs a new {@code LoadGenerator}.
+     *
+     * @param connectionFactory the factory of the producers' and the consumers' connections
+     * @param properties        the load and the consumer configuration
+     */
+    public LoadGenerator(ConnectionFactory connectionFactory, Properties properties) {
+        this.connectionFactory = connectionFactory;
+        this.queueName = properties.getProperty(QUEUE, properties.getProperty("solace.queue.data", "loadgen"));
+        this.producers = Integer.parseInt(properties.getProperty(PRODUCERS, "1"));
+        this.consumers = Integer.parseInt(properties.getProperty(CONSUMERS, "1"));
+        this.rate = Double.parseDouble(properties.getProperty(RATE, "1000"));
+        this.durationNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(properties.getProperty(DURATION_S, "60")));
+        this.warmupNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(properties.getProperty(WARMUP_S, "10")));
+        this.sizes = SizeDistribution.parse(properties.getProperty(MESSAGE_SIZE, "1024"));
+        this.persistent = Boolean.parseBoolean(properties.getProperty(PERSISTENT, "true"));
+        this.reportIntervalMillis = Math.max(100, Long.parseLong(properties.getProperty(REPORT_INTERVAL_MS, "1000")));
+        this.drainTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(
+                Long.parseLong(properties.getProperty(DRAIN_TIMEOUT_MS, "10000")));
+        this.histogramLog = properties.getProperty(HISTOGRAM_LOG);
+        this.consumerSettings = new ConsumerSettings(properties);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Properties properties = new Properties();
+        File propertiesFile = new File(PROPERTIES_FILE_NAME);
+        if (propertiesFile.isFile()) {
+            properties = MessageConsumerExample.loadProperties(propertiesFile);
+        } else {
+            try (InputStream defaults = LoadGenerator.class.getResourceAsStream("/application.properties")) {
+                if (defaults != null) {
+                    properties.load(defaults);
+                }
+            }
+            MessageConsumerExample.resolveEnvironment(properties);
+        }
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                out.printf("Ignoring argument [%1$s], expected name=value%n", arg);
+                continue;
+            }
+            properties.setProperty(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+
+        ConnectionFactory connectionFactory = new BrokerClientConfig(properties).createConnectionFactory();
+        if (connectionFactory == null) {
+            out.println("Cannot create connection factory");
+            System.exit(3);
+        }
+        Result result = new LoadGenerator(connectionFactory, properties).run();
+        System.exit(result.getErrors() == 0 ? 0 : 1);
+    }
+
+    /**
+     * Runs the load until the configured duration has passed and the consumers have drained the
+     * queue, printing interval and final results.
+     *
+     * @return the counts and the latency distributions after the warm-up
+     * @throws JMSException         if the connections cannot be established
+     * @throws InterruptedException if interrupted while waiting for the load to finish
+     */
+    public Result run() throws JMSException, InterruptedException {
+        out.printf("Load: %d producers at %s msg/s, %d consumers (%s), messages of %s bytes, on %s for %d s%n",
+                producers, rate > 0 ? String.format(Locale.ROOT, "%.0f", rate) : "max", consumers,
+                consumerSettings.getAcknowledgementMode().name().toLowerCase(Locale.ROOT), sizes, queueName,
+                TimeUnit.NANOSECONDS.toSeconds(durationNanos));
+
+        Histogram endToEndTotal = new Histogram(3);
+        Histogram sendTotal = new Histogram(3);
+        Connection consumerConnection = consumers > 0 ? connectionFactory.createConnection() : null;
+        Connection producerConnection = producers > 0 ? connectionFactory.createConnection() : null;
+        PrintStream logStream = null;
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "loadgen-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long start = System.nanoTime();
+        try {
+            List<Thread> consumerThreads = new ArrayList<>();
+            if (consumerConnection != null) {
+                consumerConnection.start();
+                for (int i = 0; i < consumers; i++) {
+                    consumerThreads.add(startThread("loadgen-consumer-" + i,
+                            consume(consumerConnection.createSession(false,
+                                    consumerSettings.getAcknowledgementMode().sessionMode()), i)));
+                }
+            }
+            List<Session> producerSessions = new ArrayList<>();
+            for (int i = 0; i < producers; i++) {
+                producerSessions.add(producerConnection.createSession(false, Session.AUTO_ACKNOWLEDGE));
+            }
+
+            // the schedule starts once the clients are connected, so that connecting is not measured
+            start = System.nanoTime();
+            long measureFrom = start + warmupNanos;
+            long end = start + durationNanos;
+            HistogramLogWriter logWriter = null;
+            if (histogramLog != null) {
+                logStream = new PrintStream(histogramLog);
+                logWriter = new HistogramLogWriter(logStream);
+                logWriter.outputLogFormatVersion();
+                logWriter.outputStartTime(TimeUnit.NANOSECONDS.toMillis(epochNanos(start)));
+                logWriter.outputLegend();
+            }
+            Interval interval = new Interval(start, measureFrom, endToEndTotal, sendTotal, logWriter);
+            reporter.scheduleAtFixedRate(interval::report, reportIntervalMillis, reportIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+            List<Thread> producerThreads = new ArrayList<>();
+            for (int i = 0; i < producers; i++) {
+                producerThreads.add(startThread("loadgen-producer-" + i,
+                        produce(producerSessions.get(i), i, start, end)));
+            }
+
+            for (Thread thread : producerThreads) {
+                thread.join();
+            }
+            if (producerThreads.isEmpty()) {
+                TimeUnit.NANOSECONDS.sleep(Math.max(0, end - System.nanoTime()));
+            }
+            awaitDrained();
+            consuming = false;
+            for (Thread thread : consumerThreads) {
+                thread.join();
+            }
+            reporter.shutdown();
+            reporter.awaitTermination(reportIntervalMillis, TimeUnit.MILLISECONDS);
+            interval.report();
+        } catch (FileNotFoundException e) {
+            throw new IllegalArgumentException("Cannot write the histogram log " + histogramLog, e);
+        } finally {
+            consuming = false;
+            reporter.shutdownNow();
+            close(producerConnection);
+            close(consumerConnection);
+            if (logStream != null) {
+                logStream.close();
+            }
+        }
+
+        Result result = new Result(sent.sum(), received.sum(), errors.sum(), System.nanoTime() - start,
+                endToEndTotal, sendTotal);
+        result.print(out);
+        return result;
+    }
+
+    private static Thread startThread(String name, Runnable task) {
+        Thread thread = Threads.newThread(name, false, task);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Sends on a fixed schedule until the end of the run. The producers' schedules are offset
+     * against each other, so that together they send evenly spaced messages.
+     */
+    private Runnable produce(Session session, int index, long start, long end) {
+        return () -> {
+            SplittableRandom random = new SplittableRandom(index);
+            byte[] payload = new byte[sizes.max()];
+            random.nextBytes(payload);
+            long intervalNanos = rate > 0 ? Math.round(1e9 * producers / rate) : 0;
+            long intended = start + intervalNanos * index / Math.max(1, producers);
+            try (session) {
+                Queue queue = session.createQueue(queueName);
+                MessageProducer producer = session.createProducer(queue);
+                producer.setDeliveryMode(persistent ? DeliveryMode.PERSISTENT : DeliveryMode.NON_PERSISTENT);
+                producer.setDisableMessageTimestamp(true);
+                while (true) {
+                    if (intervalNanos == 0) {
+                        intended = System.nanoTime();
+                    }
+                    if (intended - end >= 0) {
+                        break;
+                    }
+                    waitUntil(intended);
+                    BytesMessage message = session.createBytesMessage();
+                    message.writeBytes(payload, 0, sizes.next(random));
+                    message.setLongProperty(SENT_AT, epochNanos(intended));
+                    try {
+                        producer.send(message);
+                        sent.increment();
+                        sendLatency.recordValue(Math.max(0, System.nanoTime() - intended));
+                    } catch (JMSException e) {
+                        errors.increment();
+                    }
+                    intended += intervalNanos;
+                }
+            } catch (JMSException e) {
+                errors.increment();
+                out.printf("Producer %d failed: %s%n", index, e);
+            }
+        };
+    }
+
+    private Runnable consume(Session session, int index) {
+        return () -> {
+            try (session) {
+                MessageConsumer consumer = session.createConsumer(session.createQueue(queueName));
+                Acknowledger acknowledger = Acknowledger.create(consumerSettings, session,
+                        ClientMetrics.disabled().ackTimer(queueName, index));
+                while (consuming) {
+                    Message message = consumer.receive(acknowledger.receiveTimeout(100));
+                    if (message == null) {
+                        acknowledger.idle();
+                        continue;
+                    }
+                    long now = epochNanos(System.nanoTime());
+                    lastReceivedNanos = System.nanoTime();
+                    received.increment();
+                    if (message.propertyExists(SENT_AT)) {
+                        endToEnd.recordValue(Math.max(0, now - message.getLongProperty(SENT_AT)));
+                    }
+                    acknowledger.processed(message);
+                }
+                acknowledger.flush();
+            } catch (JMSException e) {
+                errors.increment();
+                out.printf("Consumer %d failed: %s%n", index, e);
+            }
+        };
+    }
+
+    /**
+     * Waits until the consumers have received every message sent by this process, or have not
+     * received anything for the drain timeout.
+     */
+    private void awaitDrained() throws InterruptedException {
+        if (consumers == 0) {
+            return;
+        }
+        lastReceivedNanos = System.nanoTime();
+        while ((producers == 0 || received.sum() < sent.sum())
+                && System.nanoTime() - lastReceivedNanos < drainTimeoutNanos) {
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+    }
+
+    /**
+     * Parks until the given {@link System#nanoTime()}, spinning for the last few microseconds,
+     * which parking cannot resolve.
+     */
+    private static void waitUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            if (remaining > 50_000) {
+                LockSupport.parkNanos(remaining - 50_000);
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    private static long epochNanos(long nanoTime) {
+        return EPOCH_NANOS_AT_START + (nanoTime - NANO_TIME_AT_START);
+    }
+
+    private static void close(Connection connection) {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (JMSException ignored) {}
+        }
+    }
+
+    /**
+     * Prints the rates and latencies of the interval since the last report, and adds its
+     * histograms to the totals if it ended after the warm-up. Only called by the reporter thread,
+     * and once more after it stopped.
+     */
+    private final class Interval {
+
+        private final long start;
+        private final long measureFrom;
+        private final Histogram endToEndTotal;
+        private final Histogram sendTotal;
+        private final HistogramLogWriter logWriter;
+        private Histogram endToEndInterval;
+        private Histogram sendInterval;
+        private long lastReport;
+        private long lastSent;
+        private long lastReceived;
+
+        Interval(long start, long measureFrom, Histogram endToEndTotal, Histogram sendTotal,
+                 HistogramLogWriter logWriter) {
+            this.start = start;
+            this.lastReport = start;
+            this.measureFrom = measureFrom;
+            this.endToEndTotal = endToEndTotal;
+            this.sendTotal = sendTotal;
+            this.logWriter = logWriter;
+        }
+
+        synchronized void report() {
+            long now = System.nanoTime();
+            double seconds = Math.max(1e-9, (now - lastReport) / 1e9);
+            endToEndInterval = endToEnd.getIntervalHistogram(endToEndInterval);
+            sendInterval = sendLatency.getIntervalHistogram(sendInterval);
+            long sentNow = sent.sum();
+            long receivedNow = received.sum();
+            boolean warmingUp = now - measureFrom < 0;
+            out.printf(Locale.ROOT, "%7.1f s%s  sent %9.0f/s  received %9.0f/s  end-to-end p50 %8.3f  p99 %8.3f"
+                            + "  p99.9 %8.3f  max %8.3f ms%n",
+                    (now - start) / 1e9, warmingUp ? " (warm-up)" : "", (sentNow - lastSent) / seconds,
+                    (receivedNow - lastReceived) / seconds, millis(endToEndInterval, 50), millis(endToEndInterval, 99),
+                    millis(endToEndInterval, 99.9), endToEndInterval.getMaxValue() / 1e6);
+            if (!warmingUp) {
+                endToEndTotal.add(endToEndInterval);
+                sendTotal.add(sendInterval);
+            }
+            if (logWriter != null) {
+                endToEndInterval.setStartTimeStamp(TimeUnit.NANOSECONDS.toMillis(epochNanos(lastReport)));
+                endToEndInterval.setEndTimeStamp(TimeUnit.NANOSECONDS.toMillis(epochNanos(now)));
+                logWriter.outputIntervalHistogram(endToEndInterval);
+            }
+            lastReport = now;
+            lastSent = sentNow;
+            lastReceived = receivedNow;
+        }
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1e6;
+    }
+
+    /**
+     * The outcome of a run: the message counts and the latency distributions in nanoseconds,
+     * without the warm-up.
+     */
+    @Getter
+    public static final class Result {
+
+        private final long sent;
+        private final long received;
+        private final long errors;
+        private final long elapsedNanos;
+        private final Histogram endToEnd;
+        private final Histogram sendLatency;
+
+        Result(long sent, long received, long errors, long elapsedNanos, Histogram endToEnd, Histogram sendLatency) {
+            this.sent = sent;
+            this.received = received;
+            this.errors = errors;
+            this.elapsedNanos = elapsedNanos;
+            this.endToEnd = endToEnd;
+            this.sendLatency = sendLatency;
+        }
+
+        void print(PrintStream stream) {
+            double seconds = elapsedNanos / 1e9;
+            stream.printf(Locale.ROOT, "Sent %d (%.0f/s), received %d (%.0f/s), %d errors in %.1f s%n",
+                    sent, sent / seconds, received, received / seconds, errors, seconds);
+            if (sendLatency.getTotalCount() > 0) {
+                stream.printf(Locale.ROOT, "Send latency from the intended send time: p50 %.3f  p99 %.3f  p99.9 %.3f"
+                                + "  max %.3f ms%n", millis(sendLatency, 50), millis(sendLatency, 99),
+                        millis(sendLatency, 99.9), sendLatency.getMaxValue() / 1e6);
+            }
+            if (endToEnd.getTotalCount() > 0) {
+                stream.println("End-to-end latency distribution in milliseconds:");
+                endToEnd.outputPercentileDistribution(stream, 5, 1e6);
+            }
+        }
+    }
+
+    /**
+     * The distribution payload sizes are drawn from.
+     */
+    abstract static class SizeDistribution {
+
+        private static final int MAX_SIZE = 16 * 1024 * 1024;
+
+        /**
+         * Parses a distribution: {@code N} for a fixed size, {@code MIN-MAX} for a uniform
+         * range, or {@code lognormal:MEDIAN:SIGMA} for a log-normal distribution capped at 16
+         * times its median.
+         *
+         * @param value the distribution's description
+         * @return the distribution
+         * @throws IllegalArgumentException if the description cannot be parsed
+         */
+        static SizeDistribution parse(String value) {
+            String spec = value.trim().toLowerCase(Locale.ROOT);
+            try {
+                if (spec.startsWith("lognormal:")) {
+                    String[] parts = spec.substring("lognormal:".length()).split(":");
+                    int median = size(parts[0]);
+                    double sigma = Double.parseDouble(parts[1]);
+                    int max = (int) Math.min(MAX_SIZE, 16L * median);
+                    return new SizeDistribution(max, spec) {
+                        @Override
+                        int next(SplittableRandom random) {
+                            double gaussian = gaussian(random);
+                            return (int) Math.max(0, Math.min(max, Math.round(median * Math.exp(sigma * gaussian))));
+                        }
+                    };
+                }
+                int dash = spec.indexOf('-');
+                if (dash > 0) {
+                    int min = size(spec.substring(0, dash));
+                    int max = size(spec.substring(dash + 1));
+                    if (max < min) {
+                        throw new IllegalArgumentException("Empty message size range " + value);
+                    }
+                    return new SizeDistribution(max, min + "-" + max) {
+                        @Override
+                        int next(SplittableRandom random) {
+                            return min + random.nextInt(max - min + 1);
+                        }
+                    };
+                }
+                int fixed = size(spec);
+                return new SizeDistribution(fixed, Integer.toString(fixed)) {
+                    @Override
+                    int next(SplittableRandom random) {
+                        return fixed;
+                    }
+                };
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Invalid message size distribution " + value, e);
+            }
+        }
+
+        private static int size(String value) {
+            int size = Integer.parseInt(value.trim());
+            if (size < 0 || size > MAX_SIZE) {
+                throw new IllegalArgumentException("Message size " + size + " out of range");
+            }
+            return size;
+        }
+
+        private static double gaussian(SplittableRandom random) {
+            // Box-Muller, as SplittableRandom has no nextGaussian() before Java 17
+            double u = 1.0 - random.nextDouble();
+            return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * random.nextDouble());
+        }
+
+        private final int max;
+        private final String description;
+
+        private SizeDistribution(int max, String description) {
+            this.max = max;
+            this.description = description;
+        }
+
+        /**
+         * Draws the size of the next payload.
+         *
+         * @param random the calling thread's source of randomness
+         * @return the size in bytes, at most {@link #max()}
+         */
+        abstract int next(SplittableRandom random);
+
+        /**
+         * Returns the largest size the distribution draws.
+         *
+         * @return the maximum size in bytes
+         */
+        int max() {
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return description;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.scalefocus.mile.jms.auth.poc.consumer;
 
 import com.scalefocus.mile.jms.auth.poc.core.BrokerClientConfig;
+import com.scalefocus.mile.jms.auth.poc.core.ClientMetrics;
+import com.scalefocus.mile.jms.auth.poc.core.Threads;
 import jakarta.jms.*;
 import lombok.NonNull;
 
@@ -13,14 +15,14 @@ import java.util.concurrent.CountDownLatch;
 import static java.lang.System.out;
 
 public class MessageConsumerExample {
-    private static final int NUM_CLIENT_THREADS = 1;
     private static final String PROPERTIES_FILE_NAME = "src/main/resources/application.properties";
     private static final int RETURN_CODE_SUCCESS = 0;
     private static final int RETURN_CODE_ERROR_CONSUMER_CONNECTION = 1;
     private static final int RETURN_CODE_ERROR_PROPERTIES = 2;
     private static final int RETURN_CODE_ERROR_CONNECTION_FACTORY = 3;
 
-    private final CountDownLatch latch = new CountDownLatch(NUM_CLIENT_THREADS);
+    private CountDownLatch latch;
+    private RetryRouter retryRouter;
 
     public static void main(String[] args) {
         out.println("Starting up...");
@@ -47,10 +49,13 @@ public class MessageConsumerExample {
         File propertiesFile = new File(PROPERTIES_FILE_NAME);
         String queueName;
         BrokerClientConfig messageBrokerConfig;
+        ConsumerSettings consumerSettings;
+        Properties solasProperties;
         try {
-            Properties solasProperties = loadProperties(propertiesFile);
+            solasProperties = loadProperties(propertiesFile);
             queueName = solasProperties.getProperty("solace.queue.data");
             messageBrokerConfig = new BrokerClientConfig(solasProperties);
+            consumerSettings = new ConsumerSettings(solasProperties);
         } catch (IOException e) {
             out.printf("Error, cannot load Solace properties from file: [%1$s], error: %2$s %n",
                     propertiesFile.getAbsolutePath(), e);
@@ -64,51 +69,65 @@ public class MessageConsumerExample {
             out.println("Cannot create connection factory");
             return RETURN_CODE_ERROR_CONNECTION_FACTORY;
         }
+        retryRouter = new RetryRouter(connectionFactory, solasProperties);
 
         // Prepare the consumer of a queue
 
         MessageConsumerProvider consumerProvider;
         try {
-            consumerProvider = new MessageConsumerProvider(connectionFactory, queueName);
+            consumerProvider = new MessageConsumerProvider(connectionFactory, queueName, consumerSettings);
             consumerProvider.establishBrokerConnection();
         } catch (JMSException e) {
             out.printf("Error, cannot establish connection or create consumer: %1$s%n", e);
             return RETURN_CODE_ERROR_CONSUMER_CONNECTION;
         }
 
-        // Prepare the consumer threads which run and consumes messages
+        // Prepare the consumer threads which run and consumes messages, each on its own session
 
-        Thread[] consumerThreads = new Thread[NUM_CLIENT_THREADS];
-        for (int i = 0 ; i < NUM_CLIENT_THREADS ; ++i) {
+        int numClientThreads = Math.max(1, consumerSettings.getConcurrency());
+        latch = new CountDownLatch(numClientThreads);
+        Thread[] consumerThreads = new Thread[numClientThreads];
+        for (int i = 0 ; i < numClientThreads ; ++i) {
             try {
-                MessageConsumer consumer = consumerProvider.createConsumer(true);
-                consumerThreads[i] = new Thread(createConsumerThreadRunnable(consumer, "consumer_" + i));
+                Session session = consumerProvider.createSession();
+                MessageConsumer consumer = consumerProvider.createConsumer(session);
+                Acknowledger acknowledger = Acknowledger.create(consumerSettings, session,
+                        ClientMetrics.disabled().ackTimer(queueName, i));
+                consumerThreads[i] = Threads.newThread("consumer_" + i, consumerSettings.isVirtualThreads(),
+                        createConsumerThreadRunnable(consumer, acknowledger, "consumer_" + i));
                 consumerThreads[i].start();
             } catch (JMSException e) {
                 consumerThreads[i] = null;
+                latch.countDown();
             }
         }
 
         // Wait for the completion of the consumer threads
 
         latch.await();
+        retryRouter.close();
 
         return RETURN_CODE_SUCCESS;
     }
 
-    private Runnable createConsumerThreadRunnable(MessageConsumer consumer, String consumerId) {
+    private Runnable createConsumerThreadRunnable(MessageConsumer consumer, Acknowledger acknowledger,
+                                                  String consumerId) {
         return () -> {
             out.printf("[%1$s]: Consumer thread started%n", consumerId);
 
             while (!Thread.currentThread().isInterrupted()) {
                 try {
-                    Message message = consumer.receive(1000);
-                    if (message != null) {
-                        int result = onMessage(message, consumerId);
-                        if (result != 0) {
-                            latch.countDown();
-                            break;
-                        }
+                    Message message = consumer.receive(acknowledger.receiveTimeout(1000));
+                    if (message == null) {
+                        acknowledger.idle();
+                        continue;
+                    }
+                    int result = onMessage(message, consumerId);
+                    acknowledger.processed(message);
+                    if (result != 0) {
+                        acknowledger.flush();
+                        latch.countDown();
+                        break;
                     }
                 } catch (JMSException e) {
                     out.printf("[%1$s]: Error: %2$s%n", consumerId, e);
@@ -128,6 +147,8 @@ public class MessageConsumerExample {
             out.printf("[%1$s]: Message received: [%2$s]%n", consumerId, content);
 
             returnCode = content.equalsIgnoreCase("goodbye") ? 1 : 0;
+        } else if (retryRouter.poison(message, new MessageFormatException("Not a text message"))) {
+            out.printf("[%1$s]: Quarantined non-text message.%n", consumerId);
         } else {
             out.printf("[%1$s]: Received non-text message.%n", consumerId);
         }
@@ -143,9 +164,13 @@ public class MessageConsumerExample {
         }
     }
 
-    private static Properties loadProperties(File propertiesFile) throws IOException {
+    static Properties loadProperties(File propertiesFile) throws IOException {
         Properties properties = loadProperties(propertiesFile.getAbsolutePath());
+        resolveEnvironment(properties);
+        return properties;
+    }
 
+    static void resolveEnvironment(Properties properties) {
         // Load system environment variables where needed
         for (String key : properties.stringPropertyNames()) {
             String value = properties.getProperty(key);
@@ -156,8 +181,6 @@ public class MessageConsumerExample {
                 }
             }
         }
-
-        return properties;
     }
 
     private static Properties loadProperties(String fileName) throws IOException {
@@ -1,55 +1,128 @@
 package com.scalefocus.mile.jms.auth.poc.consumer;
 
+import com.scalefocus.mile.jms.auth.poc.core.BacklogEstimator;
+import com.scalefocus.mile.jms.auth.poc.core.Backoff;
+import com.scalefocus.mile.jms.auth.poc.core.ClientMetrics;
+import com.scalefocus.mile.jms.auth.poc.core.ConnectionRoller;
+import com.scalefocus.mile.jms.auth.poc.core.DestinationRegistry;
+import com.scalefocus.mile.jms.auth.poc.core.ReconnectSettings;
+import com.scalefocus.mile.jms.auth.poc.core.RollableConnections;
 import com.scalefocus.mile.jms.auth.poc.core.ThreadSafe;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
 import io.quarkus.arc.Unremovable;
 import io.quarkus.runtime.Startup;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
 import jakarta.jms.*;
+import jakarta.jms.IllegalStateException;
 import lombok.Getter;
-import lombok.Setter;
-import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import java.util.concurrent.CountDownLatch;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * A service for consuming JMS messages from a Message queue. This class establishes
+ * A service for consuming JMS messages from Message queues and topics. This class establishes
  * and maintains a connection to the JMS broker, listens for messages on the configured
- * queue, and processes incoming messages.
+ * destinations, and processes incoming messages.
  *
  * <p>This class is designed to be thread-safe and automatically starts up with the
- * application. It periodically validates the JMS connection and re-establishes it if
- * necessary.</p>
+ * application. A lost connection is reported by its {@code ExceptionListener}; the provider
+ * then suspends the consumer pool, reconnects with the jittered exponential backoff described
+ * by {@link ReconnectSettings} and resumes the pool on the new connection, so that every
+ * worker gets a fresh session and consumer. The connection is also validated periodically,
+ * in case it could not be established at all.</p>
+ *
+ * <p>After the SSL material was reloaded, the {@link ConnectionRoller} rolls the connection: a
+ * replacement is opened, the pool's workers move over to it one at a time and the old
+ * connection is closed, so consumption continues throughout.</p>
+ *
+ * <p>Messages are received by a {@link ConsumerPool} of parallel workers, each with its own
+ * session on the shared connection. Every destination in {@code solace.consumer.destinations},
+ * by default only the default queue, is consumed by a pool of its own with its own concurrency
+ * and prefetch, so a busy destination keeps its workers busy without taking them from the
+ * others. Topics are consumed through a shared subscription. The pools are started by whoever
+ * drives consumption and, when enabled, resized periodically by this provider's scheduler using
+ * worker utilization and the queue backlog reported by the {@link BacklogEstimator}.</p>
+ *
+ * <p>Received messages are processed by the {@link MessageHandlerPipeline}, which hands them to
+ * the registered {@link MessageHandler} beans.</p>
+ *
+ * <p>Connection establishments, failures, the time from losing the connection until a message
+ * was consumed again and the consumer lag measured on every validation are recorded in the
+ * {@link ClientMetrics}.</p>
  */
 @ApplicationScoped
 @Unremovable
 @Startup
 @ThreadSafe
-final class MessageConsumerProvider implements MessageListener {
+final class MessageConsumerProvider implements MessageListener, RollableConnections {
 
     private static final Logger logger = LoggerFactory.getLogger(MessageConsumerProvider.class);
 
     private final ConnectionFactory connectionFactory;
 
+    private final DestinationRegistry destinations;
+
     @Getter
     private final String queueUrl;
 
+    private final ConsumerSettings settings;
+
+    private final BacklogEstimator backlogEstimator;
+
+    private final MessageHandlerPipeline pipeline;
+
+    private final Timer connectionTimer;
+
+    private final Counter connectionFailures;
+
+    private final Map<String, AtomicLong> lags = new LinkedHashMap<>();
+
+    private final Timer recoveryTimer;
+
+    private final ReconnectSettings reconnectSettings;
+
+    private final Backoff backoff;
+
+    private final ScheduledExecutorService reconnector;
+
+    private final AtomicBoolean reconnectPending = new AtomicBoolean();
+
+    private final AtomicLong connectionLostNanos = new AtomicLong();
+
+    private volatile boolean closed;
+
+    private final Map<String, ConsumerPool> consumerPools;
+
     private final AtomicReference<Connection> connection = new AtomicReference<>();
 
+    private final List<Runnable> connectionListeners = new CopyOnWriteArrayList<>();
+
     @Getter
     private Session session;
 
     @Getter
     private ScheduledExecutorService scheduler;
 
-    @Setter
-    private CountDownLatch latch;
+    @Getter
+    private volatile long lastMessageNanos = System.nanoTime();
 
     /**
      * Constructs a new {@code MessageConsumerProvider} with the specified JMS connection factory
@@ -58,25 +131,157 @@ final class MessageConsumerProvider implements MessageListener {
      * @param connectionFactory the JMS connection factory
      * @param solaceQueue       the name of the Solace queue to consume messages from
      */
+    MessageConsumerProvider(ConnectionFactory connectionFactory, String solaceQueue) {
+        this(connectionFactory, solaceQueue, new ConsumerSettings(new Properties()));
+    }
+
+    /**
+     * Constructs a new {@code MessageConsumerProvider} with the specified JMS connection factory,
+     * queue name and consumer settings, estimating the backlog from local counters only,
+     * logging every received message, reconnecting with the default backoff and recording no
+     * metrics.
+     *
+     * @param connectionFactory the JMS connection factory
+     * @param solaceQueue       the name of the Solace queue to consume messages from
+     * @param settings          the consumer configuration
+     */
+    MessageConsumerProvider(ConnectionFactory connectionFactory, String solaceQueue, ConsumerSettings settings) {
+        this(connectionFactory, DestinationRegistry.of(solaceQueue), settings, BacklogEstimator.local(),
+                MessageHandlerPipeline.logging(), new ReconnectSettings(new Properties()), ClientMetrics.disabled());
+    }
+
+    /**
+     * Constructs a new {@code MessageConsumerProvider} with the specified JMS connection factory,
+     * destinations, consumer settings, backlog estimator, handler pipeline, reconnection settings
+     * and metrics.
+     *
+     * @param connectionFactory the JMS connection factory
+     * @param destinations      the registered destinations, including the default queue
+     * @param settings          the consumer configuration, naming the destinations consumed
+     * @param backlogEstimator  the estimator every received message is reported to
+     * @param pipeline          the pipeline every received message is processed by
+     * @param reconnectSettings how lost connections are re-established
+     * @param metrics           the metrics connections, consumption and lag are recorded in
+     */
+    @Inject
     MessageConsumerProvider(
             ConnectionFactory connectionFactory,
-            @ConfigProperty(name = "solace.queue.data") String solaceQueue) {
+            DestinationRegistry destinations,
+            ConsumerSettings settings,
+            BacklogEstimator backlogEstimator,
+            MessageHandlerPipeline pipeline,
+            ReconnectSettings reconnectSettings,
+            ClientMetrics metrics) {
         this.connectionFactory = connectionFactory;
-        this.queueUrl = solaceQueue;
-        initialize();
+        this.destinations = destinations;
+        this.queueUrl = destinations.getDefault().getKey();
+        this.settings = settings;
+        this.backlogEstimator = backlogEstimator;
+        this.pipeline = pipeline;
+        this.connectionTimer = metrics.connectionTimer("consumer");
+        this.connectionFailures = metrics.connectionFailures("consumer");
+        this.recoveryTimer = metrics.recoveryTimer("consumer");
+        this.reconnectSettings = reconnectSettings;
+        this.backoff = reconnectSettings.newBackoff();
+        List<String> consumed = settings.getConsumedDestinations();
+        Map<String, ConsumerPool> pools = new LinkedHashMap<>();
+        for (String key : consumed.isEmpty() ? List.of(queueUrl) : consumed) {
+            DestinationRegistry.Endpoint endpoint = destinations.get(key);
+            String group = endpoint.getKey();
+            lags.put(group, metrics.lagGauge(group));
+            pools.put(group, new ConsumerPool(group, this::createSession,
+                    groupSession -> destinations.createConsumer(groupSession, endpoint),
+                    message -> dispatch(group, message), settings, () -> estimateBacklog(endpoint), metrics));
+        }
+        for (String key : settings.getGroupConcurrencyKeys()) {
+            if (!pools.containsKey(key)) {
+                throw new IllegalArgumentException("solace.consumer.group-concurrency names " + key
+                        + ", which is not in solace.consumer.destinations");
+            }
+        }
+        for (String key : pipeline.getGroupLaneKeys()) {
+            if (!pools.containsKey(key)) {
+                throw new IllegalArgumentException("solace.consumer.handler.group-lanes or group-lane-capacity names "
+                        + key + ", which is not in solace.consumer.destinations");
+            }
+        }
+        this.consumerPools = Collections.unmodifiableMap(pools);
+        this.reconnector = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "consumer-reconnect-" + queueUrl);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns the pool of the first consumer group, which consumes the default queue unless
+     * {@code solace.consumer.destinations} names other destinations.
+     *
+     * @return the first consumer pool
+     */
+    ConsumerPool getConsumerPool() {
+        return consumerPools.values().iterator().next();
     }
 
     /**
-     * Initializes the JMS consumer service by establishing a connection to the JMS broker
-     * and scheduling periodic validation of the connection.
+     * Returns the pool consuming a destination.
+     *
+     * @param destination the key of the consumed destination
+     * @return the destination's consumer pool, or {@code null} if it is registered but not consumed
+     * @throws IllegalArgumentException if no destination is registered under that key
+     */
+    ConsumerPool getConsumerPool(String destination) {
+        return consumerPools.get(destinations.get(destination).getKey());
+    }
+
+    /**
+     * Returns the pools of every consumer group, in the order the destinations were configured.
+     *
+     * @return the consumer pools
+     */
+    Collection<ConsumerPool> getConsumerPools() {
+        return consumerPools.values();
+    }
+
+    /**
+     * Returns the estimated number of messages waiting on the consumed queues.
+     *
+     * @return the estimated backlog, summed over every consumer group
+     */
+    long estimateBacklog() {
+        long backlog = 0;
+        for (ConsumerPool pool : consumerPools.values()) {
+            backlog += estimateBacklog(destinations.get(pool.getDestination()));
+        }
+        return backlog;
+    }
+
+    /**
+     * Returns the estimated backlog of a queue. A shared topic subscription is not sized, since
+     * the broker holds it only while its consumers are attached.
+     */
+    private long estimateBacklog(DestinationRegistry.Endpoint endpoint) {
+        return endpoint.isTopic() ? 0 : backlogEstimator.estimate(endpoint.getKey());
+    }
+
+    /**
+     * Initializes the JMS consumer service by scheduling periodic validation of the connection
+     * and establishing a connection to the JMS broker, retrying with backoff if that fails. With
+     * {@code solace.startup.background-connect} the connection is established on the reconnect
+     * thread, so the application starts without waiting for the broker.
      */
     @PostConstruct
     void initialize() {
+        scheduleConnectionValidation();
+        if (reconnectSettings.isBackgroundConnect()) {
+            scheduleReconnect(0);
+            return;
+        }
         try {
             establishBrokerConnection();
-            scheduleConnectionValidation();
         } catch (JMSException e) {
             logger.error("Error initializing JMS consumer: {}", e.getMessage());
+            scheduleReconnect(backoff.nextDelayMillis());
         }
     }
 
@@ -91,32 +296,139 @@ final class MessageConsumerProvider implements MessageListener {
         if (connection.get() == null) {
             synchronized (this) {
                 if (connection.get() == null) {
-                    Connection newConnection = null;
-                    try {
-                        newConnection = connectionFactory.createConnection();
-                        session = newConnection.createSession(false, Session.AUTO_ACKNOWLEDGE);
-                        newConnection.start();
-                        connection.set(newConnection);
-                    } catch (JMSException e) {
-                        if (newConnection != null) {
-                            newConnection.close();
-                        }
-                        throw e;
-                    }
+                    Connection newConnection = openConnection();
+                    session = newConnection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+                    connection.set(newConnection);
                 }
             }
         }
     }
 
     /**
-     * Creates a JMS consumer for the specified queue and sets this service as the message listener.
+     * Opens and starts a connection whose failures are reported to
+     * {@link #onConnectionFailure(Connection, JMSException)}.
+     */
+    private Connection openConnection() throws JMSException {
+        Connection newConnection = null;
+        long started = System.nanoTime();
+        try {
+            newConnection = connectionFactory.createConnection();
+            Connection established = newConnection;
+            newConnection.setExceptionListener(e -> onConnectionFailure(established, e));
+            newConnection.start();
+            connectionTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            return newConnection;
+        } catch (JMSException e) {
+            connectionFailures.increment();
+            if (newConnection != null) {
+                newConnection.close();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Tells whether a connection to the broker is established.
+     *
+     * @return {@code true} if consumer sessions can be created
+     */
+    boolean isConnected() {
+        return connection.get() != null;
+    }
+
+    /**
+     * Registers a task run on the reconnect thread whenever a connection has been established in
+     * the background, including the first one with {@code solace.startup.background-connect}.
+     *
+     * @param listener the task to run
+     */
+    void addConnectionListener(Runnable listener) {
+        connectionListeners.add(listener);
+    }
+
+    @Override
+    public int connectionCount() {
+        return 1;
+    }
+
+    /**
+     * Replaces the established connection with a new one and moves the consumer pool's workers
+     * over one at a time before closing the old connection. Workers drain within their receive
+     * timeout, so the drain timeout is not needed. If the workers cannot be moved, both
+     * connections are dropped and the provider reconnects as after a lost connection.
+     */
+    @Override
+    public synchronized void roll(int index, long drainTimeoutMillis) throws JMSException {
+        Connection replaced = connection.get();
+        if (closed || replaced == null) {
+            return;
+        }
+        Connection replacement = openConnection();
+        Session replacementSession;
+        try {
+            replacementSession = replacement.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        } catch (JMSException e) {
+            closeQuietly(replacement);
+            throw e;
+        }
+        if (!connection.compareAndSet(replaced, replacement)) {
+            closeQuietly(replacement);
+            return;
+        }
+        Session replacedSession = session;
+        session = replacementSession;
+        try {
+            for (ConsumerPool pool : consumerPools.values()) {
+                pool.roll();
+            }
+            logger.info("JMS connection for {} rolled", queueUrl);
+        } catch (JMSException | RuntimeException e) {
+            if (connection.compareAndSet(replacement, null)) {
+                suspendPools();
+                closeConnection();
+                closeQuietly(replacement);
+                scheduleReconnect(0);
+            }
+            throw e;
+        } finally {
+            closeQuietly(replacedSession);
+            closeQuietly(replaced);
+        }
+    }
+
+    /**
+     * Opens a new session on the shared connection, for a consumer that needs one of its own.
+     *
+     * @return a new session using the configured acknowledgement mode
+     * @throws JMSException if the connection is not established or the session cannot be created
+     */
+    Session createSession() throws JMSException {
+        Connection c = connection.get();
+        if (c == null) {
+            throw new IllegalStateException("JMS connection is not established");
+        }
+        return c.createSession(false, settings.getAcknowledgementMode().sessionMode());
+    }
+
+    /**
+     * Creates a JMS consumer for the default queue on the given session.
+     *
+     * @param consumerSession the session the consumer is created on
+     * @return the created {@code MessageConsumer}
+     * @throws JMSException if an error occurs while creating the consumer
+     */
+    MessageConsumer createConsumer(Session consumerSession) throws JMSException {
+        return destinations.createConsumer(consumerSession, destinations.getDefault());
+    }
+
+    /**
+     * Creates a JMS consumer for the default queue and sets this service as the message listener.
      *
      * @return the created {@code MessageConsumer}
      * @throws JMSException if an error occurs while creating the consumer
      */
     MessageConsumer createConsumer(boolean async) throws JMSException {
-        Queue queue = session.createQueue(queueUrl);
-        MessageConsumer consumer = session.createConsumer(queue);
+        MessageConsumer consumer = destinations.createConsumer(session, destinations.getDefault());
         if (!async) {
             consumer.setMessageListener(this);
         }
@@ -125,85 +437,194 @@ final class MessageConsumerProvider implements MessageListener {
 
     /**
      * Schedules periodic validation of the JMS connection using a single-threaded scheduled executor
-     * service. The connection is validated every 5 minutes.
+     * service. The connection is validated every {@code solace.reconnect.validation-interval-ms}.
      */
     private synchronized void scheduleConnectionValidation() {
+        if (scheduler != null) {
+            return;
+        }
         scheduler = Executors.newSingleThreadScheduledExecutor();
-        scheduler.scheduleAtFixedRate(this::validateConnection, 5, 5, TimeUnit.MINUTES);
+        long validationInterval = reconnectSettings.getValidationIntervalMillis();
+        scheduler.scheduleAtFixedRate(this::validateConnection, validationInterval, validationInterval,
+                TimeUnit.MILLISECONDS);
+        if (settings.isAutoscaleEnabled()) {
+            long interval = settings.getAutoscaleIntervalMillis();
+            for (ConsumerPool pool : consumerPools.values()) {
+                scheduler.scheduleAtFixedRate(pool::autoscale, interval, interval, TimeUnit.MILLISECONDS);
+            }
+        }
     }
 
     /**
-     * Validates the JMS connection and re-establishes it if necessary. This method is called
-     * periodically by the scheduled executor service.
+     * Reports the consumer lag and validates the JMS connection, re-establishing it if
+     * necessary. This method is called periodically by the scheduled executor service.
+     * Connections lost after they were established are normally replaced long before, from
+     * their {@code ExceptionListener}.
      */
     private void validateConnection() {
+        for (ConsumerPool pool : consumerPools.values()) {
+            lags.get(pool.getDestination()).set(estimateBacklog(destinations.get(pool.getDestination())));
+        }
+        if (connection.get() == null) {
+            logger.warn("JMS connection is not established. Reconnecting...");
+            scheduleReconnect(0);
+        }
+    }
+
+    /**
+     * Called by a connection's {@code ExceptionListener}, possibly several times for one
+     * failure. The first call for the current connection discards it and starts reconnecting at
+     * once. Runs on a qpid-jms thread, so the failed connection is closed and replaced on the
+     * reconnect thread.
+     */
+    private void onConnectionFailure(Connection failed, JMSException e) {
+        if (closed || !connection.compareAndSet(failed, null)) {
+            return;
+        }
+        connectionFailures.increment();
+        connectionLostNanos.compareAndSet(0, System.nanoTime());
+        logger.warn("JMS connection for {} lost: {}", queueUrl, e.getMessage());
         try {
-            synchronized (this) {
-                if (connection.get() == null || session == null) {
-                    logger.warn("JMS connection/session is null or inactive. Reinitializing...");
-                    cleanup();
-                    establishBrokerConnection();
-                }
-            }
-        } catch (JMSException e) {
-            logger.error("Error validating/reinitializing JMS connection/session", e);
-            synchronized (this) {
-                cleanup();
+            reconnector.execute(() -> closeQuietly(failed));
+        } catch (RejectedExecutionException ignored) {
+            // shutting down, cleanup closes what is left
+        }
+        scheduleReconnect(0);
+    }
+
+    private void scheduleReconnect(long delayMillis) {
+        if (closed || !reconnectPending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            reconnector.schedule(this::reconnect, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            reconnectPending.set(false);
+        }
+    }
+
+    /**
+     * Establishes a connection if none is: suspends the consumer pools, closes the session of the
+     * lost connection, connects again and resumes the pools with new sessions. If any step fails,
+     * the next attempt is scheduled after the backoff delay.
+     */
+    private synchronized void reconnect() {
+        reconnectPending.set(false);
+        if (closed || connection.get() != null) {
+            return;
+        }
+        suspendPools();
+        closeConnection();
+        try {
+            establishBrokerConnection();
+            for (ConsumerPool pool : consumerPools.values()) {
+                pool.resume();
             }
-            try {
-                establishBrokerConnection();
-            } catch (JMSException ex) {
-                logger.error("Error reinitializing JMS connection/session", ex);
+            logger.info("Connected to the broker for {} after {} failed attempt(s)", queueUrl, backoff.attempts());
+            backoff.reset();
+            for (Runnable listener : connectionListeners) {
+                listener.run();
             }
+        } catch (JMSException | RuntimeException e) {
+            suspendPools();
+            closeConnection();
+            long delay = backoff.nextDelayMillis();
+            logger.warn("Reconnecting to the broker for {} failed, retrying in {} ms: {}", queueUrl, delay, e.getMessage());
+            scheduleReconnect(delay);
+        }
+    }
+
+    private void suspendPools() {
+        for (ConsumerPool pool : consumerPools.values()) {
+            pool.suspend();
         }
     }
 
     /**
-     * Cleans up JMS resources by closing the consumer, session, and connection,
-     * and shutting down the scheduler. This method is called when the service is destroyed.
+     * Cleans up JMS resources by stopping the consumer pools, closing the session and connection,
+     * and shutting down the schedulers. This method is called when the service is destroyed.
      */
     @PreDestroy
     synchronized void cleanup() {
+        closed = true;
+        for (ConsumerPool pool : consumerPools.values()) {
+            pool.stop();
+        }
+        closeConnection();
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+        reconnector.shutdownNow();
+    }
+
+    private static void closeQuietly(AutoCloseable resource) {
+        try {
+            if (resource != null) {
+                resource.close();
+            }
+        } catch (Exception e) {
+            logger.debug("Error closing JMS resource", e);
+        }
+    }
+
+    private void closeConnection() {
         try {
             if (session != null) {
                 session.close();
             }
 
-            Connection c = connection.get();
+            Connection c = connection.getAndSet(null);
             if (c != null) {
                 c.close();
             }
 
-            if (scheduler != null) {
-                scheduler.shutdown();
-            }
-
         } catch (JMSException e) {
             logger.error("Error closing JMS resources", e);
+        } finally {
+            session = null;
         }
     }
 
     /**
-     * Handles incoming JMS messages. If the message is a {@code TextMessage}, it logs the
-     * message content. Otherwise, it logs a warning indicating a non-text message was received.
+     * Reports a message received from the default queue to the backlog estimator and hands it to
+     * the handler pipeline.
+     *
+     * @param message the received message
+     * @return a stage completed once the message has been processed
+     */
+    CompletionStage<Void> dispatch(Message message) {
+        return dispatch(queueUrl, message);
+    }
+
+    /**
+     * Reports a received message to the backlog estimator and hands it to the handler pipeline.
+     * The first message after a lost connection also completes the recovery measurement.
+     *
+     * @param destination the key of the destination the message was received from
+     * @param message     the received message
+     * @return a stage completed once the message has been processed
+     */
+    CompletionStage<Void> dispatch(String destination, Message message) {
+        lastMessageNanos = System.nanoTime();
+        long lost = connectionLostNanos.get() != 0 ? connectionLostNanos.getAndSet(0) : 0;
+        if (lost != 0) {
+            long recovery = lastMessageNanos - lost;
+            recoveryTimer.record(recovery, TimeUnit.NANOSECONDS);
+            logger.info("Consuming from {} again {} ms after the connection was lost",
+                    destination, TimeUnit.NANOSECONDS.toMillis(recovery));
+        }
+        backlogEstimator.recordDequeued(destination);
+        return pipeline.dispatch(destination, message);
+    }
+
+    /**
+     * Handles incoming JMS messages delivered to a listener by dispatching them to the handler
+     * pipeline.
      *
      * @param message the incoming JMS message
      */
     @Override
     public void onMessage(Message message) {
-        try {
-            if (message instanceof TextMessage) {
-                String messageContent = ((TextMessage) message).getText();
-                logger.info("Received message: {}", messageContent);
-            } else {
-                logger.warn("Received non-text message");
-            }
-        } catch (JMSException e) {
-            logger.error("Error processing JMS message", e);
-        } finally {
-            if (latch != null) {
-                latch.countDown();
-            }
-        }
+        dispatch(message);
     }
-}
\ No newline at end of file
+}
@@ -4,23 +4,32 @@ import com.scalefocus.mile.jms.auth.poc.core.ThreadSafe;
 import io.quarkus.arc.Unremovable;
 import io.quarkus.runtime.Startup;
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
 import jakarta.jms.JMSException;
-import jakarta.jms.MessageConsumer;
-import jakarta.jms.QueueBrowser;
-import jakarta.jms.Session;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Enumeration;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 /**
- * A service that schedules and manages the consumption of messages from a Solace queue.
- * This class uses the {@code MessageConsumerProvider} to establish connections and consume
- * messages, ensuring all messages are processed within a scheduled interval.
+ * A service that schedules and manages the consumption of messages from Solace queues and
+ * topics. This class uses the {@code MessageConsumerProvider} to establish connections and
+ * consume messages through the provider's {@code ConsumerPool}s, one per consumed destination,
+ * so messages are processed by several consumers in parallel.
+ *
+ * <p>In {@code streaming} mode, the default, the pools stay attached to their destinations and
+ * each message is delivered as soon as it arrives, with the consumer prefetch bounding how many
+ * messages are buffered per consumer. If a pool cannot be started, for example while the broker
+ * is unreachable, starting is retried periodically and as soon as the provider has connected.</p>
+ *
+ * <p>In {@code scheduled-drain} mode the pools are attached once per drain interval and
+ * detached again once no message has arrived for the drain idle timeout and the backlog
+ * estimator reports the queues as empty. The queues are never browsed to count their messages.
+ * Drains run on a thread of their own, since waiting for a drain would otherwise hold up the
+ * connection validation, lag reporting and autoscaling on the provider's scheduler.</p>
  */
 @ApplicationScoped
 @Unremovable
@@ -30,41 +39,99 @@ final class MessageConsumerService {
 
     private static final Logger logger = LoggerFactory.getLogger(MessageConsumerService.class);
 
+    private static final int MAX_IDLE_ROUNDS_WITH_BACKLOG = 3;
+
+    private static final long STREAMING_CHECK_INTERVAL_SECONDS = 10;
+
     private final MessageConsumerProvider messageConsumerProvider;
 
-    private MessageConsumer consumer;
+    private final ConsumerSettings settings;
+
+    private ScheduledExecutorService drainer;
 
     /**
      * Constructs a new {@code MessageConsumerService} with the specified message consumer provider.
      *
      * @param messageConsumerProvider the provider to use for consuming messages
+     * @param settings                the consumer configuration
      */
-    MessageConsumerService(MessageConsumerProvider messageConsumerProvider) {
+    MessageConsumerService(MessageConsumerProvider messageConsumerProvider, ConsumerSettings settings) {
         this.messageConsumerProvider = messageConsumerProvider;
+        this.settings = settings;
     }
 
     /**
-     * Schedules the consumption of messages at fixed intervals, starting immediately.
+     * Starts streaming consumption, or schedules drains at fixed intervals starting immediately,
+     * depending on the configured consumption mode.
      */
     @PostConstruct
     void scheduleMessageConsumption() {
         ScheduledExecutorService scheduler = messageConsumerProvider.getScheduler();
-        scheduler.scheduleAtFixedRate(this::consumeMessages, 0, 5, TimeUnit.MINUTES);
+        if (settings.getConsumptionMode() == ConsumerSettings.Mode.STREAMING) {
+            messageConsumerProvider.addConnectionListener(() -> scheduler.execute(this::ensureStreaming));
+            scheduler.scheduleWithFixedDelay(this::ensureStreaming,
+                    0, STREAMING_CHECK_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        } else {
+            drainer = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "consumer-drain");
+                thread.setDaemon(true);
+                return thread;
+            });
+            drainer.scheduleAtFixedRate(this::consumeMessages,
+                    0, settings.getDrainIntervalMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops scheduling drains, interrupting a drain that is waiting for the queues to empty.
+     */
+    @PreDestroy
+    void shutdown() {
+        if (drainer != null) {
+            drainer.shutdownNow();
+        }
+    }
+
+    /**
+     * Starts the consumer pools that are not running yet. Starting a running pool is a no-op,
+     * and a pool that fails to start does not keep the others from starting. Nothing is started
+     * while the provider is still connecting; it calls back once it has connected.
+     */
+    private void ensureStreaming() {
+        if (!messageConsumerProvider.isConnected()) {
+            logger.debug("Not starting streaming consumers, the JMS connection is not established yet");
+            return;
+        }
+        for (ConsumerPool pool : messageConsumerProvider.getConsumerPools()) {
+            try {
+                pool.start();
+            } catch (JMSException | RuntimeException e) {
+                logger.error("Error starting streaming consumers on {}, retrying in {} s: {}",
+                        pool.getDestination(), STREAMING_CHECK_INTERVAL_SECONDS, e.getMessage());
+            }
+        }
     }
 
     /**
-     * Consumes messages from the queue, processing each one and waiting until all messages
-     * are processed before returning.
+     * Consumes messages from the destinations, processing them in parallel and waiting until the
+     * queues have been drained before returning.
      */
     private void consumeMessages() {
+        if (!messageConsumerProvider.isConnected()) {
+            logger.warn("Skipping this drain, the JMS connection is not established");
+            return;
+        }
         try {
-            int queueSize = getQueueSize();
-            CountDownLatch latch = new CountDownLatch(queueSize);
-            messageConsumerProvider.setLatch(latch);
-            consumer = messageConsumerProvider.createConsumer(false);
-            latch.await();
-        } catch (JMSException | InterruptedException e) {
+            logger.debug("Draining {} destination(s), estimated backlog {}",
+                    messageConsumerProvider.getConsumerPools().size(), messageConsumerProvider.estimateBacklog());
+            for (ConsumerPool pool : messageConsumerProvider.getConsumerPools()) {
+                pool.start();
+            }
+            awaitDrained();
+        } catch (JMSException e) {
             logger.error("Error initializing Message message handler service", e);
+        } catch (InterruptedException e) {
+            logger.error("Interrupted while draining messages", e);
             Thread.currentThread().interrupt(); // Restore the interrupted status
         } finally {
             cleanup();
@@ -72,35 +139,35 @@ final class MessageConsumerService {
     }
 
     /**
-     * Retrieves the number of messages currently enqueued in the specified Solace queue.
+     * Waits until no message has been received for the drain idle timeout and the estimated
+     * backlog is zero. If the estimator keeps reporting a backlog that the consumers do not
+     * receive, for example messages held by another client, the run still ends after a few
+     * idle timeouts.
      *
-     * @return the number of messages in the queue
-     * @throws JMSException if an error occurs while browsing the queue
+     * @throws InterruptedException if the waiting thread is interrupted
      */
-    private int getQueueSize() throws JMSException {
-        int count = 0;
-        Session session = messageConsumerProvider.getSession();
-        String queueEndpoint = messageConsumerProvider.getQueueUrl();
-        try (QueueBrowser browser = session.createBrowser(session.createQueue(queueEndpoint))) {
-            Enumeration<?> messages = browser.getEnumeration();
-            while (messages.hasMoreElements()) {
-                messages.nextElement();
-                count++;
+    private void awaitDrained() throws InterruptedException {
+        long started = System.nanoTime();
+        long idleTimeout = TimeUnit.MILLISECONDS.toNanos(settings.getDrainIdleTimeoutMillis());
+        long pollMillis = Math.max(10, Math.min(1000, settings.getDrainIdleTimeoutMillis() / 4));
+        while (true) {
+            Thread.sleep(pollMillis);
+            long lastActivity = Math.max(started, messageConsumerProvider.getLastMessageNanos());
+            long idle = System.nanoTime() - lastActivity;
+            if (idle >= idleTimeout
+                    && (messageConsumerProvider.estimateBacklog() == 0
+                    || idle >= idleTimeout * MAX_IDLE_ROUNDS_WITH_BACKLOG)) {
+                return;
             }
         }
-        return count;
     }
 
     /**
-     * Cleans up JMS resources by closing the consumer.
+     * Cleans up JMS resources by stopping the consumer pools.
      */
     private void cleanup() {
-        try {
-            if (consumer != null) {
-                consumer.close();
-            }
-        } catch (JMSException e) {
-            logger.error("Error closing Message consumer", e);
+        for (ConsumerPool pool : messageConsumerProvider.getConsumerPools()) {
+            pool.stop();
         }
     }
 }
@@ -0,0 +1,51 @@
+package com.scalefocus.mile.jms.auth.poc.consumer;
+
+import jakarta.jms.Message;
+import jakarta.jms.MessageFormatException;
+
+/**
+ * Application code that processes received messages of one {@link MessageType}.
+ *
+ * <p>Handlers are discovered as CDI beans. Every received message runs through the pipeline
+ * decode, {@link #validate validate}, {@link #handle handle} and acknowledge. A message that
+ * cannot be decoded or fails validation is quarantined by the {@link RetryRouter}, or else logged
+ * and acknowledged, since redelivering it would not change the outcome. A message whose handling throws is not considered processed and is
+ * redelivered according to the configured acknowledgement mode.</p>
+ *
+ * <p>Handlers may be called from several threads at once. Only when
+ * {@code solace.consumer.handler.lanes} is positive are two messages with the same value of the
+ * group property, {@code solace.consumer.handler.group-property} ({@code JMSXGroupID} by
+ * default), never handled concurrently, and then only if they were received by the same
+ * consumer. With the default of no lanes, messages of one group are handled in parallel by the
+ * group's consumers.</p>
+ *
+ * @param <T> the type of the decoded payload
+ */
+public interface MessageHandler<T> {
+
+    /**
+     * Returns the message type this handler processes.
+     *
+     * @return the handled message type
+     */
+    MessageType<T> type();
+
+    /**
+     * Checks a decoded payload before it is handled. The default accepts every payload.
+     *
+     * @param payload the decoded message body
+     * @param message the received message, for access to its headers and properties
+     * @throws MessageFormatException if the message is invalid and must not be handled
+     */
+    default void validate(T payload, Message message) throws MessageFormatException {
+    }
+
+    /**
+     * Processes a valid message.
+     *
+     * @param payload the decoded message body
+     * @param message the received message, for access to its headers and properties
+     * @throws Exception if the message could not be processed and should be redelivered
+     */
+    void handle(T payload, Message message) throws Exception;
+}
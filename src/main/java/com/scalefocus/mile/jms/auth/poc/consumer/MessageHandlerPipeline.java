@@ -0,0 +1,433 @@
+package com.scalefocus.mile.jms.auth.poc.consumer;
+
+import com.scalefocus.mile.jms.auth.poc.core.DestinationRegistry;
+import com.scalefocus.mile.jms.auth.poc.core.ThreadSafe;
+import com.scalefocus.mile.jms.auth.poc.core.Threads;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.inject.Any;
+import javax.enterprise.inject.Instance;
+import javax.inject.Inject;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.MessageFormatException;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs received messages through the registered {@link MessageHandler}s.
+ *
+ * <p>Each message is given to the first handler whose {@link MessageType} accepts it, or logged
+ * if there is none. With {@code solace.consumer.handler.lanes} set to 0, handlers run on the
+ * consumer's dispatch thread. Otherwise they run on that many single-threaded
+ * {@link HandlerLane}s: messages with the same group key, the string property named by
+ * {@code solace.consumer.handler.group-property} ({@code JMSXGroupID} by default), always go to
+ * the same lane and are handled in the order they were dispatched, while messages without a
+ * group are spread over the lanes in turn. Each lane queues at most
+ * {@code solace.consumer.handler.lane-capacity} messages on a lock-free ring; a consumer
+ * dispatching to a full lane waits until it has room, which bounds memory and slows consumption
+ * down to the speed of the handlers. The {@code ordered} acknowledgement mode acknowledges the
+ * messages of a session in order although the lanes finish them out of order.</p>
+ *
+ * <p>Every consumer group gets lanes of its own, started when its first message is dispatched,
+ * so a slow handler on one destination fills only that destination's lanes and never holds up
+ * the consumers of another. {@code solace.consumer.handler.group-lanes} and
+ * {@code solace.consumer.handler.group-lane-capacity} override the number of lanes and their
+ * capacity per destination, as comma separated {@code destination:n} pairs; a group with 0 lanes
+ * is handled on its consumer threads.</p>
+ *
+ * <p>Messages already handled are recognized by the {@link DedupCache} and acknowledged without
+ * being handled again. A message whose handler failed is forgotten by the cache, so that its
+ * redelivery is handled.</p>
+ *
+ * <p>Failed messages are offered to the {@link RetryRouter}: a message it retries with a delay or
+ * moves to the dead-letter queue counts as processed and is acknowledged, so it does not come
+ * straight back. Messages that cannot be decoded or fail validation are quarantined in the
+ * dead-letter queue if there is one. Otherwise, which includes the default of retries being
+ * disabled, they are logged, acknowledged and discarded, since redelivering them cannot
+ * succeed.</p>
+ */
+@ApplicationScoped
+@ThreadSafe
+class MessageHandlerPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageHandlerPipeline.class);
+
+    private static final String DEFAULT_GROUP_PROPERTY = "JMSXGroupID";
+    private static final String GROUP_LANES = "solace.consumer.handler.group-lanes";
+    private static final String GROUP_LANE_CAPACITY = "solace.consumer.handler.group-lane-capacity";
+
+    /** The consumer group of messages dispatched without naming one. */
+    private static final String DEFAULT_GROUP = "";
+
+    private final List<MessageHandler<?>> handlers;
+    private final DedupCache dedupCache;
+    private final RetryRouter retryRouter;
+    private final String groupProperty;
+    private final int lanes;
+    private final int laneCapacity;
+    private final Map<String, Integer> groupLanes;
+    private final Map<String, Integer> groupLaneCapacity;
+    private final boolean virtualThreads;
+    private final ConcurrentMap<String, List<HandlerLane>> lanesByGroup = new ConcurrentHashMap<>();
+    private final AtomicInteger nextLane = new AtomicInteger();
+    private boolean closed;
+
+    /**
+     * Constructs a new {@code MessageHandlerPipeline} with every {@code MessageHandler} bean.
+     *
+     * @param handlers       the available handlers
+     * @param dedupCache     the cache duplicates are recognized by
+     * @param retryRouter    the router failed messages are retried or dead-lettered by
+     * @param lanes             the number of handler lanes per consumer group, or 0 to handle on
+     *                          the dispatch thread
+     * @param laneCapacity      the maximum number of messages queued per lane
+     * @param groupProperty     the message property holding the group key
+     * @param groupLanes        the number of lanes of individual consumer groups
+     * @param groupLaneCapacity the lane capacity of individual consumer groups
+     * @param virtualThreads    whether the lanes run on virtual threads
+     */
+    @Inject
+    MessageHandlerPipeline(
+            @Any Instance<MessageHandler<?>> handlers,
+            DedupCache dedupCache,
+            RetryRouter retryRouter,
+            @ConfigProperty(name = "solace.consumer.handler.lanes", defaultValue = "0") int lanes,
+            @ConfigProperty(name = "solace.consumer.handler.lane-capacity", defaultValue = "1000") int laneCapacity,
+            @ConfigProperty(name = "solace.consumer.handler.group-property", defaultValue = DEFAULT_GROUP_PROPERTY)
+            String groupProperty,
+            @ConfigProperty(name = GROUP_LANES) Optional<String> groupLanes,
+            @ConfigProperty(name = GROUP_LANE_CAPACITY) Optional<String> groupLaneCapacity,
+            @ConfigProperty(name = Threads.VIRTUAL_THREADS, defaultValue = "false") boolean virtualThreads) {
+        this(toList(handlers), dedupCache, retryRouter, lanes, laneCapacity, groupProperty,
+                parseGroupValues(GROUP_LANES, groupLanes), parseGroupValues(GROUP_LANE_CAPACITY, groupLaneCapacity),
+                virtualThreads);
+    }
+
+    /**
+     * Constructs a new {@code MessageHandlerPipeline} with an explicit list of handlers and no
+     * deduplication, for use outside of CDI.
+     *
+     * @param handlers       the handlers, consulted in order
+     * @param lanes          the number of handler lanes, or 0 to handle on the dispatch thread
+     * @param laneCapacity   the maximum number of messages queued per lane
+     * @param virtualThreads whether the lanes run on virtual threads
+     */
+    MessageHandlerPipeline(List<MessageHandler<?>> handlers, int lanes, int laneCapacity, boolean virtualThreads) {
+        this(handlers, DedupCache.disabled(), lanes, laneCapacity, virtualThreads);
+    }
+
+    /**
+     * Constructs a new {@code MessageHandlerPipeline} with an explicit list of handlers, for use
+     * outside of CDI.
+     *
+     * @param handlers       the handlers, consulted in order
+     * @param dedupCache     the cache duplicates are recognized by
+     * @param lanes          the number of handler lanes, or 0 to handle on the dispatch thread
+     * @param laneCapacity   the maximum number of messages queued per lane
+     * @param virtualThreads whether the lanes run on virtual threads
+     */
+    MessageHandlerPipeline(List<MessageHandler<?>> handlers, DedupCache dedupCache, int lanes, int laneCapacity,
+                           boolean virtualThreads) {
+        this(handlers, dedupCache, RetryRouter.disabled(), lanes, laneCapacity, DEFAULT_GROUP_PROPERTY, virtualThreads);
+    }
+
+    /**
+     * Constructs a new {@code MessageHandlerPipeline} with an explicit list of handlers, for use
+     * outside of CDI.
+     *
+     * @param handlers       the handlers, consulted in order
+     * @param dedupCache     the cache duplicates are recognized by
+     * @param retryRouter    the router failed messages are retried or dead-lettered by
+     * @param lanes          the number of handler lanes, or 0 to handle on the dispatch thread
+     * @param laneCapacity   the maximum number of messages queued per lane
+     * @param groupProperty  the message property holding the group key
+     * @param virtualThreads whether the lanes run on virtual threads
+     */
+    MessageHandlerPipeline(List<MessageHandler<?>> handlers, DedupCache dedupCache, RetryRouter retryRouter,
+                           int lanes, int laneCapacity, String groupProperty, boolean virtualThreads) {
+        this(handlers, dedupCache, retryRouter, lanes, laneCapacity, groupProperty, Map.of(), Map.of(),
+                virtualThreads);
+    }
+
+    /**
+     * Constructs a new {@code MessageHandlerPipeline} with an explicit list of handlers and lane
+     * settings per consumer group, for use outside of CDI.
+     *
+     * @param handlers          the handlers, consulted in order
+     * @param dedupCache        the cache duplicates are recognized by
+     * @param retryRouter       the router failed messages are retried or dead-lettered by
+     * @param lanes             the number of handler lanes per consumer group, or 0 to handle on
+     *                          the dispatch thread
+     * @param laneCapacity      the maximum number of messages queued per lane
+     * @param groupProperty     the message property holding the group key
+     * @param groupLanes        the number of lanes of individual consumer groups, by destination key
+     * @param groupLaneCapacity the lane capacity of individual consumer groups, by destination key
+     * @param virtualThreads    whether the lanes run on virtual threads
+     */
+    MessageHandlerPipeline(List<MessageHandler<?>> handlers, DedupCache dedupCache, RetryRouter retryRouter,
+                           int lanes, int laneCapacity, String groupProperty, Map<String, Integer> groupLanes,
+                           Map<String, Integer> groupLaneCapacity, boolean virtualThreads) {
+        this.handlers = List.copyOf(handlers);
+        this.dedupCache = dedupCache;
+        this.retryRouter = retryRouter;
+        this.groupProperty = groupProperty;
+        this.lanes = Math.max(0, lanes);
+        this.laneCapacity = laneCapacity;
+        this.groupLanes = normalize(groupLanes);
+        this.groupLaneCapacity = normalize(groupLaneCapacity);
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * Creates a pipeline without handlers that logs every message on the dispatch thread.
+     *
+     * @return a new logging pipeline
+     */
+    static MessageHandlerPipeline logging() {
+        return new MessageHandlerPipeline(List.of(), 0, 0, false);
+    }
+
+    private static List<MessageHandler<?>> toList(Instance<MessageHandler<?>> handlers) {
+        List<MessageHandler<?>> list = new ArrayList<>();
+        handlers.forEach(list::add);
+        return list;
+    }
+
+    /**
+     * Parses a comma separated list of {@code destination:n} pairs.
+     */
+    private static Map<String, Integer> parseGroupValues(String property, Optional<String> value) {
+        if (value.isEmpty() || value.get().isBlank()) {
+            return Map.of();
+        }
+        Map<String, Integer> values = new HashMap<>();
+        for (String entry : value.get().split(",")) {
+            int separator = entry.lastIndexOf(':');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Invalid " + property + " entry: " + entry);
+            }
+            values.put(entry.substring(0, separator), Integer.parseInt(entry.substring(separator + 1).trim()));
+        }
+        return values;
+    }
+
+    /**
+     * Keys per-group settings like {@link DestinationRegistry} keys destinations, so that
+     * {@code queue:orders} and {@code orders} name the same group.
+     */
+    private static Map<String, Integer> normalize(Map<String, Integer> values) {
+        Map<String, Integer> normalized = new HashMap<>();
+        values.forEach((key, value) -> normalized.put(DestinationRegistry.keyOf(key), value));
+        return Collections.unmodifiableMap(normalized);
+    }
+
+    /**
+     * Returns the consumer groups given lane settings of their own.
+     *
+     * @return the destination keys named in {@code group-lanes} and {@code group-lane-capacity}
+     */
+    Set<String> getGroupLaneKeys() {
+        Set<String> keys = new HashSet<>(groupLanes.keySet());
+        keys.addAll(groupLaneCapacity.keySet());
+        return keys;
+    }
+
+    /**
+     * Hands a message that belongs to no particular consumer group to its handler.
+     *
+     * @param message the received message
+     * @return a stage completed once the message has been processed, or completed exceptionally
+     *         if its handler failed and the message should be redelivered
+     * @see #dispatch(String, Message)
+     */
+    CompletionStage<Void> dispatch(Message message) {
+        return dispatch(DEFAULT_GROUP, message);
+    }
+
+    /**
+     * Hands a message to its handler, on the lanes of the consumer group it was received by.
+     *
+     * @param group   the key of the destination the message was received from
+     * @param message the received message
+     * @return a stage completed once the message has been processed, or completed exceptionally
+     *         if its handler failed and the message should be redelivered
+     */
+    CompletionStage<Void> dispatch(String group, Message message) {
+        List<HandlerLane> groupLanes;
+        try {
+            groupLanes = lanesOf(group);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (groupLanes.isEmpty()) {
+            return process(message);
+        }
+        CompletableFuture<Void> completion = new CompletableFuture<>();
+        try {
+            laneFor(groupLanes, message).execute(() -> process(message).whenComplete((ignored, error) -> {
+                if (error != null) {
+                    completion.completeExceptionally(error);
+                } else {
+                    completion.complete(null);
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            completion.completeExceptionally(e);
+        }
+        return completion;
+    }
+
+    /**
+     * Returns the lanes of a consumer group, starting them on its first message.
+     */
+    private List<HandlerLane> lanesOf(String group) {
+        List<HandlerLane> existing = lanesByGroup.get(group);
+        if (existing != null) {
+            return existing;
+        }
+        synchronized (lanesByGroup) {
+            if (closed) {
+                throw new RejectedExecutionException("Handler pipeline is closed");
+            }
+            return lanesByGroup.computeIfAbsent(group, this::startLanes);
+        }
+    }
+
+    private List<HandlerLane> startLanes(String group) {
+        String key = group.equals(DEFAULT_GROUP) ? group : DestinationRegistry.keyOf(group);
+        int count = groupLanes.getOrDefault(key, lanes);
+        int capacity = groupLaneCapacity.getOrDefault(key, laneCapacity);
+        String prefix = group.equals(DEFAULT_GROUP) ? "handler-lane-" : "handler-lane-" + group + "-";
+        List<HandlerLane> started = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            started.add(new HandlerLane(prefix + i, capacity, virtualThreads));
+        }
+        return List.copyOf(started);
+    }
+
+    private HandlerLane laneFor(List<HandlerLane> lanes, Message message) {
+        String groupKey = null;
+        try {
+            groupKey = message.getStringProperty(groupProperty);
+        } catch (JMSException e) {
+            logger.debug("Could not read the group of a message", e);
+        }
+        int index = groupKey != null ? spread(groupKey.hashCode()) : nextLane.getAndIncrement();
+        return lanes.get(Math.floorMod(index, lanes.size()));
+    }
+
+    /**
+     * Mixes a hash code so that the lane depends on all of its bits rather than mostly on the
+     * lowest ones, which vary little between keys such as numbered group names.
+     */
+    private static int spread(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private CompletableFuture<Void> process(Message message) {
+        String key = dedupCache.keyOf(message);
+        if (key != null && !dedupCache.firstSeen(key)) {
+            logger.debug("Skipping duplicate message {}", key);
+            return CompletableFuture.completedFuture(null);
+        }
+        try {
+            MessageHandler<?> handler = handlerFor(message);
+            if (handler == null) {
+                logUnhandled(message);
+            } else {
+                invoke(handler, message);
+            }
+            return CompletableFuture.completedFuture(null);
+        } catch (Exception e) {
+            if (key != null) {
+                dedupCache.forget(key);
+            }
+            logger.error("Error processing JMS message", e);
+            if (retryRouter.failed(message, e)) {
+                return CompletableFuture.completedFuture(null);
+            }
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private MessageHandler<?> handlerFor(Message message) {
+        for (MessageHandler<?> handler : handlers) {
+            if (handler.type().accepts(message)) {
+                return handler;
+            }
+        }
+        return null;
+    }
+
+    private <T> void invoke(MessageHandler<T> handler, Message message) throws Exception {
+        T payload;
+        try {
+            payload = handler.type().decode(message);
+            handler.validate(payload, message);
+        } catch (MessageFormatException e) {
+            quarantine(handler.type(), message, e);
+            return;
+        }
+        handler.handle(payload, message);
+    }
+
+    private void logUnhandled(Message message) throws JMSException {
+        if (MessageType.TEXT.accepts(message)) {
+            String messageContent;
+            try {
+                messageContent = MessageType.TEXT.decode(message);
+            } catch (MessageFormatException e) {
+                quarantine(MessageType.TEXT, message, e);
+                return;
+            }
+            logger.info("Received message: {}", messageContent);
+        } else {
+            logger.warn("Received non-text message");
+        }
+    }
+
+    private void quarantine(MessageType<?> type, Message message, MessageFormatException e) throws JMSException {
+        if (!retryRouter.poison(message, e)) {
+            logger.warn("Discarding invalid {} message {}: {}", type, message.getJMSMessageID(), e.getMessage());
+        }
+    }
+
+    /**
+     * Stops the handler lanes after the messages already queued have been handled.
+     */
+    @PreDestroy
+    void close() {
+        synchronized (lanesByGroup) {
+            closed = true;
+        }
+        for (List<HandlerLane> groupLanes : lanesByGroup.values()) {
+            for (HandlerLane lane : groupLanes) {
+                try {
+                    lane.shutdown(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    // the lane has been told to stop; the remaining ones are told without waiting
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.scalefocus.mile.jms.auth.poc.consumer;
+
+import com.scalefocus.mile.jms.auth.poc.core.PayloadCompression;
+import jakarta.jms.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A JMS message type a {@link MessageHandler} can be registered for, together with the way its
+ * body is decoded into a typed payload. Text compressed by {@link PayloadCompression} arrives as
+ * a {@code BytesMessage} but is accepted and decompressed by {@link #TEXT} only.
+ *
+ * @param <T> the type of the decoded payload
+ */
+public final class MessageType<T> {
+
+    /**
+     * {@code TextMessage} bodies, and text compressed by {@link PayloadCompression}, decoded to
+     * their text.
+     */
+    public static final MessageType<String> TEXT =
+            new MessageType<>("text", TextMessage.class, MessageType::decodeText);
+
+    /** {@code BytesMessage} bodies, decoded to a byte array. */
+    public static final MessageType<byte[]> BYTES =
+            new MessageType<>("bytes", BytesMessage.class, message -> message.getBody(byte[].class));
+
+    /** {@code MapMessage} bodies, decoded to an unmodifiable map of their entries. */
+    public static final MessageType<Map<String, Object>> MAP =
+            new MessageType<>("map", MapMessage.class, MessageType::decodeMap);
+
+    /** {@code StreamMessage} bodies, decoded to an unmodifiable list of their values in order. */
+    public static final MessageType<List<Object>> STREAM =
+            new MessageType<>("stream", StreamMessage.class, MessageType::decodeStream);
+
+    private interface Decoder<T> {
+        T decode(Message message) throws JMSException;
+    }
+
+    private final String name;
+    private final Class<? extends Message> messageClass;
+    private final Decoder<T> decoder;
+
+    private MessageType(String name, Class<? extends Message> messageClass, Decoder<T> decoder) {
+        this.name = name;
+        this.messageClass = messageClass;
+        this.decoder = decoder;
+    }
+
+    /**
+     * Returns whether a message is of this type.
+     *
+     * @param message the received message
+     * @return {@code true} if the message can be decoded by this type
+     */
+    public boolean accepts(Message message) {
+        String compressedType = PayloadCompression.originalType(message);
+        if (compressedType != null) {
+            return name.equals(compressedType);
+        }
+        return messageClass.isInstance(message);
+    }
+
+    /**
+     * Decodes the body of a message of this type.
+     *
+     * @param message the received message
+     * @return the decoded payload
+     * @throws JMSException if the body cannot be read
+     */
+    public T decode(Message message) throws JMSException {
+        if (!accepts(message)) {
+            throw new MessageFormatException("Not a " + name + " message");
+        }
+        return decoder.decode(message);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    private static String decodeText(Message message) throws JMSException {
+        if (message instanceof TextMessage) {
+            return ((TextMessage) message).getText();
+        }
+        return PayloadCompression.decodeText((BytesMessage) message);
+    }
+
+    private static Map<String, Object> decodeMap(Message message) throws JMSException {
+        MapMessage mapMessage = (MapMessage) message;
+        Map<String, Object> entries = new HashMap<>();
+        Enumeration<?> names = mapMessage.getMapNames();
+        while (names.hasMoreElements()) {
+            String key = (String) names.nextElement();
+            entries.put(key, mapMessage.getObject(key));
+        }
+        return Collections.unmodifiableMap(entries);
+    }
+
+    private static List<Object> decodeStream(Message message) throws JMSException {
+        StreamMessage streamMessage = (StreamMessage) message;
+        streamMessage.reset();
+        List<Object> values = new ArrayList<>();
+        try {
+            while (true) {
+                values.add(streamMessage.readObject());
+            }
+        } catch (MessageEOFException e) {
+            return Collections.unmodifiableList(values);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.scalefocus.mile.jms.auth.poc.consumer;
+
+import com.scalefocus.mile.jms.auth.poc.core.ThreadSafe;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free queue for many producer threads and a single consumer thread.
+ *
+ * <p>The queue is a ring of slots, each with a sequence number telling whose turn it is: a slot
+ * whose sequence equals a producer's claimed position is free for that producer, and one whose
+ * sequence is one past the consumer's position holds the consumer's next element. Producers claim
+ * positions with a compare-and-set on the tail, so a producer never waits for another one to
+ * finish writing, and the consumer reads without any atomic read-modify-write at all. Neither side
+ * takes a lock or allocates per element. With a single producer the compare-and-set never fails,
+ * so the ring then behaves as a single-producer queue.</p>
+ *
+ * @param <E> the type of the queued elements
+ */
+@ThreadSafe
+final class MpscRing<E> {
+
+    private final int mask;
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    /**
+     * Constructs a new {@code MpscRing}.
+     *
+     * @param capacity the maximum number of queued elements, rounded up to a power of two
+     */
+    MpscRing(int capacity) {
+        int size = capacity <= 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = size - 1;
+        this.elements = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Adds an element if the ring has room. May be called from any thread.
+     *
+     * @param element the element to add, not {@code null}
+     * @return {@code true} if the element was added, {@code false} if the ring is full
+     */
+    boolean offer(E element) {
+        while (true) {
+            long position = tail.get();
+            int slot = (int) position & mask;
+            long difference = sequences.get(slot) - position;
+            if (difference < 0) {
+                return false;
+            }
+            if (difference == 0 && tail.compareAndSet(position, position + 1)) {
+                elements.lazySet(slot, element);
+                sequences.set(slot, position + 1);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Removes the oldest element. Must only be called from the consumer thread.
+     *
+     * @return the oldest element, or {@code null} if the ring is empty or its oldest element is
+     *         still being written
+     */
+    E poll() {
+        long position = head;
+        int slot = (int) position & mask;
+        if (sequences.get(slot) != position + 1) {
+            return null;
+        }
+        E element = elements.get(slot);
+        elements.lazySet(slot, null);
+        head = position + 1;
+        sequences.set(slot, position + mask + 1);
+        return element;
+    }
+
+    /**
+     * Returns the number of queued elements, which may be outdated as soon as it is returned.
+     *
+     * @return the approximate number of queued elements
+     */
+    int size() {
+        return (int) Math.max(0, Math.min(mask + 1, tail.get() - head));
+    }
+
+    /**
+     * Returns the maximum number of queued elements.
+     *
+     * @return the capacity of the ring
+     */
+    int capacity() {
+        return mask + 1;
+    }
+}
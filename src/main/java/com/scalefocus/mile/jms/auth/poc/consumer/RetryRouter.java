@@ -0,0 +1,311 @@
+package com.scalefocus.mile.jms.auth.poc.consumer;
+
+import com.scalefocus.mile.jms.auth.poc.core.Backoff;
+import com.scalefocus.mile.jms.auth.poc.core.ClientMetrics;
+import com.scalefocus.mile.jms.auth.poc.core.ThreadSafe;
+import io.micrometer.core.instrument.Counter;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import jakarta.jms.Connection;
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.DeliveryMode;
+import jakarta.jms.Destination;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.MessageProducer;
+import jakarta.jms.Queue;
+import jakarta.jms.Session;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Takes failed messages off the session that received them, so that a failing message neither
+ * spins in a tight redelivery loop nor holds up the messages behind it.
+ *
+ * <p>A message whose handler failed is republished with a scheduled delivery delay that grows
+ * exponentially from {@code solace.consumer.retry.initial-delay-ms} up to
+ * {@code solace.consumer.retry.max-delay-ms}, either to the queue it came from or to
+ * {@code solace.consumer.retry.queue}, and the original is acknowledged. The number of deliveries
+ * so far, counting the broker's redeliveries and earlier retries, travels with the message in the
+ * {@value #RETRY_COUNT} property. Once a message has been delivered
+ * {@code solace.consumer.retry.max-deliveries} times it is moved to the dead-letter queue
+ * {@code solace.consumer.dlq.queue}. Poison messages, which cannot be decoded or fail validation,
+ * are quarantined there at once, since delivering them again cannot succeed. Dead-lettered
+ * messages carry the reason and the original destination in the {@value #DEAD_LETTER_REASON} and
+ * {@value #ORIGINAL_DESTINATION} properties.</p>
+ *
+ * <p>Messages are republished on a session of a connection of their own, opened on first use,
+ * keeping their application properties and their {@code JMSXGroupID} and {@code JMSXGroupSeq}.
+ * Whenever a failed message cannot be republished, or there is no dead-letter queue to move it to,
+ * it is left to the session's redelivery as without the router. A poison message the router does
+ * not quarantine, because it is disabled or has no dead-letter queue, is discarded by the
+ * {@link MessageHandlerPipeline} instead. Retried, dead-lettered and quarantined messages are
+ * counted in {@link ClientMetrics}, over all consumed destinations.</p>
+ */
+@ApplicationScoped
+@ThreadSafe
+class RetryRouter {
+
+    private static final Logger logger = LoggerFactory.getLogger(RetryRouter.class);
+
+    static final String RETRY_COUNT = "RetryCount";
+    static final String DEAD_LETTER_REASON = "DeadLetterReason";
+    static final String ORIGINAL_DESTINATION = "OriginalDestination";
+
+    private static final String DELIVERY_COUNT = "JMSXDeliveryCount";
+    // set by clients rather than the provider, and needed to keep a retried message in its group
+    private static final Set<String> GROUP_PROPERTIES = Set.of("JMSXGroupID", "JMSXGroupSeq");
+
+    private static final String ENABLED = "solace.consumer.retry.enabled";
+    private static final String MAX_DELIVERIES = "solace.consumer.retry.max-deliveries";
+    private static final String INITIAL_DELAY_MS = "solace.consumer.retry.initial-delay-ms";
+    private static final String MAX_DELAY_MS = "solace.consumer.retry.max-delay-ms";
+    private static final String MULTIPLIER = "solace.consumer.retry.multiplier";
+    private static final String RETRY_QUEUE = "solace.consumer.retry.queue";
+    private static final String DLQ_QUEUE = "solace.consumer.dlq.queue";
+
+    private static final String DEFAULT_ENABLED = "false";
+    private static final String DEFAULT_MAX_DELIVERIES = "5";
+    private static final String DEFAULT_INITIAL_DELAY_MS = "1000";
+    private static final String DEFAULT_MAX_DELAY_MS = "60000";
+    private static final String DEFAULT_MULTIPLIER = "2.0";
+
+    private final boolean enabled;
+    private final ConnectionFactory connectionFactory;
+    private final int maxDeliveries;
+    private final Backoff backoff;
+    private final Optional<String> retryQueue;
+    private final Optional<String> deadLetterQueue;
+    private final Counter retried;
+    private final Counter deadLettered;
+    private final Counter quarantined;
+
+    private Connection connection;
+    private Session session;
+    private MessageProducer producer;
+
+    /**
+     * Constructs a new {@code RetryRouter}.
+     *
+     * @param enabled            whether failed messages are republished instead of redelivered
+     * @param connectionFactory  the factory of the connection messages are republished on
+     * @param maxDeliveries      the number of deliveries after which a message is dead-lettered
+     * @param initialDelayMillis the delivery delay of the first retry
+     * @param maxDelayMillis     the longest delivery delay of a retry
+     * @param multiplier         the factor the delay grows by with every retry
+     * @param retryQueue         the queue retries are sent to, instead of the one they came from
+     * @param deadLetterQueue    the queue dead-lettered and quarantined messages are moved to
+     * @param metrics            the metrics retries and dead letters are counted in
+     */
+    @Inject
+    RetryRouter(
+            @ConfigProperty(name = ENABLED, defaultValue = DEFAULT_ENABLED) boolean enabled,
+            ConnectionFactory connectionFactory,
+            @ConfigProperty(name = MAX_DELIVERIES, defaultValue = DEFAULT_MAX_DELIVERIES) int maxDeliveries,
+            @ConfigProperty(name = INITIAL_DELAY_MS, defaultValue = DEFAULT_INITIAL_DELAY_MS) long initialDelayMillis,
+            @ConfigProperty(name = MAX_DELAY_MS, defaultValue = DEFAULT_MAX_DELAY_MS) long maxDelayMillis,
+            @ConfigProperty(name = MULTIPLIER, defaultValue = DEFAULT_MULTIPLIER) double multiplier,
+            @ConfigProperty(name = RETRY_QUEUE) Optional<String> retryQueue,
+            @ConfigProperty(name = DLQ_QUEUE) Optional<String> deadLetterQueue,
+            ClientMetrics metrics) {
+        this.enabled = enabled;
+        this.connectionFactory = connectionFactory;
+        this.maxDeliveries = Math.max(1, maxDeliveries);
+        this.backoff = new Backoff(initialDelayMillis, maxDelayMillis, multiplier, 0);
+        this.retryQueue = retryQueue.filter(name -> !name.isBlank());
+        this.deadLetterQueue = deadLetterQueue.filter(name -> !name.isBlank());
+        this.retried = metrics.failureCounter("retried");
+        this.deadLettered = metrics.failureCounter("dead-lettered");
+        this.quarantined = metrics.failureCounter("quarantined");
+    }
+
+    /**
+     * Constructs a new {@code RetryRouter} from properties, for use outside of Quarkus.
+     *
+     * @param connectionFactory the factory of the connection messages are republished on
+     * @param properties        the properties to read the configuration from
+     */
+    RetryRouter(ConnectionFactory connectionFactory, Properties properties) {
+        this(Boolean.parseBoolean(properties.getProperty(ENABLED, DEFAULT_ENABLED)),
+                connectionFactory,
+                Integer.parseInt(properties.getProperty(MAX_DELIVERIES, DEFAULT_MAX_DELIVERIES)),
+                Long.parseLong(properties.getProperty(INITIAL_DELAY_MS, DEFAULT_INITIAL_DELAY_MS)),
+                Long.parseLong(properties.getProperty(MAX_DELAY_MS, DEFAULT_MAX_DELAY_MS)),
+                Double.parseDouble(properties.getProperty(MULTIPLIER, DEFAULT_MULTIPLIER)),
+                Optional.ofNullable(properties.getProperty(RETRY_QUEUE)),
+                Optional.ofNullable(properties.getProperty(DLQ_QUEUE)),
+                ClientMetrics.disabled());
+    }
+
+    /**
+     * Creates a router that leaves every failed message to the session's redelivery, for use
+     * outside of Quarkus.
+     *
+     * @return a disabled router
+     */
+    static RetryRouter disabled() {
+        return new RetryRouter(false, null, 1, 0, 0, 1, Optional.empty(), Optional.empty(), ClientMetrics.disabled());
+    }
+
+    /**
+     * Retries a message whose handler failed, or dead-letters it if it has been delivered too
+     * often.
+     *
+     * @param message the failed message
+     * @param failure what its handler threw
+     * @return {@code true} if the message was republished and the original may be acknowledged,
+     *         {@code false} if it has to be redelivered by the session
+     */
+    boolean failed(Message message, Exception failure) {
+        if (!enabled) {
+            return false;
+        }
+        int deliveries = deliveries(message);
+        if (deliveries >= maxDeliveries) {
+            return deadLetter(message, failure, deadLettered);
+        }
+        Destination destination = retryQueue.isPresent() ? null : originalQueue(message);
+        if (retryQueue.isEmpty() && destination == null) {
+            return false;
+        }
+        long delay = backoff.delayMillis(deliveries - 1);
+        try {
+            republish(message, destination, retryQueue.orElse(null), delay, Map.of(RETRY_COUNT, deliveries));
+        } catch (JMSException e) {
+            logger.warn("Could not retry a failed message, leaving it to redelivery", e);
+            return false;
+        }
+        retried.increment();
+        logger.info("Retrying a failed message in {} ms after {} deliveries", delay, deliveries);
+        return true;
+    }
+
+    /**
+     * Quarantines a message that can never be processed in the dead-letter queue.
+     *
+     * @param message the poison message
+     * @param failure why it cannot be processed
+     * @return {@code true} if the message was moved to the dead-letter queue and the original
+     *         may be acknowledged, {@code false} if the router is disabled, there is no dead-letter
+     *         queue or the message could not be moved
+     */
+    boolean poison(Message message, Exception failure) {
+        return enabled && deadLetter(message, failure, quarantined);
+    }
+
+    /**
+     * Returns how often a message has been delivered, counting the retries it went through.
+     */
+    static int deliveries(Message message) {
+        try {
+            int retries = message.propertyExists(RETRY_COUNT) ? message.getIntProperty(RETRY_COUNT) : 0;
+            int redeliveries = message.propertyExists(DELIVERY_COUNT) ? message.getIntProperty(DELIVERY_COUNT) : 1;
+            return retries + Math.max(1, redeliveries);
+        } catch (JMSException | NumberFormatException e) {
+            return 1;
+        }
+    }
+
+    private static Destination originalQueue(Message message) {
+        try {
+            Destination destination = message.getJMSDestination();
+            // republishing to a topic would reach every subscriber again
+            return destination instanceof Queue ? destination : null;
+        } catch (JMSException e) {
+            return null;
+        }
+    }
+
+    private boolean deadLetter(Message message, Exception failure, Counter counter) {
+        if (deadLetterQueue.isEmpty()) {
+            return false;
+        }
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put(RETRY_COUNT, deliveries(message));
+        properties.put(DEAD_LETTER_REASON, String.valueOf(failure));
+        try {
+            properties.put(ORIGINAL_DESTINATION, String.valueOf(message.getJMSDestination()));
+            republish(message, null, deadLetterQueue.get(), 0, properties);
+        } catch (JMSException e) {
+            logger.warn("Could not move a failed message to {}, leaving it to redelivery", deadLetterQueue.get(), e);
+            return false;
+        }
+        counter.increment();
+        logger.warn("Moved a failed message to {}: {}", deadLetterQueue.get(), failure.toString());
+        return true;
+    }
+
+    /**
+     * Sends a received message again, with its application and group properties and the given
+     * ones, to a destination or, if it is {@code null}, to the named queue.
+     */
+    private synchronized void republish(Message message, Destination destination, String queueName,
+                                        long deliveryDelayMillis, Map<String, Object> extraProperties)
+            throws JMSException {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        Enumeration<?> names = message.getPropertyNames();
+        while (names.hasMoreElements()) {
+            String property = (String) names.nextElement();
+            if (GROUP_PROPERTIES.contains(property)
+                    || !property.startsWith("JMSX") && !property.startsWith("JMS_")) {
+                properties.put(property, message.getObjectProperty(property));
+            }
+        }
+        properties.putAll(extraProperties);
+        // received messages are read-only until their properties are cleared
+        message.clearProperties();
+        for (Map.Entry<String, Object> property : properties.entrySet()) {
+            message.setObjectProperty(property.getKey(), property.getValue());
+        }
+        try {
+            if (producer == null) {
+                open();
+            }
+            producer.setDeliveryDelay(deliveryDelayMillis);
+            producer.send(destination != null ? destination : session.createQueue(queueName), message,
+                    DeliveryMode.PERSISTENT, message.getJMSPriority(), 0);
+        } catch (JMSException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private void open() throws JMSException {
+        connection = connectionFactory.createConnection();
+        try {
+            session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            producer = session.createProducer(null);
+            producer.setDeliveryMode(DeliveryMode.PERSISTENT);
+        } catch (JMSException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Closes the connection messages are republished on. It is opened again when needed.
+     */
+    @PreDestroy
+    synchronized void close() {
+        Connection c = connection;
+        connection = null;
+        session = null;
+        producer = null;
+        if (c != null) {
+            try {
+                c.close();
+            } catch (JMSException e) {
+                logger.debug("Error closing the retry connection", e);
+            }
+        }
+    }
+}
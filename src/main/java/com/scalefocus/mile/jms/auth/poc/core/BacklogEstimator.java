@@ -0,0 +1,155 @@
+package com.scalefocus.mile.jms.auth.poc.core;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.inject.Any;
+import javax.enterprise.inject.Instance;
+import javax.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a cheap estimate of how many messages are waiting on each queue, without browsing or
+ * downloading them.
+ *
+ * <p>Producers and consumers in this process report every message they enqueue and dequeue.
+ * When a {@link BacklogProbe} can report the broker's own count, that count is sampled at most
+ * once per probe interval and the local counters track the change since the last sample.
+ * Without a probe the estimate only covers messages sent by this process; dequeues of older
+ * messages never drive it below zero.</p>
+ */
+@ApplicationScoped
+@ThreadSafe
+public class BacklogEstimator {
+
+    private static final Logger logger = LoggerFactory.getLogger(BacklogEstimator.class);
+
+    private final List<BacklogProbe> probes;
+    private final long probeIntervalNanos;
+    private final Map<String, QueueCounters> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new {@code BacklogEstimator} backed by every {@code BacklogProbe} bean.
+     *
+     * @param probes              the available probes, consulted in order
+     * @param probeIntervalMillis the minimum time between two probe calls for the same queue
+     */
+    @Inject
+    public BacklogEstimator(
+            @Any Instance<BacklogProbe> probes,
+            @ConfigProperty(name = "solace.backlog.probe-interval-ms", defaultValue = "5000") long probeIntervalMillis) {
+        this(toList(probes), probeIntervalMillis);
+    }
+
+    /**
+     * Constructs a new {@code BacklogEstimator} with an explicit list of probes, for use
+     * outside of CDI.
+     *
+     * @param probes              the probes to consult in order, possibly empty
+     * @param probeIntervalMillis the minimum time between two probe calls for the same queue
+     */
+    public BacklogEstimator(List<BacklogProbe> probes, long probeIntervalMillis) {
+        this.probes = List.copyOf(probes);
+        this.probeIntervalNanos = TimeUnit.MILLISECONDS.toNanos(probeIntervalMillis);
+    }
+
+    /**
+     * Creates an estimator that relies on local counters only.
+     *
+     * @return a new estimator without probes
+     */
+    public static BacklogEstimator local() {
+        return new BacklogEstimator(List.of(), 0);
+    }
+
+    private static List<BacklogProbe> toList(Instance<BacklogProbe> probes) {
+        List<BacklogProbe> list = new ArrayList<>();
+        probes.forEach(list::add);
+        return list;
+    }
+
+    /**
+     * Records messages successfully sent to a queue.
+     *
+     * @param queueName the name of the queue
+     * @param count     the number of messages
+     */
+    public void recordEnqueued(String queueName, long count) {
+        countersFor(queueName).delta.addAndGet(count);
+    }
+
+    /**
+     * Records one message received from a queue.
+     *
+     * @param queueName the name of the queue
+     */
+    public void recordDequeued(String queueName) {
+        QueueCounters queue = countersFor(queueName);
+        queue.delta.updateAndGet(delta -> Math.max(delta - 1, -queue.baseline));
+    }
+
+    /**
+     * Returns the estimated number of messages waiting on a queue.
+     *
+     * @param queueName the name of the queue
+     * @return the estimated backlog, never negative
+     */
+    public long estimate(String queueName) {
+        QueueCounters queue = countersFor(queueName);
+        if (!probes.isEmpty()) {
+            queue.refresh(queueName);
+        }
+        return Math.max(0, queue.baseline + queue.delta.get());
+    }
+
+    private QueueCounters countersFor(String queueName) {
+        return counters.computeIfAbsent(queueName, name -> new QueueCounters());
+    }
+
+    private OptionalLong probe(String queueName) {
+        for (BacklogProbe probe : probes) {
+            try {
+                OptionalLong backlog = probe.backlog(queueName);
+                if (backlog.isPresent()) {
+                    return backlog;
+                }
+            } catch (RuntimeException e) {
+                logger.warn("Backlog probe {} failed for {}: {}", probe.getClass().getSimpleName(), queueName, e.getMessage());
+            }
+        }
+        return OptionalLong.empty();
+    }
+
+    /**
+     * The last broker-reported depth of a queue and the local change since it was sampled.
+     */
+    private final class QueueCounters {
+
+        private final AtomicLong delta = new AtomicLong();
+        private volatile long baseline;
+        private volatile long lastProbe;
+        private boolean probed;
+
+        synchronized void refresh(String queueName) {
+            long now = System.nanoTime();
+            if (probed && now - lastProbe < probeIntervalNanos) {
+                return;
+            }
+            lastProbe = now;
+            probed = true;
+            OptionalLong backlog = probe(queueName);
+            if (backlog.isPresent()) {
+                delta.set(0);
+                baseline = backlog.getAsLong();
+            }
+        }
+    }
+}
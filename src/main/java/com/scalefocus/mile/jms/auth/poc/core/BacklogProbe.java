@@ -0,0 +1,21 @@
+package com.scalefocus.mile.jms.auth.poc.core;
+
+import java.util.OptionalLong;
+
+/**
+ * A source of broker-reported queue depths, used by {@link BacklogEstimator}.
+ *
+ * <p>Implementations must answer without consuming or browsing messages, typically by asking
+ * the broker's management interface. Any CDI bean implementing this interface is picked up
+ * automatically.</p>
+ */
+public interface BacklogProbe {
+
+    /**
+     * Returns the number of messages currently spooled on the given queue.
+     *
+     * @param queueName the name of the queue
+     * @return the queue depth, or empty if this probe cannot tell
+     */
+    OptionalLong backlog(String queueName);
+}
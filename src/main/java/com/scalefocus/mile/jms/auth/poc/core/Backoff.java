@@ -0,0 +1,84 @@
+package com.scalefocus.mile.jms.auth.poc.core;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Jittered exponential backoff between reconnection attempts.
+ *
+ * <p>The n-th delay is {@code initialDelay * multiplier^n}, capped at {@code maxDelay}, and then
+ * shortened by a random share of up to {@code jitter} so that clients that lost their connection
+ * at the same moment do not all reconnect at the same moment. Instances are not thread-safe;
+ * each reconnecting resource keeps its own.</p>
+ */
+public final class Backoff {
+
+    private final long initialDelayMillis;
+    private final long maxDelayMillis;
+    private final double multiplier;
+    private final double jitter;
+    private final DoubleSupplier random;
+
+    private int attempts;
+
+    /**
+     * Constructs a new {@code Backoff}.
+     *
+     * @param initialDelayMillis the delay before the first retry
+     * @param maxDelayMillis     the longest delay between two retries
+     * @param multiplier         the factor the delay grows by after every failed attempt
+     * @param jitter             the share of each delay, between 0 and 1, that is randomized away
+     */
+    public Backoff(long initialDelayMillis, long maxDelayMillis, double multiplier, double jitter) {
+        this(initialDelayMillis, maxDelayMillis, multiplier, jitter, () -> ThreadLocalRandom.current().nextDouble());
+    }
+
+    Backoff(long initialDelayMillis, long maxDelayMillis, double multiplier, double jitter, DoubleSupplier random) {
+        this.initialDelayMillis = Math.max(0, initialDelayMillis);
+        this.maxDelayMillis = Math.max(this.initialDelayMillis, maxDelayMillis);
+        this.multiplier = Math.max(1.0, multiplier);
+        this.jitter = Math.min(1.0, Math.max(0.0, jitter));
+        this.random = random;
+    }
+
+    /**
+     * Returns the delay before the next attempt and counts the attempt.
+     *
+     * @return the delay in milliseconds
+     */
+    public long nextDelayMillis() {
+        long delay = delayMillis(attempts);
+        if (attempts < Integer.MAX_VALUE) {
+            attempts++;
+        }
+        return delay;
+    }
+
+    /**
+     * Returns the delay before an attempt without counting it, for callers that keep track of
+     * the attempts themselves, such as the redeliveries of a message.
+     *
+     * @param attempt the number of attempts already made, from 0
+     * @return the delay in milliseconds
+     */
+    public long delayMillis(int attempt) {
+        double delay = Math.min(maxDelayMillis, initialDelayMillis * Math.pow(multiplier, Math.max(0, attempt)));
+        return Math.round(delay * (1.0 - jitter * random.getAsDouble()));
+    }
+
+    /**
+     * Returns the number of attempts since the last {@link #reset()}.
+     *
+     * @return the number of delays handed out
+     */
+    public int attempts() {
+        return attempts;
+    }
+
+    /**
+     * Starts over from the initial delay, after a successful attempt.
+     */
+    public void reset() {
+        attempts = 0;
+    }
+}
@@ -1,22 +1,25 @@
 package com.scalefocus.mile.jms.auth.poc.core;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.inject.Produces;
+import javax.inject.Inject;
 import jakarta.jms.ConnectionFactory;
+import lombok.Getter;
+import org.apache.qpid.jms.JmsConnectionExtensions;
 import org.apache.qpid.jms.JmsConnectionFactory;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
-import javax.net.ssl.TrustManagerFactory;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.security.*;
-import java.security.cert.CertificateException;
+import java.security.GeneralSecurityException;
+import java.util.Optional;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Configuration class for setting up the JMS broker client with SSL/TLS.
@@ -24,6 +27,16 @@ import java.util.Properties;
  * <p>This class is responsible for loading the SSL context using the provided key store
  * and trust store configurations, and producing a configured {@code ConnectionFactory} for
  * connecting to the JMS broker.</p>
+ *
+ * <p>The stores are read once at startup into an {@link SslContextCache} that every produced
+ * factory shares, so reconnects resume cached TLS sessions. Factories look the context up each
+ * time they open a connection. With {@code solace.ssl.reload.enabled} the stores are watched and
+ * new connections use the rebuilt context once they change; the {@link ConnectionRoller} then
+ * replaces the connections already open, a few at a time. No global {@code javax.net.ssl} system
+ * properties are set. Stores may be JKS or PKCS12.</p>
+ *
+ * <p>With {@code solace.startup.background-connect} the stores are read on a thread of their own,
+ * and the first connection waits for them instead of the application's startup.</p>
  */
 @ApplicationScoped
 public class BrokerClientConfig {
@@ -35,6 +48,17 @@ public class BrokerClientConfig {
     private static final String SOLACE_SSL_TRUST_STORE_PASSWORD = "solace.ssl.trust-store-password";
     private static final String SOLACE_SSL_KEY_STORE = "solace.ssl.key-store";
     private static final String SOLACE_SSL_KEY_STORE_PASSWORD = "solace.ssl.key-store-password";
+    private static final String SOLACE_SSL_TRUST_STORE_TYPE = "solace.ssl.trust-store-type";
+    private static final String SOLACE_SSL_KEY_STORE_TYPE = "solace.ssl.key-store-type";
+    private static final String SOLACE_SSL_SESSION_CACHE_SIZE = "solace.ssl.session-cache-size";
+    private static final String SOLACE_SSL_SESSION_TIMEOUT = "solace.ssl.session-timeout-s";
+    private static final String SOLACE_SSL_RELOAD_ENABLED = "solace.ssl.reload.enabled";
+    private static final String SOLACE_SSL_RELOAD_DEBOUNCE = "solace.ssl.reload.debounce-ms";
+
+    private static final String DEFAULT_SESSION_CACHE_SIZE = "1000";
+    private static final String DEFAULT_SESSION_TIMEOUT = "86400";
+    private static final String DEFAULT_RELOAD_ENABLED = "true";
+    private static final String DEFAULT_RELOAD_DEBOUNCE = "1000";
 
     private static final Logger logger = LoggerFactory.getLogger(BrokerClientConfig.class);
 
@@ -59,6 +83,36 @@ public class BrokerClientConfig {
     @ConfigProperty(name = SOLACE_SSL_KEY_STORE_PASSWORD)
     String keyStorePassword;
 
+    @ConfigProperty(name = SOLACE_SSL_TRUST_STORE_TYPE)
+    Optional<String> trustStoreType;
+
+    @ConfigProperty(name = SOLACE_SSL_KEY_STORE_TYPE)
+    Optional<String> keyStoreType;
+
+    @ConfigProperty(name = SOLACE_SSL_SESSION_CACHE_SIZE, defaultValue = DEFAULT_SESSION_CACHE_SIZE)
+    int sessionCacheSize;
+
+    @ConfigProperty(name = SOLACE_SSL_SESSION_TIMEOUT, defaultValue = DEFAULT_SESSION_TIMEOUT)
+    int sessionTimeoutSeconds;
+
+    @ConfigProperty(name = SOLACE_SSL_RELOAD_ENABLED, defaultValue = DEFAULT_RELOAD_ENABLED)
+    boolean reloadEnabled;
+
+    @ConfigProperty(name = SOLACE_SSL_RELOAD_DEBOUNCE, defaultValue = DEFAULT_RELOAD_DEBOUNCE)
+    long reloadDebounceMillis;
+
+    @Inject
+    FlowControlSettings flowControlSettings;
+
+    @Inject
+    ReconnectSettings reconnectSettings;
+
+    @Inject
+    @Getter
+    ConnectionRoller connectionRoller;
+
+    private final CompletableFuture<SslContextCache> sslContextCache = new CompletableFuture<>();
+
     public BrokerClientConfig() {}
 
     public BrokerClientConfig(Properties properties) {
@@ -69,64 +123,96 @@ public class BrokerClientConfig {
         trustStorePassword = properties.getProperty(SOLACE_SSL_TRUST_STORE_PASSWORD,"");
         keyStorePath = properties.getProperty(SOLACE_SSL_KEY_STORE,"");
         keyStorePassword = properties.getProperty(SOLACE_SSL_KEY_STORE_PASSWORD,"");
+        trustStoreType = Optional.ofNullable(properties.getProperty(SOLACE_SSL_TRUST_STORE_TYPE));
+        keyStoreType = Optional.ofNullable(properties.getProperty(SOLACE_SSL_KEY_STORE_TYPE));
+        sessionCacheSize = Integer.parseInt(properties.getProperty(SOLACE_SSL_SESSION_CACHE_SIZE, DEFAULT_SESSION_CACHE_SIZE));
+        sessionTimeoutSeconds = Integer.parseInt(properties.getProperty(SOLACE_SSL_SESSION_TIMEOUT, DEFAULT_SESSION_TIMEOUT));
+        reloadEnabled = Boolean.parseBoolean(properties.getProperty(SOLACE_SSL_RELOAD_ENABLED, DEFAULT_RELOAD_ENABLED));
+        reloadDebounceMillis = Long.parseLong(properties.getProperty(SOLACE_SSL_RELOAD_DEBOUNCE, DEFAULT_RELOAD_DEBOUNCE));
+        flowControlSettings = new FlowControlSettings(properties);
+        reconnectSettings = new ReconnectSettings(properties);
+        connectionRoller = new ConnectionRoller(properties);
 
         initializeSslContext();
     }
 
     /**
-     * Initializes the SSL context by setting system properties for the key store and trust store paths and passwords.
+     * Initializes the SSL context cache, on a thread of its own if connections are established in
+     * the background and on the calling thread otherwise.
      */
     @PostConstruct
     void initializeSslContext() {
-        System.setProperty("javax.net.ssl.trustStore", trustStorePath);
-        System.setProperty("javax.net.ssl.trustStorePassword", trustStorePassword);
-        System.setProperty("javax.net.ssl.keyStore", keyStorePath);
-        System.setProperty("javax.net.ssl.keyStorePassword", keyStorePassword);
+        if (reconnectSettings.isBackgroundConnect()) {
+            Thread loader = new Thread(this::loadSslContext, "ssl-material-loader");
+            loader.setDaemon(true);
+            loader.start();
+        } else {
+            loadSslContext();
+        }
+    }
+
+    /**
+     * Loads the key store and trust store once, and starts watching them for changes if reloading
+     * is enabled. The open connections are rolled onto a reloaded context.
+     */
+    private void loadSslContext() {
+        try {
+            SslContextCache cache = new SslContextCache(
+                    keyStorePath, keyStoreType.orElse(SslContextCache.storeTypeOf(keyStorePath)), keyStorePassword,
+                    trustStorePath, trustStoreType.orElse(SslContextCache.storeTypeOf(trustStorePath)), trustStorePassword,
+                    sessionCacheSize, sessionTimeoutSeconds);
+            cache.addListener(this::onSslContextReloaded);
+            if (reloadEnabled) {
+                cache.watch(reloadDebounceMillis);
+            }
+            sslContextCache.complete(cache);
+        } catch (GeneralSecurityException | IOException e) {
+            logger.error("Could not load SSL material, cause: {}", e.getMessage());
+            sslContextCache.completeExceptionally(e);
+        }
     }
 
     /**
-     * Creates and configures a JMS {@code ConnectionFactory} with SSL context.
+     * Creates and configures a JMS {@code ConnectionFactory} with the cached SSL context, the prefetch,
+     * presettle and redelivery policies described by {@link FlowControlSettings}, and the
+     * failover URI and timeouts described by {@link ReconnectSettings}. The factory follows
+     * later reloads of the SSL material.
      *
-     * @return the configured {@code ConnectionFactory}, or {@code null} if an error occurs during setup
+     * @return the configured {@code ConnectionFactory}, or {@code null} if the SSL material could not be loaded
      */
     @Produces
     public ConnectionFactory createConnectionFactory() {
-        try {
-            KeyStore keyStore = loadKeystore(keyStorePath, keyStorePassword);
-            KeyStore trustStore = loadKeystore(trustStorePath, trustStorePassword);
-            KeyManagerFactory kmf = getKeyManagerFactory(keyStore);
-            TrustManagerFactory tmf = getTrustManagerFactory(trustStore);
-            SSLContext sslContext = getSslContext(kmf, tmf);
-            JmsConnectionFactory factory = new JmsConnectionFactory(solaceUsername, solacePassword, solaceHost);
-            factory.setSslContext(sslContext);
-            return factory;
-        } catch (Exception e) {
-            logger.error("Could not open Connection to Broker, cause: {}", e.getMessage());
+        if (sslContextCache.isCompletedExceptionally()) {
+            logger.error("Could not open Connection to Broker, cause: SSL material is not loaded");
             return null;
         }
+        JmsConnectionFactory factory = new JmsConnectionFactory(solaceUsername, solacePassword, solaceHost);
+        factory.setExtension(JmsConnectionExtensions.SSL_CONTEXT.toString(), (connection, uri) -> currentSslContext());
+        flowControlSettings.applyTo(factory);
+        reconnectSettings.applyTo(factory);
+        return factory;
     }
 
-    private static SSLContext getSslContext(KeyManagerFactory kmf, TrustManagerFactory tmf) throws NoSuchAlgorithmException, KeyManagementException {
-        SSLContext sslContext = SSLContext.getInstance("TLS");
-        sslContext.init(kmf.getKeyManagers(), tmf.getTrustManagers(), null);
-        return sslContext;
-    }
-
-    private static TrustManagerFactory getTrustManagerFactory(KeyStore trustStore) throws NoSuchAlgorithmException, KeyStoreException {
-        TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
-        tmf.init(trustStore);
-        return tmf;
+    /**
+     * Returns the current SSL context, waiting for the SSL material if it is still being loaded.
+     */
+    private SSLContext currentSslContext() {
+        try {
+            return sslContextCache.join().get();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("SSL material is not loaded", e.getCause());
+        }
     }
 
-    private KeyManagerFactory getKeyManagerFactory(KeyStore keyStore) throws NoSuchAlgorithmException, KeyStoreException, UnrecoverableKeyException {
-        KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
-        kmf.init(keyStore, keyStorePassword.toCharArray());
-        return kmf;
+    private void onSslContextReloaded(SSLContext sslContext) {
+        connectionRoller.rollAll();
     }
 
-    private KeyStore loadKeystore(String keyStorePath, String keyStorePassword) throws KeyStoreException, IOException, NoSuchAlgorithmException, CertificateException {
-        KeyStore keyStore = KeyStore.getInstance("JKS");
-        keyStore.load(new FileInputStream(keyStorePath), keyStorePassword.toCharArray());
-        return keyStore;
+    /**
+     * Stops watching the SSL material, once it is loaded if that is still in progress.
+     */
+    @PreDestroy
+    void close() {
+        sslContextCache.thenAccept(SslContextCache::close);
     }
 }
@@ -0,0 +1,272 @@
+package com.scalefocus.mile.jms.auth.poc.core;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * The meters describing the broker client, exported by Quarkus Micrometer on
+ * {@code /q/metrics}.
+ *
+ * <p>Meters are tagged with the {@code queue} they concern and, for consumer meters, the
+ * {@code consumer} index of the worker, so that a slow consumer stands out from its siblings.
+ * Latency timers publish percentile histograms. Callers look meters up once and keep them, since
+ * a lookup costs a registry access.</p>
+ */
+@ApplicationScoped
+@ThreadSafe
+public class ClientMetrics {
+
+    private static final String QUEUE = "queue";
+    private static final String CONSUMER = "consumer";
+    private static final String CLIENT = "client";
+
+    private final MeterRegistry registry;
+
+    /**
+     * Constructs a new {@code ClientMetrics} registering its meters with the given registry.
+     *
+     * @param registry the registry meters are registered with
+     */
+    @Inject
+    public ClientMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Creates metrics that are recorded nowhere, for use outside of Quarkus.
+     *
+     * @return metrics backed by an empty composite registry
+     */
+    public static ClientMetrics disabled() {
+        return new ClientMetrics(new CompositeMeterRegistry());
+    }
+
+    /**
+     * Returns the timer of sends to a queue, from the send call until the broker accepted the
+     * message or the transaction was committed.
+     *
+     * @param queueName the destination queue
+     * @param mode      {@code sync}, {@code async}, {@code batch}, {@code bytes} or {@code outbox}
+     * @return the send timer
+     */
+    public Timer sendTimer(String queueName, String mode) {
+        return Timer.builder("solace.producer.send")
+                .description("Time until the broker accepted a sent message or committed a batch")
+                .tags(Tags.of(QUEUE, queueName, "mode", mode))
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    /**
+     * Registers the gauge of asynchronous sends awaiting broker acknowledgement. The in-flight
+     * cap is shared by all destinations, so the gauge carries no destination tag.
+     *
+     * @param inFlight supplies the current number of sends in flight
+     */
+    public void registerInFlight(Supplier<Number> inFlight) {
+        Gauge.builder("solace.producer.in.flight", inFlight)
+                .description("Asynchronous sends awaiting broker acknowledgement, over all destinations")
+                .register(registry);
+    }
+
+    /**
+     * Registers the gauge of messages kept in the local outbox awaiting delivery.
+     *
+     * @param queueName the destination queue
+     * @param size      supplies the current number of messages in the outbox
+     */
+    public void registerOutboxSize(String queueName, Supplier<Number> size) {
+        Gauge.builder("solace.producer.outbox.size", size)
+                .description("Messages kept in the local outbox awaiting delivery")
+                .tags(Tags.of(QUEUE, queueName))
+                .register(registry);
+    }
+
+    /**
+     * Registers the gauges of the adaptive concurrency limit on producer requests.
+     *
+     * @param limit    supplies the current concurrency limit
+     * @param inFlight supplies the number of requests in progress
+     */
+    public void registerIngestLimit(Supplier<Number> limit, Supplier<Number> inFlight) {
+        Gauge.builder("solace.ingest.limit", limit)
+                .description("Producer requests allowed in progress at once")
+                .register(registry);
+        Gauge.builder("solace.ingest.in.flight", inFlight)
+                .description("Producer requests in progress")
+                .register(registry);
+    }
+
+    /**
+     * Returns the counter of producer requests rejected with 429 for one reason.
+     *
+     * @param reason {@code concurrency} or {@code rate}
+     * @return the rejection counter
+     */
+    public Counter ingestRejections(String reason) {
+        return Counter.builder("solace.ingest.rejected")
+                .description("Producer requests rejected before reaching the broker")
+                .tags(Tags.of("reason", reason))
+                .register(registry);
+    }
+
+    /**
+     * Returns the counter of messages received by one consumer.
+     *
+     * @param queueName the consumed queue
+     * @param consumer  the index of the consumer worker
+     * @return the consumed message counter
+     */
+    public Counter consumedCounter(String queueName, int consumer) {
+        return Counter.builder("solace.consumer.messages")
+                .description("Messages received")
+                .tags(consumerTags(queueName, consumer))
+                .register(registry);
+    }
+
+    /**
+     * Returns the timer of message handling by one consumer, from dispatch until the handler
+     * completed.
+     *
+     * @param queueName the consumed queue
+     * @param consumer  the index of the consumer worker
+     * @return the handler timer
+     */
+    public Timer handlerTimer(String queueName, int consumer) {
+        return Timer.builder("solace.consumer.handler")
+                .description("Time from dispatching a message until its handler completed")
+                .tags(consumerTags(queueName, consumer))
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    /**
+     * Returns the timer of client acknowledgements sent by one consumer.
+     *
+     * @param queueName the consumed queue
+     * @param consumer  the index of the consumer worker
+     * @return the acknowledgement timer
+     */
+    public Timer ackTimer(String queueName, int consumer) {
+        return Timer.builder("solace.consumer.ack")
+                .description("Time taken to acknowledge a window of processed messages")
+                .tags(consumerTags(queueName, consumer))
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    /**
+     * Returns the gauge holding the last consumer lag measured for a queue.
+     *
+     * @param queueName the consumed queue
+     * @return the value backing the gauge, to be updated by the caller
+     */
+    public AtomicLong lagGauge(String queueName) {
+        AtomicLong lag = new AtomicLong();
+        Gauge.builder("solace.consumer.lag", lag, AtomicLong::get)
+                .description("Estimated number of messages waiting on the queue")
+                .tags(Tags.of(QUEUE, queueName))
+                .strongReference(true)
+                .register(registry);
+        return lag;
+    }
+
+    /**
+     * Returns the counter of messages checked against the deduplication cache with one result.
+     * One cache serves every consumer group, so the counter carries no destination tag.
+     *
+     * @param result {@code hit} for a duplicate, {@code miss} for a new message
+     * @return the deduplication counter
+     */
+    public Counter dedupCounter(String result) {
+        return Counter.builder("solace.consumer.dedup")
+                .description("Messages checked for duplicates over all consumed destinations, by result")
+                .tags(Tags.of("result", result))
+                .register(registry);
+    }
+
+    /**
+     * Returns the counter of messages whose processing failed, by what was done with them. One
+     * router serves every consumer group, so the counter carries no destination tag.
+     *
+     * @param outcome {@code retried}, {@code dead-lettered} or {@code quarantined}
+     * @return the failure counter
+     */
+    public Counter failureCounter(String outcome) {
+        return Counter.builder("solace.consumer.failures")
+                .description("Messages whose processing failed over all consumed destinations, by outcome")
+                .tags(Tags.of("outcome", outcome))
+                .register(registry);
+    }
+
+    /**
+     * Registers the gauges of the deduplication cache's size. The cache is shared by all consumer
+     * groups, so the gauges carry no destination tag.
+     *
+     * @param entries     supplies the number of remembered message keys
+     * @param memoryBytes supplies the memory held by the cache in bytes
+     */
+    public void registerDedupCache(Supplier<Number> entries, Supplier<Number> memoryBytes) {
+        Gauge.builder("solace.consumer.dedup.entries", entries)
+                .description("Message keys remembered for deduplication")
+                .register(registry);
+        Gauge.builder("solace.consumer.dedup.memory", memoryBytes)
+                .description("Memory held by the deduplication cache")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    /**
+     * Returns the timer of successful connection establishments. Its count is the number of
+     * connections established.
+     *
+     * @param client {@code consumer} or {@code producer}
+     * @return the connection timer
+     */
+    public Timer connectionTimer(String client) {
+        return Timer.builder("solace.connection.establish")
+                .description("Time taken to establish a broker connection")
+                .tags(Tags.of(CLIENT, client))
+                .register(registry);
+    }
+
+    /**
+     * Returns the counter of failed connection attempts and lost connections.
+     *
+     * @param client {@code consumer} or {@code producer}
+     * @return the connection failure counter
+     */
+    public Counter connectionFailures(String client) {
+        return Counter.builder("solace.connection.failures")
+                .description("Failed connection attempts and connections lost")
+                .tags(Tags.of(CLIENT, client))
+                .register(registry);
+    }
+
+    /**
+     * Returns the timer of recoveries from a lost connection, from the moment the loss was
+     * reported until the first message was consumed again.
+     *
+     * @param client {@code consumer} or {@code producer}
+     * @return the recovery timer
+     */
+    public Timer recoveryTimer(String client) {
+        return Timer.builder("solace.connection.recovery")
+                .description("Time from losing the broker connection until messages flowed again")
+                .tags(Tags.of(CLIENT, client))
+                .register(registry);
+    }
+
+    private static Tags consumerTags(String queueName, int consumer) {
+        return Tags.of(QUEUE, queueName, CONSUMER, Integer.toString(consumer));
+    }
+}
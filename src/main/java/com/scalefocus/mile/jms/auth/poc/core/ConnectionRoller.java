@@ -0,0 +1,167 @@
+package com.scalefocus.mile.jms.auth.poc.core;
+
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.inject.Any;
+import javax.enterprise.inject.Instance;
+import javax.inject.Inject;
+import jakarta.jms.JMSException;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Moves the open broker connections onto new SSL material without stopping traffic.
+ *
+ * <p>After the key store or trust store was reloaded, new connections already use the new
+ * {@code SSLContext}, but existing ones keep the material they were opened with. A roll replaces
+ * them in the background: every {@link RollableConnections} holder opens a replacement for one
+ * connection, moves its work over and closes the old connection once drained. At most
+ * {@code solace.ssl.reload.max-concurrent-rolls} connections are replaced at the same time, so a
+ * rotation never drops every connection at once. A reload arriving while a roll is running
+ * starts another roll once the current one has finished.</p>
+ */
+@ApplicationScoped
+@ThreadSafe
+public class ConnectionRoller {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionRoller.class);
+
+    private static final String MAX_CONCURRENT_ROLLS = "solace.ssl.reload.max-concurrent-rolls";
+    private static final String DRAIN_TIMEOUT = "solace.ssl.reload.drain-timeout-ms";
+
+    private static final String DEFAULT_MAX_CONCURRENT_ROLLS = "1";
+    private static final String DEFAULT_DRAIN_TIMEOUT = "5000";
+
+    private final List<RollableConnections> holders = new CopyOnWriteArrayList<>();
+    private final int maxConcurrentRolls;
+    private final long drainTimeoutMillis;
+    private final ExecutorService coordinator = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "connection-roller");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Constructs a new {@code ConnectionRoller} rolling the connections of every
+     * {@code RollableConnections} bean.
+     *
+     * @param holders            the connection holders to roll
+     * @param maxConcurrentRolls the maximum number of connections replaced at the same time
+     * @param drainTimeoutMillis how long a replaced connection may drain before it is closed
+     */
+    @Inject
+    public ConnectionRoller(
+            @Any Instance<RollableConnections> holders,
+            @ConfigProperty(name = MAX_CONCURRENT_ROLLS, defaultValue = DEFAULT_MAX_CONCURRENT_ROLLS) int maxConcurrentRolls,
+            @ConfigProperty(name = DRAIN_TIMEOUT, defaultValue = DEFAULT_DRAIN_TIMEOUT) long drainTimeoutMillis) {
+        this(maxConcurrentRolls, drainTimeoutMillis);
+        holders.forEach(this.holders::add);
+    }
+
+    /**
+     * Constructs a new {@code ConnectionRoller} without holders, for use outside of CDI. Holders
+     * are added with {@link #register(RollableConnections)}.
+     *
+     * @param properties the configuration properties
+     */
+    public ConnectionRoller(Properties properties) {
+        this(Integer.parseInt(properties.getProperty(MAX_CONCURRENT_ROLLS, DEFAULT_MAX_CONCURRENT_ROLLS)),
+                Long.parseLong(properties.getProperty(DRAIN_TIMEOUT, DEFAULT_DRAIN_TIMEOUT)));
+    }
+
+    private ConnectionRoller(int maxConcurrentRolls, long drainTimeoutMillis) {
+        this.maxConcurrentRolls = Math.max(1, maxConcurrentRolls);
+        this.drainTimeoutMillis = Math.max(0, drainTimeoutMillis);
+    }
+
+    /**
+     * Adds a holder whose connections are rolled from now on.
+     *
+     * @param holder the connection holder
+     */
+    public void register(RollableConnections holder) {
+        holders.add(holder);
+    }
+
+    /**
+     * Starts replacing every connection of every holder in the background.
+     *
+     * @return a future completed once all connections were rolled or failed to roll
+     */
+    public CompletableFuture<Void> rollAll() {
+        try {
+            return CompletableFuture.runAsync(this::rollEach, coordinator);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    private void rollEach() {
+        List<Runnable> rolls = new ArrayList<>();
+        for (RollableConnections holder : holders) {
+            for (int i = 0; i < holder.connectionCount(); i++) {
+                int index = i;
+                rolls.add(() -> roll(holder, index));
+            }
+        }
+        if (rolls.isEmpty()) {
+            return;
+        }
+        logger.info("Rolling {} connection(s) onto the reloaded SSL material, {} at a time",
+                rolls.size(), maxConcurrentRolls);
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(maxConcurrentRolls, task -> {
+            Thread thread = new Thread(task, "connection-roller-" + threads.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Semaphore permits = new Semaphore(maxConcurrentRolls);
+        try {
+            for (Runnable roll : rolls) {
+                permits.acquire();
+                workers.execute(() -> {
+                    try {
+                        roll.run();
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+            // wait for the last rolls before a following reload starts another pass
+            permits.acquire(maxConcurrentRolls);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            workers.shutdown();
+        }
+    }
+
+    private void roll(RollableConnections holder, int index) {
+        try {
+            holder.roll(index, drainTimeoutMillis);
+        } catch (JMSException | RuntimeException e) {
+            logger.warn("Could not roll connection {} of {}, keeping it until it reconnects: {}",
+                    index, holder.getClass().getSimpleName(), e.getMessage());
+        }
+    }
+
+    /**
+     * Stops rolling connections.
+     */
+    @PreDestroy
+    void close() {
+        coordinator.shutdownNow();
+    }
+}
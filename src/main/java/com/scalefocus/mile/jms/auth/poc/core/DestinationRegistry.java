@@ -0,0 +1,229 @@
+package com.scalefocus.mile.jms.auth.poc.core;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import jakarta.jms.Destination;
+import jakarta.jms.JMSException;
+import jakarta.jms.MessageConsumer;
+import jakarta.jms.Queue;
+import jakarta.jms.Session;
+import jakarta.jms.Topic;
+import lombok.Getter;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The queues and topics the client sends to and consumes from.
+ *
+ * <p>{@code solace.queue.data} is always registered and is the default destination.
+ * {@code solace.destinations} adds more as a comma separated list of keys: a plain name or
+ * {@code queue:name} for a queue, {@code topic:name} for a topic. The same keys name destinations
+ * in routing rules, consumer groups, prefetch overrides and metric tags.</p>
+ *
+ * <p>JMS destinations are plain identities that any session of the provider accepts, so each one
+ * is created once, on the first session that asks for it, and reused by every other session
+ * instead of being created again for every producer and consumer.</p>
+ */
+@ApplicationScoped
+@ThreadSafe
+public class DestinationRegistry {
+
+    private static final String DEFAULT_QUEUE = "solace.queue.data";
+    private static final String DESTINATIONS = "solace.destinations";
+
+    private static final String QUEUE_PREFIX = "queue:";
+    private static final String TOPIC_PREFIX = "topic:";
+
+    /**
+     * Whether a destination is a queue or a topic.
+     */
+    public enum Kind {
+        /** Each message is delivered to one consumer. */
+        QUEUE,
+        /** Each message is delivered to every subscription. */
+        TOPIC
+    }
+
+    private final Endpoint defaultEndpoint;
+    private final Map<String, Endpoint> endpoints;
+    private final Map<String, Destination> destinations = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new {@code DestinationRegistry}.
+     *
+     * @param defaultQueue the name of the default queue
+     * @param destinations the keys of further destinations, comma separated
+     */
+    @Inject
+    public DestinationRegistry(
+            @ConfigProperty(name = DEFAULT_QUEUE) String defaultQueue,
+            @ConfigProperty(name = DESTINATIONS) Optional<String> destinations) {
+        Map<String, Endpoint> registered = new LinkedHashMap<>();
+        this.defaultEndpoint = parse(defaultQueue);
+        registered.put(defaultEndpoint.getKey(), defaultEndpoint);
+        if (destinations.isPresent()) {
+            for (String key : destinations.get().split(",")) {
+                if (!key.isBlank()) {
+                    Endpoint endpoint = parse(key);
+                    registered.putIfAbsent(endpoint.getKey(), endpoint);
+                }
+            }
+        }
+        this.endpoints = Collections.unmodifiableMap(registered);
+    }
+
+    /**
+     * Constructs a new {@code DestinationRegistry} from plain properties, for use outside of
+     * Quarkus.
+     *
+     * @param properties the client configuration
+     */
+    public DestinationRegistry(Properties properties) {
+        this(properties.getProperty(DEFAULT_QUEUE), Optional.ofNullable(properties.getProperty(DESTINATIONS)));
+    }
+
+    /**
+     * Creates a registry holding a single queue.
+     *
+     * @param queueName the name of the default queue
+     * @return a registry of that queue only
+     */
+    public static DestinationRegistry of(String queueName) {
+        return new DestinationRegistry(queueName, Optional.empty());
+    }
+
+    /**
+     * Returns the default destination, {@code solace.queue.data}.
+     *
+     * @return the default queue
+     */
+    public Endpoint getDefault() {
+        return defaultEndpoint;
+    }
+
+    /**
+     * Returns a registered destination.
+     *
+     * @param key the destination's key, as in {@code solace.destinations}
+     * @return the destination
+     * @throws IllegalArgumentException if no destination is registered under that key
+     */
+    public Endpoint get(String key) {
+        Endpoint endpoint = endpoints.get(parse(key).getKey());
+        if (endpoint == null) {
+            throw new IllegalArgumentException("Unknown destination " + key + ", register it in " + DESTINATIONS);
+        }
+        return endpoint;
+    }
+
+    /**
+     * Normalizes a destination key, so that {@code queue:orders} and {@code orders} name the same
+     * queue wherever keys are configured.
+     *
+     * @param key a plain name, or {@code queue:} or {@code topic:} followed by a name
+     * @return the key the destination is registered under
+     */
+    public static String keyOf(String key) {
+        return parse(key).getKey();
+    }
+
+    /**
+     * Returns every registered destination, the default one first.
+     *
+     * @return the registered destinations
+     */
+    public Collection<Endpoint> all() {
+        return endpoints.values();
+    }
+
+    /**
+     * Returns the JMS destination of an endpoint, creating it on the given session the first time.
+     *
+     * @param session  a session of the provider the destination is used with
+     * @param endpoint the registered destination
+     * @return the cached JMS destination
+     * @throws JMSException if the destination cannot be created
+     */
+    public Destination resolve(Session session, Endpoint endpoint) throws JMSException {
+        Destination destination = destinations.get(endpoint.getKey());
+        if (destination == null) {
+            destination = endpoint.isTopic()
+                    ? session.createTopic(endpoint.getName())
+                    : session.createQueue(endpoint.getName());
+            Destination raced = destinations.putIfAbsent(endpoint.getKey(), destination);
+            if (raced != null) {
+                destination = raced;
+            }
+        }
+        return destination;
+    }
+
+    /**
+     * Creates a consumer of an endpoint. Consumers of a topic join a shared subscription named
+     * after the topic, so that parallel consumers split its messages like those of a queue.
+     *
+     * @param session  the session the consumer is created on
+     * @param endpoint the registered destination
+     * @return the created consumer
+     * @throws JMSException if the consumer cannot be created
+     */
+    public MessageConsumer createConsumer(Session session, Endpoint endpoint) throws JMSException {
+        Destination destination = resolve(session, endpoint);
+        return endpoint.isTopic()
+                ? session.createSharedConsumer((Topic) destination, endpoint.getName())
+                : session.createConsumer((Queue) destination);
+    }
+
+    private static Endpoint parse(String key) {
+        String trimmed = key.trim();
+        if (trimmed.startsWith(TOPIC_PREFIX)) {
+            return new Endpoint(trimmed.substring(TOPIC_PREFIX.length()).trim(), Kind.TOPIC);
+        }
+        if (trimmed.startsWith(QUEUE_PREFIX)) {
+            return new Endpoint(trimmed.substring(QUEUE_PREFIX.length()).trim(), Kind.QUEUE);
+        }
+        return new Endpoint(trimmed, Kind.QUEUE);
+    }
+
+    /**
+     * A registered queue or topic. Its key is the queue's plain name or {@code topic:} followed by
+     * the topic's name.
+     */
+    @Getter
+    public static final class Endpoint {
+
+        private final String name;
+        private final Kind kind;
+        private final String key;
+
+        private Endpoint(String name, Kind kind) {
+            if (name.isEmpty()) {
+                throw new IllegalArgumentException("Destination name must not be empty");
+            }
+            this.name = name;
+            this.kind = kind;
+            this.key = kind == Kind.TOPIC ? TOPIC_PREFIX + name : name;
+        }
+
+        /**
+         * Tells whether this destination is a topic.
+         *
+         * @return {@code true} for a topic, {@code false} for a queue
+         */
+        public boolean isTopic() {
+            return kind == Kind.TOPIC;
+        }
+
+        @Override
+        public String toString() {
+            return key;
+        }
+    }
+}
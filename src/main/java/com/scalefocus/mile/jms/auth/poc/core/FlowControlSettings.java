@@ -0,0 +1,163 @@
+package com.scalefocus.mile.jms.auth.poc.core;
+
+import javax.enterprise.context.ApplicationScoped;
+import lombok.Getter;
+import org.apache.qpid.jms.JmsConnectionFactory;
+import org.apache.qpid.jms.JmsDestination;
+import org.apache.qpid.jms.JmsSession;
+import org.apache.qpid.jms.policy.JmsDefaultPrefetchPolicy;
+import org.apache.qpid.jms.policy.JmsDefaultPresettlePolicy;
+import org.apache.qpid.jms.policy.JmsDefaultRedeliveryPolicy;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+
+/**
+ * Flow-control settings applied to every connection factory the client creates.
+ *
+ * <p>In qpid-jms the prefetch of a consumer is the AMQP link credit it grants the broker, so
+ * it bounds how many unacknowledged messages each consumer buffers locally. The prefetch can
+ * be overridden per destination, keyed as in the {@link DestinationRegistry}, and is always
+ * capped by the local buffer size. Presettling trades
+ * the broker's delivery guarantee for throughput: presettled producers do not wait for the
+ * broker to accept a message, and presettled consumers acknowledge on arrival, so messages
+ * in flight are lost if the client fails.</p>
+ */
+@ApplicationScoped
+@Getter
+public class FlowControlSettings {
+
+    private static final String QUEUE_PREFETCH = "solace.consumer.prefetch";
+    private static final String QUEUE_PREFETCH_OVERRIDES = "solace.flow.queue-prefetch";
+    private static final String LOCAL_BUFFER_SIZE = "solace.flow.local-buffer-size";
+    private static final String PRESETTLE_PRODUCERS = "solace.flow.presettle-producers";
+    private static final String PRESETTLE_CONSUMERS = "solace.flow.presettle-consumers";
+    private static final String MAX_REDELIVERIES = "solace.flow.max-redeliveries";
+
+    private static final String DEFAULT_QUEUE_PREFETCH = "100";
+    private static final String DEFAULT_LOCAL_BUFFER_SIZE = "1000";
+    private static final String DEFAULT_PRESETTLE_PRODUCERS = "false";
+    private static final String DEFAULT_PRESETTLE_CONSUMERS = "false";
+    private static final String DEFAULT_MAX_REDELIVERIES = "-1";
+
+    @ConfigProperty(name = QUEUE_PREFETCH, defaultValue = DEFAULT_QUEUE_PREFETCH)
+    int queuePrefetch;
+
+    @ConfigProperty(name = QUEUE_PREFETCH_OVERRIDES)
+    Optional<String> queuePrefetchOverrides;
+
+    @ConfigProperty(name = LOCAL_BUFFER_SIZE, defaultValue = DEFAULT_LOCAL_BUFFER_SIZE)
+    int localBufferSize;
+
+    @ConfigProperty(name = PRESETTLE_PRODUCERS, defaultValue = DEFAULT_PRESETTLE_PRODUCERS)
+    boolean presettleProducers;
+
+    @ConfigProperty(name = PRESETTLE_CONSUMERS, defaultValue = DEFAULT_PRESETTLE_CONSUMERS)
+    boolean presettleConsumers;
+
+    @ConfigProperty(name = MAX_REDELIVERIES, defaultValue = DEFAULT_MAX_REDELIVERIES)
+    int maxRedeliveries;
+
+    public FlowControlSettings() {}
+
+    public FlowControlSettings(Properties properties) {
+        queuePrefetch = Integer.parseInt(properties.getProperty(QUEUE_PREFETCH, DEFAULT_QUEUE_PREFETCH));
+        queuePrefetchOverrides = Optional.ofNullable(properties.getProperty(QUEUE_PREFETCH_OVERRIDES));
+        localBufferSize = Integer.parseInt(properties.getProperty(LOCAL_BUFFER_SIZE, DEFAULT_LOCAL_BUFFER_SIZE));
+        presettleProducers = Boolean.parseBoolean(properties.getProperty(PRESETTLE_PRODUCERS, DEFAULT_PRESETTLE_PRODUCERS));
+        presettleConsumers = Boolean.parseBoolean(properties.getProperty(PRESETTLE_CONSUMERS, DEFAULT_PRESETTLE_CONSUMERS));
+        maxRedeliveries = Integer.parseInt(properties.getProperty(MAX_REDELIVERIES, DEFAULT_MAX_REDELIVERIES));
+    }
+
+    /**
+     * Returns the prefetch used by consumers of the given destination.
+     *
+     * @param destination the key of the destination, a queue name or {@code topic:} and a topic name
+     * @return the per-destination override if one is configured, otherwise the default prefetch,
+     *         capped by the local buffer size
+     */
+    public int prefetchFor(String destination) {
+        return Math.min(parseOverrides().getOrDefault(destination, queuePrefetch), localBufferSize);
+    }
+
+    /**
+     * Applies the prefetch, presettle and redelivery policies to a connection factory.
+     *
+     * @param factory the factory to configure
+     */
+    public void applyTo(JmsConnectionFactory factory) {
+        DestinationPrefetchPolicy prefetchPolicy = new DestinationPrefetchPolicy(parseOverrides());
+        prefetchPolicy.setMaxPrefetchSize(localBufferSize);
+        prefetchPolicy.setQueuePrefetch(queuePrefetch);
+        prefetchPolicy.setTopicPrefetch(queuePrefetch);
+        prefetchPolicy.setDurableTopicPrefetch(queuePrefetch);
+        factory.setPrefetchPolicy(prefetchPolicy);
+
+        JmsDefaultPresettlePolicy presettlePolicy = new JmsDefaultPresettlePolicy();
+        presettlePolicy.setPresettleProducers(presettleProducers);
+        presettlePolicy.setPresettleConsumers(presettleConsumers);
+        factory.setPresettlePolicy(presettlePolicy);
+
+        JmsDefaultRedeliveryPolicy redeliveryPolicy = new JmsDefaultRedeliveryPolicy();
+        redeliveryPolicy.setMaxRedeliveries(maxRedeliveries);
+        factory.setRedeliveryPolicy(redeliveryPolicy);
+    }
+
+    /**
+     * Parses {@code solace.flow.queue-prefetch}, a comma separated list of
+     * {@code destination:prefetch} pairs.
+     */
+    private Map<String, Integer> parseOverrides() {
+        if (queuePrefetchOverrides.isEmpty() || queuePrefetchOverrides.get().isBlank()) {
+            return Collections.emptyMap();
+        }
+        Map<String, Integer> overrides = new HashMap<>();
+        for (String entry : queuePrefetchOverrides.get().split(",")) {
+            int separator = entry.lastIndexOf(':');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Invalid " + QUEUE_PREFETCH_OVERRIDES + " entry: " + entry);
+            }
+            overrides.put(entry.substring(0, separator).trim(), Integer.parseInt(entry.substring(separator + 1).trim()));
+        }
+        return overrides;
+    }
+
+    /**
+     * A prefetch policy that uses a fixed prefetch for selected queues and topics. Queue browsers
+     * keep the default browser prefetch.
+     */
+    private static final class DestinationPrefetchPolicy extends JmsDefaultPrefetchPolicy {
+
+        private final Map<String, Integer> overrides;
+
+        DestinationPrefetchPolicy(Map<String, Integer> overrides) {
+            this.overrides = Map.copyOf(overrides);
+        }
+
+        DestinationPrefetchPolicy(DestinationPrefetchPolicy source) {
+            super(source);
+            this.overrides = source.overrides;
+        }
+
+        @Override
+        public DestinationPrefetchPolicy copy() {
+            return new DestinationPrefetchPolicy(this);
+        }
+
+        @Override
+        public int getConfiguredPrefetch(JmsSession session, JmsDestination destination, boolean durable, boolean browser) {
+            if (destination != null && !browser) {
+                String key = destination.isTopic() ? "topic:" + destination.getAddress() : destination.getAddress();
+                Integer prefetch = overrides.get(key);
+                if (prefetch != null) {
+                    return Math.min(prefetch, getMaxPrefetchSize());
+                }
+            }
+            return super.getConfiguredPrefetch(session, destination, durable, browser);
+        }
+    }
+}
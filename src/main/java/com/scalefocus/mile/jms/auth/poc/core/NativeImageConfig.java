@@ -0,0 +1,88 @@
+package com.scalefocus.mile.jms.auth.poc.core;
+
+import io.quarkus.runtime.annotations.RegisterForReflection;
+import org.apache.qpid.jms.JmsConnectionFactory;
+import org.apache.qpid.jms.policy.JmsDefaultDeserializationPolicy;
+import org.apache.qpid.jms.policy.JmsDefaultMessageIDPolicy;
+import org.apache.qpid.jms.policy.JmsDefaultPrefetchPolicy;
+import org.apache.qpid.jms.policy.JmsDefaultPresettlePolicy;
+import org.apache.qpid.jms.policy.JmsDefaultRedeliveryPolicy;
+import org.apache.qpid.jms.provider.amqp.AmqpProvider;
+import org.apache.qpid.jms.provider.amqp.AmqpProviderFactory;
+import org.apache.qpid.jms.provider.failover.FailoverProvider;
+import org.apache.qpid.jms.provider.failover.FailoverProviderFactory;
+import org.apache.qpid.jms.sasl.AnonymousMechanismFactory;
+import org.apache.qpid.jms.sasl.CramMD5MechanismFactory;
+import org.apache.qpid.jms.sasl.ExternalMechanismFactory;
+import org.apache.qpid.jms.sasl.PlainMechanismFactory;
+import org.apache.qpid.jms.sasl.ScramSHA1MechanismFactory;
+import org.apache.qpid.jms.sasl.ScramSHA256MechanismFactory;
+import org.apache.qpid.jms.sasl.ScramSHA512MechanismFactory;
+import org.apache.qpid.jms.sasl.XOauth2MechanismFactory;
+import org.apache.qpid.jms.tracing.JmsNoOpTracerFactory;
+import org.apache.qpid.jms.transports.TransportOptions;
+import org.apache.qpid.jms.transports.netty.NettySslTransportFactory;
+import org.apache.qpid.jms.transports.netty.NettyTcpTransportFactory;
+import org.apache.qpid.jms.transports.netty.NettyWsTransportFactory;
+import org.apache.qpid.jms.transports.netty.NettyWssTransportFactory;
+
+/**
+ * Registers the classes the client's libraries instantiate or configure reflectively, so that
+ * they are kept in a native executable.
+ *
+ * <p>qpid-jms looks its provider, transport, SASL and tracer factories up by URI scheme in
+ * {@code META-INF/services/org/apache/qpid/jms}, which the native image includes as resources,
+ * and instantiates them by name. Options in the connection URI, such as the {@code failover.*}
+ * options of {@link ReconnectSettings}, are applied through the setters of the providers, the
+ * transport options and the policies. LZ4 picks its fastest implementation by name, and
+ * {@link Threads} looks the virtual thread API up by name.</p>
+ *
+ * <p>The resources, and the classes that load native libraries and therefore have to be
+ * initialized when the executable starts rather than when it is built, are declared in
+ * {@code META-INF/native-image/org.scalefocus.mile/jms-auth-poc}.</p>
+ */
+@RegisterForReflection(
+        targets = {
+                JmsConnectionFactory.class,
+                AmqpProviderFactory.class,
+                AmqpProvider.class,
+                FailoverProviderFactory.class,
+                FailoverProvider.class,
+                NettyTcpTransportFactory.class,
+                NettySslTransportFactory.class,
+                NettyWsTransportFactory.class,
+                NettyWssTransportFactory.class,
+                TransportOptions.class,
+                AnonymousMechanismFactory.class,
+                CramMD5MechanismFactory.class,
+                ExternalMechanismFactory.class,
+                PlainMechanismFactory.class,
+                ScramSHA1MechanismFactory.class,
+                ScramSHA256MechanismFactory.class,
+                ScramSHA512MechanismFactory.class,
+                XOauth2MechanismFactory.class,
+                JmsNoOpTracerFactory.class,
+                JmsDefaultDeserializationPolicy.class,
+                JmsDefaultMessageIDPolicy.class,
+                JmsDefaultPrefetchPolicy.class,
+                JmsDefaultPresettlePolicy.class,
+                JmsDefaultRedeliveryPolicy.class
+        },
+        classNames = {
+                "net.jpountz.lz4.LZ4JavaSafeCompressor",
+                "net.jpountz.lz4.LZ4JavaUnsafeCompressor",
+                "net.jpountz.lz4.LZ4HCJavaSafeCompressor",
+                "net.jpountz.lz4.LZ4HCJavaUnsafeCompressor",
+                "net.jpountz.lz4.LZ4JavaSafeFastDecompressor",
+                "net.jpountz.lz4.LZ4JavaUnsafeFastDecompressor",
+                "net.jpountz.lz4.LZ4JavaSafeSafeDecompressor",
+                "net.jpountz.lz4.LZ4JavaUnsafeSafeDecompressor",
+                "java.lang.Thread",
+                "java.lang.Thread$Builder",
+                "java.lang.Thread$Builder$OfVirtual",
+                "java.util.concurrent.Executors"
+        })
+final class NativeImageConfig {
+
+    private NativeImageConfig() {}
+}
@@ -0,0 +1,228 @@
+package com.scalefocus.mile.jms.auth.poc.core;
+
+import com.github.luben.zstd.Zstd;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The compression algorithms a message body can be encoded with.
+ *
+ * <p>All codecs work on caller-provided arrays, so that callers can reuse their buffers. The
+ * length of the original body must be known to decompress; {@link PayloadCompression} carries it
+ * in a message property. LZ4 is the fastest, Zstd compresses best for a moderate CPU cost and
+ * Deflate needs no native library.</p>
+ */
+public enum PayloadCodec {
+
+    /**
+     * LZ4 block format. Compression uses the fastest available implementation; decompression
+     * uses a bounds-checking safe decompressor, since compressed bodies come from the broker and
+     * must be treated as untrusted.
+     */
+    LZ4("lz4") {
+        @Override
+        public int maxCompressedLength(int length) {
+            return Lz4.COMPRESSOR.maxCompressedLength(length);
+        }
+
+        @Override
+        public int compress(byte[] source, int length, byte[] target) {
+            return Lz4.COMPRESSOR.compress(source, 0, length, target, 0, target.length);
+        }
+
+        @Override
+        public void decompress(byte[] source, int length, byte[] target, int originalLength) {
+            int decompressed = Lz4.DECOMPRESSOR.decompress(source, 0, length, target, 0, originalLength);
+            if (decompressed != originalLength) {
+                throw new IllegalArgumentException("Corrupt lz4 body");
+            }
+        }
+    },
+
+    /** Zstandard at its default level. */
+    ZSTD("zstd") {
+        @Override
+        public int maxCompressedLength(int length) {
+            return (int) Zstd.compressBound(length);
+        }
+
+        @Override
+        public int compress(byte[] source, int length, byte[] target) {
+            return checkZstd(Zstd.compressByteArray(target, 0, target.length, source, 0, length,
+                    Zstd.defaultCompressionLevel()));
+        }
+
+        @Override
+        public void decompress(byte[] source, int length, byte[] target, int originalLength) {
+            long decompressed = checkZstd(Zstd.decompressByteArray(target, 0, originalLength, source, 0, length));
+            if (decompressed != originalLength) {
+                throw new IllegalArgumentException("Corrupt zstd body");
+            }
+        }
+    },
+
+    /** Deflate at the default level, with the JDK's zlib. */
+    DEFLATE("deflate") {
+        @Override
+        public int maxCompressedLength(int length) {
+            // zlib's deflateBound for the default settings, plus the zlib header and checksum
+            return length + (length >> 12) + (length >> 14) + (length >> 25) + 13 + 6;
+        }
+
+        @Override
+        public int compress(byte[] source, int length, byte[] target) {
+            Deflater deflater = DEFLATERS.poll();
+            if (deflater == null) {
+                deflater = new Deflater();
+            }
+            try {
+                deflater.setInput(source, 0, length);
+                deflater.finish();
+                int compressed = deflater.deflate(target);
+                if (!deflater.finished()) {
+                    throw new IllegalArgumentException("Deflate target too small");
+                }
+                return compressed;
+            } finally {
+                deflater.reset();
+                if (!DEFLATERS.offer(deflater)) {
+                    deflater.end();
+                }
+            }
+        }
+
+        @Override
+        public void decompress(byte[] source, int length, byte[] target, int originalLength) {
+            Inflater inflater = INFLATERS.poll();
+            if (inflater == null) {
+                inflater = new Inflater();
+            }
+            try {
+                inflater.setInput(source, 0, length);
+                int inflated = inflater.inflate(target, 0, originalLength);
+                if (inflated != originalLength || !inflater.finished()) {
+                    throw new IllegalArgumentException("Corrupt deflate body");
+                }
+            } catch (DataFormatException e) {
+                throw new IllegalArgumentException("Corrupt deflate body", e);
+            } finally {
+                inflater.reset();
+                if (!INFLATERS.offer(inflater)) {
+                    inflater.end();
+                }
+            }
+        }
+    };
+
+    /**
+     * The number of idle deflaters, inflaters and buffers kept for reuse. Compression is
+     * CPU-bound, so no more than one per processor is busy at a time, however many threads,
+     * virtual or not, send and receive.
+     */
+    static final int POOLED = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    // pooled rather than per thread, since a virtual thread per send would never reuse them;
+    // those beyond the pool's capacity are ended at once instead of holding native memory until GC
+    private static final BlockingQueue<Deflater> DEFLATERS = new ArrayBlockingQueue<>(POOLED);
+    private static final BlockingQueue<Inflater> INFLATERS = new ArrayBlockingQueue<>(POOLED);
+
+    private final String id;
+
+    PayloadCodec(String id) {
+        this.id = id;
+    }
+
+    /**
+     * Returns the name the codec is configured with and tagged on messages as.
+     *
+     * @return the codec name
+     */
+    public String id() {
+        return id;
+    }
+
+    /**
+     * Returns the codec with the given name.
+     *
+     * @param id the codec name, case-insensitive
+     * @return the codec
+     * @throws IllegalArgumentException if no codec has that name
+     */
+    public static PayloadCodec forId(String id) {
+        String lower = id.toLowerCase(Locale.ROOT);
+        for (PayloadCodec codec : values()) {
+            if (codec.id.equals(lower)) {
+                return codec;
+            }
+        }
+        throw new IllegalArgumentException("Unknown payload codec " + id);
+    }
+
+    /**
+     * Returns the largest size a body of the given length can have once compressed.
+     *
+     * @param length the length of the body
+     * @return the size the compression target must have
+     */
+    public abstract int maxCompressedLength(int length);
+
+    /**
+     * Compresses the first {@code length} bytes of {@code source} into {@code target}.
+     *
+     * @param source the body
+     * @param length the length of the body
+     * @param target an array of at least {@link #maxCompressedLength(int)} bytes
+     * @return the compressed length
+     */
+    public abstract int compress(byte[] source, int length, byte[] target);
+
+    /**
+     * Decompresses the first {@code length} bytes of {@code source} into {@code target}.
+     *
+     * @param source         the compressed body
+     * @param length         the compressed length
+     * @param target         an array of at least {@code originalLength} bytes
+     * @param originalLength the length of the body before compression
+     * @throws IllegalArgumentException if the compressed body is corrupt or does not decompress
+     *                                  to exactly {@code originalLength} bytes
+     */
+    public abstract void decompress(byte[] source, int length, byte[] target, int originalLength);
+
+    private static int checkZstd(long result) {
+        if (Zstd.isError(result)) {
+            throw new IllegalArgumentException(Zstd.getErrorName(result));
+        }
+        return (int) result;
+    }
+
+    /**
+     * Loads LZ4 on first use only, since the fastest instance may load a native library.
+     *
+     * <p>The fast decompressors trust their input, and their native and {@code Unsafe} variants
+     * may read past the end of a malicious body, so received bodies go through a safe
+     * decompressor instead: the native one, which checks every bound in C, or the pure-Java one,
+     * whose array accesses the JVM checks, where no native library is available. The
+     * {@code Unsafe} Java variant is never used for decompression.</p>
+     */
+    private static final class Lz4 {
+        static final LZ4Compressor COMPRESSOR = LZ4Factory.fastestInstance().fastCompressor();
+        static final LZ4SafeDecompressor DECOMPRESSOR = safeDecompressor();
+
+        private static LZ4SafeDecompressor safeDecompressor() {
+            try {
+                return LZ4Factory.nativeInstance().safeDecompressor();
+            } catch (LinkageError | RuntimeException e) {
+                // no native library for this platform
+                return LZ4Factory.safeInstance().safeDecompressor();
+            }
+        }
+    }
+}
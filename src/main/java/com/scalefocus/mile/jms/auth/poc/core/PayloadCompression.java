@@ -0,0 +1,285 @@
+package com.scalefocus.mile.jms.auth.poc.core;
+
+import javax.enterprise.context.ApplicationScoped;
+import jakarta.jms.BytesMessage;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.MessageFormatException;
+import jakarta.jms.Session;
+import lombok.Getter;
+import org.eclipse.microprofile.config.ConfigProvider;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * The optional compression layer between message payloads and the wire.
+ *
+ * <p>With {@code solace.compression.codec} set, text payloads of at least
+ * {@code solace.compression.threshold-bytes} bytes are sent as a {@code BytesMessage} holding the
+ * compressed UTF-8 text. The message is tagged with the codec, the original length and the
+ * original message type in the {@code payloadCodec}, {@code payloadLength} and
+ * {@code payloadType} properties, so that consumers can restore the payload whatever their own
+ * configuration. Smaller payloads, and payloads that would not shrink, are sent as before.</p>
+ *
+ * <p>Consumers decompress through {@link #decodeText(BytesMessage)}, which the handler
+ * pipeline's {@code MessageType.TEXT} calls transparently. Compression and decompression go
+ * through buffers taken from a small bounded pool and reused from message to message, up to
+ * {@link #MAX_RETAINED_BUFFER} bytes each. The pool is shared by all threads rather than kept per
+ * thread, so that sends on a virtual thread each reuse buffers too.</p>
+ *
+ * <p>Received bodies and their properties are untrusted. A {@code payloadLength} that is missing,
+ * negative or above {@code solace.compression.max-decoded-bytes} is rejected before any buffer is
+ * allocated, and every failure to decode, including a body that does not decompress to exactly
+ * that length, surfaces as a {@link MessageFormatException}, which the handler pipeline
+ * quarantines instead of having the message redelivered. The limit is read from the MicroProfile
+ * configuration on first use, since decoding is static.</p>
+ */
+@ApplicationScoped
+@ThreadSafe
+public class PayloadCompression {
+
+    /** The message property naming the codec a body was compressed with. */
+    public static final String CODEC_PROPERTY = "payloadCodec";
+
+    /** The message property holding the length of the body before compression. */
+    public static final String LENGTH_PROPERTY = "payloadLength";
+
+    /** The message property holding the original message type; only {@code text} is compressed so far. */
+    public static final String TYPE_PROPERTY = "payloadType";
+
+    /** The largest buffer kept in the pool between messages; larger bodies use a one-off buffer. */
+    static final int MAX_RETAINED_BUFFER = 4 * 1024 * 1024;
+
+    /** The configuration property limiting the decompressed length of a received body. */
+    public static final String MAX_DECODED = "solace.compression.max-decoded-bytes";
+
+    /** The default limit of the decompressed length, matching {@code solace.producer.bytes.max-size}. */
+    public static final int DEFAULT_MAX_DECODED = 16 * 1024 * 1024;
+
+    private static final String CODEC = "solace.compression.codec";
+    private static final String THRESHOLD = "solace.compression.threshold-bytes";
+
+    private static final String DEFAULT_THRESHOLD = "4096";
+
+    private static final BlockingQueue<Buffers> BUFFERS = new ArrayBlockingQueue<>(PayloadCodec.POOLED);
+
+    @ConfigProperty(name = CODEC)
+    Optional<String> codecName;
+
+    @ConfigProperty(name = THRESHOLD, defaultValue = DEFAULT_THRESHOLD)
+    @Getter
+    int thresholdBytes;
+
+    private volatile PayloadCodec codec;
+    private volatile boolean resolved;
+
+    public PayloadCompression() {}
+
+    public PayloadCompression(Properties properties) {
+        codecName = Optional.ofNullable(properties.getProperty(CODEC));
+        thresholdBytes = Integer.parseInt(properties.getProperty(THRESHOLD, DEFAULT_THRESHOLD));
+    }
+
+    /**
+     * Creates a compression layer that never compresses, for use outside of Quarkus.
+     *
+     * @return a disabled compression layer
+     */
+    public static PayloadCompression disabled() {
+        return new PayloadCompression(new Properties());
+    }
+
+    /**
+     * Returns the configured codec.
+     *
+     * @return the codec outgoing payloads are compressed with, or {@code null} if compression is off
+     */
+    public PayloadCodec getCodec() {
+        if (!resolved) {
+            String name = codecName.map(String::trim).orElse("none");
+            codec = name.isEmpty() || "none".equalsIgnoreCase(name) ? null : PayloadCodec.forId(name);
+            resolved = true;
+        }
+        return codec;
+    }
+
+    /**
+     * Creates the message carrying a text payload: a {@code TextMessage}, or a compressed
+     * {@code BytesMessage} if the payload is large enough and compresses.
+     *
+     * @param session the session to create the message with
+     * @param text    the payload
+     * @return the message to send
+     * @throws JMSException if the message cannot be created
+     */
+    public Message createTextMessage(Session session, String text) throws JMSException {
+        PayloadCodec active = getCodec();
+        // compare the char count to avoid encoding small payloads; every char takes at least one byte
+        if (active == null || text == null || text.length() < thresholdBytes) {
+            return session.createTextMessage(text);
+        }
+        byte[] encoded = text.getBytes(StandardCharsets.UTF_8);
+        Buffers buffers = Buffers.acquire();
+        BytesMessage message;
+        try {
+            byte[] compressed = buffers.output(active.maxCompressedLength(encoded.length));
+            int length = active.compress(encoded, encoded.length, compressed);
+            if (length >= encoded.length) {
+                return session.createTextMessage(text);
+            }
+            message = session.createBytesMessage();
+            message.writeBytes(compressed, 0, length);
+        } finally {
+            buffers.release();
+        }
+        message.setStringProperty(CODEC_PROPERTY, active.id());
+        message.setIntProperty(LENGTH_PROPERTY, encoded.length);
+        message.setStringProperty(TYPE_PROPERTY, "text");
+        return message;
+    }
+
+    /**
+     * Returns the original type of a compressed message.
+     *
+     * @param message a received message
+     * @return the original type, such as {@code text}, or {@code null} if the message is not compressed
+     */
+    public static String originalType(Message message) {
+        if (!(message instanceof BytesMessage)) {
+            return null;
+        }
+        try {
+            return message.getStringProperty(CODEC_PROPERTY) != null ? message.getStringProperty(TYPE_PROPERTY) : null;
+        } catch (JMSException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Decompresses a compressed text payload, up to the configured
+     * {@code solace.compression.max-decoded-bytes}.
+     *
+     * @param message a message whose {@link #originalType(Message)} is {@code text}
+     * @return the original text
+     * @throws MessageFormatException if the codec is unknown, the original length is invalid or
+     *                                above the limit, or the body is corrupt
+     * @throws JMSException           if the body cannot be read
+     */
+    public static String decodeText(BytesMessage message) throws JMSException {
+        return decodeText(message, DecodeLimit.MAX_DECODED_BYTES);
+    }
+
+    /**
+     * Decompresses a compressed text payload of at most the given length.
+     *
+     * @param message         a message whose {@link #originalType(Message)} is {@code text}
+     * @param maxDecodedBytes the largest original length accepted
+     * @return the original text
+     * @throws MessageFormatException if the codec is unknown, the original length is invalid or
+     *                                above the limit, or the body is corrupt
+     * @throws JMSException           if the body cannot be read
+     */
+    public static String decodeText(BytesMessage message, int maxDecodedBytes) throws JMSException {
+        PayloadCodec codec;
+        int length;
+        try {
+            codec = PayloadCodec.forId(String.valueOf(message.getStringProperty(CODEC_PROPERTY)));
+            length = message.getIntProperty(LENGTH_PROPERTY);
+        } catch (IllegalArgumentException e) {
+            // an unknown codec, or a missing or non-numeric length
+            throw new MessageFormatException("Invalid compressed body: " + e.getMessage());
+        }
+        if (length < 0 || length > maxDecodedBytes) {
+            throw new MessageFormatException("Invalid " + LENGTH_PROPERTY + " " + length
+                    + ", the limit is " + maxDecodedBytes + " bytes");
+        }
+        message.reset();
+        long bodyLength = message.getBodyLength();
+        if (bodyLength > Integer.MAX_VALUE - 8) {
+            throw new MessageFormatException("Compressed body of " + bodyLength + " bytes is too large");
+        }
+        int compressedLength = (int) bodyLength;
+        Buffers buffers = Buffers.acquire();
+        try {
+            byte[] compressed = buffers.input(compressedLength);
+            message.readBytes(compressed, compressedLength);
+            byte[] target = buffers.output(length);
+            codec.decompress(compressed, compressedLength, target, length);
+            return new String(target, 0, length, StandardCharsets.UTF_8);
+        } catch (RuntimeException | OutOfMemoryError e) {
+            throw new MessageFormatException("Corrupt " + codec.id() + " body: " + e);
+        } finally {
+            buffers.release();
+        }
+    }
+
+    /**
+     * Reads the decode limit from the configuration on first use. Outside of a MicroProfile
+     * runtime, or without the property, the default applies.
+     */
+    private static final class DecodeLimit {
+
+        static final int MAX_DECODED_BYTES = read();
+
+        private static int read() {
+            try {
+                return ConfigProvider.getConfig().getOptionalValue(MAX_DECODED, Integer.class)
+                        .orElse(DEFAULT_MAX_DECODED);
+            } catch (RuntimeException e) {
+                return DEFAULT_MAX_DECODED;
+            }
+        }
+    }
+
+    /**
+     * The buffers compressed bodies are read into and payloads are decompressed into, held by one
+     * caller at a time between {@link #acquire()} and {@link #release()}.
+     */
+    private static final class Buffers {
+
+        private byte[] input = new byte[0];
+        private byte[] output = new byte[0];
+
+        /**
+         * Takes idle buffers from the pool, or creates empty ones if none are idle.
+         */
+        static Buffers acquire() {
+            Buffers buffers = BUFFERS.poll();
+            return buffers != null ? buffers : new Buffers();
+        }
+
+        /**
+         * Hands the buffers back, leaving them to the garbage collector if the pool is full.
+         */
+        void release() {
+            BUFFERS.offer(this);
+        }
+
+        byte[] input(int size) {
+            if (input.length >= size) {
+                return input;
+            }
+            byte[] buffer = new byte[size];
+            if (size <= MAX_RETAINED_BUFFER) {
+                input = buffer;
+            }
+            return buffer;
+        }
+
+        byte[] output(int size) {
+            if (output.length >= size) {
+                return output;
+            }
+            byte[] buffer = new byte[size];
+            if (size <= MAX_RETAINED_BUFFER) {
+                output = buffer;
+            }
+            return buffer;
+        }
+    }
+}
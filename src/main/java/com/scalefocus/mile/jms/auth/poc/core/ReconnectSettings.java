@@ -0,0 +1,162 @@
+package com.scalefocus.mile.jms.auth.poc.core;
+
+import javax.enterprise.context.ApplicationScoped;
+import lombok.Getter;
+import org.apache.qpid.jms.JmsConnectionFactory;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+
+/**
+ * Settings that decide how quickly the client notices a lost broker connection and how it
+ * gets back.
+ *
+ * <p>Consumers and producers reconnect from their connection's {@code ExceptionListener}, with
+ * a jittered exponential {@link Backoff} between attempts. With {@code solace.failover.enabled}
+ * the broker URL is additionally wrapped in a qpid-jms {@code failover:} URI listing
+ * {@code solace.failover.uris} as alternative brokers, so the transport itself retries, with the
+ * same delays, and restores sessions and consumers before the listener is ever told. The
+ * connect, send and request timeouts bound how long a call may block on a broker that does not
+ * answer, so a send attempted while the connection is down fails instead of hanging.</p>
+ *
+ * <p>With {@code solace.startup.background-connect} the first connection is established the same
+ * way, on the reconnect thread, instead of on the thread starting the application, and the SSL
+ * material is loaded in parallel. Startup then no longer waits for the broker, which shortens cold
+ * starts, and an unreachable broker no longer delays readiness by the connect timeout.</p>
+ */
+@ApplicationScoped
+@Getter
+public class ReconnectSettings {
+
+    private static final String INITIAL_DELAY = "solace.reconnect.initial-delay-ms";
+    private static final String MAX_DELAY = "solace.reconnect.max-delay-ms";
+    private static final String MULTIPLIER = "solace.reconnect.multiplier";
+    private static final String JITTER = "solace.reconnect.jitter";
+    private static final String VALIDATION_INTERVAL = "solace.reconnect.validation-interval-ms";
+    private static final String CONNECT_TIMEOUT = "solace.reconnect.connect-timeout-ms";
+    private static final String SEND_TIMEOUT = "solace.reconnect.send-timeout-ms";
+    private static final String REQUEST_TIMEOUT = "solace.reconnect.request-timeout-ms";
+    private static final String FAILOVER_ENABLED = "solace.failover.enabled";
+    private static final String FAILOVER_URIS = "solace.failover.uris";
+    private static final String FAILOVER_MAX_ATTEMPTS = "solace.failover.max-reconnect-attempts";
+    private static final String BACKGROUND_CONNECT = "solace.startup.background-connect";
+
+    private static final String DEFAULT_INITIAL_DELAY = "50";
+    private static final String DEFAULT_MAX_DELAY = "500";
+    private static final String DEFAULT_MULTIPLIER = "2.0";
+    private static final String DEFAULT_JITTER = "0.5";
+    private static final String DEFAULT_VALIDATION_INTERVAL = "30000";
+    private static final String DEFAULT_CONNECT_TIMEOUT = "5000";
+    private static final String DEFAULT_SEND_TIMEOUT = "5000";
+    private static final String DEFAULT_REQUEST_TIMEOUT = "5000";
+    private static final String DEFAULT_FAILOVER_ENABLED = "false";
+    private static final String DEFAULT_FAILOVER_MAX_ATTEMPTS = "20";
+    private static final String DEFAULT_BACKGROUND_CONNECT = "false";
+
+    @ConfigProperty(name = INITIAL_DELAY, defaultValue = DEFAULT_INITIAL_DELAY)
+    long initialDelayMillis;
+
+    @ConfigProperty(name = MAX_DELAY, defaultValue = DEFAULT_MAX_DELAY)
+    long maxDelayMillis;
+
+    @ConfigProperty(name = MULTIPLIER, defaultValue = DEFAULT_MULTIPLIER)
+    double multiplier;
+
+    @ConfigProperty(name = JITTER, defaultValue = DEFAULT_JITTER)
+    double jitter;
+
+    @ConfigProperty(name = VALIDATION_INTERVAL, defaultValue = DEFAULT_VALIDATION_INTERVAL)
+    long validationIntervalMillis;
+
+    @ConfigProperty(name = CONNECT_TIMEOUT, defaultValue = DEFAULT_CONNECT_TIMEOUT)
+    long connectTimeoutMillis;
+
+    @ConfigProperty(name = SEND_TIMEOUT, defaultValue = DEFAULT_SEND_TIMEOUT)
+    long sendTimeoutMillis;
+
+    @ConfigProperty(name = REQUEST_TIMEOUT, defaultValue = DEFAULT_REQUEST_TIMEOUT)
+    long requestTimeoutMillis;
+
+    @ConfigProperty(name = FAILOVER_ENABLED, defaultValue = DEFAULT_FAILOVER_ENABLED)
+    boolean failoverEnabled;
+
+    @ConfigProperty(name = FAILOVER_URIS)
+    Optional<String> failoverUris;
+
+    @ConfigProperty(name = FAILOVER_MAX_ATTEMPTS, defaultValue = DEFAULT_FAILOVER_MAX_ATTEMPTS)
+    int failoverMaxReconnectAttempts;
+
+    @ConfigProperty(name = BACKGROUND_CONNECT, defaultValue = DEFAULT_BACKGROUND_CONNECT)
+    boolean backgroundConnect;
+
+    public ReconnectSettings() {}
+
+    public ReconnectSettings(Properties properties) {
+        initialDelayMillis = Long.parseLong(properties.getProperty(INITIAL_DELAY, DEFAULT_INITIAL_DELAY));
+        maxDelayMillis = Long.parseLong(properties.getProperty(MAX_DELAY, DEFAULT_MAX_DELAY));
+        multiplier = Double.parseDouble(properties.getProperty(MULTIPLIER, DEFAULT_MULTIPLIER));
+        jitter = Double.parseDouble(properties.getProperty(JITTER, DEFAULT_JITTER));
+        validationIntervalMillis = Long.parseLong(properties.getProperty(VALIDATION_INTERVAL, DEFAULT_VALIDATION_INTERVAL));
+        connectTimeoutMillis = Long.parseLong(properties.getProperty(CONNECT_TIMEOUT, DEFAULT_CONNECT_TIMEOUT));
+        sendTimeoutMillis = Long.parseLong(properties.getProperty(SEND_TIMEOUT, DEFAULT_SEND_TIMEOUT));
+        requestTimeoutMillis = Long.parseLong(properties.getProperty(REQUEST_TIMEOUT, DEFAULT_REQUEST_TIMEOUT));
+        failoverEnabled = Boolean.parseBoolean(properties.getProperty(FAILOVER_ENABLED, DEFAULT_FAILOVER_ENABLED));
+        failoverUris = Optional.ofNullable(properties.getProperty(FAILOVER_URIS));
+        failoverMaxReconnectAttempts = Integer.parseInt(
+                properties.getProperty(FAILOVER_MAX_ATTEMPTS, DEFAULT_FAILOVER_MAX_ATTEMPTS));
+        backgroundConnect = Boolean.parseBoolean(properties.getProperty(BACKGROUND_CONNECT, DEFAULT_BACKGROUND_CONNECT));
+    }
+
+    /**
+     * Creates a new backoff with the configured delays.
+     *
+     * @return a backoff starting at the initial delay
+     */
+    public Backoff newBackoff() {
+        return new Backoff(initialDelayMillis, maxDelayMillis, multiplier, jitter);
+    }
+
+    /**
+     * Returns the URI connections are opened with: the broker URL itself, or a {@code failover:}
+     * URI over the broker URL and the alternative brokers if failover is enabled.
+     *
+     * @param brokerUri the configured broker URL
+     * @return the URI to connect to
+     */
+    public String connectionUri(String brokerUri) {
+        if (!failoverEnabled) {
+            return brokerUri;
+        }
+        List<String> uris = new ArrayList<>();
+        uris.add(brokerUri);
+        if (failoverUris.isPresent()) {
+            for (String uri : failoverUris.get().split(",")) {
+                if (!uri.isBlank()) {
+                    uris.add(uri.trim());
+                }
+            }
+        }
+        return "failover:(" + String.join(",", uris) + ")"
+                + "?failover.initialReconnectDelay=" + initialDelayMillis
+                + "&failover.reconnectDelay=" + initialDelayMillis
+                + "&failover.maxReconnectDelay=" + maxDelayMillis
+                + "&failover.useReconnectBackOff=true"
+                + "&failover.reconnectBackOffMultiplier=" + multiplier
+                + "&failover.maxReconnectAttempts=" + failoverMaxReconnectAttempts;
+    }
+
+    /**
+     * Applies the failover URI and the connect, send and request timeouts to a connection factory.
+     *
+     * @param factory the factory to configure
+     */
+    public void applyTo(JmsConnectionFactory factory) {
+        factory.setRemoteURI(connectionUri(factory.getRemoteURI()));
+        factory.setConnectTimeout(connectTimeoutMillis);
+        factory.setSendTimeout(sendTimeoutMillis);
+        factory.setRequestTimeout(requestTimeoutMillis);
+    }
+}
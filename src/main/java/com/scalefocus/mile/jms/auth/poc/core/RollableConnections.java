@@ -0,0 +1,32 @@
+package com.scalefocus.mile.jms.auth.poc.core;
+
+import jakarta.jms.JMSException;
+
+/**
+ * A holder of long-lived broker connections that can replace them one by one, used by
+ * {@link ConnectionRoller} to move existing connections onto reloaded SSL material.
+ *
+ * <p>Any CDI bean implementing this interface is picked up automatically.</p>
+ */
+public interface RollableConnections {
+
+    /**
+     * Returns the number of connections this holder may have open.
+     *
+     * @return the number of connection slots
+     */
+    int connectionCount();
+
+    /**
+     * Replaces one connection with a new one from the connection factory. The new connection is
+     * opened before the old one is closed, and the old one is closed only once the work in
+     * progress on it has finished or the drain timeout has passed. A slot without an
+     * established connection is left alone, since it picks up the new material when it
+     * connects.
+     *
+     * @param index              the connection slot, between 0 and {@link #connectionCount()}
+     * @param drainTimeoutMillis how long to wait for work on the old connection before closing it
+     * @throws JMSException if the new connection cannot be opened; the old one is then kept
+     */
+    void roll(int index, long drainTimeoutMillis) throws JMSException;
+}
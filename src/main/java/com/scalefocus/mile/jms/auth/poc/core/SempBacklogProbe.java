@@ -0,0 +1,98 @@
+package com.scalefocus.mile.jms.auth.poc.core;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import javax.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+/**
+ * A {@link BacklogProbe} that reads queue depths from the Solace SEMP v2 monitoring API.
+ *
+ * <p>Only the queue's monitoring record is requested, never its messages, so a probe costs one
+ * small HTTP call regardless of how many messages are spooled. The probe is inactive unless
+ * {@code solace.backlog.semp.url} is configured.</p>
+ */
+@ApplicationScoped
+public class SempBacklogProbe implements BacklogProbe {
+
+    private static final Logger logger = LoggerFactory.getLogger(SempBacklogProbe.class);
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(2);
+
+    private final Optional<String> sempUrl;
+    private final String msgVpn;
+    private final String authorization;
+    private final ObjectMapper objectMapper;
+    private final HttpClient httpClient;
+
+    /**
+     * Constructs a new {@code SempBacklogProbe}.
+     *
+     * @param sempUrl      the base URL of the SEMP service, for example {@code http://localhost:8080}
+     * @param msgVpn       the message VPN the queues belong to
+     * @param username     the SEMP user name
+     * @param password     the SEMP password
+     * @param objectMapper the mapper used to read SEMP responses
+     */
+    SempBacklogProbe(
+            @ConfigProperty(name = "solace.backlog.semp.url") Optional<String> sempUrl,
+            @ConfigProperty(name = "solace.backlog.semp.msg-vpn", defaultValue = "default") String msgVpn,
+            @ConfigProperty(name = "solace.backlog.semp.username", defaultValue = "admin") String username,
+            @ConfigProperty(name = "solace.backlog.semp.password", defaultValue = "admin") String password,
+            ObjectMapper objectMapper) {
+        this.sempUrl = sempUrl;
+        this.msgVpn = msgVpn;
+        this.authorization = "Basic " + Base64.getEncoder()
+                .encodeToString((username + ":" + password).getBytes(StandardCharsets.UTF_8));
+        this.objectMapper = objectMapper;
+        this.httpClient = HttpClient.newBuilder().connectTimeout(TIMEOUT).build();
+    }
+
+    @Override
+    public OptionalLong backlog(String queueName) {
+        if (sempUrl.isEmpty()) {
+            return OptionalLong.empty();
+        }
+        URI uri = URI.create(sempUrl.get() + "/SEMP/v2/monitor/msgVpns/" + encode(msgVpn)
+                + "/queues/" + encode(queueName));
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(TIMEOUT)
+                .header("Authorization", authorization)
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+        try {
+            HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() != 200) {
+                logger.warn("SEMP returned status {} for queue {}", response.statusCode(), queueName);
+                return OptionalLong.empty();
+            }
+            JsonNode count = objectMapper.readTree(response.body()).at("/collections/msgs/count");
+            return count.isNumber() ? OptionalLong.of(count.asLong()) : OptionalLong.empty();
+        } catch (IOException e) {
+            logger.warn("Could not read backlog of {} from SEMP: {}", queueName, e.getMessage());
+            return OptionalLong.empty();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return OptionalLong.empty();
+        }
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+}
@@ -0,0 +1,263 @@
+package com.scalefocus.mile.jms.auth.poc.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Holds the {@code SSLContext} every broker connection is opened with.
+ *
+ * <p>The key store and trust store are read and the context is built once, instead of on every
+ * connection factory, so connections share one client session cache and reconnects to the same
+ * broker resume their TLS session rather than repeating the full handshake. The size and
+ * timeout of that cache are configurable. When watching is enabled, a background thread rebuilds
+ * the context after either store file changed on disk and hands it to the registered listeners;
+ * if the new files cannot be read, the current context is kept.</p>
+ *
+ * <p>Stores are read as {@code JKS} or {@code PKCS12}. Unless given explicitly, the type is
+ * taken from the file extension: {@code .p12} and {@code .pfx} files are PKCS12, anything else
+ * is JKS.</p>
+ */
+@ThreadSafe
+public class SslContextCache implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SslContextCache.class);
+
+    private static final String JKS = "JKS";
+    private static final String PKCS12 = "PKCS12";
+
+    private final Path keyStorePath;
+    private final String keyStoreType;
+    private final char[] keyStorePassword;
+    private final Path trustStorePath;
+    private final String trustStoreType;
+    private final char[] trustStorePassword;
+    private final int sessionCacheSize;
+    private final int sessionTimeoutSeconds;
+    private final List<Consumer<SSLContext>> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile SSLContext sslContext;
+    private volatile WatchService watchService;
+
+    /**
+     * Constructs a new {@code SslContextCache}, loading both stores with the type implied by
+     * their file extension and building the context.
+     *
+     * @param keyStorePath          the key store holding the client certificate
+     * @param keyStorePassword      the key store password
+     * @param trustStorePath        the trust store holding the broker's CA certificates
+     * @param trustStorePassword    the trust store password
+     * @param sessionCacheSize      the maximum number of cached TLS sessions, or 0 for no limit
+     * @param sessionTimeoutSeconds how long a cached TLS session may be resumed, or 0 for no limit
+     * @throws GeneralSecurityException if a store or the context cannot be initialized
+     * @throws IOException              if a store cannot be read
+     */
+    public SslContextCache(String keyStorePath, String keyStorePassword, String trustStorePath,
+                           String trustStorePassword, int sessionCacheSize, int sessionTimeoutSeconds)
+            throws GeneralSecurityException, IOException {
+        this(keyStorePath, storeTypeOf(keyStorePath), keyStorePassword, trustStorePath, storeTypeOf(trustStorePath),
+                trustStorePassword, sessionCacheSize, sessionTimeoutSeconds);
+    }
+
+    /**
+     * Constructs a new {@code SslContextCache}, loading both stores and building the context.
+     *
+     * @param keyStorePath          the key store holding the client certificate
+     * @param keyStoreType          the key store type, {@code JKS} or {@code PKCS12}
+     * @param keyStorePassword      the key store password
+     * @param trustStorePath        the trust store holding the broker's CA certificates
+     * @param trustStoreType        the trust store type, {@code JKS} or {@code PKCS12}
+     * @param trustStorePassword    the trust store password
+     * @param sessionCacheSize      the maximum number of cached TLS sessions, or 0 for no limit
+     * @param sessionTimeoutSeconds how long a cached TLS session may be resumed, or 0 for no limit
+     * @throws GeneralSecurityException if a store or the context cannot be initialized
+     * @throws IOException              if a store cannot be read
+     */
+    public SslContextCache(String keyStorePath, String keyStoreType, String keyStorePassword,
+                           String trustStorePath, String trustStoreType, String trustStorePassword,
+                           int sessionCacheSize, int sessionTimeoutSeconds)
+            throws GeneralSecurityException, IOException {
+        this.keyStorePath = Path.of(keyStorePath).toAbsolutePath();
+        this.keyStoreType = keyStoreType;
+        this.keyStorePassword = keyStorePassword.toCharArray();
+        this.trustStorePath = Path.of(trustStorePath).toAbsolutePath();
+        this.trustStoreType = trustStoreType;
+        this.trustStorePassword = trustStorePassword.toCharArray();
+        this.sessionCacheSize = sessionCacheSize;
+        this.sessionTimeoutSeconds = sessionTimeoutSeconds;
+        this.sslContext = build();
+    }
+
+    /**
+     * Returns the store type implied by a file name: {@code PKCS12} for {@code .p12} and
+     * {@code .pfx} files, {@code JKS} otherwise.
+     *
+     * @param path the store file
+     * @return the store type
+     */
+    public static String storeTypeOf(String path) {
+        String name = path.toLowerCase(Locale.ROOT);
+        return name.endsWith(".p12") || name.endsWith(".pfx") ? PKCS12 : JKS;
+    }
+
+    /**
+     * Returns the current context.
+     *
+     * @return the cached {@code SSLContext}
+     */
+    public SSLContext get() {
+        return sslContext;
+    }
+
+    /**
+     * Registers a listener that is given every context built by a later reload.
+     *
+     * @param listener receives the new context
+     */
+    public void addListener(Consumer<SSLContext> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Rebuilds the context from the store files and, if that succeeds, replaces the cached
+     * context and notifies the listeners.
+     *
+     * @return {@code true} if the context was replaced
+     */
+    public boolean reload() {
+        SSLContext reloaded;
+        try {
+            reloaded = build();
+        } catch (GeneralSecurityException | IOException e) {
+            logger.error("Could not reload SSL material, keeping the current context: {}", e.getMessage());
+            return false;
+        }
+        sslContext = reloaded;
+        logger.info("Reloaded SSL material from {} and {}", keyStorePath, trustStorePath);
+        for (Consumer<SSLContext> listener : listeners) {
+            try {
+                listener.accept(reloaded);
+            } catch (RuntimeException e) {
+                logger.error("Error applying reloaded SSL context", e);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Starts a daemon thread that reloads the context whenever either store file is created or
+     * modified. Changes arriving within the debounce interval of each other cause one reload, so
+     * that a file being written in several steps is only read once it is complete.
+     *
+     * @param debounceMillis how long to wait for further changes before reloading
+     * @throws IOException if the store directories cannot be watched
+     */
+    public synchronized void watch(long debounceMillis) throws IOException {
+        if (watchService != null) {
+            return;
+        }
+        WatchService service = FileSystems.getDefault().newWatchService();
+        Set<Path> directories = new HashSet<>(List.of(keyStorePath.getParent(), trustStorePath.getParent()));
+        for (Path directory : directories) {
+            directory.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        }
+        watchService = service;
+        Thread watcher = new Thread(() -> watchLoop(service, debounceMillis), "ssl-material-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    private void watchLoop(WatchService service, long debounceMillis) {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                boolean changed = isStoreChange(key);
+                // collect the rest of a burst of changes before reading the files
+                while ((key = service.poll(debounceMillis, TimeUnit.MILLISECONDS)) != null) {
+                    changed |= isStoreChange(key);
+                }
+                if (changed) {
+                    reload();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            logger.debug("SSL material watcher stopped");
+        }
+    }
+
+    private boolean isStoreChange(WatchKey key) {
+        boolean changed = false;
+        Path directory = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.context() instanceof Path) {
+                Path file = directory.resolve((Path) event.context());
+                changed |= file.equals(keyStorePath) || file.equals(trustStorePath);
+            }
+        }
+        key.reset();
+        return changed;
+    }
+
+    private SSLContext build() throws GeneralSecurityException, IOException {
+        KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        kmf.init(loadKeyStore(keyStorePath, keyStoreType, keyStorePassword), keyStorePassword);
+        TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        tmf.init(loadKeyStore(trustStorePath, trustStoreType, trustStorePassword));
+
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(kmf.getKeyManagers(), tmf.getTrustManagers(), null);
+        SSLSessionContext sessions = context.getClientSessionContext();
+        sessions.setSessionCacheSize(sessionCacheSize);
+        sessions.setSessionTimeout(sessionTimeoutSeconds);
+        return context;
+    }
+
+    private static KeyStore loadKeyStore(Path path, String type, char[] password)
+            throws GeneralSecurityException, IOException {
+        KeyStore keyStore = KeyStore.getInstance(type);
+        try (InputStream in = Files.newInputStream(path)) {
+            keyStore.load(in, password);
+        }
+        return keyStore;
+    }
+
+    /**
+     * Stops watching the store files.
+     */
+    @Override
+    public synchronized void close() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                logger.debug("Error closing SSL material watcher", e);
+            }
+            watchService = null;
+        }
+    }
+}
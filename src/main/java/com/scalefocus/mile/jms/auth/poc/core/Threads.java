@@ -0,0 +1,129 @@
+package com.scalefocus.mile.jms.auth.poc.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the threads the client runs its consumer loops, message handlers and blocking sends on.
+ *
+ * <p>When {@code solace.threads.virtual} is enabled and the JVM supports virtual threads (Java 21
+ * or later), those threads are virtual, so thousands of blocking receives and sends can run
+ * without a matching number of platform threads. The project still compiles for Java 11, so
+ * virtual threads are created through reflection; on older JVMs this class logs a warning once
+ * and falls back to platform threads.</p>
+ */
+public final class Threads {
+
+    /** The configuration property enabling virtual threads. */
+    public static final String VIRTUAL_THREADS = "solace.threads.virtual";
+
+    private static final Logger logger = LoggerFactory.getLogger(Threads.class);
+
+    private static final Method OF_VIRTUAL;
+    private static final Method BUILDER_NAME;
+    private static final Method BUILDER_UNSTARTED;
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+    private static volatile boolean fallbackLogged;
+
+    static {
+        Method ofVirtual = null;
+        Method builderName = null;
+        Method builderUnstarted = null;
+        Method newThreadPerTaskExecutor = null;
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            builderName = builder.getMethod("name", String.class);
+            builderUnstarted = builder.getMethod("unstarted", Runnable.class);
+            newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            // Java 19 and 20 only offer virtual threads as a preview feature
+            ofVirtual.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = builderName;
+        BUILDER_UNSTARTED = builderUnstarted;
+        NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
+    }
+
+    private Threads() {}
+
+    /**
+     * Returns whether the running JVM supports virtual threads.
+     *
+     * @return {@code true} on Java 21 or later
+     */
+    public static boolean virtualThreadsSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * Creates an unstarted thread.
+     *
+     * @param name    the thread name
+     * @param virtual whether to create a virtual thread if the JVM supports them
+     * @param task    the task the thread runs
+     * @return the new, unstarted thread
+     */
+    public static Thread newThread(String name, boolean virtual, Runnable task) {
+        if (useVirtual(virtual)) {
+            try {
+                Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), name);
+                return (Thread) BUILDER_UNSTARTED.invoke(builder, task);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new IllegalStateException("Could not create virtual thread " + name, e);
+            }
+        }
+        return new Thread(task, name);
+    }
+
+    /**
+     * Creates a thread factory naming its threads {@code prefix-0}, {@code prefix-1} and so on.
+     *
+     * @param prefix  the thread name prefix
+     * @param virtual whether to create virtual threads if the JVM supports them
+     * @return the thread factory
+     */
+    public static ThreadFactory factory(String prefix, boolean virtual) {
+        AtomicInteger index = new AtomicInteger();
+        return task -> newThread(prefix + "-" + index.getAndIncrement(), virtual, task);
+    }
+
+    /**
+     * Creates an executor that starts a new virtual thread for every task.
+     *
+     * @param prefix the thread name prefix
+     * @return the executor, or {@code null} if the JVM does not support virtual threads
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor(String prefix) {
+        if (!useVirtual(true)) {
+            return null;
+        }
+        try {
+            return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, factory(prefix, true));
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Could not create virtual thread executor", e);
+        }
+    }
+
+    private static boolean useVirtual(boolean virtual) {
+        if (!virtual) {
+            return false;
+        }
+        if (OF_VIRTUAL == null && !fallbackLogged) {
+            fallbackLogged = true;
+            logger.warn("{} is enabled but Java {} has no virtual threads; using platform threads",
+                    VIRTUAL_THREADS, Runtime.version().feature());
+        }
+        return OF_VIRTUAL != null;
+    }
+}
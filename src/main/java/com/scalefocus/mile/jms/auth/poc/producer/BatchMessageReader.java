@@ -0,0 +1,106 @@
+package com.scalefocus.mile.jms.auth.poc.producer;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Streams the messages of a batch request body one at a time, so that large batches are never
+ * materialized in memory.
+ *
+ * <p>Two formats are accepted: a JSON array and newline-delimited JSON (NDJSON), where each
+ * line holds one JSON value. String values become the message text as is; any other value is
+ * sent as its compact JSON representation. Malformed input surfaces as an
+ * {@code UncheckedIOException} from {@link #hasNext()}.</p>
+ */
+final class BatchMessageReader implements Iterator<String>, Closeable {
+
+    private final ObjectMapper objectMapper;
+    private final JsonParser parser;
+    private final boolean array;
+
+    private String next;
+    private boolean finished;
+
+    private BatchMessageReader(ObjectMapper objectMapper, JsonParser parser, boolean array) {
+        this.objectMapper = objectMapper;
+        this.parser = parser;
+        this.array = array;
+    }
+
+    /**
+     * Opens a reader over a JSON array body.
+     *
+     * @param objectMapper the mapper used to parse the body
+     * @param body         the request body
+     * @return a reader positioned before the first element
+     * @throws IOException if the body does not start with a JSON array
+     */
+    static BatchMessageReader jsonArray(ObjectMapper objectMapper, InputStream body) throws IOException {
+        JsonParser parser = objectMapper.getFactory().createParser(body);
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            parser.close();
+            throw new IOException("Expected a JSON array of messages");
+        }
+        return new BatchMessageReader(objectMapper, parser, true);
+    }
+
+    /**
+     * Opens a reader over a newline-delimited JSON body.
+     *
+     * @param objectMapper the mapper used to parse the body
+     * @param body         the request body
+     * @return a reader positioned before the first line
+     * @throws IOException if the parser cannot be created
+     */
+    static BatchMessageReader ndjson(ObjectMapper objectMapper, InputStream body) throws IOException {
+        return new BatchMessageReader(objectMapper, objectMapper.getFactory().createParser(body), false);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !finished) {
+            next = readNext();
+        }
+        return next != null;
+    }
+
+    @Override
+    public String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        String message = next;
+        next = null;
+        return message;
+    }
+
+    private String readNext() {
+        try {
+            JsonToken token = parser.nextToken();
+            if (token == null || (array && token == JsonToken.END_ARRAY)) {
+                finished = true;
+                return null;
+            }
+            if (token == JsonToken.VALUE_STRING) {
+                return parser.getText();
+            }
+            return objectMapper.readTree(parser).toString();
+        } catch (IOException e) {
+            finished = true;
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+}
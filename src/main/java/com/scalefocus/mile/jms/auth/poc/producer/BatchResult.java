@@ -0,0 +1,24 @@
+package com.scalefocus.mile.jms.auth.poc.producer;
+
+import lombok.Getter;
+
+/**
+ * The outcome of a batch send, returned as the JSON body of {@code POST /solace/batch}.
+ *
+ * <p>{@code accepted} counts every message read from the request body. Each accepted message
+ * ends up either {@code committed} to the broker or {@code failed}, the latter covering whole
+ * transactions that were rolled back.</p>
+ */
+@Getter
+public final class BatchResult {
+
+    private final int accepted;
+    private final int committed;
+    private final int failed;
+
+    BatchResult(int accepted, int committed, int failed) {
+        this.accepted = accepted;
+        this.committed = committed;
+        this.failed = failed;
+    }
+}
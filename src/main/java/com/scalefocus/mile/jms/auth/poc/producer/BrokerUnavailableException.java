@@ -0,0 +1,31 @@
+package com.scalefocus.mile.jms.auth.poc.producer;
+
+import jakarta.jms.JMSException;
+
+/**
+ * Thrown instead of attempting a send while the broker connection is down and the next
+ * reconnection attempt is not due yet.
+ */
+class BrokerUnavailableException extends JMSException {
+
+    private final long retryAfterMillis;
+
+    /**
+     * Constructs a new {@code BrokerUnavailableException}.
+     *
+     * @param retryAfterMillis the time until the next reconnection attempt
+     */
+    BrokerUnavailableException(long retryAfterMillis) {
+        super("Broker connection is down, next reconnection attempt in " + retryAfterMillis + " ms");
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    /**
+     * Returns the time until the next reconnection attempt.
+     *
+     * @return the delay in milliseconds
+     */
+    long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
@@ -0,0 +1,62 @@
+package com.scalefocus.mile.jms.auth.poc.producer;
+
+import com.scalefocus.mile.jms.auth.poc.core.ThreadSafe;
+import javax.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A bounded pool of fixed-size byte arrays that binary request bodies are copied through on
+ * their way into a {@code BytesMessage}.
+ *
+ * <p>Only the copy buffer is pooled. {@code BytesMessage.writeBytes} copies every chunk into the
+ * JMS provider's message buffer, so the whole body, up to {@code bytes.max-size}, is still held
+ * on the heap until it is sent. What the pool saves is the per-request buffer that reading the
+ * body would otherwise allocate, and an intermediate {@code byte[]} or {@code String} of the full
+ * size: one chunk per request in progress is live, and chunks are reused across requests. When
+ * the pool is empty a new chunk is allocated; chunks handed back beyond the pool's capacity are
+ * left to the garbage collector.</p>
+ */
+@ApplicationScoped
+@ThreadSafe
+class ByteChunkPool {
+
+    private final int chunkSize;
+    private final BlockingQueue<byte[]> chunks;
+
+    /**
+     * Constructs a new {@code ByteChunkPool}.
+     *
+     * @param chunkSize    the size of each chunk in bytes
+     * @param pooledChunks the maximum number of idle chunks kept for reuse
+     */
+    ByteChunkPool(
+            @ConfigProperty(name = "solace.producer.bytes.chunk-size", defaultValue = "65536") int chunkSize,
+            @ConfigProperty(name = "solace.producer.bytes.pooled-chunks", defaultValue = "16") int pooledChunks) {
+        this.chunkSize = Math.max(1, chunkSize);
+        this.chunks = new ArrayBlockingQueue<>(Math.max(1, pooledChunks));
+    }
+
+    /**
+     * Takes an idle chunk from the pool, or allocates one if none is idle.
+     *
+     * @return a chunk of {@code chunk-size} bytes with unspecified content
+     */
+    byte[] acquire() {
+        byte[] chunk = chunks.poll();
+        return chunk != null ? chunk : new byte[chunkSize];
+    }
+
+    /**
+     * Hands a chunk back for reuse.
+     *
+     * @param chunk a chunk obtained from {@link #acquire()}
+     */
+    void release(byte[] chunk) {
+        if (chunk.length == chunkSize) {
+            chunks.offer(chunk);
+        }
+    }
+}
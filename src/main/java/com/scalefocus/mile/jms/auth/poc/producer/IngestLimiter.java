@@ -0,0 +1,350 @@
+package com.scalefocus.mile.jms.auth.poc.producer;
+
+import com.scalefocus.mile.jms.auth.poc.core.ClientMetrics;
+import com.scalefocus.mile.jms.auth.poc.core.ThreadSafe;
+import io.micrometer.core.instrument.Counter;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Admission control in front of the producer's REST endpoints.
+ *
+ * <p>Every request first takes a token from its client's bucket, which is refilled at
+ * {@code rate.per-second} tokens per second up to {@code rate.burst} tokens. Clients are told
+ * apart by their remote address. The {@code rate.client-header} request header is only believed
+ * when the request comes from one of the {@code rate.trusted-proxies}, since any other caller
+ * could dodge its limit by sending a new value with every request. At most
+ * {@code rate.max-clients} buckets are kept: once that many are tracked, idle buckets are swept
+ * out at most once per second, and clients that still find no room share one overflow bucket
+ * instead of adding their own.</p>
+ *
+ * <p>A request then needs one of a limited number of concurrency slots. The limit adapts with
+ * AIMD to the latency the requests observe: it grows by one whenever a request completed within
+ * {@code limit.latency-threshold-ms} while at least half of the slots were taken, and shrinks by
+ * the factor {@code limit.backoff-ratio} whenever one took longer or failed with a server error.
+ * Like TCP's congestion window, it shrinks at most once per round of requests: a slow request
+ * that started before the last decrease has already been accounted for, so a burst of slow
+ * responses shrinks the limit once rather than once per response. The number of requests waiting
+ * on a slow broker therefore stays close to what the broker can serve within the threshold, and
+ * requests beyond it are rejected at once instead of queueing up on worker threads and pooled
+ * sessions.</p>
+ *
+ * <p>The current limit, the requests in progress and the rejections by cause are recorded in
+ * {@link ClientMetrics}.</p>
+ */
+@ApplicationScoped
+@ThreadSafe
+class IngestLimiter {
+
+    /** The key of requests without a client header or a known remote address. */
+    static final String UNKNOWN_CLIENT = "unknown";
+
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long latencyThresholdNanos;
+    private final double tokensPerNanos;
+    private final double burst;
+    private final int maxClients;
+    private final String clientHeader;
+    private final Set<String> trustedProxies;
+    private final LongSupplier clock;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int limit;
+    private long lastDecreaseNanos;
+
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final TokenBucket overflow;
+    private volatile long lastSweepNanos;
+
+    private final Counter concurrencyRejections;
+    private final Counter rateRejections;
+
+    /**
+     * Constructs a new {@code IngestLimiter}.
+     *
+     * @param enabled                whether requests are limited at all
+     * @param initialLimit           the concurrency limit to start with
+     * @param minLimit               the lowest the concurrency limit can shrink to
+     * @param maxLimit               the highest the concurrency limit can grow to
+     * @param latencyThresholdMillis the request latency above which the limit shrinks
+     * @param backoffRatio           the factor the limit shrinks by, between 0 and 1
+     * @param ratePerSecond          the sustained requests per second allowed per client, or 0 for no limit
+     * @param burst                  the requests a client may make at once after being idle
+     * @param maxClients             the most clients tracked with a bucket of their own
+     * @param clientHeader           the request header identifying the client behind a trusted proxy
+     * @param trustedProxies         the comma-separated addresses whose client header is believed
+     * @param metrics                the metrics the limit and rejections are recorded in
+     */
+    @Inject
+    IngestLimiter(
+            @ConfigProperty(name = "solace.ingest.limit.enabled", defaultValue = "true") boolean enabled,
+            @ConfigProperty(name = "solace.ingest.limit.initial", defaultValue = "20") int initialLimit,
+            @ConfigProperty(name = "solace.ingest.limit.min", defaultValue = "1") int minLimit,
+            @ConfigProperty(name = "solace.ingest.limit.max", defaultValue = "200") int maxLimit,
+            @ConfigProperty(name = "solace.ingest.limit.latency-threshold-ms", defaultValue = "250")
+                    long latencyThresholdMillis,
+            @ConfigProperty(name = "solace.ingest.limit.backoff-ratio", defaultValue = "0.9") double backoffRatio,
+            @ConfigProperty(name = "solace.ingest.rate.per-second", defaultValue = "1000") double ratePerSecond,
+            @ConfigProperty(name = "solace.ingest.rate.burst", defaultValue = "2000") int burst,
+            @ConfigProperty(name = "solace.ingest.rate.max-clients", defaultValue = "10000") int maxClients,
+            @ConfigProperty(name = "solace.ingest.rate.client-header", defaultValue = "X-Client-Id")
+                    String clientHeader,
+            @ConfigProperty(name = "solace.ingest.rate.trusted-proxies") Optional<String> trustedProxies,
+            ClientMetrics metrics) {
+        this(enabled, initialLimit, minLimit, maxLimit, latencyThresholdMillis, backoffRatio, ratePerSecond, burst,
+                maxClients, clientHeader, parseAddresses(trustedProxies.orElse("")), metrics, System::nanoTime);
+    }
+
+    IngestLimiter(boolean enabled, int initialLimit, int minLimit, int maxLimit, long latencyThresholdMillis,
+                  double backoffRatio, double ratePerSecond, int burst, int maxClients, String clientHeader,
+                  Set<String> trustedProxies, ClientMetrics metrics, LongSupplier clock) {
+        this.enabled = enabled;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+        this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThresholdMillis);
+        this.backoffRatio = Math.min(1.0, Math.max(0.0, backoffRatio));
+        this.tokensPerNanos = Math.max(0.0, ratePerSecond) / TimeUnit.SECONDS.toNanos(1);
+        this.burst = Math.max(1, burst);
+        this.maxClients = Math.max(1, maxClients);
+        this.clientHeader = clientHeader;
+        this.trustedProxies = Set.copyOf(trustedProxies);
+        this.clock = clock;
+        this.lastDecreaseNanos = clock.getAsLong();
+        this.overflow = new TokenBucket(this.burst, lastDecreaseNanos);
+        this.concurrencyRejections = metrics.ingestRejections("concurrency");
+        this.rateRejections = metrics.ingestRejections("rate");
+        if (enabled) {
+            metrics.registerIngestLimit(() -> limit, inFlight::get);
+        }
+    }
+
+    /**
+     * Returns the name of the request header identifying the client.
+     *
+     * @return the client header name
+     */
+    String getClientHeader() {
+        return clientHeader;
+    }
+
+    /**
+     * Returns the key a request is limited by: the client header if the request comes from a
+     * trusted proxy and carries it, the remote address otherwise.
+     *
+     * @param remoteAddress the address the request came from, or {@code null} if unknown
+     * @param headerValue   the value of the client header, or {@code null} if absent
+     * @return the client key
+     */
+    String clientOf(String remoteAddress, String headerValue) {
+        if (remoteAddress == null) {
+            return UNKNOWN_CLIENT;
+        }
+        if (headerValue != null && !headerValue.isBlank() && trustedProxies.contains(remoteAddress)) {
+            return headerValue.trim();
+        }
+        return remoteAddress;
+    }
+
+    /**
+     * Returns the current concurrency limit.
+     *
+     * @return the number of requests that may be in progress at once
+     */
+    int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Admits a request of a client if its rate and the concurrency limit allow it. A granted
+     * permit must be released once the request has completed.
+     *
+     * @param client the client making the request
+     * @return a permit, granted or rejected
+     */
+    Permit acquire(String client) {
+        if (!enabled) {
+            return new Permit(0, 0, true, 0);
+        }
+        long now = clock.getAsLong();
+        if (tokensPerNanos > 0) {
+            long waitNanos = bucketFor(client, now).take(now);
+            if (waitNanos > 0) {
+                rateRejections.increment();
+                return new Permit(now, 0, false, waitNanos);
+            }
+        }
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                concurrencyRejections.increment();
+                return new Permit(now, 0, false, 0);
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return new Permit(now, current + 1, true, 0);
+            }
+        }
+    }
+
+    private void release(Permit permit, boolean succeeded) {
+        if (!enabled) {
+            return;
+        }
+        long now = clock.getAsLong();
+        long latency = now - permit.startedNanos;
+        inFlight.decrementAndGet();
+        synchronized (this) {
+            if (!succeeded || latency > latencyThresholdNanos) {
+                // requests started before the last decrease saw the old limit, which is already cut
+                if (permit.startedNanos - lastDecreaseNanos >= 0) {
+                    limit = Math.max(minLimit, (int) (limit * backoffRatio));
+                    lastDecreaseNanos = now;
+                }
+            } else if (permit.inFlightAtStart * 2 >= limit) {
+                limit = Math.min(maxLimit, limit + 1);
+            }
+        }
+    }
+
+    /**
+     * Returns the bucket of a client. A new client gets a bucket of its own only while fewer than
+     * {@code maxClients} are tracked, after sweeping out idle buckets if that is due; otherwise
+     * it shares the overflow bucket, so the map never grows past the cap however many clients
+     * appear.
+     */
+    private TokenBucket bucketFor(String client, long now) {
+        TokenBucket bucket = buckets.get(client);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (buckets.size() >= maxClients && now - lastSweepNanos > SWEEP_INTERVAL_NANOS) {
+            lastSweepNanos = now;
+            buckets.values().removeIf(idle -> idle.isFull(now));
+        }
+        if (buckets.size() >= maxClients) {
+            return overflow;
+        }
+        return buckets.computeIfAbsent(client, key -> new TokenBucket(burst, now));
+    }
+
+    /**
+     * Returns the number of clients tracked with a bucket of their own.
+     *
+     * @return the number of buckets
+     */
+    int trackedClients() {
+        return buckets.size();
+    }
+
+    private static Set<String> parseAddresses(String addresses) {
+        Set<String> parsed = new HashSet<>();
+        for (String address : addresses.split(",")) {
+            if (!address.isBlank()) {
+                parsed.add(address.trim());
+            }
+        }
+        return parsed;
+    }
+
+    /**
+     * The outcome of {@link #acquire(String)}. A rejected permit tells how long the client should
+     * wait before retrying.
+     */
+    final class Permit {
+
+        private final long startedNanos;
+        private final int inFlightAtStart;
+        private final boolean granted;
+        private final long retryAfterNanos;
+        private boolean released;
+
+        private Permit(long startedNanos, int inFlightAtStart, boolean granted, long retryAfterNanos) {
+            this.startedNanos = startedNanos;
+            this.inFlightAtStart = inFlightAtStart;
+            this.granted = granted;
+            this.retryAfterNanos = retryAfterNanos;
+        }
+
+        /**
+         * Tells whether the request may proceed.
+         *
+         * @return {@code true} if the request was admitted
+         */
+        boolean isGranted() {
+            return granted;
+        }
+
+        /**
+         * Returns the number of whole seconds to wait before retrying a rejected request.
+         *
+         * @return the {@code Retry-After} value, at least 1
+         */
+        long retryAfterSeconds() {
+            return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(retryAfterNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+        }
+
+        /**
+         * Releases the concurrency slot of a granted request and adapts the limit to its outcome.
+         * Releasing a rejected or already released permit does nothing.
+         *
+         * @param succeeded {@code false} if the request failed because the service is overloaded
+         */
+        synchronized void release(boolean succeeded) {
+            if (granted && !released) {
+                released = true;
+                IngestLimiter.this.release(this, succeeded);
+            }
+        }
+    }
+
+    /**
+     * The tokens left to one client.
+     */
+    private final class TokenBucket {
+
+        private double tokens;
+        private long refilledNanos;
+
+        TokenBucket(double tokens, long now) {
+            this.tokens = tokens;
+            this.refilledNanos = now;
+        }
+
+        /**
+         * Takes a token, returning 0, or returns how long until a token is available.
+         */
+        synchronized long take(long now) {
+            refill(now);
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return Math.max(1, (long) Math.ceil((1 - tokens) / tokensPerNanos));
+        }
+
+        synchronized boolean isFull(long now) {
+            refill(now);
+            return tokens >= burst;
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(burst, tokens + (now - refilledNanos) * tokensPerNanos);
+            refilledNanos = now;
+        }
+    }
+}
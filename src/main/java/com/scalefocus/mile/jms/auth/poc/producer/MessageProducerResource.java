@@ -1,21 +1,163 @@
 package com.scalefocus.mile.jms.auth.poc.producer;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.scalefocus.mile.jms.auth.poc.core.DestinationRegistry;
+import com.scalefocus.mile.jms.auth.poc.core.Threads;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.net.SocketAddress;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.annotation.PreDestroy;
 import javax.ws.rs.*;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
 
+/**
+ * The REST endpoints messages are published through.
+ *
+ * <p>Every request passes the {@link IngestLimiter} first. Requests beyond their client's rate or
+ * the current concurrency limit are answered at once with 429 and a {@code Retry-After} header;
+ * admitted requests report their latency and outcome back to the limiter.</p>
+ *
+ * <p>The {@link MessageRouter} chooses each message's destination from the routing key header or,
+ * for text messages, the message content.</p>
+ */
 @Path("/solace")
 public class MessageProducerResource {
 
+    static final String APPLICATION_NDJSON = "application/x-ndjson";
+
     private final MessageProducerService messageProducerService;
+    private final ObjectMapper objectMapper;
+    private final IngestLimiter ingestLimiter;
+    private final MessageRouter router;
+
+    /**
+     * Runs blocking sends on virtual threads when {@code solace.threads.virtual} is enabled, so
+     * that a send waiting for the broker does not hold a request worker thread. {@code null}
+     * when sends run on the request thread.
+     */
+    private final ExecutorService sendExecutor;
 
-    MessageProducerResource(MessageProducerService messageProducerService) {
+    MessageProducerResource(
+            MessageProducerService messageProducerService,
+            ObjectMapper objectMapper,
+            IngestLimiter ingestLimiter,
+            MessageRouter router,
+            @ConfigProperty(name = Threads.VIRTUAL_THREADS, defaultValue = "false") boolean virtualThreads) {
         this.messageProducerService = messageProducerService;
+        this.objectMapper = objectMapper;
+        this.ingestLimiter = ingestLimiter;
+        this.router = router;
+        this.sendExecutor = virtualThreads ? Threads.newVirtualThreadPerTaskExecutor("producer-send") : null;
     }
 
     @GET
     @Path("{message}")
-    public Response sendMessage(@PathParam("message") String message) {
-        return messageProducerService.sendMessageToBroker(message);
+    public CompletionStage<Response> sendMessage(@PathParam("message") String message,
+                                                 @Context HttpHeaders headers,
+                                                 @Context HttpServerRequest request) {
+        return admitted(headers, request, () -> {
+            DestinationRegistry.Endpoint destination = router.route(routingKeyOf(headers), message);
+            if (sendExecutor == null) {
+                return CompletableFuture.completedFuture(
+                        messageProducerService.sendMessageToBroker(destination, message));
+            }
+            return CompletableFuture.supplyAsync(
+                    () -> messageProducerService.sendMessageToBroker(destination, message), sendExecutor);
+        });
+    }
+
+    @GET
+    @Path("async/{message}")
+    public CompletionStage<Response> sendMessageAsync(@PathParam("message") String message,
+                                                      @Context HttpHeaders headers,
+                                                      @Context HttpServerRequest request) {
+        return admitted(headers, request, () -> messageProducerService.sendMessageToBrokerAsync(
+                router.route(routingKeyOf(headers), message), message));
+    }
+
+    @POST
+    @Path("batch")
+    @Consumes({MediaType.APPLICATION_JSON, APPLICATION_NDJSON})
+    @Produces(MediaType.APPLICATION_JSON)
+    public CompletionStage<Response> sendBatch(@Context HttpHeaders headers, @Context HttpServerRequest request,
+                                               InputStream body) {
+        return admitted(headers, request, () -> CompletableFuture.completedFuture(sendBatch(headers, body)));
+    }
+
+    private Response sendBatch(HttpHeaders headers, InputStream body) {
+        boolean ndjson = headers.getMediaType() != null
+                && headers.getMediaType().isCompatible(MediaType.valueOf(APPLICATION_NDJSON));
+        try (BatchMessageReader messages = ndjson
+                ? BatchMessageReader.ndjson(objectMapper, body)
+                : BatchMessageReader.jsonArray(objectMapper, body)) {
+            String routingKey = routingKeyOf(headers);
+            return messageProducerService.sendBatchToBroker(messages, content -> router.route(routingKey, content));
+        } catch (IOException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(new BatchResult(0, 0, 0)).build();
+        }
+    }
+
+    @POST
+    @Path("bytes")
+    @Consumes(MediaType.APPLICATION_OCTET_STREAM)
+    public CompletionStage<Response> sendBytes(@Context HttpHeaders headers, @Context HttpServerRequest request,
+                                               InputStream body) {
+        return admitted(headers, request, () -> CompletableFuture.completedFuture(messageProducerService
+                .sendBytesToBroker(router.route(routingKeyOf(headers), null), body, headers.getLength())));
+    }
+
+    /**
+     * Runs a send if the {@link IngestLimiter} admits the request, and reports its outcome back.
+     * Server errors, such as a broker that is down or too many sends in flight, count as overload.
+     */
+    private CompletionStage<Response> admitted(HttpHeaders headers, HttpServerRequest request,
+                                               Supplier<CompletionStage<Response>> send) {
+        IngestLimiter.Permit permit = ingestLimiter.acquire(clientOf(headers, request));
+        if (!permit.isGranted()) {
+            return CompletableFuture.completedFuture(Response.status(Response.Status.TOO_MANY_REQUESTS)
+                    .header("Retry-After", permit.retryAfterSeconds())
+                    .entity("Too many requests")
+                    .build());
+        }
+        CompletionStage<Response> result;
+        try {
+            result = send.get();
+        } catch (RuntimeException e) {
+            permit.release(false);
+            throw e;
+        }
+        return result.whenComplete((response, error) -> permit.release(error == null && !isServerError(response)));
+    }
+
+    private static boolean isServerError(Response response) {
+        return response.getStatusInfo().getFamily() == Response.Status.Family.SERVER_ERROR;
+    }
+
+    private String routingKeyOf(HttpHeaders headers) {
+        return headers.getHeaderString(router.getKeyHeader());
+    }
+
+    private String clientOf(HttpHeaders headers, HttpServerRequest request) {
+        SocketAddress remote = request != null ? request.remoteAddress() : null;
+        return ingestLimiter.clientOf(remote != null ? remote.host() : null,
+                headers.getHeaderString(ingestLimiter.getClientHeader()));
+    }
+
+    @PreDestroy
+    void close() {
+        if (sendExecutor != null) {
+            sendExecutor.shutdown();
+        }
     }
 
 }
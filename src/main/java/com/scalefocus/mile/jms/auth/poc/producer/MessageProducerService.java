@@ -1,5 +1,10 @@
 package com.scalefocus.mile.jms.auth.poc.producer;
 
+import com.scalefocus.mile.jms.auth.poc.core.BacklogEstimator;
+import com.scalefocus.mile.jms.auth.poc.core.ClientMetrics;
+import com.scalefocus.mile.jms.auth.poc.core.DestinationRegistry;
+import com.scalefocus.mile.jms.auth.poc.core.PayloadCompression;
+import io.micrometer.core.instrument.Timer;
 import javax.enterprise.context.ApplicationScoped;
 import javax.ws.rs.core.Response;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
@@ -8,54 +13,573 @@ import org.slf4j.LoggerFactory;
 
 import jakarta.jms.*;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
 /**
- * A service for producing and sending JMS messages to a Solace queue.
+ * A service for producing and sending JMS messages to Solace queues and topics.
+ *
+ * <p>This class borrows a long-lived session from the {@code ProducerPool}, sends the
+ * message on the producer cached for its destination, and handles any exceptions that may
+ * occur during the process. A session whose send failed is discarded instead of being returned
+ * to the pool. Messages go to the default queue unless the caller names another destination
+ * from the {@link DestinationRegistry}, usually as chosen by the {@link MessageRouter}.</p>
+ *
+ * <p>Batches are published on a pooled transacted session and committed every
+ * {@code batch.size} messages, or once the open transaction is older than
+ * {@code batch.linger-ms}, so a large batch costs one broker round-trip per commit rather
+ * than one per message. The linger is checked as each message is read, on the request thread
+ * that owns the session; a trailing partial batch of a slowly streamed body therefore waits for
+ * the next message or the end of the body rather than for a timer.</p>
+ *
+ * <p>The asynchronous path hands each message to the broker with a JMS 2.0
+ * {@code CompletionListener} and returns immediately, so many sends can be in flight on one
+ * pooled session without holding a worker thread each. At most {@code async.max-in-flight}
+ * sends may be outstanding; beyond that, new sends are rejected at once. The session is taken
+ * with {@link ProducerPool#tryBorrow()}, so the path never waits for a free session or for a
+ * reconnection either: both are answered with 503 as well. A send that fails asynchronously
+ * invalidates its session, which the pool discards instead of handing it out again.</p>
  *
- * <p>This class provides functionality to create a connection to the JMS broker,
- * send a message to the specified queue, and handle any exceptions that may occur
- * during the process.</p>
+ * <p>Text payloads go through the {@link PayloadCompression} layer, which compresses large ones
+ * when a codec is configured.</p>
+ *
+ * <p>Binary bodies are streamed into a {@code BytesMessage} through chunks borrowed from the
+ * {@link ByteChunkPool}, so a multi-megabyte payload is never held as a {@code String} or as one
+ * {@code byte[]} on its way to the JMS provider, although the provider's message buffer still
+ * holds all of it until it is sent. Bodies larger than {@code bytes.max-size} are
+ * rejected with 413, at once if their declared length exceeds it and otherwise as soon as
+ * reading passes it.</p>
+ *
+ * <p>While the broker connection is down and the pool is waiting before its next reconnection
+ * attempt, sends are rejected at once with 503 and a {@code Retry-After} header instead of
+ * blocking. With the {@link Outbox} enabled, single text messages to the default queue that
+ * cannot be sent are instead kept on local disk, answered with 202 and delivered in order once
+ * the broker is back; other destinations, batches and binary bodies are still sent directly.
+ * While the outbox holds messages, batch messages and binary bodies for the default queue are
+ * rejected with 503 rather than sent ahead of them. A message whose asynchronous send fails is
+ * kept behind the messages accepted while it was in flight, so unlike a failed synchronous send
+ * it may be delivered after messages sent later. Once the outbox is full, messages it would
+ * keep are rejected with 503 too.</p>
+ *
+ * <p>Send latencies of each path and destination and the number of asynchronous sends in flight
+ * are recorded in {@link ClientMetrics}.</p>
  */
 @ApplicationScoped
 final class MessageProducerService {
 
     private static final Logger logger = LoggerFactory.getLogger(MessageProducerService.class);
 
-    private final ConnectionFactory connectionFactory;
-    private final String solaceQueue;
+    private final ProducerPool producerPool;
+    private final DestinationRegistry destinations;
+    private final int batchSize;
+    private final long batchLingerNanos;
+    private final Semaphore inFlight;
+    private final long maxBytesSize;
+    private final ByteChunkPool chunkPool;
+    private final PayloadCompression compression;
+    private final Outbox outbox;
+    private final BacklogEstimator backlogEstimator;
+    private final Map<String, SendTimers> sendTimers = new HashMap<>();
 
     /**
-     * Constructs a new {@code MessageProducerService} with the specified JMS connection factory
-     * and queue name.
+     * Constructs a new {@code MessageProducerService} with the specified producer pool
+     * and destinations.
      *
-     * @param connectionFactory the JMS connection factory
-     * @param solaceQueue       the name of the Solace queue to send messages to
+     * @param producerPool      the pool of shared sessions and producers
+     * @param destinations      the destinations messages can be sent to, including the default queue
+     * @param batchSize         the number of messages committed per transaction in a batch
+     * @param batchLingerMillis the maximum age of an open batch transaction before it is committed
+     * @param maxInFlight       the maximum number of asynchronous sends awaiting broker acknowledgement
+     * @param maxBytesSize      the largest binary body accepted, in bytes
+     * @param chunkPool         the chunks binary bodies are copied through
+     * @param compression       the compression applied to text payloads
+     * @param outbox            the local outbox undeliverable text messages are kept in
+     * @param backlogEstimator  the estimator every sent message is reported to
+     * @param metrics           the metrics send latencies are recorded in
      */
     MessageProducerService(
-            ConnectionFactory connectionFactory,
-            @ConfigProperty(name = "solace.queue.data") String solaceQueue) {
-        this.connectionFactory = connectionFactory;
-        this.solaceQueue = solaceQueue;
+            ProducerPool producerPool,
+            DestinationRegistry destinations,
+            @ConfigProperty(name = "solace.producer.batch.size", defaultValue = "500") int batchSize,
+            @ConfigProperty(name = "solace.producer.batch.linger-ms", defaultValue = "50") long batchLingerMillis,
+            @ConfigProperty(name = "solace.producer.async.max-in-flight", defaultValue = "1000") int maxInFlight,
+            @ConfigProperty(name = "solace.producer.bytes.max-size", defaultValue = "16777216") long maxBytesSize,
+            ByteChunkPool chunkPool,
+            PayloadCompression compression,
+            Outbox outbox,
+            BacklogEstimator backlogEstimator,
+            ClientMetrics metrics) {
+        this.producerPool = producerPool;
+        this.destinations = destinations;
+        this.batchSize = Math.max(1, batchSize);
+        this.batchLingerNanos = TimeUnit.MILLISECONDS.toNanos(batchLingerMillis);
+        int inFlightLimit = Math.max(1, maxInFlight);
+        this.inFlight = new Semaphore(inFlightLimit);
+        this.maxBytesSize = maxBytesSize;
+        this.chunkPool = chunkPool;
+        this.compression = compression;
+        this.outbox = outbox;
+        this.backlogEstimator = backlogEstimator;
+        for (DestinationRegistry.Endpoint destination : destinations.all()) {
+            sendTimers.put(destination.getKey(), new SendTimers(metrics, destination.getKey()));
+        }
+        metrics.registerInFlight(() -> inFlightLimit - inFlight.availablePermits());
     }
 
     /**
-     * Sends a text message to the configured Solace queue.
+     * Sends a text message to the default queue.
      *
      * @param messageContent the content of the message to be sent
      * @return a {@code Response} indicating the result of the send operation
      */
     Response sendMessageToBroker(String messageContent) {
-        try (Connection connection = connectionFactory.createConnection();
-             Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE)) {
-            Queue queue = session.createQueue(solaceQueue);
-            try (MessageProducer producer = session.createProducer(queue)) {
-                TextMessage message = session.createTextMessage(messageContent);
-                producer.send(message);
-                logger.info("Message sent {}", messageContent);
-                return Response.ok("Message sent successfully: " + messageContent).build();
+        return sendMessageToBroker(destinations.getDefault(), messageContent);
+    }
+
+    /**
+     * Sends a text message to a registered destination.
+     *
+     * @param destination    the queue or topic to send to
+     * @param messageContent the content of the message to be sent
+     * @return a {@code Response} indicating the result of the send operation
+     */
+    Response sendMessageToBroker(DestinationRegistry.Endpoint destination, String messageContent) {
+        if (isKept(destination) && outbox.takesNextMessage()) {
+            return keep(messageContent);
+        }
+        long started = System.nanoTime();
+        try (ProducerPool.PooledSession pooled = producerPool.borrow()) {
+            try {
+                Session session = pooled.getSession();
+                Message message = compression.createTextMessage(session, messageContent);
+                pooled.producerFor(destinations.resolve(session, destination)).send(message);
+            } catch (JMSException e) {
+                pooled.invalidate();
+                throw e;
+            }
+            timersFor(destination).sync.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            recordSent(destination, 1);
+            logger.info("Message sent {}", messageContent);
+            return Response.ok("Message sent successfully: " + messageContent).build();
+        } catch (BrokerUnavailableException e) {
+            logger.warn(e.getMessage());
+            return isKept(destination) ? keep(messageContent) : unavailable(e);
+        } catch (Exception e) {
+            logger.error(e.getMessage(), e);
+            return isKept(destination)
+                    ? keep(messageContent)
+                    : Response.serverError().entity("Failed to send message").build();
+        }
+    }
+
+    /**
+     * Sends a text message to the default queue without waiting for the broker to acknowledge it.
+     *
+     * @param messageContent the content of the message to be sent
+     * @return a stage completing with a {@code Response} once the broker has accepted or
+     *         rejected the message
+     * @see #sendMessageToBrokerAsync(DestinationRegistry.Endpoint, String)
+     */
+    CompletionStage<Response> sendMessageToBrokerAsync(String messageContent) {
+        return sendMessageToBrokerAsync(destinations.getDefault(), messageContent);
+    }
+
+    /**
+     * Sends a text message to a registered destination without waiting for the broker to
+     * acknowledge it. The returned stage completes from the JMS provider's completion callback.
+     *
+     * @param destination    the queue or topic to send to
+     * @param messageContent the content of the message to be sent
+     * @return a stage completing with a {@code Response} once the broker has accepted or
+     *         rejected the message, or immediately with 503 if too many sends are in flight, no
+     *         pooled session is free or the broker connection is down
+     */
+    CompletionStage<Response> sendMessageToBrokerAsync(DestinationRegistry.Endpoint destination,
+                                                       String messageContent) {
+        if (isKept(destination) && outbox.takesNextMessage()) {
+            return CompletableFuture.completedFuture(keep(messageContent));
+        }
+        if (!inFlight.tryAcquire()) {
+            return CompletableFuture.completedFuture(Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .entity("Too many messages in flight").build());
+        }
+
+        CompletableFuture<Response> result = new CompletableFuture<>();
+        long started = System.nanoTime();
+        boolean submitted = false;
+        try (ProducerPool.PooledSession pooled = producerPool.tryBorrow()) {
+            if (pooled == null) {
+                inFlight.release();
+                result.complete(Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                        .entity("No producer session available").build());
+                return result;
+            }
+            try {
+                Session session = pooled.getSession();
+                Message message = compression.createTextMessage(session, messageContent);
+                pooled.producerFor(destinations.resolve(session, destination)).send(message, new CompletionListener() {
+                    @Override
+                    public void onCompletion(Message message) {
+                        inFlight.release();
+                        timersFor(destination).async.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                        recordSent(destination, 1);
+                        logger.info("Message sent {}", messageContent);
+                        result.complete(Response.ok("Message sent successfully: " + messageContent).build());
+                    }
+
+                    @Override
+                    public void onException(Message message, Exception exception) {
+                        pooled.invalidate();
+                        inFlight.release();
+                        logger.error(exception.getMessage(), exception);
+                        result.complete(isKept(destination)
+                                ? keep(messageContent)
+                                : Response.serverError().entity("Failed to send message").build());
+                    }
+                });
+                submitted = true;
+            } catch (JMSException e) {
+                pooled.invalidate();
+                throw e;
+            }
+        } catch (BrokerUnavailableException e) {
+            inFlight.release();
+            logger.warn(e.getMessage());
+            result.complete(isKept(destination) ? keep(messageContent) : unavailable(e));
+        } catch (Exception e) {
+            logger.error(e.getMessage(), e);
+            if (!submitted) {
+                inFlight.release();
+                result.complete(isKept(destination)
+                        ? keep(messageContent)
+                        : Response.serverError().entity("Failed to send message").build());
+            } else {
+                result.complete(Response.serverError().entity("Failed to send message").build());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sends a binary body to the default queue as a {@code BytesMessage}.
+     *
+     * @param body          the request body
+     * @param contentLength the declared length of the body, or -1 if unknown
+     * @return a {@code Response} indicating the result of the send operation
+     * @see #sendBytesToBroker(DestinationRegistry.Endpoint, InputStream, long)
+     */
+    Response sendBytesToBroker(InputStream body, long contentLength) {
+        return sendBytesToBroker(destinations.getDefault(), body, contentLength);
+    }
+
+    /**
+     * Sends a binary body to a registered destination as a {@code BytesMessage}, copying it
+     * from the request stream chunk by chunk.
+     *
+     * @param destination   the queue or topic to send to
+     * @param body          the request body
+     * @param contentLength the declared length of the body, or -1 if unknown
+     * @return a {@code Response} indicating the result of the send operation: 413 if the body is
+     *         larger than the maximum size, 400 if it cannot be read, 503 if it is for the default
+     *         queue while the outbox holds messages
+     */
+    Response sendBytesToBroker(DestinationRegistry.Endpoint destination, InputStream body, long contentLength) {
+        if (contentLength > maxBytesSize) {
+            return tooLarge();
+        }
+        if (isKept(destination) && outbox.holdsMessages()) {
+            return outboxDraining();
+        }
+        long started = System.nanoTime();
+        byte[] chunk = chunkPool.acquire();
+        try (ProducerPool.PooledSession pooled = producerPool.borrow()) {
+            long size = 0;
+            try {
+                Session session = pooled.getSession();
+                BytesMessage message = session.createBytesMessage();
+                int read;
+                while ((read = body.read(chunk)) != -1) {
+                    size += read;
+                    if (size > maxBytesSize) {
+                        return tooLarge();
+                    }
+                    message.writeBytes(chunk, 0, read);
+                }
+                pooled.producerFor(destinations.resolve(session, destination)).send(message);
+            } catch (JMSException e) {
+                pooled.invalidate();
+                throw e;
             }
+            timersFor(destination).bytes.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            recordSent(destination, 1);
+            logger.info("Message sent, {} bytes", size);
+            return Response.ok("Message sent successfully: " + size + " bytes").build();
+        } catch (BrokerUnavailableException e) {
+            logger.warn(e.getMessage());
+            return unavailable(e);
+        } catch (IOException e) {
+            logger.warn("Could not read binary request body: {}", e.getMessage());
+            return Response.status(Response.Status.BAD_REQUEST).entity("Could not read message body").build();
         } catch (Exception e) {
             logger.error(e.getMessage(), e);
             return Response.serverError().entity("Failed to send message").build();
+        } finally {
+            chunkPool.release(chunk);
+        }
+    }
+
+    /**
+     * Sends a stream of text messages to the default queue in transacted batches.
+     *
+     * @param messages the messages to send, read lazily from the request body
+     * @return a {@code Response} carrying a {@link BatchResult}
+     * @see #sendBatchToBroker(Iterator, Function)
+     */
+    Response sendBatchToBroker(Iterator<String> messages) {
+        return sendBatchToBroker(messages, content -> destinations.getDefault());
+    }
+
+    /**
+     * Sends a stream of text messages in transacted batches, each to the destination the routing
+     * function chooses for it. A transaction may span several destinations.
+     *
+     * <p>The open transaction is committed once it holds {@code batch.size} messages, or when a
+     * message is read after it has been open for {@code batch.linger-ms}, and finally at the end
+     * of the body. JMS sessions are single-threaded, so no timer commits on its own while the
+     * request thread waits for the next message.</p>
+     *
+     * <p>A failed send or commit rolls back the open transaction only; its messages are counted
+     * as failed and the remaining messages continue on a fresh session. If no session can be
+     * obtained at all, the rest of the batch is read and counted as failed without further
+     * broker calls. Batches are not kept in the {@link Outbox}: once a message for the default
+     * queue finds the outbox holding messages, it and every later message of the batch for the
+     * default queue are counted as failed without being sent, so that none overtakes the
+     * outbox.</p>
+     *
+     * @param messages the messages to send, read lazily from the request body
+     * @param routing  chooses the destination of each message from its content
+     * @return a {@code Response} carrying a {@link BatchResult}: 200 if every message was
+     *         committed, 400 if the body was malformed, 503 if messages were held back for the
+     *         outbox, 500 if any other message failed
+     */
+    Response sendBatchToBroker(Iterator<String> messages, Function<String, DestinationRegistry.Endpoint> routing) {
+        int accepted = 0;
+        int committed = 0;
+        int failed = 0;
+        int pending = 0;
+        Map<DestinationRegistry.Endpoint, Integer> pendingByDestination = new HashMap<>();
+        long batchStarted = 0;
+        boolean malformed = false;
+        boolean brokerUnavailable = false;
+        boolean heldBack = false;
+        ProducerPool.PooledSession pooled = null;
+
+        try {
+            while (true) {
+                String content;
+                try {
+                    if (!messages.hasNext()) {
+                        break;
+                    }
+                    content = messages.next();
+                } catch (UncheckedIOException e) {
+                    logger.warn("Malformed batch request body: {}", e.getMessage());
+                    malformed = true;
+                    break;
+                }
+                accepted++;
+                DestinationRegistry.Endpoint destination = routing.apply(content);
+                if (isKept(destination) && (heldBack || outbox.holdsMessages())) {
+                    heldBack = true;
+                    failed++;
+                    continue;
+                }
+
+                if (pooled == null && !brokerUnavailable) {
+                    try {
+                        pooled = producerPool.borrowTransacted();
+                    } catch (JMSException e) {
+                        logger.error("No producer session available for batch", e);
+                        brokerUnavailable = true;
+                    }
+                }
+                if (pooled == null) {
+                    failed++;
+                    continue;
+                }
+
+                try {
+                    if (++pending == 1) {
+                        batchStarted = System.nanoTime();
+                    }
+                    pendingByDestination.merge(destination, 1, Integer::sum);
+                    Session session = pooled.getSession();
+                    pooled.producerFor(destinations.resolve(session, destination))
+                            .send(compression.createTextMessage(session, content));
+                    if (pending >= batchSize || System.nanoTime() - batchStarted >= batchLingerNanos) {
+                        session.commit();
+                        recordCommitted(pendingByDestination, System.nanoTime() - batchStarted);
+                        committed += pending;
+                        pending = 0;
+                    }
+                } catch (JMSException e) {
+                    logger.error("Batch transaction failed, rolling back {} messages", pending, e);
+                    failed += pending;
+                    pending = 0;
+                    pendingByDestination.clear();
+                    discard(pooled);
+                    pooled = null;
+                }
+            }
+
+            if (pooled != null && pending > 0) {
+                if (malformed) {
+                    failed += pending;
+                    discard(pooled);
+                    pooled = null;
+                } else {
+                    try {
+                        pooled.getSession().commit();
+                        recordCommitted(pendingByDestination, System.nanoTime() - batchStarted);
+                        committed += pending;
+                    } catch (JMSException e) {
+                        logger.error("Batch transaction failed, rolling back {} messages", pending, e);
+                        failed += pending;
+                        discard(pooled);
+                        pooled = null;
+                    }
+                }
+            }
+        } finally {
+            if (pooled != null) {
+                pooled.close();
+            }
+        }
+
+        logger.info("Batch sent: accepted {}, committed {}, failed {}", accepted, committed, failed);
+        BatchResult result = new BatchResult(accepted, committed, failed);
+        if (malformed) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(result).build();
+        }
+        if (heldBack) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).header("Retry-After", 1).entity(result).build();
+        }
+        if (failed > 0) {
+            return Response.serverError().entity(result).build();
+        }
+        return Response.ok(result).build();
+    }
+
+    /**
+     * Records a committed batch transaction in the batch timer of every destination it sent to,
+     * and reports its messages to the backlog estimator.
+     */
+    private void recordCommitted(Map<DestinationRegistry.Endpoint, Integer> pendingByDestination, long elapsedNanos) {
+        for (Map.Entry<DestinationRegistry.Endpoint, Integer> sent : pendingByDestination.entrySet()) {
+            timersFor(sent.getKey()).batch.record(elapsedNanos, TimeUnit.NANOSECONDS);
+            recordSent(sent.getKey(), sent.getValue());
+        }
+        pendingByDestination.clear();
+    }
+
+    /**
+     * Reports sent messages to the backlog estimator. Topics have no backlog of their own.
+     */
+    private void recordSent(DestinationRegistry.Endpoint destination, long count) {
+        if (!destination.isTopic()) {
+            backlogEstimator.recordEnqueued(destination.getKey(), count);
+        }
+    }
+
+    private SendTimers timersFor(DestinationRegistry.Endpoint destination) {
+        return sendTimers.get(destination.getKey());
+    }
+
+    /**
+     * Tells whether messages to a destination are kept in the outbox when they cannot be sent.
+     * The outbox only delivers to the default queue.
+     */
+    private boolean isKept(DestinationRegistry.Endpoint destination) {
+        return outbox.isEnabled() && destination == destinations.getDefault();
+    }
+
+    /**
+     * Rolls back a transacted session and removes it from the pool.
+     */
+    private static void discard(ProducerPool.PooledSession pooled) {
+        try {
+            pooled.getSession().rollback();
+        } catch (JMSException e) {
+            logger.debug("Error rolling back batch transaction", e);
+        }
+        pooled.invalidate();
+        pooled.close();
+    }
+
+    /**
+     * Appends a text message to the outbox for later delivery.
+     *
+     * @return 202 if the message was kept, 503 if the outbox is full, 500 if it could not be written
+     */
+    private Response keep(String messageContent) {
+        try {
+            outbox.append(messageContent);
+        } catch (SegmentLog.FullException e) {
+            logger.error("Could not keep message in the outbox: {}", e.getMessage());
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).entity("Outbox is full").build();
+        } catch (IOException | IllegalArgumentException e) {
+            logger.error("Could not keep message in the outbox: {}", e.getMessage());
+            return Response.serverError().entity("Failed to send message").build();
+        }
+        logger.info("Message kept in the outbox {}", messageContent);
+        return Response.accepted("Message accepted for delivery: " + messageContent).build();
+    }
+
+    private static Response outboxDraining() {
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                .header("Retry-After", 1)
+                .entity("Outbox is delivering earlier messages")
+                .build();
+    }
+
+    private Response tooLarge() {
+        return Response.status(Response.Status.REQUEST_ENTITY_TOO_LARGE)
+                .entity("Message body exceeds " + maxBytesSize + " bytes")
+                .build();
+    }
+
+    private static Response unavailable(BrokerUnavailableException e) {
+        long retryAfterSeconds = Math.max(1, TimeUnit.MILLISECONDS.toSeconds(e.getRetryAfterMillis() + 999));
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                .header("Retry-After", retryAfterSeconds)
+                .entity("Broker connection is down")
+                .build();
+    }
+
+    /**
+     * The send timers of one destination, looked up once.
+     */
+    private static final class SendTimers {
+
+        private final Timer sync;
+        private final Timer async;
+        private final Timer batch;
+        private final Timer bytes;
+
+        SendTimers(ClientMetrics metrics, String destination) {
+            this.sync = metrics.sendTimer(destination, "sync");
+            this.async = metrics.sendTimer(destination, "async");
+            this.batch = metrics.sendTimer(destination, "batch");
+            this.bytes = metrics.sendTimer(destination, "bytes");
         }
     }
 }
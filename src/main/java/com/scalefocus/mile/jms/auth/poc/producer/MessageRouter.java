@@ -0,0 +1,153 @@
+package com.scalefocus.mile.jms.auth.poc.producer;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.scalefocus.mile.jms.auth.poc.core.DestinationRegistry;
+import com.scalefocus.mile.jms.auth.poc.core.ThreadSafe;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Chooses the destination of each published message.
+ *
+ * <p>A message's routing key is the value of the {@code solace.routing.key-header} request
+ * header or, if the request has none and {@code solace.routing.content-key} names a field, that
+ * top-level field of a JSON object body. {@code solace.routing.rules} maps keys to registered
+ * destinations as a comma separated list of {@code pattern=destination} pairs, where a pattern
+ * ending in {@code *} matches every key with that prefix and any other pattern matches the key
+ * exactly. The first matching rule wins; a message without a key or without a matching rule goes
+ * to the default queue.</p>
+ *
+ * <p>Rules are checked against the registry on startup, so a rule naming an unregistered
+ * destination fails fast instead of at the first message it matches.</p>
+ */
+@ApplicationScoped
+@ThreadSafe
+class MessageRouter {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageRouter.class);
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final DestinationRegistry destinations;
+    private final String keyHeader;
+    private final Optional<String> contentKey;
+    private final List<Rule> rules = new ArrayList<>();
+
+    /**
+     * Constructs a new {@code MessageRouter}.
+     *
+     * @param destinations the registered destinations rules route to
+     * @param keyHeader    the request header carrying the routing key
+     * @param contentKey   the JSON field carrying the routing key of requests without the header
+     * @param rules        the routing rules, comma separated {@code pattern=destination} pairs
+     */
+    @Inject
+    MessageRouter(
+            DestinationRegistry destinations,
+            @ConfigProperty(name = "solace.routing.key-header", defaultValue = "X-Routing-Key") String keyHeader,
+            @ConfigProperty(name = "solace.routing.content-key") Optional<String> contentKey,
+            @ConfigProperty(name = "solace.routing.rules") Optional<String> rules) {
+        this.destinations = destinations;
+        this.keyHeader = keyHeader;
+        this.contentKey = contentKey.filter(name -> !name.isBlank());
+        if (rules.isPresent()) {
+            for (String entry : rules.get().split(",")) {
+                if (entry.isBlank()) {
+                    continue;
+                }
+                int separator = entry.indexOf('=');
+                if (separator <= 0) {
+                    throw new IllegalArgumentException("Invalid solace.routing.rules entry: " + entry);
+                }
+                this.rules.add(new Rule(entry.substring(0, separator).trim(),
+                        destinations.get(entry.substring(separator + 1))));
+            }
+        }
+    }
+
+    /**
+     * Returns the name of the request header carrying the routing key.
+     *
+     * @return the routing key header name
+     */
+    String getKeyHeader() {
+        return keyHeader;
+    }
+
+    /**
+     * Returns the destination of a message.
+     *
+     * @param headerKey the routing key header of the request, or {@code null}
+     * @param content   the text of the message, or {@code null} for a binary body
+     * @return the destination the first matching rule names, or the default queue
+     */
+    DestinationRegistry.Endpoint route(String headerKey, String content) {
+        if (rules.isEmpty()) {
+            return destinations.getDefault();
+        }
+        String key = headerKey != null && !headerKey.isBlank() ? headerKey : contentKeyOf(content);
+        if (key != null) {
+            for (Rule rule : rules) {
+                if (rule.matches(key)) {
+                    return rule.destination;
+                }
+            }
+        }
+        return destinations.getDefault();
+    }
+
+    /**
+     * Reads the content key field of a JSON object, stopping at the field instead of parsing the
+     * whole body. Nested objects and arrays are skipped.
+     */
+    private String contentKeyOf(String content) {
+        if (contentKey.isEmpty() || content == null || content.isEmpty() || content.charAt(0) != '{') {
+            return null;
+        }
+        try (JsonParser parser = JSON.createParser(content)) {
+            parser.nextToken();
+            JsonToken token;
+            while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+                boolean wanted = contentKey.get().equals(parser.getCurrentName());
+                token = parser.nextToken();
+                if (wanted) {
+                    return token.isScalarValue() ? parser.getValueAsString() : null;
+                }
+                parser.skipChildren();
+            }
+        } catch (IOException e) {
+            logger.debug("Could not read the routing key of a message: {}", e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * A routing key pattern and the destination of the keys it matches.
+     */
+    private static final class Rule {
+
+        private final String pattern;
+        private final boolean prefix;
+        private final DestinationRegistry.Endpoint destination;
+
+        Rule(String pattern, DestinationRegistry.Endpoint destination) {
+            this.prefix = pattern.endsWith("*");
+            this.pattern = prefix ? pattern.substring(0, pattern.length() - 1) : pattern;
+            this.destination = destination;
+        }
+
+        boolean matches(String key) {
+            return prefix ? key.startsWith(pattern) : key.equals(pattern);
+        }
+    }
+}
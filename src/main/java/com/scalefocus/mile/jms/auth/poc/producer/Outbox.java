@@ -0,0 +1,286 @@
+package com.scalefocus.mile.jms.auth.poc.producer;
+
+import com.scalefocus.mile.jms.auth.poc.core.BacklogEstimator;
+import com.scalefocus.mile.jms.auth.poc.core.Backoff;
+import com.scalefocus.mile.jms.auth.poc.core.ClientMetrics;
+import com.scalefocus.mile.jms.auth.poc.core.DestinationRegistry;
+import com.scalefocus.mile.jms.auth.poc.core.PayloadCompression;
+import com.scalefocus.mile.jms.auth.poc.core.ReconnectSettings;
+import com.scalefocus.mile.jms.auth.poc.core.ThreadSafe;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.runtime.Startup;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import jakarta.jms.JMSException;
+import jakarta.jms.MessageProducer;
+import jakarta.jms.Session;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A local, durable queue of text messages awaiting delivery to the broker's default queue.
+ *
+ * <p>When enabled, messages that cannot be sent because the broker connection is down or a send
+ * failed are appended to a {@link SegmentLog} in {@code solace.outbox.directory} instead of
+ * being rejected. While the outbox holds messages, every new message is appended behind them so
+ * that the order of sends is kept. With {@code solace.outbox.write-through} every message is
+ * appended, so that a send costs a local disk write whatever the broker's latency. The segment
+ * files take at most {@code solace.outbox.max-bytes}; once they are full, messages are rejected
+ * instead of kept.</p>
+ *
+ * <p>A background drainer replays the log in order, sending up to {@code drain-batch-size}
+ * messages per transaction on a pooled transacted session. A batch is acknowledged in the log,
+ * and segments it completed are deleted, only after its transaction committed; a failed batch is
+ * retried as a whole after a jittered backoff. Delivery is therefore at least once: a commit
+ * whose outcome was lost with the connection is sent again. The log is opened on startup, so
+ * messages left by a previous run are delivered before new ones.</p>
+ */
+@ApplicationScoped
+@Startup
+@ThreadSafe
+class Outbox {
+
+    private static final Logger logger = LoggerFactory.getLogger(Outbox.class);
+
+    private static final long IDLE_WAIT_MILLIS = 1000;
+
+    private final boolean enabled;
+    private final Path directory;
+    private final int segmentSize;
+    private final long maxBytes;
+    private final boolean fsync;
+    private final boolean writeThrough;
+    private final int drainBatchSize;
+    private final ProducerPool producerPool;
+    private final DestinationRegistry destinations;
+    private final PayloadCompression compression;
+    private final BacklogEstimator backlogEstimator;
+    private final ReconnectSettings reconnectSettings;
+    private final ClientMetrics metrics;
+
+    private volatile SegmentLog log;
+    private Thread drainer;
+
+    /**
+     * Constructs a new {@code Outbox}. The log is opened by {@link #open()}.
+     *
+     * @param enabled           whether undeliverable messages are kept instead of rejected
+     * @param directory         the directory holding the log's segment files
+     * @param segmentSize       the size of each segment file in bytes
+     * @param maxBytes          the most disk space the segment files may take
+     * @param fsync             whether every append is forced to disk before it is acknowledged
+     * @param writeThrough      whether every message goes through the outbox
+     * @param drainBatchSize    the number of messages sent per drained transaction
+     * @param producerPool      the pool the drainer borrows transacted sessions from
+     * @param destinations      the destinations, whose default queue messages are delivered to
+     * @param compression       the compression applied to delivered payloads
+     * @param backlogEstimator  the estimator every delivered message is reported to
+     * @param reconnectSettings the backoff between failed drain attempts
+     * @param metrics           the metrics drained batches and the outbox size are recorded in
+     */
+    Outbox(
+            @ConfigProperty(name = "solace.outbox.enabled", defaultValue = "false") boolean enabled,
+            @ConfigProperty(name = "solace.outbox.directory", defaultValue = "outbox") String directory,
+            @ConfigProperty(name = "solace.outbox.segment-size", defaultValue = "67108864") int segmentSize,
+            @ConfigProperty(name = "solace.outbox.max-bytes", defaultValue = "1073741824") long maxBytes,
+            @ConfigProperty(name = "solace.outbox.fsync", defaultValue = "false") boolean fsync,
+            @ConfigProperty(name = "solace.outbox.write-through", defaultValue = "false") boolean writeThrough,
+            @ConfigProperty(name = "solace.outbox.drain-batch-size", defaultValue = "500") int drainBatchSize,
+            ProducerPool producerPool,
+            DestinationRegistry destinations,
+            PayloadCompression compression,
+            BacklogEstimator backlogEstimator,
+            ReconnectSettings reconnectSettings,
+            ClientMetrics metrics) {
+        this.enabled = enabled;
+        this.directory = Path.of(directory);
+        this.segmentSize = segmentSize;
+        this.maxBytes = maxBytes;
+        this.fsync = fsync;
+        this.writeThrough = writeThrough;
+        this.drainBatchSize = Math.max(1, drainBatchSize);
+        this.producerPool = producerPool;
+        this.destinations = destinations;
+        this.compression = compression;
+        this.backlogEstimator = backlogEstimator;
+        this.reconnectSettings = reconnectSettings;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Creates an outbox that keeps nothing, for use outside of Quarkus.
+     *
+     * @return a disabled outbox
+     */
+    static Outbox disabled() {
+        return new Outbox(false, "outbox", 0, 0, false, false, 1, null, null, null, null,
+                new ReconnectSettings(new Properties()), ClientMetrics.disabled());
+    }
+
+    /**
+     * Opens the log, recovering messages left by a previous run, and starts the drainer. Does
+     * nothing if the outbox is disabled.
+     */
+    @PostConstruct
+    synchronized void open() {
+        if (!enabled || log != null) {
+            return;
+        }
+        try {
+            log = new SegmentLog(directory, segmentSize, maxBytes, fsync);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open outbox in " + directory.toAbsolutePath(), e);
+        }
+        String queue = destinations.getDefault().getKey();
+        metrics.registerOutboxSize(queue, this::size);
+        Timer drainTimer = metrics.sendTimer(queue, "outbox");
+        drainer = new Thread(() -> drain(log, drainTimer), "outbox-drainer");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    /**
+     * Tells whether messages that cannot be sent are kept in this outbox.
+     *
+     * @return {@code true} if the outbox is enabled
+     */
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Tells whether a new message must be appended instead of sent directly: always in
+     * write-through mode, and otherwise while earlier messages are still waiting, so that the
+     * new one is not delivered ahead of them.
+     *
+     * @return {@code true} if the next message belongs in the outbox
+     */
+    boolean takesNextMessage() {
+        SegmentLog current = log;
+        return current != null && (writeThrough || current.size() > 0);
+    }
+
+    /**
+     * Tells whether messages are waiting for delivery. Sends to the default queue that cannot go
+     * through the outbox, such as batches and binary bodies, must not be sent directly meanwhile,
+     * since they would overtake the waiting messages.
+     *
+     * @return {@code true} if the outbox holds undelivered messages
+     */
+    boolean holdsMessages() {
+        return size() > 0;
+    }
+
+    /**
+     * Appends a message for later delivery.
+     *
+     * @param content the message text
+     * @throws SegmentLog.FullException if the outbox has reached {@code solace.outbox.max-bytes}
+     * @throws IOException              if the message cannot be written
+     * @throws IllegalArgumentException if the message is larger than a segment
+     */
+    void append(String content) throws IOException {
+        SegmentLog current = log;
+        if (current == null) {
+            throw new IOException("Outbox is not enabled");
+        }
+        current.append(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the number of messages waiting for delivery.
+     *
+     * @return the number of messages in the outbox
+     */
+    long size() {
+        SegmentLog current = log;
+        return current != null ? current.size() : 0;
+    }
+
+    private void drain(SegmentLog source, Timer drainTimer) {
+        Backoff backoff = reconnectSettings.newBackoff();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                SegmentLog.Batch batch = source.await(drainBatchSize, IDLE_WAIT_MILLIS);
+                if (batch.isEmpty()) {
+                    continue;
+                }
+                long started = System.nanoTime();
+                try {
+                    send(batch.records());
+                } catch (BrokerUnavailableException e) {
+                    Thread.sleep(e.getRetryAfterMillis());
+                    continue;
+                } catch (JMSException | RuntimeException e) {
+                    long delay = backoff.nextDelayMillis();
+                    logger.warn("Could not deliver {} messages from the outbox, retrying in {} ms: {}",
+                            batch.records().size(), delay, e.getMessage());
+                    Thread.sleep(delay);
+                    continue;
+                }
+                source.acknowledge(batch);
+                backoff.reset();
+                drainTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                backlogEstimator.recordEnqueued(destinations.getDefault().getKey(), batch.records().size());
+                logger.debug("Delivered {} messages from the outbox", batch.records().size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Sends a batch in one transaction. The session is discarded if sending or committing fails.
+     */
+    private void send(List<byte[]> records) throws JMSException {
+        try (ProducerPool.PooledSession pooled = producerPool.borrowTransacted()) {
+            Session session = pooled.getSession();
+            try {
+                MessageProducer producer = pooled.producerFor(destinations.resolve(session, destinations.getDefault()));
+                for (byte[] record : records) {
+                    String content = new String(record, StandardCharsets.UTF_8);
+                    producer.send(compression.createTextMessage(session, content));
+                }
+                session.commit();
+            } catch (JMSException | RuntimeException e) {
+                try {
+                    session.rollback();
+                } catch (JMSException rollbackFailure) {
+                    logger.debug("Error rolling back outbox batch", rollbackFailure);
+                }
+                pooled.invalidate();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Stops the drainer and closes the log. Messages still in the outbox are delivered after
+     * the next start.
+     */
+    @PreDestroy
+    synchronized void close() {
+        if (drainer != null) {
+            drainer.interrupt();
+            try {
+                drainer.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            drainer = null;
+        }
+        if (log != null) {
+            log.close();
+        }
+    }
+}
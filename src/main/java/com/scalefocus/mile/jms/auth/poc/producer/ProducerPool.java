@@ -0,0 +1,626 @@
+package com.scalefocus.mile.jms.auth.poc.producer;
+
+import com.scalefocus.mile.jms.auth.poc.core.Backoff;
+import com.scalefocus.mile.jms.auth.poc.core.ClientMetrics;
+import com.scalefocus.mile.jms.auth.poc.core.ConnectionRoller;
+import com.scalefocus.mile.jms.auth.poc.core.ReconnectSettings;
+import com.scalefocus.mile.jms.auth.poc.core.RollableConnections;
+import com.scalefocus.mile.jms.auth.poc.core.ThreadSafe;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import jakarta.jms.*;
+import jakarta.jms.IllegalStateException;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded pool of long-lived JMS sessions and producers shared by all senders.
+ *
+ * <p>A small, fixed number of connections is opened lazily and kept for the life of the
+ * application, so the TLS handshake is paid once per connection instead of once per message.
+ * Sessions are created on those connections on demand, up to {@code max-sessions}, and each
+ * session caches one {@code MessageProducer} per destination. Non-transacted and transacted
+ * sessions are kept apart but share the same bound. Idle sessions are evicted after
+ * {@code idle-timeout-ms}, and connections reported broken by their {@code ExceptionListener}
+ * are discarded together with every session created on them.</p>
+ *
+ * <p>A failed connection is replaced on the next borrow. If that fails too, further attempts on
+ * the same slot are spaced by a jittered exponential backoff, and borrows in between fail at once
+ * with a {@link BrokerUnavailableException} instead of waiting for the connect timeout. Connecting
+ * happens outside the slot's monitor: one borrower connects while the others wait for it without
+ * holding any lock, so a slow connect never stalls borrowers of healthy sessions.</p>
+ *
+ * <p>{@link #tryBorrow()} never waits: it fails at once if every session is borrowed, and if the
+ * connection is down it leaves the reconnection to the pool's maintenance thread.</p>
+ *
+ * <p>After the SSL material was reloaded, the {@link ConnectionRoller} rolls the connections one
+ * by one: a replacement is opened first and takes all new borrows, idle sessions of the old
+ * connection are closed, and the old connection is closed once its borrowed sessions have been
+ * released or the drain timeout has passed.</p>
+ */
+@ApplicationScoped
+@ThreadSafe
+class ProducerPool implements RollableConnections {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProducerPool.class);
+
+    private static final long DRAIN_POLL_MILLIS = 10;
+    private static final long CONNECTING_RETRY_MILLIS = 1000;
+
+    private final ConnectionFactory connectionFactory;
+    private final ReconnectSettings reconnectSettings;
+    private final long borrowTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final Timer connectionTimer;
+    private final Counter connectionFailures;
+
+    private final PooledConnection[] connections;
+    private final AtomicInteger nextConnection = new AtomicInteger();
+
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<PooledSession> idleSessions = new ConcurrentLinkedDeque<>();
+    private final ConcurrentLinkedDeque<PooledSession> idleTransactedSessions = new ConcurrentLinkedDeque<>();
+
+    private final ScheduledExecutorService evictor;
+
+    private volatile boolean closed;
+
+    /**
+     * Constructs a new {@code ProducerPool}.
+     *
+     * @param connectionFactory   the JMS connection factory
+     * @param connectionCount     the number of shared connections sessions are spread over
+     * @param maxSessions         the maximum number of sessions borrowed or idle at once
+     * @param borrowTimeoutMillis how long a sender waits for a free session before failing
+     * @param idleTimeoutMillis   how long a session may stay idle before it is closed
+     * @param reconnectSettings   the backoff between attempts to replace a failed connection
+     * @param metrics             the metrics connection establishments and failures are recorded in
+     */
+    ProducerPool(
+            ConnectionFactory connectionFactory,
+            @ConfigProperty(name = "solace.producer.pool.connections", defaultValue = "1") int connectionCount,
+            @ConfigProperty(name = "solace.producer.pool.max-sessions", defaultValue = "8") int maxSessions,
+            @ConfigProperty(name = "solace.producer.pool.borrow-timeout-ms", defaultValue = "5000") long borrowTimeoutMillis,
+            @ConfigProperty(name = "solace.producer.pool.idle-timeout-ms", defaultValue = "60000") long idleTimeoutMillis,
+            ReconnectSettings reconnectSettings,
+            ClientMetrics metrics) {
+        this.connectionFactory = connectionFactory;
+        this.reconnectSettings = reconnectSettings;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.connectionTimer = metrics.connectionTimer("producer");
+        this.connectionFailures = metrics.connectionFailures("producer");
+        this.connections = new PooledConnection[Math.max(1, connectionCount)];
+        for (int i = 0; i < connections.length; i++) {
+            connections[i] = new PooledConnection(i);
+        }
+        this.permits = new Semaphore(Math.max(1, maxSessions), true);
+        this.evictor = Executors.newSingleThreadScheduledExecutor();
+        long period = Math.max(1000, idleTimeoutMillis / 2);
+        evictor.scheduleAtFixedRate(this::evictIdleSessions, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a non-transacted session from the pool, creating one if no healthy idle session
+     * is available. The returned session must be closed by the caller, which hands it back to
+     * the pool.
+     *
+     * @return a pooled session ready for sending
+     * @throws BrokerUnavailableException if the connection is down and not due for another attempt
+     * @throws JMSException if the pool is exhausted for longer than the borrow timeout,
+     *                      or if a new connection or session cannot be created
+     */
+    PooledSession borrow() throws JMSException {
+        return borrow(false);
+    }
+
+    /**
+     * Borrows a transacted session from the pool. Callers must commit or roll back before
+     * closing it, and invalidate it if either fails.
+     *
+     * @return a pooled transacted session
+     * @throws BrokerUnavailableException if the connection is down and not due for another attempt
+     * @throws JMSException if the pool is exhausted for longer than the borrow timeout,
+     *                      or if a new connection or session cannot be created
+     */
+    PooledSession borrowTransacted() throws JMSException {
+        return borrow(true);
+    }
+
+    /**
+     * Borrows a non-transacted session without waiting, for callers that must not block. An
+     * idle session is reused, or a new one is created on a connection that is already open; a
+     * connection that is down is replaced in the background instead.
+     *
+     * @return a pooled session ready for sending, or {@code null} if every session is borrowed
+     * @throws BrokerUnavailableException if the connection is down or being replaced
+     * @throws JMSException if a new session cannot be created
+     */
+    PooledSession tryBorrow() throws JMSException {
+        if (closed) {
+            throw new IllegalStateException("Producer pool is closed");
+        }
+        if (!permits.tryAcquire()) {
+            return null;
+        }
+        return take(false, false);
+    }
+
+    private PooledSession borrow(boolean transacted) throws JMSException {
+        if (closed) {
+            throw new IllegalStateException("Producer pool is closed");
+        }
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new ResourceAllocationException(
+                        "No producer session available within " + borrowTimeoutMillis + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JMSException("Interrupted while waiting for a producer session");
+        }
+        return take(transacted, true);
+    }
+
+    /**
+     * Takes an idle session or creates a new one, after a permit has been acquired. The permit
+     * is released again if that fails.
+     */
+    private PooledSession take(boolean transacted, boolean mayConnect) throws JMSException {
+        try {
+            PooledSession pooled;
+            ConcurrentLinkedDeque<PooledSession> idle = idleFor(transacted);
+            while ((pooled = idle.pollFirst()) != null) {
+                if (!pooled.invalid && pooled.owner.isHealthy(pooled.generation)) {
+                    return pooled;
+                }
+                pooled.destroy();
+            }
+            return nextConnection().newSession(transacted, mayConnect);
+        } catch (JMSException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a borrowed session to the pool, or destroys it if it was invalidated or its
+     * connection has failed in the meantime.
+     */
+    private void release(PooledSession pooled) {
+        try {
+            if (closed || pooled.invalid || !pooled.owner.isHealthy(pooled.generation)) {
+                pooled.destroy();
+            } else {
+                pooled.lastUsed = System.nanoTime();
+                idleFor(pooled.transacted).offerFirst(pooled);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private ConcurrentLinkedDeque<PooledSession> idleFor(boolean transacted) {
+        return transacted ? idleTransactedSessions : idleSessions;
+    }
+
+    private PooledConnection nextConnection() {
+        int index = Math.floorMod(nextConnection.getAndIncrement(), connections.length);
+        return connections[index];
+    }
+
+    /**
+     * Closes sessions that have been idle longer than the idle timeout and drops connections
+     * that have failed. Idle sessions are kept most-recently-used first, so the oldest ones
+     * are found at the tail of the deque.
+     */
+    void evictIdleSessions() {
+        try {
+            long cutoff = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+            evictIdleSessions(idleSessions, cutoff);
+            evictIdleSessions(idleTransactedSessions, cutoff);
+            for (PooledConnection connection : connections) {
+                connection.closeIfFailed();
+            }
+        } catch (RuntimeException e) {
+            logger.error("Error evicting idle producer sessions", e);
+        }
+    }
+
+    private static void evictIdleSessions(ConcurrentLinkedDeque<PooledSession> idle, long cutoff) {
+        Iterator<PooledSession> iterator = idle.descendingIterator();
+        while (iterator.hasNext()) {
+            PooledSession pooled = iterator.next();
+            boolean healthy = !pooled.invalid && pooled.owner.isHealthy(pooled.generation);
+            if ((!healthy || pooled.lastUsed - cutoff < 0) && idle.removeFirstOccurrence(pooled)) {
+                pooled.destroy();
+            }
+        }
+    }
+
+    @Override
+    public int connectionCount() {
+        return connections.length;
+    }
+
+    @Override
+    public void roll(int index, long drainTimeoutMillis) throws JMSException {
+        if (!closed) {
+            connections[index].roll(drainTimeoutMillis);
+        }
+    }
+
+    /**
+     * Closes the idle sessions created on a connection that has since been replaced.
+     */
+    private void evictReplacedSessions(PooledConnection owner) {
+        for (ConcurrentLinkedDeque<PooledSession> idle : List.of(idleSessions, idleTransactedSessions)) {
+            for (PooledSession pooled : idle) {
+                if (pooled.owner == owner && !owner.isHealthy(pooled.generation)
+                        && idle.removeFirstOccurrence(pooled)) {
+                    pooled.destroy();
+                }
+            }
+        }
+    }
+
+    /**
+     * Closes every idle session and all shared connections. Sessions that are still borrowed
+     * are destroyed when they are released.
+     */
+    @PreDestroy
+    void close() {
+        closed = true;
+        evictor.shutdown();
+        PooledSession pooled;
+        while ((pooled = idleSessions.pollFirst()) != null) {
+            pooled.destroy();
+        }
+        while ((pooled = idleTransactedSessions.pollFirst()) != null) {
+            pooled.destroy();
+        }
+        for (PooledConnection connection : connections) {
+            connection.close();
+        }
+    }
+
+    /**
+     * A shared connection slot. The underlying connection is created on first use and replaced
+     * after its {@code ExceptionListener} reports a failure or when it is rolled; the generation
+     * counter lets sessions detect that the connection they were created on is gone, and the
+     * open session counter tells when a rolled connection has drained.
+     *
+     * <p>The monitor only guards the slot's state. At most one thread connects at a time, flagged
+     * by {@code connecting}, and it does so without holding the monitor; borrowers that may block
+     * wait on the monitor until it is done, the others fail at once.</p>
+     */
+    private final class PooledConnection {
+
+        private final int index;
+        private final Backoff backoff;
+        private int generation;
+        private long nextAttemptNanos;
+        private boolean connecting;
+        private volatile Link link;
+        private volatile int healthyGeneration = -1;
+
+        PooledConnection(int index) {
+            this.index = index;
+            this.backoff = reconnectSettings.newBackoff();
+        }
+
+        boolean isHealthy(int sessionGeneration) {
+            return healthyGeneration == sessionGeneration;
+        }
+
+        PooledSession newSession(boolean transacted, boolean mayConnect) throws JMSException {
+            Link current = link;
+            if (current == null || !isHealthy(current.generation)) {
+                current = awaitConnection(mayConnect);
+            }
+            Session session = transacted
+                    ? current.connection.createSession(true, Session.SESSION_TRANSACTED)
+                    : current.connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            return new PooledSession(this, current.generation, session, transacted, current.openSessions);
+        }
+
+        /**
+         * Returns the healthy connection of this slot, replacing a failed one first. If another
+         * thread is already connecting, a blocking borrower waits for it; a non-blocking one fails,
+         * and if nobody is connecting it hands the attempt to the maintenance thread.
+         */
+        private Link awaitConnection(boolean mayConnect) throws JMSException {
+            Connection failed;
+            synchronized (this) {
+                while (true) {
+                    Link current = link;
+                    if (current != null && isHealthy(current.generation)) {
+                        return current;
+                    }
+                    long wait = nextAttemptNanos - System.nanoTime();
+                    if (backoff.attempts() > 0 && wait > 0) {
+                        throw new BrokerUnavailableException(TimeUnit.NANOSECONDS.toMillis(wait) + 1);
+                    }
+                    if (!connecting) {
+                        connecting = true;
+                        failed = detach();
+                        break;
+                    }
+                    if (!mayConnect) {
+                        throw new BrokerUnavailableException(CONNECTING_RETRY_MILLIS);
+                    }
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new JMSException("Interrupted while waiting for producer connection " + index);
+                    }
+                }
+            }
+            closeQuietly(failed);
+            if (!mayConnect) {
+                connectInBackground();
+                throw new BrokerUnavailableException(CONNECTING_RETRY_MILLIS);
+            }
+            return connect();
+        }
+
+        private void connectInBackground() {
+            try {
+                evictor.execute(() -> {
+                    try {
+                        connect();
+                    } catch (JMSException | RuntimeException e) {
+                        logger.warn("Producer connection {} could not be established: {}", index, e.getMessage());
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                connected(null);
+            }
+        }
+
+        /**
+         * Opens a new connection and installs it. The caller must have set {@code connecting}.
+         */
+        private Link connect() throws JMSException {
+            Link established = null;
+            try {
+                established = open();
+                if (closed) {
+                    closeQuietly(established.connection);
+                    established = null;
+                    throw new IllegalStateException("Producer pool is closed");
+                }
+                return established;
+            } finally {
+                connected(established);
+            }
+        }
+
+        private Link open() throws JMSException {
+            long started = System.nanoTime();
+            Connection newConnection;
+            try {
+                newConnection = connectionFactory.createConnection();
+            } catch (JMSException e) {
+                connectionFailures.increment();
+                throw e;
+            }
+            int newGeneration;
+            synchronized (this) {
+                newGeneration = ++generation;
+            }
+            try {
+                newConnection.setExceptionListener(e -> onFailure(newGeneration, e));
+                newConnection.start();
+            } catch (JMSException e) {
+                connectionFailures.increment();
+                newConnection.close();
+                throw e;
+            }
+            connectionTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            logger.info("Producer connection {} established", index);
+            return new Link(newConnection, newGeneration);
+        }
+
+        /**
+         * Ends a connection attempt: installs the new connection, or schedules the next attempt
+         * after a failure, and wakes up the borrowers waiting for it.
+         */
+        private synchronized void connected(Link established) {
+            if (established != null) {
+                link = established;
+                healthyGeneration = established.generation;
+                backoff.reset();
+            } else {
+                nextAttemptNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoff.nextDelayMillis());
+            }
+            connecting = false;
+            notifyAll();
+        }
+
+        void roll(long drainTimeoutMillis) throws JMSException {
+            Link replaced;
+            synchronized (this) {
+                replaced = link;
+                if (replaced == null || !isHealthy(replaced.generation) || connecting) {
+                    return;
+                }
+                connecting = true;
+            }
+            connect();
+            evictReplacedSessions(this);
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(drainTimeoutMillis);
+            try {
+                while (replaced.openSessions.get() > 0 && System.nanoTime() - deadline < 0) {
+                    Thread.sleep(DRAIN_POLL_MILLIS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (replaced.openSessions.get() > 0) {
+                logger.warn("Closing replaced producer connection {} with {} session(s) still borrowed",
+                        index, replaced.openSessions.get());
+            }
+            try {
+                replaced.connection.close();
+            } catch (JMSException e) {
+                logger.debug("Error closing replaced producer connection {}", index, e);
+            }
+            logger.info("Producer connection {} rolled", index);
+        }
+
+        private void onFailure(int failedGeneration, JMSException e) {
+            if (healthyGeneration == failedGeneration) {
+                healthyGeneration = -1;
+                connectionFailures.increment();
+                logger.warn("Producer connection {} failed: {}", index, e.getMessage());
+            }
+        }
+
+        void closeIfFailed() {
+            Connection failed = null;
+            synchronized (this) {
+                Link current = link;
+                if (!connecting && current != null && !isHealthy(current.generation)) {
+                    failed = detach();
+                }
+            }
+            closeQuietly(failed);
+        }
+
+        void close() {
+            Connection open;
+            synchronized (this) {
+                healthyGeneration = -1;
+                open = detach();
+            }
+            closeQuietly(open);
+        }
+
+        private Connection detach() {
+            Link current = link;
+            link = null;
+            return current == null ? null : current.connection;
+        }
+
+        private void closeQuietly(Connection connection) {
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (JMSException e) {
+                    logger.debug("Error closing producer connection {}", index, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * A connection of a slot together with its generation and the number of sessions open on it.
+     */
+    private static final class Link {
+
+        private final Connection connection;
+        private final int generation;
+        private final AtomicInteger openSessions = new AtomicInteger();
+
+        Link(Connection connection, int generation) {
+            this.connection = connection;
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * A session borrowed from the pool together with its per-destination producer cache.
+     * Closing it returns it to the pool; {@link #invalidate()} makes the pool discard it instead.
+     */
+    final class PooledSession implements AutoCloseable {
+
+        private final PooledConnection owner;
+        private final int generation;
+        private final Session session;
+        private final boolean transacted;
+        private final AtomicInteger openSessions;
+        private final Map<Destination, MessageProducer> producers = new ConcurrentHashMap<>();
+
+        private volatile boolean invalid;
+        private volatile long lastUsed;
+
+        private PooledSession(PooledConnection owner, int generation, Session session, boolean transacted,
+                              AtomicInteger openSessions) {
+            this.owner = owner;
+            this.generation = generation;
+            this.session = session;
+            this.transacted = transacted;
+            this.openSessions = openSessions;
+            openSessions.incrementAndGet();
+            this.lastUsed = System.nanoTime();
+        }
+
+        /**
+         * Returns the underlying JMS session, for creating messages.
+         *
+         * @return the pooled session
+         */
+        Session getSession() {
+            return session;
+        }
+
+        /**
+         * Returns the cached producer for the given destination, creating it on first use.
+         *
+         * @param destination the destination queue or topic, as cached by the
+         *                    {@link com.scalefocus.mile.jms.auth.poc.core.DestinationRegistry}
+         * @return a producer bound to that destination
+         * @throws JMSException if the producer cannot be created
+         */
+        MessageProducer producerFor(Destination destination) throws JMSException {
+            MessageProducer producer = producers.get(destination);
+            if (producer == null) {
+                producer = session.createProducer(destination);
+                producers.put(destination, producer);
+            }
+            return producer;
+        }
+
+        /**
+         * Marks this session as unusable, typically after a send failed on it. A session already
+         * returned to the pool, as after an asynchronous send reported its failure, is discarded
+         * by the next borrow or eviction that finds it, rather than here, since a completion
+         * listener must not close its own session.
+         */
+        void invalidate() {
+            invalid = true;
+        }
+
+        @Override
+        public void close() {
+            release(this);
+        }
+
+        private void destroy() {
+            try {
+                session.close();
+            } catch (JMSException e) {
+                logger.debug("Error closing pooled producer session", e);
+            } finally {
+                openSessions.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,396 @@
+package com.scalefocus.mile.jms.auth.poc.producer;
+
+import com.scalefocus.mile.jms.auth.poc.core.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of records kept in memory-mapped segment files.
+ *
+ * <p>Records are appended to the newest segment; once it is full, a new segment of
+ * {@code segmentSize} bytes is created and mapped, unless the segments would then take more than
+ * {@code maxBytes}. Each record is stored as its length plus one, a CRC32 of its content and the
+ * content itself. The length is written last and a fresh segment is all zeroes, so a record torn
+ * by a crash reads as the end of the log while an empty record does not. Records are read back
+ * in append order from the oldest unacknowledged one, and {@link #acknowledge(Batch)} moves that
+ * position past a batch. The position is kept in a small checkpoint file, and segments whose
+ * records are all acknowledged are deleted.</p>
+ *
+ * <p>Reopening a directory restores the log: every segment is scanned up to its last intact
+ * record and reading resumes at the checkpoint. Written records reach the page cache at once and
+ * survive the process; with {@code fsync} they are also forced to disk before an append returns,
+ * so that they survive the machine.</p>
+ */
+@ThreadSafe
+final class SegmentLog implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentLog.class);
+
+    private static final int HEADER_SIZE = 8;
+    private static final String SEGMENT_SUFFIX = ".segment";
+    private static final String CHECKPOINT = "checkpoint";
+    private static final int CHECKPOINT_SIZE = 24;
+    private static final long CHECKPOINT_MAGIC = 0x4F7574626F784C67L;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long maxBytes;
+    private final boolean fsync;
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private final MappedByteBuffer checkpoint;
+
+    /** The oldest unacknowledged record: a segment of {@link #segments} and an offset in it. */
+    private Segment readSegment;
+    private int readOffset;
+    private long pending;
+    private boolean closed;
+
+    /**
+     * Opens the log in a directory without a size limit, creating the directory if needed and
+     * recovering the records of a previous run.
+     *
+     * @param directory   the directory holding the segment files
+     * @param segmentSize the size of each segment file in bytes
+     * @param fsync       whether every append is forced to disk before it returns
+     * @throws IOException if the directory or its files cannot be read or created
+     */
+    SegmentLog(Path directory, int segmentSize, boolean fsync) throws IOException {
+        this(directory, segmentSize, Long.MAX_VALUE, fsync);
+    }
+
+    /**
+     * Opens the log in a directory, creating the directory if needed and recovering the records
+     * of a previous run.
+     *
+     * @param directory   the directory holding the segment files
+     * @param segmentSize the size of each segment file in bytes
+     * @param maxBytes    the most disk space the segment files may take; one segment is always allowed
+     * @param fsync       whether every append is forced to disk before it returns
+     * @throws IOException if the directory or its files cannot be read or created
+     */
+    SegmentLog(Path directory, int segmentSize, long maxBytes, boolean fsync) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.segmentSize = Math.max(HEADER_SIZE + 1, segmentSize);
+        this.maxBytes = maxBytes;
+        this.fsync = fsync;
+        this.checkpoint = map(directory.resolve(CHECKPOINT), CHECKPOINT_SIZE);
+        recover();
+    }
+
+    /**
+     * Appends a record to the end of the log.
+     *
+     * @param record the content of the record
+     * @throws IllegalArgumentException if the record does not fit into a single segment
+     * @throws FullException            if the record needs a new segment the size limit leaves no room for
+     * @throws IOException              if a new segment cannot be created
+     */
+    synchronized void append(byte[] record) throws IOException {
+        if (closed) {
+            throw new IOException("Segment log is closed");
+        }
+        if (record.length > segmentSize - HEADER_SIZE) {
+            throw new IllegalArgumentException(
+                    "Record of " + record.length + " bytes exceeds the segment size of " + segmentSize + " bytes");
+        }
+        Segment segment = segments.getLast();
+        if (segment.writeOffset + HEADER_SIZE + record.length > segmentSize) {
+            if ((long) (segments.size() + 1) * segmentSize > maxBytes) {
+                throw new FullException(segments.size(), segmentSize);
+            }
+            segment = newSegment(segment.id + 1);
+        }
+        int offset = segment.writeOffset;
+        ByteBuffer buffer = segment.buffer.duplicate();
+        buffer.position(offset + HEADER_SIZE);
+        buffer.put(record);
+        segment.buffer.putInt(offset + 4, checksum(record));
+        segment.buffer.putInt(offset, record.length + 1);
+        if (fsync) {
+            segment.buffer.force();
+        }
+        segment.writeOffset = offset + HEADER_SIZE + record.length;
+        pending++;
+        notifyAll();
+    }
+
+    /**
+     * Returns the oldest unacknowledged records, waiting up to the given time for one to be
+     * appended if there are none. The same records are returned again until they are
+     * acknowledged.
+     *
+     * @param maxRecords    the largest number of records returned
+     * @param timeoutMillis how long to wait while the log is empty
+     * @return the records, possibly none
+     * @throws InterruptedException if interrupted while waiting
+     */
+    synchronized Batch await(int maxRecords, long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        long remaining;
+        while (pending == 0 && !closed && (remaining = deadline - System.nanoTime()) > 0) {
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return read(maxRecords);
+    }
+
+    private Batch read(int maxRecords) {
+        List<byte[]> records = new ArrayList<>(Math.min(maxRecords, (int) Math.min(pending, 1024)));
+        // segments before the read segment are deleted as soon as they are acknowledged
+        Iterator<Segment> following = segments.iterator();
+        Segment segment = following.next();
+        int offset = readOffset;
+        while (records.size() < maxRecords && records.size() < pending) {
+            if (offset >= segment.writeOffset) {
+                segment = following.next();
+                offset = 0;
+                continue;
+            }
+            int length = segment.buffer.getInt(offset) - 1;
+            byte[] record = new byte[length];
+            ByteBuffer buffer = segment.buffer.duplicate();
+            buffer.position(offset + HEADER_SIZE);
+            buffer.get(record);
+            records.add(record);
+            offset += HEADER_SIZE + length;
+        }
+        return new Batch(records, segment, offset);
+    }
+
+    /**
+     * Marks a batch returned by {@link #await(int, long)} as processed, so that reading
+     * continues after it, and deletes the segments it completed.
+     *
+     * @param batch the batch, which must start at the oldest unacknowledged record
+     */
+    synchronized void acknowledge(Batch batch) {
+        if (closed || batch.records.isEmpty()) {
+            return;
+        }
+        readSegment = batch.endSegment;
+        readOffset = batch.endOffset;
+        pending -= batch.records.size();
+        while (segments.getFirst() != readSegment) {
+            delete(segments.removeFirst());
+        }
+        if (readOffset >= readSegment.writeOffset && readSegment != segments.getLast()) {
+            segments.removeFirst();
+            delete(readSegment);
+            readSegment = segments.getFirst();
+            readOffset = 0;
+        }
+        writeCheckpoint();
+    }
+
+    /**
+     * Returns the number of records appended and not yet acknowledged.
+     *
+     * @return the number of unacknowledged records
+     */
+    synchronized long size() {
+        return pending;
+    }
+
+    /**
+     * Returns the number of segment files currently on disk.
+     *
+     * @return the number of segments
+     */
+    synchronized int segmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Forces the log to disk and stops accepting appends. Waiting readers return at once.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Segment segment : segments) {
+            segment.buffer.force();
+        }
+        checkpoint.force();
+        notifyAll();
+    }
+
+    private void recover() throws IOException {
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try (Stream<Path> listing = Files.list(directory)) {
+            listing.filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .forEach(path -> files.put(segmentId(path), path));
+        }
+
+        long checkpointSegment = checkpoint.getLong(0);
+        long checkpointOffset = checkpoint.getLong(8);
+        boolean checkpointValid = checkpoint.getLong(16) == (CHECKPOINT_MAGIC ^ checkpointSegment ^ checkpointOffset)
+                && files.containsKey(checkpointSegment);
+        for (Path path : files.values()) {
+            long id = segmentId(path);
+            if (checkpointValid && id < checkpointSegment) {
+                Files.deleteIfExists(path);
+                continue;
+            }
+            Segment segment = new Segment(id, path, map(path, segmentSize));
+            segment.writeOffset = scan(segment);
+            segments.addLast(segment);
+        }
+        if (segments.isEmpty()) {
+            newSegment(checkpointValid ? checkpointSegment : 0);
+        }
+
+        readSegment = segments.getFirst();
+        readOffset = checkpointValid && readSegment.id == checkpointSegment
+                ? (int) Math.min(checkpointOffset, readSegment.writeOffset) : 0;
+        pending = 0;
+        int offset = readOffset;
+        for (Segment segment : segments) {
+            while (offset < segment.writeOffset) {
+                offset += HEADER_SIZE + segment.buffer.getInt(offset) - 1;
+                pending++;
+            }
+            offset = 0;
+        }
+        writeCheckpoint();
+        if (pending > 0) {
+            logger.info("Recovered {} unacknowledged records in {} segments from {}",
+                    pending, segments.size(), directory);
+        }
+    }
+
+    /**
+     * Returns the offset after the last intact record of a segment.
+     */
+    private int scan(Segment segment) {
+        MappedByteBuffer buffer = segment.buffer;
+        int offset = 0;
+        while (offset + HEADER_SIZE <= segmentSize) {
+            // zero is a segment's unwritten tail
+            int length = buffer.getInt(offset) - 1;
+            if (length < 0 || length > segmentSize - offset - HEADER_SIZE) {
+                break;
+            }
+            byte[] record = new byte[length];
+            ByteBuffer view = buffer.duplicate();
+            view.position(offset + HEADER_SIZE);
+            view.get(record);
+            if (checksum(record) != buffer.getInt(offset + 4)) {
+                logger.warn("Discarding torn record at offset {} of {}", offset, segment.path);
+                break;
+            }
+            offset += HEADER_SIZE + length;
+        }
+        return offset;
+    }
+
+    private Segment newSegment(long id) throws IOException {
+        Path path = directory.resolve(String.format("%020d%s", id, SEGMENT_SUFFIX));
+        Segment segment = new Segment(id, path, map(path, segmentSize));
+        segments.addLast(segment);
+        return segment;
+    }
+
+    private void delete(Segment segment) {
+        try {
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            logger.warn("Could not delete acknowledged segment {}: {}", segment.path, e.getMessage());
+        }
+    }
+
+    private void writeCheckpoint() {
+        checkpoint.putLong(0, readSegment.id);
+        checkpoint.putLong(8, readOffset);
+        checkpoint.putLong(16, CHECKPOINT_MAGIC ^ readSegment.id ^ readOffset);
+        if (fsync) {
+            checkpoint.force();
+        }
+    }
+
+    private static MappedByteBuffer map(Path path, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    private static long segmentId(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static int checksum(byte[] record) {
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Thrown instead of appending when a new segment would take the log above its size limit.
+     */
+    static final class FullException extends IOException {
+
+        private FullException(int segments, int segmentSize) {
+            super("Segment log is full: " + segments + " segments of " + segmentSize + " bytes");
+        }
+    }
+
+    /**
+     * A segment file and its mapping. Records occupy the bytes before {@code writeOffset}.
+     */
+    private static final class Segment {
+
+        private final long id;
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private int writeOffset;
+
+        Segment(long id, Path path, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+
+    /**
+     * Consecutive records read from the log, with the position following the last of them.
+     */
+    static final class Batch {
+
+        private final List<byte[]> records;
+        private final Segment endSegment;
+        private final int endOffset;
+
+        private Batch(List<byte[]> records, Segment endSegment, int endOffset) {
+            this.records = records;
+            this.endSegment = endSegment;
+            this.endOffset = endOffset;
+        }
+
+        List<byte[]> records() {
+            return records;
+        }
+
+        boolean isEmpty() {
+            return records.isEmpty();
+        }
+    }
+}
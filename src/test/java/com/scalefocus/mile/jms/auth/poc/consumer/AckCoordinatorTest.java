@@ -0,0 +1,88 @@
+package com.scalefocus.mile.jms.auth.poc.consumer;
+
+import com.scalefocus.mile.jms.auth.poc.core.ClientMetrics;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.Session;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AckCoordinatorTest {
+
+    private static AckCoordinator coordinator(Session session, int windowSize) {
+        Properties properties = new Properties();
+        properties.setProperty("solace.consumer.ack.mode", "ordered");
+        properties.setProperty("solace.consumer.ack.window-size", Integer.toString(windowSize));
+        ConsumerSettings settings = new ConsumerSettings(properties);
+        Acknowledger acknowledger =
+                Acknowledger.create(settings, session, ClientMetrics.disabled().ackTimer("demo-queue", 0));
+        assertEquals(AckCoordinator.INDIVIDUAL_ACKNOWLEDGE, settings.getAcknowledgementMode().sessionMode());
+        assertTrue(acknowledger instanceof AckCoordinator);
+        return (AckCoordinator) acknowledger;
+    }
+
+    @Test
+    void testMessagesAreAcknowledgedOnlyAfterEveryEarlierMessage() throws JMSException {
+        AckCoordinator coordinator = coordinator(mock(Session.class), 10);
+        Message first = mock(Message.class);
+        Message second = mock(Message.class);
+        Message third = mock(Message.class);
+        CompletableFuture<Void> slow = new CompletableFuture<>();
+
+        coordinator.processed(first, slow);
+        coordinator.processed(second, CompletableFuture.completedFuture(null));
+        coordinator.processed(third, CompletableFuture.completedFuture(null));
+        coordinator.idle();
+        verifyNoInteractions(first, second, third);
+        assertEquals(3, coordinator.pending());
+
+        slow.complete(null);
+        coordinator.idle();
+
+        InOrder order = inOrder(first, second, third);
+        order.verify(first).acknowledge();
+        order.verify(second).acknowledge();
+        order.verify(third).acknowledge();
+        assertEquals(0, coordinator.pending());
+    }
+
+    @Test
+    void testFailedMessageRecoversTheSessionAfterTheMessagesInFlight() throws Exception {
+        Session session = mock(Session.class);
+        AckCoordinator coordinator = coordinator(session, 2);
+        Message earlier = mock(Message.class);
+        Message failed = mock(Message.class);
+        Message later = mock(Message.class);
+        CompletableFuture<Void> failing = new CompletableFuture<>();
+        CompletableFuture<Void> inFlight = new CompletableFuture<>();
+
+        coordinator.processed(earlier, CompletableFuture.completedFuture(null));
+        verify(earlier).acknowledge();
+
+        coordinator.processed(failed, failing);
+        coordinator.processed(later, inFlight);
+        failing.completeExceptionally(new IllegalStateException("handler failed"));
+        CompletableFuture<Void> flushed = CompletableFuture.runAsync(() -> {
+            try {
+                coordinator.flush();
+            } catch (JMSException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(50);
+        assertFalse(flushed.isDone());
+        inFlight.complete(null);
+        flushed.get();
+
+        verify(failed, never()).acknowledge();
+        verify(later, never()).acknowledge();
+        verify(session).recover();
+        assertEquals(0, coordinator.pending());
+    }
+}
@@ -0,0 +1,107 @@
+package com.scalefocus.mile.jms.auth.poc.consumer;
+
+import com.scalefocus.mile.jms.auth.poc.core.ClientMetrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.Session;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+class AckWindowTest {
+
+    private static final Timer ACK_TIMER = ClientMetrics.disabled().ackTimer("demo-queue", 0);
+
+    private static ConsumerSettings settings(String mode, int windowSize, long windowMillis) {
+        Properties properties = new Properties();
+        properties.setProperty("solace.consumer.ack.mode", mode);
+        properties.setProperty("solace.consumer.ack.window-size", Integer.toString(windowSize));
+        properties.setProperty("solace.consumer.ack.window-ms", Long.toString(windowMillis));
+        return new ConsumerSettings(properties);
+    }
+
+    @Test
+    void testWindowIsAcknowledgedOnceFull() throws JMSException {
+        Timer ackTimer = new ClientMetrics(new SimpleMeterRegistry()).ackTimer("demo-queue", 0);
+        AckWindow window = new AckWindow(settings("client-window", 3, 60_000), mock(Session.class), ackTimer);
+        Message first = mock(Message.class);
+        Message last = mock(Message.class);
+
+        window.processed(first);
+        window.processed(first);
+        assertEquals(2, window.pending());
+        window.processed(last);
+
+        assertEquals(0, window.pending());
+        verify(first, never()).acknowledge();
+        verify(last).acknowledge();
+        assertEquals(1, ackTimer.count());
+    }
+
+    @Test
+    void testIdleWindowIsAcknowledgedOnceOldEnough() throws Exception {
+        AckWindow window = new AckWindow(settings("client-window", 100, 20), mock(Session.class), ACK_TIMER);
+        Message message = mock(Message.class);
+
+        window.processed(message);
+        window.idle();
+        verify(message, never()).acknowledge();
+
+        Thread.sleep(30);
+        window.idle();
+        verify(message).acknowledge();
+    }
+
+    @Test
+    void testFailureRecoversSessionInsteadOfAcknowledging() throws JMSException {
+        Session session = mock(Session.class);
+        AckWindow window = new AckWindow(settings("client-window", 100, 60_000), session, ACK_TIMER);
+        Message message = mock(Message.class);
+
+        window.processed(message);
+        window.processed(message, CompletableFuture.failedFuture(new IllegalStateException("boom")));
+        window.flush();
+
+        verify(session).recover();
+        verify(message, never()).acknowledge();
+    }
+
+    @Test
+    void testFlushWaitsForAsynchronousProcessing() throws JMSException {
+        Session session = mock(Session.class);
+        AckWindow window = new AckWindow(settings("client-window", 2, 60_000), session, ACK_TIMER);
+        Message message = mock(Message.class);
+        CompletableFuture<Void> completion = new CompletableFuture<>();
+        CompletableFuture.runAsync(() -> {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException ignored) {}
+            completion.completeExceptionally(new IllegalStateException("boom"));
+        });
+
+        window.processed(message, completion);
+        window.processed(message);
+
+        verify(session).recover();
+        verify(message, never()).acknowledge();
+    }
+
+    @Test
+    void testOtherModesNeverAcknowledge() throws JMSException {
+        Session session = mock(Session.class);
+        AckWindow window = new AckWindow(settings("dups-ok", 1, 0), session, ACK_TIMER);
+        Message message = mock(Message.class);
+
+        window.processed(message);
+        window.failed();
+        window.flush();
+
+        verifyNoInteractions(message, session);
+    }
+}
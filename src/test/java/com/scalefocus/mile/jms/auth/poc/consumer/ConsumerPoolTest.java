@@ -0,0 +1,109 @@
+package com.scalefocus.mile.jms.auth.poc.consumer;
+
+import com.scalefocus.mile.jms.auth.poc.core.ClientMetrics;
+import jakarta.jms.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+class ConsumerPoolTest {
+
+    private AutoCloseable openedMocks = null;
+
+    @Mock
+    private Session session;
+
+    @Mock
+    private Queue queue;
+
+    @Mock
+    private MessageConsumer consumer;
+
+    private ConsumerPool consumerPool;
+
+    @BeforeEach
+    void setUp() throws JMSException {
+        openedMocks = MockitoAnnotations.openMocks(this);
+
+        when(session.createQueue(anyString())).thenReturn(queue);
+        when(session.createConsumer(queue)).thenReturn(consumer);
+        when(consumer.receive(anyLong())).thenAnswer(invocation -> {
+            Thread.sleep(10);
+            return null;
+        });
+
+        Properties properties = new Properties();
+        properties.setProperty("solace.consumer.concurrency", "2");
+        properties.setProperty("solace.consumer.min-concurrency", "1");
+        properties.setProperty("solace.consumer.max-concurrency", "3");
+        properties.setProperty("solace.consumer.receive-timeout-ms", "10");
+        consumerPool = new ConsumerPool("demo-queue", () -> session,
+                message -> CompletableFuture.completedFuture(null), new ConsumerSettings(properties), () -> 0,
+                ClientMetrics.disabled());
+    }
+
+    @AfterEach
+    void tearDown() {
+        consumerPool.stop();
+        try {
+            openedMocks.close();
+        } catch (Exception ignored) {}
+    }
+
+    @Test
+    void testStartCreatesOneConsumerPerWorker() throws JMSException {
+        consumerPool.start();
+
+        assertEquals(2, consumerPool.size());
+        verify(session, times(2)).createConsumer(queue);
+    }
+
+    @Test
+    void testResizeIsClampedToBounds() throws JMSException {
+        consumerPool.start();
+
+        assertEquals(3, consumerPool.resize(10));
+        assertEquals(3, consumerPool.size());
+        assertEquals(1, consumerPool.resize(0));
+        assertEquals(1, consumerPool.size());
+        verify(consumer, times(2)).close();
+    }
+
+    @Test
+    void testResizeWhileStoppedAppliesOnStart() throws JMSException {
+        consumerPool.resize(3);
+        assertEquals(0, consumerPool.size());
+
+        consumerPool.start();
+        assertEquals(3, consumerPool.size());
+    }
+
+    @Test
+    void testRollReplacesEveryWorkerKeepingThePoolSize() throws JMSException {
+        consumerPool.start();
+
+        consumerPool.roll();
+
+        assertEquals(2, consumerPool.size());
+        verify(session, times(4)).createConsumer(queue);
+        verify(consumer, times(2)).close();
+    }
+
+    @Test
+    void testStopClosesConsumersAndSessions() throws JMSException {
+        consumerPool.start();
+        consumerPool.stop();
+
+        assertEquals(0, consumerPool.size());
+        verify(consumer, times(2)).close();
+        verify(session, times(2)).close();
+    }
+}
@@ -0,0 +1,90 @@
+package com.scalefocus.mile.jms.auth.poc.consumer;
+
+import com.scalefocus.mile.jms.auth.poc.core.ClientMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DedupCacheTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private DedupCache cache(int maxEntries, int stripes, SimpleMeterRegistry registry) {
+        return new DedupCache(true, maxEntries, 1000, stripes, Optional.empty(), new ClientMetrics(registry),
+                clock::get);
+    }
+
+    @Test
+    void testDuplicatesAreCountedAsHits() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        DedupCache cache = cache(100, 4, registry);
+
+        assertTrue(cache.firstSeen("ID:1"));
+        assertTrue(cache.firstSeen("ID:2"));
+        assertFalse(cache.firstSeen("ID:1"));
+
+        assertEquals(1.0, registry.get("solace.consumer.dedup").tag("result", "hit").counter().count());
+        assertEquals(2.0, registry.get("solace.consumer.dedup").tag("result", "miss").counter().count());
+        assertEquals(2.0, registry.get("solace.consumer.dedup.entries").gauge().value());
+        assertTrue(registry.get("solace.consumer.dedup.memory").gauge().value() > 0);
+        assertTrue(registry.get("solace.consumer.dedup.entries").gauge().getId().getTags().isEmpty());
+    }
+
+    @Test
+    void testForgottenKeysAreSeenAgain() {
+        DedupCache cache = cache(100, 1, new SimpleMeterRegistry());
+        for (int i = 0; i < 50; i++) {
+            cache.firstSeen("ID:" + i);
+        }
+
+        cache.forget("ID:7");
+
+        assertTrue(cache.firstSeen("ID:7"));
+        for (int i = 0; i < 50; i++) {
+            assertFalse(cache.firstSeen("ID:" + i), "ID:" + i);
+        }
+    }
+
+    @Test
+    void testOldestKeysAreEvictedBySizeAndAge() {
+        DedupCache cache = cache(4, 1, new SimpleMeterRegistry());
+        for (int i = 0; i < 5; i++) {
+            cache.firstSeen("ID:" + i);
+        }
+        assertFalse(cache.firstSeen("ID:4"));
+        assertTrue(cache.firstSeen("ID:0"), "the oldest key makes room for the fifth");
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1001));
+        assertTrue(cache.firstSeen("ID:4"), "keys older than the TTL are forgotten");
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testParallelConsumersSeeEachKeyOnceInTotal() throws Exception {
+        DedupCache cache = cache(100_000, 16, new SimpleMeterRegistry());
+        AtomicInteger firsts = new AtomicInteger();
+        List<CompletableFuture<Void>> consumers = new ArrayList<>();
+        for (int c = 0; c < 4; c++) {
+            consumers.add(CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    if (cache.firstSeen("ID:" + i)) {
+                        firsts.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        CompletableFuture.allOf(consumers.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+
+        assertEquals(20_000, firsts.get());
+        assertEquals(20_000, cache.size());
+    }
+}
@@ -0,0 +1,36 @@
+package com.scalefocus.mile.jms.auth.poc.consumer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoadGeneratorTest {
+
+    @Test
+    void testMessageSizesFollowTheConfiguredDistribution() {
+        SplittableRandom random = new SplittableRandom(1);
+        LoadGenerator.SizeDistribution fixed = LoadGenerator.SizeDistribution.parse("1024");
+        LoadGenerator.SizeDistribution uniform = LoadGenerator.SizeDistribution.parse(" 100-200 ");
+        LoadGenerator.SizeDistribution logNormal = LoadGenerator.SizeDistribution.parse("lognormal:1000:0.5");
+
+        assertEquals(1024, fixed.next(random));
+        assertEquals(200, uniform.max());
+        assertEquals(16000, logNormal.max());
+        int belowMedian = 0;
+        for (int i = 0; i < 10_000; i++) {
+            int size = uniform.next(random);
+            assertTrue(size >= 100 && size <= 200, "size " + size);
+            int drawn = logNormal.next(random);
+            assertTrue(drawn >= 0 && drawn <= logNormal.max(), "size " + drawn);
+            if (drawn < 1000) {
+                belowMedian++;
+            }
+        }
+        assertTrue(belowMedian > 4500 && belowMedian < 5500, "below median " + belowMedian);
+
+        assertThrows(IllegalArgumentException.class, () -> LoadGenerator.SizeDistribution.parse("200-100"));
+        assertThrows(IllegalArgumentException.class, () -> LoadGenerator.SizeDistribution.parse("lognormal:1000"));
+    }
+}
@@ -1,14 +1,29 @@
 package com.scalefocus.mile.jms.auth.poc.consumer;
 
+import com.scalefocus.mile.jms.auth.poc.core.BacklogEstimator;
+import com.scalefocus.mile.jms.auth.poc.core.ClientMetrics;
+import com.scalefocus.mile.jms.auth.poc.core.DestinationRegistry;
+import com.scalefocus.mile.jms.auth.poc.core.ReconnectSettings;
 import jakarta.jms.*;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 
 class MessageConsumerProviderTest {
@@ -90,11 +105,115 @@ class MessageConsumerProviderTest {
             }
         }
 
-        // Verify that createConsumer was called twice, once for each queue
-        verify(session, times(threads.length)).createQueue(anyString());
+        // The queue is created once and reused by every consumer
+        verify(session, times(1)).createQueue(anyString());
         verify(session, times(threads.length)).createConsumer(queue);
     }
 
+    @Test
+    void testEachDestinationIsConsumedByItsOwnGroup() throws JMSException {
+        Topic topic = mock(Topic.class);
+        when(session.createTopic("prices")).thenReturn(topic);
+        when(session.createSharedConsumer(topic, "prices")).thenReturn(consumer);
+        when(consumer.receive(anyLong())).thenAnswer(invocation -> {
+            Thread.sleep(10);
+            return null;
+        });
+        Properties properties = new Properties();
+        properties.setProperty("solace.consumer.destinations", "demo-queue,topic:prices");
+        properties.setProperty("solace.consumer.group-concurrency", "topic:prices:2");
+        properties.setProperty("solace.consumer.receive-timeout-ms", "10");
+        MessageConsumerProvider provider = new MessageConsumerProvider(connectionFactory,
+                new DestinationRegistry("demo-queue", Optional.of("topic:prices")), new ConsumerSettings(properties),
+                BacklogEstimator.local(), MessageHandlerPipeline.logging(), new ReconnectSettings(new Properties()),
+                ClientMetrics.disabled());
+        try {
+            provider.establishBrokerConnection();
+            for (ConsumerPool pool : provider.getConsumerPools()) {
+                pool.start();
+            }
+
+            assertEquals(1, provider.getConsumerPool("demo-queue").size());
+            assertEquals(2, provider.getConsumerPool("topic:prices").size());
+            assertEquals(2, provider.getConsumerPool("topic:prices").resize(5), "the group's own maximum applies");
+            verify(session, times(1)).createConsumer(queue);
+            verify(session, times(2)).createSharedConsumer(topic, "prices");
+            verify(session, times(1)).createTopic("prices");
+        } finally {
+            provider.cleanup();
+        }
+    }
+
+    @Test
+    void testGroupConcurrencyKeysAreNormalizedLikeDestinations() throws JMSException {
+        Properties properties = new Properties();
+        properties.setProperty("solace.consumer.destinations", "queue:orders");
+        properties.setProperty("solace.consumer.group-concurrency", "queue:orders:2-4");
+        MessageConsumerProvider provider = new MessageConsumerProvider(connectionFactory,
+                new DestinationRegistry("demo-queue", Optional.of("orders")), new ConsumerSettings(properties),
+                BacklogEstimator.local(), MessageHandlerPipeline.logging(), new ReconnectSettings(new Properties()),
+                ClientMetrics.disabled());
+        try {
+            assertEquals(4, provider.getConsumerPool("orders").resize(10), "the group's own maximum applies");
+            assertEquals(2, provider.getConsumerPool("queue:orders").resize(1), "the group's own minimum applies");
+            assertNull(provider.getConsumerPool("demo-queue"), "registered but not consumed");
+            assertThrows(IllegalArgumentException.class, () -> provider.getConsumerPool("unknown"));
+        } finally {
+            provider.cleanup();
+        }
+    }
+
+    @Test
+    void testGroupConcurrencyOfAnUnconsumedDestinationFails() {
+        Properties properties = new Properties();
+        properties.setProperty("solace.consumer.destinations", "orders");
+        properties.setProperty("solace.consumer.group-concurrency", "invoices:4");
+
+        assertThrows(IllegalArgumentException.class, () -> new MessageConsumerProvider(connectionFactory,
+                new DestinationRegistry("demo-queue", Optional.of("orders,invoices")), new ConsumerSettings(properties),
+                BacklogEstimator.local(), MessageHandlerPipeline.logging(), new ReconnectSettings(new Properties()),
+                ClientMetrics.disabled()));
+    }
+
+    @Test
+    void testBackgroundConnectDoesNotBlockInitialization() throws Exception {
+        CountDownLatch brokerReachable = new CountDownLatch(1);
+        CountDownLatch connected = new CountDownLatch(1);
+        when(connectionFactory.createConnection()).thenAnswer(invocation -> {
+            brokerReachable.await();
+            return connection;
+        });
+        Properties properties = new Properties();
+        properties.setProperty("solace.startup.background-connect", "true");
+        MessageConsumerProvider provider = new MessageConsumerProvider(connectionFactory,
+                DestinationRegistry.of("demo-queue"), new ConsumerSettings(new Properties()),
+                BacklogEstimator.local(), MessageHandlerPipeline.logging(), new ReconnectSettings(properties),
+                ClientMetrics.disabled());
+        try {
+            provider.addConnectionListener(connected::countDown);
+            provider.initialize();
+            assertFalse(provider.isConnected());
+
+            brokerReachable.countDown();
+            assertTrue(connected.await(2, TimeUnit.SECONDS));
+            assertTrue(provider.isConnected());
+        } finally {
+            provider.cleanup();
+        }
+    }
+
+    @Test
+    void testLostConnectionIsReplaced() throws JMSException {
+        ArgumentCaptor<ExceptionListener> listener = ArgumentCaptor.forClass(ExceptionListener.class);
+        verify(connection).setExceptionListener(listener.capture());
+
+        listener.getValue().onException(new JMSException("connection lost"));
+
+        verify(connectionFactory, timeout(2000).times(2)).createConnection();
+        verify(connection, timeout(2000).times(2)).start();
+        verify(connection, times(1)).close();
+    }
+
     @Test
     void testResourceClosure() throws JMSException {
         messageConsumerProvider.cleanup();
@@ -0,0 +1,184 @@
+package com.scalefocus.mile.jms.auth.poc.consumer;
+
+import com.scalefocus.mile.jms.auth.poc.core.ClientMetrics;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.MessageFormatException;
+import jakarta.jms.TextMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class MessageHandlerPipelineTest {
+
+    private MessageHandlerPipeline pipeline;
+
+    @AfterEach
+    void tearDown() {
+        if (pipeline != null) {
+            pipeline.close();
+        }
+    }
+
+    private static TextMessage text(String body, String groupId) throws JMSException {
+        TextMessage message = mock(TextMessage.class);
+        when(message.getText()).thenReturn(body);
+        when(message.getStringProperty("JMSXGroupID")).thenReturn(groupId);
+        return message;
+    }
+
+    private static MessageHandler<String> textHandler(List<String> handled) {
+        return new MessageHandler<>() {
+            @Override
+            public MessageType<String> type() {
+                return MessageType.TEXT;
+            }
+
+            @Override
+            public void validate(String payload, Message message) throws MessageFormatException {
+                if (payload.isEmpty()) {
+                    throw new MessageFormatException("empty");
+                }
+            }
+
+            @Override
+            public void handle(String payload, Message message) {
+                if (payload.equals("fail")) {
+                    throw new IllegalStateException("handler failed");
+                }
+                handled.add(payload);
+            }
+        };
+    }
+
+    @Test
+    void testInvalidMessagesAreSkippedAndFailuresReported() throws Exception {
+        List<String> handled = new ArrayList<>();
+        pipeline = new MessageHandlerPipeline(List.of(textHandler(handled)), 0, 0, false);
+
+        assertFalse(pipeline.dispatch(text("", null)).toCompletableFuture().isCompletedExceptionally());
+        assertTrue(pipeline.dispatch(text("fail", null)).toCompletableFuture().isCompletedExceptionally());
+        pipeline.dispatch(text("ok", null)).toCompletableFuture().get();
+
+        assertEquals(List.of("ok"), handled);
+    }
+
+    @Test
+    void testMessagesOfOneGroupAreHandledInOrder() throws Exception {
+        List<String> handled = Collections.synchronizedList(new ArrayList<>());
+        pipeline = new MessageHandlerPipeline(List.of(textHandler(handled)), 4, 100, false);
+
+        List<CompletableFuture<Void>> completions = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            completions.add(pipeline.dispatch(text("a-" + i, "group-a")).toCompletableFuture());
+            completions.add(pipeline.dispatch(text("b-" + i, "group-b")).toCompletableFuture());
+        }
+        CompletableFuture.allOf(completions.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+
+        List<String> groupA = new ArrayList<>();
+        for (String payload : handled) {
+            if (payload.startsWith("a-")) {
+                groupA.add(payload);
+            }
+        }
+        assertEquals(100, handled.size());
+        for (int i = 0; i < 50; i++) {
+            assertEquals("a-" + i, groupA.get(i));
+        }
+    }
+
+    @Test
+    void testRedeliveredMessagesAreHandledOnceUnlessTheirHandlerFailed() throws Exception {
+        List<String> handled = new ArrayList<>();
+        DedupCache dedupCache = new DedupCache(true, 100, 60000, 1, Optional.empty(), ClientMetrics.disabled(),
+                System::nanoTime);
+        pipeline = new MessageHandlerPipeline(List.of(textHandler(handled)), dedupCache, 0, 0, false);
+        TextMessage ok = text("ok", null);
+        when(ok.getJMSMessageID()).thenReturn("ID:1");
+        TextMessage failing = text("fail", null);
+        when(failing.getJMSMessageID()).thenReturn("ID:2");
+
+        pipeline.dispatch(ok).toCompletableFuture().get();
+        assertFalse(pipeline.dispatch(ok).toCompletableFuture().isCompletedExceptionally());
+        assertTrue(pipeline.dispatch(failing).toCompletableFuture().isCompletedExceptionally());
+        assertTrue(pipeline.dispatch(failing).toCompletableFuture().isCompletedExceptionally());
+
+        assertEquals(List.of("ok"), handled);
+        verify(failing, times(2)).getText();
+    }
+
+    @Test
+    void testRetriedAndQuarantinedMessagesCountAsProcessed() throws Exception {
+        RetryRouter retryRouter = mock(RetryRouter.class);
+        pipeline = new MessageHandlerPipeline(List.of(textHandler(new ArrayList<>())), DedupCache.disabled(),
+                retryRouter, 0, 0, "JMSXGroupID", false);
+        TextMessage failing = text("fail", null);
+        TextMessage invalid = text("", null);
+        when(retryRouter.failed(same(failing), any())).thenReturn(true);
+
+        assertFalse(pipeline.dispatch(failing).toCompletableFuture().isCompletedExceptionally());
+        assertFalse(pipeline.dispatch(invalid).toCompletableFuture().isCompletedExceptionally());
+
+        verify(retryRouter).failed(same(failing), any(IllegalStateException.class));
+        verify(retryRouter).poison(same(invalid), any(MessageFormatException.class));
+    }
+
+    @Test
+    void testUndecodableMessagesWithoutAHandlerAreQuarantined() throws Exception {
+        RetryRouter retryRouter = mock(RetryRouter.class);
+        pipeline = new MessageHandlerPipeline(Collections.emptyList(), DedupCache.disabled(),
+                retryRouter, 0, 0, "JMSXGroupID", false);
+        TextMessage corrupt = mock(TextMessage.class);
+        when(corrupt.getText()).thenThrow(new MessageFormatException("corrupt lz4 body"));
+
+        assertFalse(pipeline.dispatch(corrupt).toCompletableFuture().isCompletedExceptionally());
+
+        verify(retryRouter).poison(same(corrupt), any(MessageFormatException.class));
+        verify(retryRouter, never()).failed(any(), any());
+    }
+
+    @Test
+    void testABlockedGroupDoesNotDelayOtherGroups() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> handled = Collections.synchronizedList(new ArrayList<>());
+        MessageHandler<String> blocking = new MessageHandler<>() {
+            @Override
+            public MessageType<String> type() {
+                return MessageType.TEXT;
+            }
+
+            @Override
+            public void handle(String payload, Message message) throws InterruptedException {
+                if (payload.equals("block")) {
+                    release.await();
+                }
+                handled.add(payload);
+            }
+        };
+        pipeline = new MessageHandlerPipeline(List.of(blocking), DedupCache.disabled(), RetryRouter.disabled(),
+                1, 1, "JMSXGroupID", false);
+        try {
+            CompletableFuture<Void> blocked = pipeline.dispatch("orders", text("block", null)).toCompletableFuture();
+            CompletableFuture<Void> queued = pipeline.dispatch("orders", text("queued", null)).toCompletableFuture();
+
+            assertTimeoutPreemptively(Duration.ofSeconds(5),
+                    () -> pipeline.dispatch("payments", text("paid", null)).toCompletableFuture().get());
+            assertEquals(List.of("paid"), handled);
+            assertFalse(blocked.isDone());
+            assertFalse(queued.isDone());
+        } finally {
+            release.countDown();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.scalefocus.mile.jms.auth.poc.consumer;
+
+import com.scalefocus.mile.jms.auth.poc.core.ClientMetrics;
+import jakarta.jms.Connection;
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.DeliveryMode;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.MessageFormatException;
+import jakarta.jms.MessageProducer;
+import jakarta.jms.Queue;
+import jakarta.jms.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class RetryRouterTest {
+
+    private final Session session = mock(Session.class);
+    private final MessageProducer producer = mock(MessageProducer.class);
+    private final Queue orders = mock(Queue.class);
+    private final Queue deadLetters = mock(Queue.class);
+    private RetryRouter router;
+
+    @BeforeEach
+    void setUp() throws JMSException {
+        ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
+        Connection connection = mock(Connection.class);
+        when(connectionFactory.createConnection()).thenReturn(connection);
+        when(connection.createSession(false, Session.AUTO_ACKNOWLEDGE)).thenReturn(session);
+        when(session.createProducer(null)).thenReturn(producer);
+        when(session.createQueue("DLQ")).thenReturn(deadLetters);
+        router = new RetryRouter(true, connectionFactory, 3, 100, 250, 2.0, Optional.empty(), Optional.of("DLQ"),
+                ClientMetrics.disabled());
+    }
+
+    private Message failedMessage(int retries, int deliveryCount) throws JMSException {
+        Message message = mock(Message.class);
+        when(message.getJMSDestination()).thenReturn(orders);
+        when(message.getPropertyNames()).thenReturn(Collections.enumeration(List.of("tenant", "JMSXDeliveryCount")));
+        when(message.getObjectProperty("tenant")).thenReturn("acme");
+        when(message.propertyExists(RetryRouter.RETRY_COUNT)).thenReturn(retries > 0);
+        when(message.getIntProperty(RetryRouter.RETRY_COUNT)).thenReturn(retries);
+        when(message.propertyExists("JMSXDeliveryCount")).thenReturn(true);
+        when(message.getIntProperty("JMSXDeliveryCount")).thenReturn(deliveryCount);
+        return message;
+    }
+
+    @Test
+    void testFailedMessagesAreRetriedWithGrowingDelaysUntilDeadLettered() throws JMSException {
+        Message first = failedMessage(0, 1);
+        assertTrue(router.failed(first, new IllegalStateException("handler failed")));
+        verify(producer).setDeliveryDelay(100);
+        verify(first).clearProperties();
+        verify(first).setObjectProperty("tenant", "acme");
+        verify(first).setObjectProperty(RetryRouter.RETRY_COUNT, 1);
+        verify(first, never()).setObjectProperty(eq("JMSXDeliveryCount"), any());
+        verify(producer).send(eq(orders), same(first), eq(DeliveryMode.PERSISTENT), anyInt(), eq(0L));
+
+        Message redelivered = failedMessage(1, 1);
+        assertTrue(router.failed(redelivered, new IllegalStateException("handler failed")));
+        verify(producer).setDeliveryDelay(200);
+        verify(redelivered).setObjectProperty(RetryRouter.RETRY_COUNT, 2);
+
+        Message exhausted = failedMessage(2, 1);
+        assertTrue(router.failed(exhausted, new IllegalStateException("handler failed")));
+        verify(producer).send(eq(deadLetters), same(exhausted), eq(DeliveryMode.PERSISTENT), anyInt(), eq(0L));
+        verify(exhausted).setObjectProperty(RetryRouter.DEAD_LETTER_REASON,
+                "java.lang.IllegalStateException: handler failed");
+    }
+
+    @Test
+    void testRetriedMessagesKeepTheirGroup() throws JMSException {
+        Message grouped = failedMessage(0, 1);
+        when(grouped.getPropertyNames()).thenReturn(Collections.enumeration(
+                List.of("JMSXGroupID", "JMSXGroupSeq", "JMSXDeliveryCount", "JMS_Solace_DeadMsgQueueEligible")));
+        when(grouped.getObjectProperty("JMSXGroupID")).thenReturn("customer-7");
+        when(grouped.getObjectProperty("JMSXGroupSeq")).thenReturn(3);
+
+        assertTrue(router.failed(grouped, new IllegalStateException("handler failed")));
+        verify(grouped).setObjectProperty("JMSXGroupID", "customer-7");
+        verify(grouped).setObjectProperty("JMSXGroupSeq", 3);
+        verify(grouped, never()).setObjectProperty(eq("JMSXDeliveryCount"), any());
+        verify(grouped, never()).setObjectProperty(eq("JMS_Solace_DeadMsgQueueEligible"), any());
+    }
+
+    @Test
+    void testPoisonMessagesAreQuarantinedAndSendFailuresLeftToRedelivery() throws JMSException {
+        Message poison = failedMessage(0, 1);
+        assertTrue(router.poison(poison, new MessageFormatException("not JSON")));
+        verify(producer).send(eq(deadLetters), same(poison), eq(DeliveryMode.PERSISTENT), anyInt(), eq(0L));
+
+        doThrow(new JMSException("broker gone")).when(producer).send(any(), any(), anyInt(), anyInt(), anyLong());
+        assertFalse(router.failed(failedMessage(0, 1), new IllegalStateException("handler failed")));
+        assertFalse(RetryRouter.disabled().failed(failedMessage(0, 1), new IllegalStateException("handler failed")));
+    }
+}
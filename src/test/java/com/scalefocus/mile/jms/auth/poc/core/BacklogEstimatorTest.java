@@ -0,0 +1,56 @@
+package com.scalefocus.mile.jms.auth.poc.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BacklogEstimatorTest {
+
+    @Test
+    void testLocalCountersNeverGoNegative() {
+        BacklogEstimator estimator = BacklogEstimator.local();
+
+        estimator.recordDequeued("demo-queue");
+        estimator.recordDequeued("demo-queue");
+        assertEquals(0, estimator.estimate("demo-queue"));
+
+        estimator.recordEnqueued("demo-queue", 3);
+        estimator.recordDequeued("demo-queue");
+        assertEquals(2, estimator.estimate("demo-queue"));
+    }
+
+    @Test
+    void testProbeBaselineIsAdjustedByLocalCounters() {
+        BacklogProbe probe = queueName -> OptionalLong.of(10);
+        BacklogEstimator estimator = new BacklogEstimator(List.of(probe), 60_000);
+
+        assertEquals(10, estimator.estimate("demo-queue"));
+        estimator.recordDequeued("demo-queue");
+        estimator.recordEnqueued("demo-queue", 5);
+        assertEquals(14, estimator.estimate("demo-queue"));
+    }
+
+    @Test
+    void testProbeIsCalledAtMostOncePerInterval() {
+        AtomicInteger calls = new AtomicInteger();
+        BacklogProbe probe = queueName -> OptionalLong.of(calls.incrementAndGet());
+        BacklogEstimator estimator = new BacklogEstimator(List.of(probe), 60_000);
+
+        estimator.estimate("demo-queue");
+        estimator.estimate("demo-queue");
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void testEmptyProbeFallsBackToLocalCounters() {
+        BacklogProbe probe = queueName -> OptionalLong.empty();
+        BacklogEstimator estimator = new BacklogEstimator(List.of(probe), 0);
+
+        estimator.recordEnqueued("demo-queue", 4);
+        assertEquals(4, estimator.estimate("demo-queue"));
+    }
+}
@@ -0,0 +1,39 @@
+package com.scalefocus.mile.jms.auth.poc.core;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BackoffTest {
+
+    @Test
+    void testDelaysGrowUpToTheMaximumAndResetAfterSuccess() {
+        Backoff backoff = new Backoff(50, 300, 2.0, 0.5, () -> 0.0);
+
+        assertEquals(50, backoff.nextDelayMillis());
+        assertEquals(100, backoff.nextDelayMillis());
+        assertEquals(200, backoff.nextDelayMillis());
+        assertEquals(300, backoff.nextDelayMillis());
+        assertEquals(300, backoff.nextDelayMillis());
+        assertEquals(5, backoff.attempts());
+
+        backoff.reset();
+        assertEquals(0, backoff.attempts());
+        assertEquals(50, backoff.nextDelayMillis());
+    }
+
+    @Test
+    void testJitterShortensDelaysByAtMostItsShare() {
+        Backoff longest = new Backoff(100, 1000, 2.0, 0.5, () -> 0.0);
+        Backoff shortest = new Backoff(100, 1000, 2.0, 0.5, () -> 1.0);
+        Backoff random = new Backoff(100, 1000, 2.0, 0.5);
+
+        assertEquals(100, longest.nextDelayMillis());
+        assertEquals(50, shortest.nextDelayMillis());
+        for (int i = 0; i < 100; i++) {
+            random.reset();
+            long delay = random.nextDelayMillis();
+            assertTrue(delay >= 50 && delay <= 100, "delay " + delay);
+        }
+    }
+}
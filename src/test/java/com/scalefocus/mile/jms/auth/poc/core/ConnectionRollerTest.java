@@ -0,0 +1,80 @@
+package com.scalefocus.mile.jms.auth.poc.core;
+
+import jakarta.jms.JMSException;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConnectionRollerTest {
+
+    @Test
+    void testRollsEveryConnectionWithBoundedConcurrency() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("solace.ssl.reload.max-concurrent-rolls", "2");
+        ConnectionRoller roller = new ConnectionRoller(properties);
+        AtomicInteger rolling = new AtomicInteger();
+        AtomicInteger maxRolling = new AtomicInteger();
+        List<Integer> rolled = new CopyOnWriteArrayList<>();
+        roller.register(holder(6, index -> {
+            maxRolling.accumulateAndGet(rolling.incrementAndGet(), Math::max);
+            sleep(20);
+            rolling.decrementAndGet();
+            rolled.add(index);
+        }));
+
+        roller.rollAll().get(5, TimeUnit.SECONDS);
+
+        assertEquals(6, rolled.size());
+        assertEquals(2, maxRolling.get());
+        roller.close();
+    }
+
+    @Test
+    void testFailedRollDoesNotStopTheOthers() throws Exception {
+        ConnectionRoller roller = new ConnectionRoller(new Properties());
+        List<Integer> rolled = new CopyOnWriteArrayList<>();
+        roller.register(holder(3, index -> {
+            if (index == 0) {
+                throw new JMSException("handshake failed");
+            }
+            rolled.add(index);
+        }));
+
+        roller.rollAll().get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of(1, 2), rolled);
+        roller.close();
+    }
+
+    private interface Roll {
+        void roll(int index) throws JMSException;
+    }
+
+    private static RollableConnections holder(int connections, Roll roll) {
+        return new RollableConnections() {
+            @Override
+            public int connectionCount() {
+                return connections;
+            }
+
+            @Override
+            public void roll(int index, long drainTimeoutMillis) throws JMSException {
+                roll.roll(index);
+            }
+        };
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
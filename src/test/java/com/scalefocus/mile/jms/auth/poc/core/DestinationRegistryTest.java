@@ -0,0 +1,56 @@
+package com.scalefocus.mile.jms.auth.poc.core;
+
+import jakarta.jms.JMSException;
+import jakarta.jms.MessageConsumer;
+import jakarta.jms.Queue;
+import jakarta.jms.Session;
+import jakarta.jms.Topic;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class DestinationRegistryTest {
+
+    private final DestinationRegistry registry =
+            new DestinationRegistry("demo-queue", Optional.of("orders, queue:audit, topic:prices, orders"));
+
+    @Test
+    void testKeysNameQueuesAndTopics() {
+        assertEquals(List.of("demo-queue", "orders", "audit", "topic:prices"),
+                registry.all().stream().map(DestinationRegistry.Endpoint::getKey).collect(Collectors.toList()));
+        assertEquals("demo-queue", registry.getDefault().getName());
+        assertSame(registry.get("audit"), registry.get("queue:audit"));
+
+        DestinationRegistry.Endpoint prices = registry.get("topic:prices");
+        assertTrue(prices.isTopic());
+        assertEquals("prices", prices.getName());
+        assertThrows(IllegalArgumentException.class, () -> registry.get("prices"));
+    }
+
+    @Test
+    void testDestinationsAreCreatedOnceAndSharedBetweenSessions() throws JMSException {
+        Session first = mock(Session.class);
+        Session second = mock(Session.class);
+        Queue orders = mock(Queue.class);
+        Topic prices = mock(Topic.class);
+        MessageConsumer consumer = mock(MessageConsumer.class);
+        when(first.createQueue("orders")).thenReturn(orders);
+        when(first.createTopic("prices")).thenReturn(prices);
+        when(second.createSharedConsumer(prices, "prices")).thenReturn(consumer);
+
+        assertSame(orders, registry.resolve(first, registry.get("orders")));
+        assertSame(orders, registry.resolve(second, registry.get("orders")));
+        assertSame(prices, registry.resolve(first, registry.get("topic:prices")));
+        assertSame(consumer, registry.createConsumer(second, registry.get("topic:prices")));
+
+        verify(first, times(1)).createQueue("orders");
+        verify(first, times(1)).createTopic("prices");
+        verify(second, never()).createQueue(anyString());
+        verify(second, never()).createTopic(anyString());
+    }
+}
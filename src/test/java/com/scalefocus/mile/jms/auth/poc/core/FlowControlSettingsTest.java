@@ -0,0 +1,57 @@
+package com.scalefocus.mile.jms.auth.poc.core;
+
+import org.apache.qpid.jms.JmsConnectionFactory;
+import org.apache.qpid.jms.JmsQueue;
+import org.apache.qpid.jms.JmsTopic;
+import org.apache.qpid.jms.policy.JmsDefaultPresettlePolicy;
+import org.apache.qpid.jms.policy.JmsPrefetchPolicy;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlowControlSettingsTest {
+
+    @Test
+    void testPerQueuePrefetchOverridesDefault() {
+        Properties properties = new Properties();
+        properties.setProperty("solace.consumer.prefetch", "50");
+        properties.setProperty("solace.flow.queue-prefetch", "orders:5, audit:5000");
+        properties.setProperty("solace.flow.local-buffer-size", "1000");
+        FlowControlSettings settings = new FlowControlSettings(properties);
+
+        assertEquals(5, settings.prefetchFor("orders"));
+        assertEquals(1000, settings.prefetchFor("audit"));
+        assertEquals(50, settings.prefetchFor("demo-queue"));
+    }
+
+    @Test
+    void testApplyToConfiguresFactoryPolicies() {
+        Properties properties = new Properties();
+        properties.setProperty("solace.consumer.prefetch", "50");
+        properties.setProperty("solace.flow.queue-prefetch", "orders:5,topic:prices:7");
+        properties.setProperty("solace.flow.presettle-producers", "true");
+        JmsConnectionFactory factory = new JmsConnectionFactory("amqp://localhost:5672");
+
+        new FlowControlSettings(properties).applyTo(factory);
+
+        JmsPrefetchPolicy prefetchPolicy = factory.getPrefetchPolicy().copy();
+        assertEquals(5, prefetchPolicy.getConfiguredPrefetch(null, new JmsQueue("orders"), false, false));
+        assertEquals(50, prefetchPolicy.getConfiguredPrefetch(null, new JmsQueue("demo-queue"), false, false));
+        assertEquals(7, prefetchPolicy.getConfiguredPrefetch(null, new JmsTopic("prices"), false, false));
+        assertEquals(50, prefetchPolicy.getConfiguredPrefetch(null, new JmsTopic("orders"), false, false));
+        JmsDefaultPresettlePolicy presettlePolicy = (JmsDefaultPresettlePolicy) factory.getPresettlePolicy();
+        assertTrue(presettlePolicy.isPresettleProducers());
+        assertFalse(presettlePolicy.isPresettleConsumers());
+    }
+
+    @Test
+    void testMalformedOverrideIsRejected() {
+        Properties properties = new Properties();
+        properties.setProperty("solace.flow.queue-prefetch", "orders");
+        FlowControlSettings settings = new FlowControlSettings(properties);
+
+        assertThrows(IllegalArgumentException.class, () -> settings.prefetchFor("orders"));
+    }
+}
@@ -0,0 +1,208 @@
+package com.scalefocus.mile.jms.auth.poc.core;
+
+import jakarta.jms.BytesMessage;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.MessageFormatException;
+import jakarta.jms.Session;
+import jakarta.jms.TextMessage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class PayloadCompressionTest {
+
+    private static final String JSON = "{\"id\":1,\"name\":\"sensor\",\"values\":[1,2,3,4,5,6,7,8]}";
+
+    @ParameterizedTest
+    @EnumSource(PayloadCodec.class)
+    void testCodecRestoresTheOriginalBytes(PayloadCodec codec) {
+        byte[] original = JSON.repeat(200).getBytes(StandardCharsets.UTF_8);
+        byte[] compressed = new byte[codec.maxCompressedLength(original.length)];
+
+        int length = codec.compress(original, original.length, compressed);
+        byte[] restored = new byte[original.length];
+        codec.decompress(compressed, length, restored, original.length);
+
+        assertTrue(length < original.length / 4, codec + " compressed to " + length);
+        assertArrayEquals(original, restored);
+    }
+
+    @Test
+    void testSmallPayloadsStayText() throws JMSException {
+        Session session = mock(Session.class);
+        TextMessage text = mock(TextMessage.class);
+        when(session.createTextMessage(JSON)).thenReturn(text);
+
+        assertSame(text, compression("lz4").createTextMessage(session, JSON));
+        verify(session, never()).createBytesMessage();
+    }
+
+    @ParameterizedTest
+    @EnumSource(PayloadCodec.class)
+    void testLargeTextIsCompressedAndTaggedAndDecodesBack(PayloadCodec codec) throws JMSException {
+        String payload = JSON.repeat(200);
+        Session session = mock(Session.class);
+        BytesMessage bytes = recordingBytesMessage();
+        when(session.createBytesMessage()).thenReturn(bytes);
+
+        Message message = compression(codec.id()).createTextMessage(session, payload);
+
+        assertSame(bytes, message);
+        assertEquals(codec.id(), bytes.getStringProperty(PayloadCompression.CODEC_PROPERTY));
+        assertEquals("text", PayloadCompression.originalType(bytes));
+        assertEquals(payload, PayloadCompression.decodeText(bytes));
+    }
+
+    @ParameterizedTest
+    @EnumSource(PayloadCodec.class)
+    void testPooledBuffersAreNotSharedBetweenConcurrentCallers(PayloadCodec codec) throws Exception {
+        PayloadCompression compression = compression(codec.id());
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> decoded = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                String payload = JSON.repeat(100 + i) + i;
+                decoded.add(threads.submit(() -> {
+                    Session session = mock(Session.class);
+                    BytesMessage bytes = recordingBytesMessage();
+                    when(session.createBytesMessage()).thenReturn(bytes);
+                    compression.createTextMessage(session, payload);
+                    return PayloadCompression.decodeText(bytes);
+                }));
+            }
+            for (int i = 0; i < decoded.size(); i++) {
+                assertEquals(JSON.repeat(100 + i) + i, decoded.get(i).get());
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {-1, Integer.MIN_VALUE, PayloadCompression.DEFAULT_MAX_DECODED + 1, Integer.MAX_VALUE})
+    void testInvalidOriginalLengthIsAFormatError(int length) throws JMSException {
+        BytesMessage bytes = compressedMessage(PayloadCodec.LZ4);
+        bytes.setIntProperty(PayloadCompression.LENGTH_PROPERTY, length);
+
+        assertThrows(MessageFormatException.class, () -> PayloadCompression.decodeText(bytes));
+        verify(bytes, never()).readBytes(any(byte[].class), anyInt());
+    }
+
+    @Test
+    void testOriginalLengthAboveTheGivenLimitIsAFormatError() throws JMSException {
+        BytesMessage bytes = compressedMessage(PayloadCodec.ZSTD);
+
+        assertThrows(MessageFormatException.class, () -> PayloadCompression.decodeText(bytes, 1024));
+    }
+
+    @ParameterizedTest
+    @EnumSource(PayloadCodec.class)
+    void testWrongOriginalLengthIsAFormatError(PayloadCodec codec) throws JMSException {
+        BytesMessage bytes = compressedMessage(codec);
+        int length = bytes.getIntProperty(PayloadCompression.LENGTH_PROPERTY);
+
+        bytes.setIntProperty(PayloadCompression.LENGTH_PROPERTY, length + 1);
+        assertThrows(MessageFormatException.class, () -> PayloadCompression.decodeText(bytes));
+        bytes.setIntProperty(PayloadCompression.LENGTH_PROPERTY, length - 1);
+        assertThrows(MessageFormatException.class, () -> PayloadCompression.decodeText(bytes));
+    }
+
+    @ParameterizedTest
+    @EnumSource(PayloadCodec.class)
+    void testCorruptBodyIsAFormatError(PayloadCodec codec) throws JMSException {
+        byte[] garbage = new byte[256];
+        new Random(42).nextBytes(garbage);
+        BytesMessage bytes = recordingBytesMessage();
+        bytes.writeBytes(garbage, 0, garbage.length);
+        bytes.setStringProperty(PayloadCompression.CODEC_PROPERTY, codec.id());
+        bytes.setIntProperty(PayloadCompression.LENGTH_PROPERTY, 4096);
+
+        assertThrows(MessageFormatException.class, () -> PayloadCompression.decodeText(bytes));
+    }
+
+    @Test
+    void testMissingOrUnknownTagsAreAFormatError() throws JMSException {
+        BytesMessage bytes = compressedMessage(PayloadCodec.DEFLATE);
+        bytes.setStringProperty(PayloadCompression.CODEC_PROPERTY, "snappy");
+        assertThrows(MessageFormatException.class, () -> PayloadCompression.decodeText(bytes));
+
+        BytesMessage untagged = recordingBytesMessage();
+        assertThrows(MessageFormatException.class, () -> PayloadCompression.decodeText(untagged));
+    }
+
+    @Test
+    void testUncompressedMessagesHaveNoOriginalType() {
+        assertNull(PayloadCompression.originalType(mock(TextMessage.class)));
+        assertNull(PayloadCompression.originalType(mock(BytesMessage.class)));
+    }
+
+    private static PayloadCompression compression(String codec) {
+        Properties properties = new Properties();
+        properties.setProperty("solace.compression.codec", codec);
+        properties.setProperty("solace.compression.threshold-bytes", "1024");
+        return new PayloadCompression(properties);
+    }
+
+    private static BytesMessage compressedMessage(PayloadCodec codec) throws JMSException {
+        Session session = mock(Session.class);
+        BytesMessage bytes = recordingBytesMessage();
+        when(session.createBytesMessage()).thenReturn(bytes);
+        compression(codec.id()).createTextMessage(session, JSON.repeat(200));
+        return bytes;
+    }
+
+    /**
+     * A mocked {@code BytesMessage} that keeps what is written to it and reads it back.
+     */
+    private static BytesMessage recordingBytesMessage() throws JMSException {
+        BytesMessage message = mock(BytesMessage.class);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        Map<String, Object> properties = new HashMap<>();
+        doAnswer(invocation -> {
+            body.write(invocation.<byte[]>getArgument(0), invocation.<Integer>getArgument(1),
+                    invocation.<Integer>getArgument(2));
+            return null;
+        }).when(message).writeBytes(any(byte[].class), anyInt(), anyInt());
+        doAnswer(invocation -> properties.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(message).setStringProperty(anyString(), anyString());
+        doAnswer(invocation -> properties.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(message).setIntProperty(anyString(), anyInt());
+        when(message.getStringProperty(anyString())).thenAnswer(invocation -> properties.get(invocation.getArgument(0)));
+        when(message.getIntProperty(anyString())).thenAnswer(invocation -> {
+            Object value = properties.get(invocation.getArgument(0));
+            if (value == null) {
+                // as JMS providers do for a missing property
+                throw new NumberFormatException("null");
+            }
+            return value;
+        });
+        when(message.getBodyLength()).thenAnswer(invocation -> (long) body.size());
+        when(message.readBytes(any(byte[].class), anyInt())).thenAnswer(invocation -> {
+            byte[] target = invocation.getArgument(0);
+            int length = invocation.getArgument(1);
+            byte[] source = Arrays.copyOf(body.toByteArray(), length);
+            System.arraycopy(source, 0, target, 0, length);
+            return length;
+        });
+        return message;
+    }
+}
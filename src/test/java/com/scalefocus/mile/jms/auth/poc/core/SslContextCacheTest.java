@@ -0,0 +1,89 @@
+package com.scalefocus.mile.jms.auth.poc.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.net.ssl.SSLContext;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SslContextCacheTest {
+
+    private static final String PASSWORD = "changeit";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testContextIsBuiltOnceWithTheConfiguredSessionCache() throws Exception {
+        Path store = emptyStore("store.jks");
+
+        SslContextCache cache = new SslContextCache(store.toString(), PASSWORD, store.toString(), PASSWORD, 100, 600);
+
+        assertNotNull(cache.get());
+        assertSame(cache.get(), cache.get());
+        assertEquals(100, cache.get().getClientSessionContext().getSessionCacheSize());
+        assertEquals(600, cache.get().getClientSessionContext().getSessionTimeout());
+    }
+
+    @Test
+    void testReloadReplacesTheContextAndNotifiesListeners() throws Exception {
+        Path store = emptyStore("store.jks");
+        SslContextCache cache = new SslContextCache(store.toString(), PASSWORD, store.toString(), PASSWORD, 100, 600);
+        SSLContext initial = cache.get();
+        List<SSLContext> notified = new ArrayList<>();
+        cache.addListener(notified::add);
+
+        assertTrue(cache.reload());
+
+        assertNotSame(initial, cache.get());
+        assertEquals(List.of(cache.get()), notified);
+    }
+
+    @Test
+    void testFailedReloadKeepsTheCurrentContext() throws Exception {
+        Path store = emptyStore("store.jks");
+        SslContextCache cache = new SslContextCache(store.toString(), PASSWORD, store.toString(), PASSWORD, 100, 600);
+        SSLContext initial = cache.get();
+        List<SSLContext> notified = new ArrayList<>();
+        cache.addListener(notified::add);
+
+        Files.write(store, new byte[] {1, 2, 3});
+
+        assertFalse(cache.reload());
+        assertSame(initial, cache.get());
+        assertTrue(notified.isEmpty());
+    }
+
+    @Test
+    void testPkcs12StoresAreRecognizedByExtension() throws Exception {
+        Path store = emptyStore("store.p12", "PKCS12");
+
+        SslContextCache cache = new SslContextCache(store.toString(), PASSWORD, store.toString(), PASSWORD, 100, 600);
+
+        assertNotNull(cache.get());
+        assertEquals("PKCS12", SslContextCache.storeTypeOf(store.toString()));
+        assertEquals("PKCS12", SslContextCache.storeTypeOf("client.PFX"));
+        assertEquals("JKS", SslContextCache.storeTypeOf("keystore.jks"));
+    }
+
+    private Path emptyStore(String name) throws Exception {
+        return emptyStore(name, "JKS");
+    }
+
+    private Path emptyStore(String name, String type) throws Exception {
+        KeyStore keyStore = KeyStore.getInstance(type);
+        keyStore.load(null, null);
+        Path path = directory.resolve(name);
+        try (OutputStream out = Files.newOutputStream(path)) {
+            keyStore.store(out, PASSWORD.toCharArray());
+        }
+        return path;
+    }
+}
@@ -0,0 +1,35 @@
+package com.scalefocus.mile.jms.auth.poc.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThreadsTest {
+
+    @Test
+    void testNewThreadRunsTaskUnderGivenName() throws InterruptedException {
+        AtomicReference<String> ranOn = new AtomicReference<>();
+        Thread thread = Threads.newThread("worker-1", true, () -> ranOn.set(Thread.currentThread().getName()));
+
+        thread.start();
+        thread.join();
+
+        assertEquals("worker-1", ranOn.get());
+        assertEquals(Threads.virtualThreadsSupported(), thread.isDaemon());
+    }
+
+    @Test
+    void testVirtualExecutorIsOnlyCreatedWhenSupported() {
+        ExecutorService executor = Threads.newVirtualThreadPerTaskExecutor("send");
+        try {
+            assertEquals(Threads.virtualThreadsSupported(), executor != null);
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
+            }
+        }
+    }
+}
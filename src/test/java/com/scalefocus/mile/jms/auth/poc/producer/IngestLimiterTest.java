@@ -0,0 +1,125 @@
+package com.scalefocus.mile.jms.auth.poc.producer;
+
+import com.scalefocus.mile.jms.auth.poc.core.ClientMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IngestLimiterTest {
+
+    private static final String PROXY = "10.0.0.1";
+
+    private final AtomicLong clock = new AtomicLong();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private IngestLimiter limiter(int initialLimit, double ratePerSecond, int burst) {
+        return limiter(initialLimit, ratePerSecond, burst, 100);
+    }
+
+    private IngestLimiter limiter(int initialLimit, double ratePerSecond, int burst, int maxClients) {
+        return new IngestLimiter(true, initialLimit, 1, 8, 100, 0.5, ratePerSecond, burst, maxClients, "X-Client-Id",
+                Set.of(PROXY), new ClientMetrics(registry), clock::get);
+    }
+
+    @Test
+    void testConcurrencyLimitGrowsWhileFastAndShrinksWhenSlowOrFailing() {
+        IngestLimiter limiter = limiter(4, 0, 1);
+
+        List<IngestLimiter.Permit> permits = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            permits.add(limiter.acquire("client"));
+        }
+        IngestLimiter.Permit rejected = limiter.acquire("client");
+        assertFalse(rejected.isGranted());
+        assertEquals(1, rejected.retryAfterSeconds());
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(10));
+        permits.forEach(permit -> permit.release(true));
+        assertEquals(7, limiter.getLimit(), "fast requests with at least half the slots taken raise the limit");
+
+        IngestLimiter.Permit slow = limiter.acquire("client");
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(150));
+        slow.release(true);
+        assertEquals(3, limiter.getLimit());
+
+        IngestLimiter.Permit failed = limiter.acquire("client");
+        failed.release(false);
+        failed.release(false);
+        assertEquals(1, limiter.getLimit());
+        assertEquals(0.0, registry.get("solace.ingest.in.flight").gauge().value(), "a permit is released once");
+        assertEquals(1.0, registry.get("solace.ingest.rejected").tag("reason", "concurrency").counter().count());
+    }
+
+    @Test
+    void testEachClientIsLimitedToItsRate() {
+        IngestLimiter limiter = limiter(8, 10, 2);
+
+        assertTrue(limiter.acquire("a").isGranted());
+        assertTrue(limiter.acquire("a").isGranted());
+        IngestLimiter.Permit rejected = limiter.acquire("a");
+        assertFalse(rejected.isGranted());
+        assertEquals(1, rejected.retryAfterSeconds());
+        assertTrue(limiter.acquire("b").isGranted(), "other clients have their own bucket");
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        assertTrue(limiter.acquire("a").isGranted());
+        assertFalse(limiter.acquire("a").isGranted());
+        assertEquals(2.0, registry.get("solace.ingest.rejected").tag("reason", "rate").counter().count());
+    }
+
+    @Test
+    void testBurstOfSlowResponsesShrinksTheLimitOnce() {
+        IngestLimiter limiter = limiter(8, 0, 1);
+
+        List<IngestLimiter.Permit> permits = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            permits.add(limiter.acquire("client"));
+        }
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(150));
+        permits.forEach(permit -> permit.release(true));
+        assertEquals(4, limiter.getLimit(), "responses to requests started before the decrease do not cut again");
+
+        IngestLimiter.Permit later = limiter.acquire("client");
+        later.release(false);
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    void testClientHeaderIsOnlyBelievedFromTrustedProxies() {
+        IngestLimiter limiter = limiter(8, 10, 1);
+
+        assertEquals("tenant-a", limiter.clientOf(PROXY, "tenant-a"));
+        assertEquals(PROXY, limiter.clientOf(PROXY, " "));
+        assertEquals("192.168.1.7", limiter.clientOf("192.168.1.7", "tenant-a"));
+        assertEquals(IngestLimiter.UNKNOWN_CLIENT, limiter.clientOf(null, "tenant-a"));
+
+        assertTrue(limiter.acquire(limiter.clientOf("192.168.1.7", "first")).isGranted());
+        assertFalse(limiter.acquire(limiter.clientOf("192.168.1.7", "second")).isGranted(),
+                "a new header value does not buy a new bucket");
+    }
+
+    @Test
+    void testClientsBeyondTheCapShareTheOverflowBucket() {
+        IngestLimiter limiter = limiter(8, 10, 1, 2);
+
+        assertTrue(limiter.acquire("a").isGranted());
+        assertTrue(limiter.acquire("b").isGranted());
+        assertTrue(limiter.acquire("c").isGranted());
+        assertFalse(limiter.acquire("d").isGranted(), "clients beyond the cap share one bucket");
+        for (int i = 0; i < 1000; i++) {
+            limiter.acquire("client-" + i);
+        }
+        assertEquals(2, limiter.trackedClients());
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        assertTrue(limiter.acquire("e").isGranted());
+        assertEquals(1, limiter.trackedClients(), "idle buckets are swept out to make room");
+    }
+}
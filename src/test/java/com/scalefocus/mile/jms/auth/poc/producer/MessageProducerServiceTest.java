@@ -0,0 +1,325 @@
+package com.scalefocus.mile.jms.auth.poc.producer;
+
+import com.scalefocus.mile.jms.auth.poc.core.BacklogEstimator;
+import com.scalefocus.mile.jms.auth.poc.core.ClientMetrics;
+import com.scalefocus.mile.jms.auth.poc.core.DestinationRegistry;
+import com.scalefocus.mile.jms.auth.poc.core.PayloadCompression;
+import com.scalefocus.mile.jms.auth.poc.core.ReconnectSettings;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.jms.*;
+import javax.ws.rs.core.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+class MessageProducerServiceTest {
+
+    private static final int MAX_SIZE = 1000;
+    private static final int CHUNK_SIZE = 256;
+
+    private AutoCloseable openedMocks = null;
+
+    @Mock
+    private ConnectionFactory connectionFactory;
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private Session session;
+
+    @Mock
+    private Queue queue;
+
+    @Mock
+    private MessageProducer producer;
+
+    @Mock
+    private BytesMessage bytesMessage;
+
+    @Mock
+    private Session transactedSession;
+
+    @Mock
+    private TextMessage textMessage;
+
+    @TempDir
+    Path outboxDirectory;
+
+    private ProducerPool producerPool;
+    private MessageProducerService service;
+
+    @BeforeEach
+    void setUp() throws JMSException {
+        openedMocks = MockitoAnnotations.openMocks(this);
+
+        when(connectionFactory.createConnection()).thenReturn(connection);
+        when(connection.createSession(false, Session.AUTO_ACKNOWLEDGE)).thenReturn(session);
+        when(session.createQueue(anyString())).thenReturn(queue);
+        when(session.createProducer(queue)).thenReturn(producer);
+        when(session.createBytesMessage()).thenReturn(bytesMessage);
+
+        producerPool = new ProducerPool(connectionFactory, 1, 1, 1000, 60000,
+                new ReconnectSettings(new Properties()), ClientMetrics.disabled());
+        service = new MessageProducerService(producerPool, DestinationRegistry.of("demo-queue"), 500, 50, 1000,
+                MAX_SIZE, new ByteChunkPool(CHUNK_SIZE, 1), PayloadCompression.disabled(), Outbox.disabled(),
+                BacklogEstimator.local(), ClientMetrics.disabled());
+    }
+
+    @AfterEach
+    void tearDown() {
+        producerPool.close();
+        try {
+            openedMocks.close();
+        } catch (Exception ignored) {}
+    }
+
+    @Test
+    void testBinaryBodyIsStreamedIntoOneBytesMessage() throws JMSException {
+        byte[] body = new byte[MAX_SIZE];
+
+        assertEquals(200, service.sendBytesToBroker(new ByteArrayInputStream(body), -1).getStatus());
+
+        verify(bytesMessage, atLeast(MAX_SIZE / CHUNK_SIZE)).writeBytes(any(byte[].class), eq(0), anyInt());
+        verify(producer).send(bytesMessage);
+    }
+
+    @Test
+    void testBodyLargerThanTheMaximumIsRejected() throws JMSException {
+        byte[] body = new byte[MAX_SIZE + 1];
+
+        assertEquals(413, service.sendBytesToBroker(new ByteArrayInputStream(body), body.length).getStatus());
+        assertEquals(413, service.sendBytesToBroker(new ByteArrayInputStream(body), -1).getStatus());
+
+        verify(producer, never()).send(any(Message.class));
+    }
+
+    @Test
+    void testAsyncSendReleasesItsInFlightPermitOnCompletion() throws JMSException {
+        ArgumentCaptor<CompletionListener> listener = stubAsyncSend();
+        MessageProducerService asyncService = asyncService(1);
+
+        CompletableFuture<Response> first = asyncService.sendMessageToBrokerAsync("first").toCompletableFuture();
+        assertFalse(first.isDone());
+        assertEquals(503, asyncService.sendMessageToBrokerAsync("second").toCompletableFuture().join().getStatus());
+
+        listener.getValue().onCompletion(textMessage);
+        assertEquals(200, first.join().getStatus());
+        assertFalse(asyncService.sendMessageToBrokerAsync("third").toCompletableFuture().isDone());
+    }
+
+    @Test
+    void testInFlightGaugeCountsSendsToEveryDestination() throws JMSException {
+        stubAsyncSend();
+        when(session.createTopic(anyString())).thenReturn(mock(Topic.class));
+        when(session.createProducer(any(Topic.class))).thenReturn(producer);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        DestinationRegistry destinations = new DestinationRegistry("demo-queue", Optional.of("topic:prices"));
+        MessageProducerService asyncService = new MessageProducerService(producerPool, destinations, 500, 50, 10,
+                MAX_SIZE, new ByteChunkPool(CHUNK_SIZE, 1), PayloadCompression.disabled(), Outbox.disabled(),
+                BacklogEstimator.local(), new ClientMetrics(registry));
+
+        asyncService.sendMessageToBrokerAsync(destinations.get("topic:prices"), "price");
+
+        Gauge inFlight = registry.get("solace.producer.in.flight").gauge();
+        assertEquals(1.0, inFlight.value());
+        assertTrue(inFlight.getId().getTags().isEmpty());
+    }
+
+    @Test
+    void testAsyncSendReleasesItsInFlightPermitOnException() throws JMSException {
+        ArgumentCaptor<CompletionListener> listener = stubAsyncSend();
+        MessageProducerService asyncService = asyncService(1);
+
+        CompletableFuture<Response> first = asyncService.sendMessageToBrokerAsync("first").toCompletableFuture();
+        listener.getValue().onException(textMessage, new JMSException("Rejected"));
+
+        assertEquals(500, first.join().getStatus());
+        assertFalse(asyncService.sendMessageToBrokerAsync("second").toCompletableFuture().isDone());
+        verify(session).close();
+        verify(connection, times(2)).createSession(false, Session.AUTO_ACKNOWLEDGE);
+    }
+
+    @Test
+    void testAsyncSendReleasesItsInFlightPermitWhenTheSendThrows() throws JMSException {
+        stubAsyncSend();
+        doThrow(new JMSException("Send failed")).doNothing()
+                .when(producer).send(any(Message.class), any(CompletionListener.class));
+        MessageProducerService asyncService = asyncService(1);
+
+        assertEquals(500, asyncService.sendMessageToBrokerAsync("first").toCompletableFuture().join().getStatus());
+        assertFalse(asyncService.sendMessageToBrokerAsync("second").toCompletableFuture().isDone());
+    }
+
+    @Test
+    void testAsyncSendIsRejectedAtOnceWhenNoSessionIsFree() throws JMSException {
+        stubAsyncSend();
+        MessageProducerService asyncService = asyncService(2);
+
+        try (ProducerPool.PooledSession borrowed = producerPool.borrow()) {
+            CompletionStage<Response> rejected = asyncService.sendMessageToBrokerAsync("first");
+            assertEquals(503, rejected.toCompletableFuture().join().getStatus());
+        }
+        assertFalse(asyncService.sendMessageToBrokerAsync("second").toCompletableFuture().isDone());
+    }
+
+    @Test
+    void testBatchIsCommittedAtTheSizeBoundaryAndAtTheEnd() throws JMSException {
+        stubTransactedSession();
+
+        Response response = batchService(2, 60000).sendBatchToBroker(List.of("1", "2", "3", "4", "5").iterator());
+
+        assertBatchResult(response, 200, 5, 5, 0);
+        InOrder batch = inOrder(producer, transactedSession);
+        batch.verify(producer, calls(2)).send(textMessage);
+        batch.verify(transactedSession, calls(1)).commit();
+        batch.verify(producer, calls(2)).send(textMessage);
+        batch.verify(transactedSession, calls(1)).commit();
+        batch.verify(producer, calls(1)).send(textMessage);
+        batch.verify(transactedSession, calls(1)).commit();
+    }
+
+    @Test
+    void testBatchOlderThanTheLingerIsCommittedWithTheNextMessage() throws JMSException {
+        stubTransactedSession();
+
+        Response response = batchService(500, 0).sendBatchToBroker(List.of("1", "2", "3").iterator());
+
+        assertBatchResult(response, 200, 3, 3, 0);
+        verify(transactedSession, times(3)).commit();
+    }
+
+    @Test
+    void testFailedSendRollsBackTheOpenTransactionOnly() throws JMSException {
+        stubTransactedSession();
+        doNothing().doNothing().doThrow(new JMSException("Send failed")).doNothing().when(producer).send(textMessage);
+
+        Response response = batchService(2, 60000).sendBatchToBroker(List.of("1", "2", "3", "4").iterator());
+
+        assertBatchResult(response, 500, 4, 3, 1);
+        InOrder batch = inOrder(transactedSession);
+        batch.verify(transactedSession, calls(1)).commit();
+        batch.verify(transactedSession).rollback();
+        batch.verify(transactedSession, calls(1)).commit();
+        verify(connection, times(2)).createSession(true, Session.SESSION_TRANSACTED);
+    }
+
+    @Test
+    void testTextIsKeptInTheOutboxWhileTheBrokerIsDownAndDeliveredInOrderLater() throws Exception {
+        AtomicBoolean brokerUp = new AtomicBoolean();
+        when(connectionFactory.createConnection()).thenAnswer(invocation -> {
+            if (!brokerUp.get()) {
+                throw new JMSException("Connection refused");
+            }
+            return connection;
+        });
+        stubTransactedSession();
+        ReconnectSettings reconnectSettings = new ReconnectSettings(new Properties());
+        DestinationRegistry destinations = DestinationRegistry.of("demo-queue");
+        Outbox outbox = new Outbox(true, outboxDirectory.toString(), 1024 * 1024, 1024 * 1024, false, false, 500,
+                producerPool, destinations, PayloadCompression.disabled(), BacklogEstimator.local(), reconnectSettings,
+                ClientMetrics.disabled());
+        outbox.open();
+        MessageProducerService outboxService = new MessageProducerService(producerPool, destinations, 500, 50, 1000,
+                MAX_SIZE, new ByteChunkPool(CHUNK_SIZE, 1), PayloadCompression.disabled(), outbox,
+                BacklogEstimator.local(), ClientMetrics.disabled());
+        try {
+            assertEquals(202, outboxService.sendMessageToBroker("first").getStatus());
+            assertEquals(202, outboxService.sendMessageToBroker("second").getStatus());
+
+            brokerUp.set(true);
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (outbox.size() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(0, outbox.size());
+            InOrder delivery = inOrder(transactedSession);
+            delivery.verify(transactedSession).createTextMessage("first");
+            delivery.verify(transactedSession).createTextMessage("second");
+            delivery.verify(transactedSession).commit();
+        } finally {
+            outbox.close();
+        }
+    }
+
+    @Test
+    void testBatchesAndBinaryBodiesDoNotOvertakeTheOutbox() throws Exception {
+        when(connectionFactory.createConnection()).thenThrow(new JMSException("Connection refused"));
+        DestinationRegistry destinations = DestinationRegistry.of("demo-queue");
+        Outbox outbox = new Outbox(true, outboxDirectory.toString(), 64, 64, false, false, 500, producerPool,
+                destinations, PayloadCompression.disabled(), BacklogEstimator.local(),
+                new ReconnectSettings(new Properties()), ClientMetrics.disabled());
+        outbox.open();
+        MessageProducerService outboxService = new MessageProducerService(producerPool, destinations, 500, 50, 1000,
+                MAX_SIZE, new ByteChunkPool(CHUNK_SIZE, 1), PayloadCompression.disabled(), outbox,
+                BacklogEstimator.local(), ClientMetrics.disabled());
+        try {
+            String content = "x".repeat(40);
+            assertEquals(202, outboxService.sendMessageToBroker(content).getStatus());
+
+            assertEquals(503, outboxService.sendBytesToBroker(new ByteArrayInputStream(new byte[10]), 10).getStatus());
+            assertBatchResult(outboxService.sendBatchToBroker(List.of("a", "b").iterator()), 503, 2, 0, 2);
+            assertEquals(503, outboxService.sendMessageToBroker(content).getStatus(), "the outbox is full");
+            assertEquals(1, outbox.size());
+        } finally {
+            outbox.close();
+        }
+    }
+
+    private void stubTransactedSession() throws JMSException {
+        when(connection.createSession(true, Session.SESSION_TRANSACTED)).thenReturn(transactedSession);
+        when(transactedSession.createQueue(anyString())).thenReturn(queue);
+        when(transactedSession.createProducer(queue)).thenReturn(producer);
+        when(transactedSession.createTextMessage(anyString())).thenReturn(textMessage);
+    }
+
+    private ArgumentCaptor<CompletionListener> stubAsyncSend() throws JMSException {
+        when(session.createTextMessage(anyString())).thenReturn(textMessage);
+        ArgumentCaptor<CompletionListener> listener = ArgumentCaptor.forClass(CompletionListener.class);
+        doNothing().when(producer).send(any(Message.class), listener.capture());
+        // the asynchronous path does not connect itself
+        producerPool.borrow().close();
+        return listener;
+    }
+
+    private MessageProducerService asyncService(int maxInFlight) {
+        return new MessageProducerService(producerPool, DestinationRegistry.of("demo-queue"), 500, 50, maxInFlight,
+                MAX_SIZE, new ByteChunkPool(CHUNK_SIZE, 1), PayloadCompression.disabled(), Outbox.disabled(),
+                BacklogEstimator.local(), ClientMetrics.disabled());
+    }
+
+    private MessageProducerService batchService(int batchSize, long lingerMillis) {
+        return new MessageProducerService(producerPool, DestinationRegistry.of("demo-queue"), batchSize, lingerMillis,
+                1000, MAX_SIZE, new ByteChunkPool(CHUNK_SIZE, 1), PayloadCompression.disabled(), Outbox.disabled(),
+                BacklogEstimator.local(), ClientMetrics.disabled());
+    }
+
+    private static void assertBatchResult(Response response, int status, int accepted, int committed, int failed) {
+        assertEquals(status, response.getStatus());
+        assertTrue(response.getEntity() instanceof BatchResult);
+        BatchResult result = (BatchResult) response.getEntity();
+        assertEquals(accepted, result.getAccepted());
+        assertEquals(committed, result.getCommitted());
+        assertEquals(failed, result.getFailed());
+    }
+}
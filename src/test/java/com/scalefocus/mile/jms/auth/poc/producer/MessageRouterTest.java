@@ -0,0 +1,37 @@
+package com.scalefocus.mile.jms.auth.poc.producer;
+
+import com.scalefocus.mile.jms.auth.poc.core.DestinationRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageRouterTest {
+
+    private final DestinationRegistry destinations =
+            new DestinationRegistry("demo-queue", Optional.of("orders,topic:prices"));
+
+    @Test
+    void testFirstMatchingRuleWinsAndHeaderTakesPrecedence() {
+        MessageRouter router = new MessageRouter(destinations, "X-Routing-Key", Optional.of("type"),
+                Optional.of("order-eu=topic:prices, order-*=orders, price-*=topic:prices"));
+
+        assertEquals("orders", router.route("order-us", null).getKey());
+        assertEquals("topic:prices", router.route("order-eu", null).getKey());
+        assertEquals("topic:prices", router.route(null, "{\"id\":{\"type\":\"x\"},\"type\":\"price-tick\"}").getKey());
+        assertEquals("orders", router.route("order-1", "{\"type\":\"price-tick\"}").getKey());
+        assertEquals("demo-queue", router.route(null, "{\"type\":\"unknown\"}").getKey());
+        assertEquals("demo-queue", router.route(null, "plain text").getKey());
+        assertEquals("demo-queue", router.route(null, "{\"type\": [1, 2]}").getKey());
+        assertEquals("demo-queue", router.route(null, "{broken").getKey());
+    }
+
+    @Test
+    void testRuleToUnregisteredDestinationIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new MessageRouter(destinations, "X-Routing-Key",
+                Optional.empty(), Optional.of("audit-*=audit")));
+        assertThrows(IllegalArgumentException.class, () -> new MessageRouter(destinations, "X-Routing-Key",
+                Optional.empty(), Optional.of("orders")));
+    }
+}
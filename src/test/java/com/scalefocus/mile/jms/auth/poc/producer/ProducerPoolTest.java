@@ -0,0 +1,191 @@
+package com.scalefocus.mile.jms.auth.poc.producer;
+
+import com.scalefocus.mile.jms.auth.poc.core.ClientMetrics;
+import com.scalefocus.mile.jms.auth.poc.core.ReconnectSettings;
+import jakarta.jms.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ProducerPoolTest {
+
+    private AutoCloseable openedMocks = null;
+
+    @Mock
+    private ConnectionFactory connectionFactory;
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private Session session;
+
+    @Mock
+    private Session otherSession;
+
+    private ProducerPool producerPool;
+
+    @BeforeEach
+    void setUp() throws JMSException {
+        openedMocks = MockitoAnnotations.openMocks(this);
+
+        when(connectionFactory.createConnection()).thenReturn(connection);
+        when(connection.createSession(false, Session.AUTO_ACKNOWLEDGE)).thenReturn(session, otherSession);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (producerPool != null) {
+            producerPool.close();
+        }
+        try {
+            openedMocks.close();
+        } catch (Exception ignored) {}
+    }
+
+    @Test
+    void testReturnedSessionIsBorrowedAgain() throws JMSException {
+        producerPool = newPool(2, 60000, new Properties());
+
+        ProducerPool.PooledSession first = producerPool.borrow();
+        first.close();
+        ProducerPool.PooledSession second = producerPool.borrow();
+        second.close();
+
+        assertSame(first, second);
+        verify(connectionFactory).createConnection();
+        verify(connection).createSession(false, Session.AUTO_ACKNOWLEDGE);
+        verify(session, never()).close();
+    }
+
+    @Test
+    void testBorrowFailsOnceAllSessionsAreBorrowed() throws JMSException {
+        producerPool = newPool(1, 60000, new Properties());
+
+        ProducerPool.PooledSession borrowed = producerPool.borrow();
+        assertThrows(ResourceAllocationException.class, producerPool::borrow);
+
+        borrowed.close();
+        producerPool.borrow().close();
+    }
+
+    @Test
+    void testIdleSessionsAreEvicted() throws Exception {
+        producerPool = newPool(1, 0, new Properties());
+
+        producerPool.borrow().close();
+        Thread.sleep(1);
+        producerPool.evictIdleSessions();
+
+        verify(session).close();
+        assertSame(otherSession, producerPool.borrow().getSession());
+    }
+
+    @Test
+    void testSessionsOfAFailedConnectionAreDiscarded() throws JMSException {
+        Connection replacement = mock(Connection.class);
+        Session replacementSession = mock(Session.class);
+        when(connectionFactory.createConnection()).thenReturn(connection, replacement);
+        when(replacement.createSession(false, Session.AUTO_ACKNOWLEDGE)).thenReturn(replacementSession);
+        producerPool = newPool(2, 60000, new Properties());
+        ArgumentCaptor<ExceptionListener> listener = ArgumentCaptor.forClass(ExceptionListener.class);
+
+        producerPool.borrow().close();
+        ProducerPool.PooledSession borrowed = producerPool.borrow();
+        verify(connection).setExceptionListener(listener.capture());
+        listener.getValue().onException(new JMSException("Connection lost"));
+        borrowed.close();
+
+        assertSame(replacementSession, producerPool.borrow().getSession());
+        verify(session).close();
+        verify(connection).close();
+    }
+
+    @Test
+    void testFailedConnectsAreSpacedByTheBackoff() throws JMSException {
+        when(connectionFactory.createConnection()).thenThrow(new JMSException("Connection refused"));
+        Properties properties = new Properties();
+        properties.setProperty("solace.reconnect.initial-delay-ms", "60000");
+        properties.setProperty("solace.reconnect.max-delay-ms", "60000");
+        producerPool = newPool(1, 60000, properties);
+
+        JMSException first = assertThrows(JMSException.class, producerPool::borrow);
+        assertFalse(first instanceof BrokerUnavailableException);
+        BrokerUnavailableException second = assertThrows(BrokerUnavailableException.class, producerPool::borrow);
+
+        assertTrue(second.getRetryAfterMillis() > 0);
+        verify(connectionFactory).createConnection();
+    }
+
+    @Test
+    void testTryBorrowLeavesTheConnectToTheBackground() throws Exception {
+        producerPool = newPool(1, 60000, new Properties());
+
+        assertThrows(BrokerUnavailableException.class, producerPool::tryBorrow);
+
+        verify(connection, timeout(5000)).start();
+        ProducerPool.PooledSession pooled = awaitTryBorrow();
+        assertSame(session, pooled.getSession());
+        assertNull(producerPool.tryBorrow());
+    }
+
+    @Test
+    void testSlowConnectDoesNotBlockOtherBorrowers() throws Exception {
+        CountDownLatch connecting = new CountDownLatch(1);
+        CountDownLatch brokerAnswers = new CountDownLatch(1);
+        when(connectionFactory.createConnection()).thenAnswer(invocation -> {
+            connecting.countDown();
+            brokerAnswers.await();
+            return connection;
+        });
+        producerPool = newPool(2, 60000, new Properties());
+        CompletableFuture<ProducerPool.PooledSession> slow = CompletableFuture.supplyAsync(() -> {
+            try {
+                return producerPool.borrow();
+            } catch (JMSException e) {
+                throw new CompletionException(e);
+            }
+        });
+        try {
+            assertTrue(connecting.await(5, TimeUnit.SECONDS));
+
+            assertThrows(BrokerUnavailableException.class, producerPool::tryBorrow);
+            assertFalse(slow.isDone());
+        } finally {
+            brokerAnswers.countDown();
+        }
+        assertSame(session, slow.get(5, TimeUnit.SECONDS).getSession());
+        verify(connectionFactory).createConnection();
+    }
+
+    private ProducerPool.PooledSession awaitTryBorrow() throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (true) {
+            try {
+                return producerPool.tryBorrow();
+            } catch (BrokerUnavailableException e) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw e;
+                }
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    private ProducerPool newPool(int maxSessions, long idleTimeoutMillis, Properties reconnect) {
+        return new ProducerPool(connectionFactory, 1, maxSessions, 50, idleTimeoutMillis,
+                new ReconnectSettings(reconnect), ClientMetrics.disabled());
+    }
+}
@@ -0,0 +1,138 @@
+package com.scalefocus.mile.jms.auth.poc.producer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentLogTest {
+
+    private static final int SEGMENT_SIZE = 64;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testRecordsAreReadInOrderAndAcknowledgedSegmentsAreDeleted() throws Exception {
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE, false)) {
+            for (int i = 0; i < 10; i++) {
+                log.append(bytes("record-" + i));
+            }
+            assertTrue(log.segmentCount() > 1);
+
+            SegmentLog.Batch first = log.await(4, 0);
+            assertEquals(List.of("record-0", "record-1", "record-2", "record-3"), strings(first));
+            assertEquals(strings(first), strings(log.await(4, 0)), "unacknowledged records are read again");
+            log.acknowledge(first);
+
+            SegmentLog.Batch rest = log.await(100, 0);
+            assertEquals(List.of("record-4", "record-5", "record-6", "record-7", "record-8", "record-9"), strings(rest));
+            log.acknowledge(rest);
+
+            assertEquals(0, log.size());
+            assertTrue(log.await(100, 0).isEmpty());
+            assertEquals(1, log.segmentCount());
+            assertEquals(1, segmentFiles().size());
+        }
+    }
+
+    @Test
+    void testUnacknowledgedRecordsSurviveReopening() throws Exception {
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE, false)) {
+            for (int i = 0; i < 6; i++) {
+                log.append(bytes("record-" + i));
+            }
+            log.acknowledge(log.await(2, 0));
+        }
+
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE, false)) {
+            assertEquals(4, log.size());
+            log.append(bytes("record-6"));
+            assertEquals(List.of("record-2", "record-3", "record-4", "record-5", "record-6"),
+                    strings(log.await(100, 0)));
+        }
+    }
+
+    @Test
+    void testTornRecordIsDiscardedOnRecovery() throws Exception {
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE, false)) {
+            log.append(bytes("intact"));
+        }
+        try (FileChannel channel = FileChannel.open(segmentFiles().get(0), StandardOpenOption.WRITE)) {
+            // a header whose checksum does not match the zeroes following it
+            channel.write(ByteBuffer.allocate(8).putInt(4).putInt(12345).flip(), 8 + "intact".length());
+        }
+
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE, false)) {
+            assertEquals(1, log.size());
+            log.append(bytes("next"));
+            assertEquals(List.of("intact", "next"), strings(log.await(100, 0)));
+        }
+    }
+
+    @Test
+    void testRecordLargerThanASegmentIsRejected() throws Exception {
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE, false)) {
+            assertThrows(IllegalArgumentException.class, () -> log.append(new byte[SEGMENT_SIZE]));
+            assertEquals(0, log.size());
+        }
+    }
+
+    @Test
+    void testEmptyRecordsSurviveReopening() throws Exception {
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE, false)) {
+            log.append(bytes("before"));
+            log.append(new byte[0]);
+            log.append(bytes("after"));
+        }
+
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE, false)) {
+            assertEquals(List.of("before", "", "after"), strings(log.await(100, 0)));
+        }
+    }
+
+    @Test
+    void testAppendBeyondTheSizeLimitIsRejected() throws Exception {
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE, 2 * SEGMENT_SIZE, false)) {
+            byte[] record = new byte[SEGMENT_SIZE - 8];
+            log.append(record);
+            log.append(record);
+            assertThrows(SegmentLog.FullException.class, () -> log.append(record));
+            assertEquals(2, log.size());
+
+            log.acknowledge(log.await(1, 0));
+            log.append(record);
+            assertEquals(2, log.segmentCount());
+        }
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.toString().endsWith(".segment")).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> strings(SegmentLog.Batch batch) {
+        List<String> values = new ArrayList<>();
+        for (byte[] record : batch.records()) {
+            values.add(new String(record, StandardCharsets.UTF_8));
+        }
+        return values;
+    }
+}